@@ -0,0 +1,268 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * <p>The chess framework library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * <p>The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Counts the leaf nodes of the legal move tree of chess positions to a given depth ("perft"), using
+ * {@link MoveGenerator}. Comparing the counts to known values is the standard way of verifying a
+ * move generator, and timing them is a benchmark of it. Deep counts may be computed in parallel, on
+ * a fork-join pool.
+ *
+ * <p>When run without arguments, runs the perft suite, checking the counts and reporting the speed.
+ * The suite consists of the standard perft positions of chess and positions of the wild variants
+ * which have a move generator (see {@link ChesslikeGenericVariant#createMoveGenerator()}).
+ * Otherwise, the arguments are a FEN, a depth, optionally the name of the class of a variant (with
+ * a static <code>getInstance()</code> method) and optionally "parallel".
+ */
+public class Perft {
+
+  /** The name of the class of Fischer random, whose suite positions follow. */
+  private static final String FISCHER_RANDOM = "free.chess.variants.fischerrandom.FischerRandom";
+
+  /**
+   * The names of the classes of the variants of the perft suite positions, or <code>null</code> for
+   * chess.
+   */
+  private static final String[] SUITE_VARIANTS = {
+    null,
+    null,
+    null,
+    null,
+    null,
+    null,
+    FISCHER_RANDOM,
+    FISCHER_RANDOM,
+    FISCHER_RANDOM,
+    FISCHER_RANDOM,
+    FISCHER_RANDOM,
+    FISCHER_RANDOM,
+    FISCHER_RANDOM,
+    "free.chess.variants.giveaway.Giveaway",
+    "free.chess.variants.suicide.Suicide",
+    "free.chess.variants.atomic.Atomic",
+    "free.chess.variants.shatranj.Shatranj"
+  };
+
+  /**
+   * The FENs of the perft suite positions. The standard positions of chess come first. Fischer
+   * random must count the same as chess in positions where castling is standard, and has its own
+   * standard positions. Giveaway and suicide must count the same as other generators of losing
+   * chess variants (which disallow castling) until castling becomes possible. Atomic (as played on
+   * ICC, where check isn't recognized) and Shatranj have no published counts, so theirs were
+   * checked by hand at low depths and are kept to catch regressions.
+   */
+  private static final String[] SUITE_FENS = {
+    Chess.INITIAL_POSITION_FEN,
+    "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+    "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+    "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+    "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+    "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+    "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+    "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+    "bqnb1rkr/pp3ppp/3ppn2/2p5/5P2/P2P4/NPP1P1PP/BQ1BNRKR w HFhf - 2 9",
+    "2nnrbkr/p1qppppp/8/1ppb4/6PP/3PP3/PPP2P2/BQNNRBKR w HEhe - 1 9",
+    "b1q1rrkb/pppppppp/3nn3/8/P7/1PPP4/4PPPP/BQNNRKRB w GE - 1 9",
+    "qbbnnrkr/2pp2pp/p7/1p2pp2/8/P3PP2/1PPP1KPP/QBBNNR1R w hf - 0 9",
+    "1rqbkrbn/1ppppp1p/1n6/p1N3p1/8/2P4P/PP1PPPP1/1RQBKRBN w FBfb - 0 9",
+    Chess.INITIAL_POSITION_FEN,
+    Chess.INITIAL_POSITION_FEN,
+    Chess.INITIAL_POSITION_FEN,
+    "rnbkqbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBKQBNR w - - 0 1"
+  };
+
+  /** The depths to which the perft suite positions are counted. */
+  private static final int[] SUITE_DEPTHS = {5, 4, 5, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4};
+
+  /**
+   * The expected counts of the perft suite positions, to the depths in <code>SUITE_DEPTHS</code>.
+   */
+  private static final long[] SUITE_COUNTS = {
+    4865609, 4085603, 674624, 422333, 2103487, 3894594, 4085603, 422333, 326672, 667366, 273318,
+    382958, 287739, 153299, 153299, 197779, 68122
+  };
+
+  /** Positions with fewer plies than this left to count are counted by a single task. */
+  private static final int SEQUENTIAL_DEPTH = 3;
+
+  /** This class is not instantiable. */
+  private Perft() {}
+
+  /** Returns the perft count of the position of the specified generator to the specified depth. */
+  public static long perft(MoveGenerator generator, int depth) {
+    return generator.copy().perft(depth);
+  }
+
+  /**
+   * Returns the perft count of the position of the specified generator to the specified depth,
+   * computing it in parallel on the specified pool.
+   */
+  public static long parallelPerft(MoveGenerator generator, int depth, ForkJoinPool pool) {
+    return pool.invoke(new PerftTask(generator.copy(), depth)).longValue();
+  }
+
+  /**
+   * Runs the standard perft suite, or the perft of a single position, as described in the class
+   * documentation.
+   */
+  public static void main(String[] args) {
+    boolean parallel = (args.length > 0) && "parallel".equals(args[args.length - 1]);
+    int argCount = parallel ? args.length - 1 : args.length;
+    if ((argCount == 1) || (argCount > 3)) {
+      printUsage();
+      System.exit(1);
+    }
+
+    ForkJoinPool pool = parallel ? new ForkJoinPool() : null;
+
+    if (argCount >= 2) {
+      MoveGenerator generator = createMoveGenerator(argCount == 3 ? args[2] : null);
+      generator.setFEN(args[0]);
+      int depth = Integer.parseInt(args[1]);
+      run(generator, depth, -1, pool);
+      return;
+    }
+
+    boolean passed = true;
+    long totalNodes = 0;
+    long totalTime = 0;
+    for (int i = 0; i < SUITE_FENS.length; i++) {
+      MoveGenerator generator = createMoveGenerator(SUITE_VARIANTS[i]);
+      generator.setFEN(SUITE_FENS[i]);
+      System.out.println(
+          (SUITE_VARIANTS[i] == null ? "" : "[" + getVariantName(SUITE_VARIANTS[i]) + "] ")
+              + SUITE_FENS[i]);
+
+      long startTime = System.nanoTime();
+      passed &= run(generator, SUITE_DEPTHS[i], SUITE_COUNTS[i], pool);
+      totalTime += System.nanoTime() - startTime;
+      totalNodes += SUITE_COUNTS[i];
+    }
+
+    System.out.println(
+        (passed ? "All counts correct" : "SOME COUNTS WRONG")
+            + ", "
+            + totalNodes * 1000000000L / Math.max(totalTime, 1)
+            + " nodes per second overall");
+    System.exit(passed ? 0 : 1);
+  }
+
+  /**
+   * Returns a new move generator for the variant whose class has the specified name, or for chess
+   * if the name is <code>null</code>. The variant is looked up by name so that this class doesn't
+   * depend on the variant packages.
+   *
+   * @throws IllegalArgumentException if there is no such variant, or it has no move generator.
+   */
+  private static MoveGenerator createMoveGenerator(String variantClassName) {
+    if (variantClassName == null) return new MoveGenerator();
+
+    Object variant;
+    try {
+      variant = Class.forName(variantClassName).getMethod("getInstance").invoke(null);
+    } catch (Exception e) {
+      throw new IllegalArgumentException("Unable to obtain variant " + variantClassName + ": " + e);
+    }
+
+    MoveGenerator generator =
+        variant instanceof ChesslikeGenericVariant
+            ? ((ChesslikeGenericVariant) variant).createMoveGenerator()
+            : null;
+    if (generator == null)
+      throw new IllegalArgumentException(variantClassName + " has no move generator");
+
+    return generator;
+  }
+
+  /** Returns the simple name of the class with the specified name. */
+  private static String getVariantName(String className) {
+    return className.substring(className.lastIndexOf('.') + 1);
+  }
+
+  /**
+   * Counts the specified position to the specified depth, printing the result and speed and
+   * returning whether the count is the expected one (any count is, if it's -1).
+   */
+  private static boolean run(MoveGenerator generator, int depth, long expected, ForkJoinPool pool) {
+    long startTime = System.nanoTime();
+    long nodes = pool == null ? perft(generator, depth) : parallelPerft(generator, depth, pool);
+    long time = System.nanoTime() - startTime;
+
+    boolean correct = (expected == -1) || (nodes == expected);
+    System.out.println(
+        "  depth "
+            + depth
+            + ": "
+            + nodes
+            + " nodes"
+            + (correct ? "" : " (expected " + expected + ")")
+            + " in "
+            + time / 1000000
+            + " ms, "
+            + nodes * 1000000000L / Math.max(time, 1)
+            + " nodes per second");
+
+    return correct;
+  }
+
+  /** Dumps usage information to the standard error stream. */
+  private static void printUsage() {
+    System.err.println("Usage: java free.chess.Perft [fen depth [variantClass]] [parallel]");
+  }
+
+  /** A fork-join task computing the perft count of a position. */
+  private static class PerftTask extends RecursiveTask<Long> {
+
+    /** The serialization version; tasks are never serialized. */
+    private static final long serialVersionUID = 1L;
+
+    /** The generator holding the position; owned by this task. */
+    private final MoveGenerator generator;
+
+    /** The depth to count to. */
+    private final int depth;
+
+    /** Creates a new <code>PerftTask</code> with the specified generator and depth. */
+    PerftTask(MoveGenerator generator, int depth) {
+      this.generator = generator;
+      this.depth = depth;
+    }
+
+    @Override
+    protected Long compute() {
+      if (depth <= SEQUENTIAL_DEPTH) return Long.valueOf(generator.perft(depth));
+
+      int[] moves = new int[MoveGenerator.MAX_MOVES];
+      int count = generator.generateLegalMoves(moves);
+      PerftTask[] subtasks = new PerftTask[count];
+      for (int i = 0; i < count; i++) {
+        MoveGenerator child = generator.copy();
+        child.makeMove(moves[i]);
+        subtasks[i] = new PerftTask(child, depth - 1);
+      }
+      invokeAll(subtasks);
+
+      long nodes = 0;
+      for (int i = 0; i < count; i++) nodes += subtasks[i].join().longValue();
+
+      return Long.valueOf(nodes);
+    }
+  }
+}
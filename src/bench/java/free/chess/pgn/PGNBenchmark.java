@@ -0,0 +1,290 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * <p>The chess framework library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * <p>The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess.pgn;
+
+import free.chess.Chess;
+import free.chess.MoveFormatException;
+import free.chess.MoveGenerator;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Measures the speed of {@link PGNReader} and {@link SANResolver}, in games per second, and checks
+ * that games written by {@link PGNWriter} are read back intact.
+ *
+ * <p>When run without arguments, generates a database of random games, in the format the game
+ * logger writes (the same tags, plus the occasional comment, NAG and variation), checks that
+ * reading it back and resolving the moves yields the same games, and reports the speed of parsing
+ * it and of parsing it and resolving the moves. Otherwise, the arguments are the name of a PGN file
+ * and optionally "resolve", in which case the speed of reading the file (and resolving the moves)
+ * is reported.
+ */
+public class PGNBenchmark {
+
+  /** The amount of games in the generated database. */
+  private static final int GAME_COUNT = 2000;
+
+  /** The maximum amount of plies in a generated game. */
+  private static final int MAX_PLIES = 200;
+
+  /** The amount of times the generated database is read when timing. */
+  private static final int ROUNDS = 5;
+
+  /** The seed of the random games. */
+  private static final long SEED = 0x5eed;
+
+  /** The initial positions of the generated games, other than that of chess. */
+  private static final String[] SETUP_FENS = {
+    "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+    "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1"
+  };
+
+  /** The game results. */
+  private static final String[] RESULTS = {"1-0", "0-1", "1/2-1/2", "*"};
+
+  /** The name of white in the generated games, which needs escaping. */
+  private static final String WHITE_NAME = "Player \"1\" \\ A";
+
+  /** The moves of each generated game. */
+  private final int[][] gameMoves = new int[GAME_COUNT][];
+
+  /** The result of each generated game. */
+  private final String[] gameResults = new String[GAME_COUNT];
+
+  /** The amount of games read. */
+  private int games;
+
+  /** The amount of main line plies read. */
+  private long plies;
+
+  /** The amount of games which couldn't be read. */
+  private int errors;
+
+  /** The move buffer. */
+  private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+
+  /** The resolver we use. */
+  private final SANResolver resolver = new SANResolver();
+
+  /** Writes the random games into the specified writer, remembering them. */
+  private void writeGames(PGNWriter writer) throws IOException {
+    Random random = new Random(SEED);
+    MoveGenerator generator = new MoveGenerator();
+    int[] played = new int[MAX_PLIES];
+
+    for (int game = 0; game < GAME_COUNT; game++) {
+      String fen = game % 10 == 9 ? SETUP_FENS[(game / 10) % SETUP_FENS.length] : null;
+      String result = RESULTS[random.nextInt(RESULTS.length)];
+      generator.setFEN(fen == null ? Chess.INITIAL_POSITION_FEN : fen);
+
+      writer.writeTag("Event", "rated blitz game");
+      writer.writeTag("Site", "Benchmark");
+      writer.writeTag("Date", "2002.01.01");
+      writer.writeTag("Round", "-");
+      writer.writeTag("White", WHITE_NAME);
+      writer.writeTag("Black", "Player" + game);
+      writer.writeTag("WhiteElo", String.valueOf(1000 + random.nextInt(1500)));
+      writer.writeTag("BlackElo", "-");
+      writer.writeTag("Result", result);
+      writer.writeTag("Time", "12:00:00");
+      writer.writeTag("TimeControl", "180+0");
+      writer.writeTag("Mode", "ICS");
+      if (fen != null) {
+        writer.writeTag("SetUp", "1");
+        writer.writeTag("FEN", fen);
+      }
+
+      int ply = 0;
+      int firstPly = generator.isWhiteToMove() ? 0 : 1;
+      int plyCount = random.nextInt(MAX_PLIES);
+      while (ply < plyCount) {
+        int count = generator.generateLegalMoves(moves);
+        if (count == 0) break;
+
+        int move = moves[random.nextInt(count)];
+        int alternative = moves[random.nextInt(count)];
+        int moveNumber = 1 + (firstPly + ply) / 2;
+        boolean isWhite = generator.isWhiteToMove();
+        String alternativeSAN = resolver.toSAN(generator, alternative);
+        writer.writeMove(moveNumber, isWhite, resolver.toSAN(generator, move));
+
+        int annotation = random.nextInt(40);
+        if (annotation == 0) writer.writeNag(1 + random.nextInt(6));
+        else if (annotation == 1) writer.writeComment("A comment on move " + moveNumber);
+        else if (annotation == 2) {
+          writer.startVariation();
+          writer.writeMove(moveNumber, isWhite, alternativeSAN);
+          writer.writeComment("An alternative");
+          writer.endVariation();
+        }
+
+        generator.makeMove(move);
+        played[ply++] = move;
+      }
+      writer.endGame(result);
+
+      gameMoves[game] = new int[ply];
+      System.arraycopy(played, 0, gameMoves[game], 0, ply);
+      gameResults[game] = result;
+    }
+
+    writer.flush();
+  }
+
+  /**
+   * Reads the games from the specified reader, resolving their main line moves if so specified, and
+   * counting them. If the games are to be verified, checks that they are the generated games,
+   * returning whether they are.
+   */
+  private boolean readGames(PGNReader reader, boolean resolve, boolean verify) throws IOException {
+    games = 0;
+    plies = 0;
+    errors = 0;
+    boolean matches = true;
+
+    if (!resolve) {
+      while (reader.skipGame()) games++;
+      return true;
+    }
+
+    MoveGenerator generator = new MoveGenerator();
+    boolean isInitialBase = true;
+    boolean isSkipping = false;
+    int ply = 0;
+    int type;
+    while ((type = reader.next()) != PGNReader.END) {
+      switch (type) {
+        case PGNReader.TAG:
+          if ("FEN".equals(reader.getTagName())) {
+            generator.setFEN(reader.getTagValue());
+            isInitialBase = false;
+          } else if (verify && "White".equals(reader.getTagName()))
+            matches &= WHITE_NAME.equals(reader.getTagValue());
+          break;
+        case PGNReader.MOVE:
+          if (isSkipping || (reader.getVariationDepth() != 0)) break;
+          try {
+            int move = resolver.resolve(generator, reader.getTextSequence());
+            if (verify) {
+              int[] expected = gameMoves[games];
+              matches &= (ply < expected.length) && (expected[ply] == move);
+            }
+            generator.makeMove(move);
+            ply++;
+          } catch (MoveFormatException e) {
+            if (verify) {
+              System.out.println("Game " + (games + 1) + ": " + e.getMessage());
+              matches = false;
+            }
+            isSkipping = true;
+            errors++;
+          }
+          break;
+        case PGNReader.GAME_END:
+          if (verify) {
+            matches &= (ply == gameMoves[games].length);
+            matches &= gameResults[games].equals(reader.getResult());
+          }
+          games++;
+          plies += ply;
+          ply = 0;
+          isSkipping = false;
+          if (isInitialBase) {
+            while (generator.getMadeMoveCount() > 0) generator.unmakeMove();
+          } else {
+            generator.setFEN(Chess.INITIAL_POSITION_FEN);
+            isInitialBase = true;
+          }
+          break;
+      }
+    }
+
+    return matches && (!verify || (games == GAME_COUNT));
+  }
+
+  /** Runs the round trip check and benchmark on generated games, returning whether it passed. */
+  private boolean runGenerated() throws IOException {
+    ByteArrayOutputStream buf = new ByteArrayOutputStream();
+    writeGames(new PGNWriter(buf));
+    byte[] data = buf.toByteArray();
+    System.out.println("Generated " + GAME_COUNT + " games, " + data.length + " bytes");
+
+    boolean passed = readGames(new PGNReader(new ByteArrayInputStream(data)), true, true);
+    System.out.println(passed ? "Round trip OK" : "ROUND TRIP FAILED");
+
+    for (int pass = 0; pass < 2; pass++) {
+      boolean resolve = pass == 1;
+      long bestTime = Long.MAX_VALUE;
+      for (int round = 0; round < ROUNDS; round++) {
+        long startTime = System.nanoTime();
+        readGames(new PGNReader(new ByteArrayInputStream(data)), resolve, false);
+        bestTime = Math.min(bestTime, System.nanoTime() - startTime);
+      }
+      report(resolve ? "Parsing and resolving" : "Parsing", bestTime);
+    }
+
+    return passed;
+  }
+
+  /** Reads the specified file, resolving the moves if so specified, and reports the speed. */
+  private void runFile(File file, boolean resolve) throws IOException {
+    PGNReader reader = PGNReader.open(file);
+    try {
+      long startTime = System.nanoTime();
+      readGames(reader, resolve, false);
+      report(resolve ? "Parsing and resolving" : "Parsing", System.nanoTime() - startTime);
+    } finally {
+      reader.close();
+    }
+  }
+
+  /** Prints the speed of the last read, which took the specified time, in nanoseconds. */
+  private void report(String what, long time) {
+    long nanos = Math.max(time, 1);
+    System.out.println(
+        what
+            + ": "
+            + games
+            + " games in "
+            + time / 1000000
+            + " ms, "
+            + games * 1000000000L / nanos
+            + " games per second"
+            + (plies == 0 ? "" : ", " + plies * 1000000000L / nanos + " plies per second")
+            + (errors == 0 ? "" : ", " + errors + " games with errors"));
+  }
+
+  /** Runs the benchmark; see the class documentation for the arguments. */
+  public static void main(String[] args) throws IOException {
+    if ((args.length > 2) || ((args.length == 2) && !"resolve".equals(args[1]))) {
+      printUsage();
+      System.exit(1);
+    }
+
+    PGNBenchmark benchmark = new PGNBenchmark();
+    if (args.length == 0) System.exit(benchmark.runGenerated() ? 0 : 1);
+    else benchmark.runFile(new File(args[0]), args.length == 2);
+  }
+
+  /** Dumps usage information to the standard error stream. */
+  private static void printUsage() {
+    System.err.println("Usage: java free.chess.pgn.PGNBenchmark [pgnFile [resolve]]");
+  }
+}
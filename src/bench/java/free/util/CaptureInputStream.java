@@ -0,0 +1,149 @@
+/**
+ * The utillib library. More information is available at http://www.jinchess.com/. Copyright (C)
+ * 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * <p>The utillib library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * <p>The utillib library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU Lesser General Public License along with utillib
+ * library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+ * MA 02111-1307 USA
+ */
+package free.util;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+
+/**
+ * An <code>InputStream</code> which returns the data recorded in a capture written by {@link
+ * CaptureOutputStream}. A single <code>read</code> never returns data from more than one chunk, so
+ * the reader sees the data in the same pieces it originally arrived in. If the stream is paced, a
+ * chunk isn't returned before the time it was recorded at has passed (relative to the first read),
+ * which reproduces the original timing of the data. Otherwise, the data is returned as fast as it
+ * can be read.
+ */
+public class CaptureInputStream extends InputStream {
+
+  /** The stream we read the capture from. */
+  private final DataInputStream in;
+
+  /** Whether we reproduce the original timing of the data. */
+  private final boolean paced;
+
+  /**
+   * The time, as returned by <code>System.nanoTime()</code>, of the first read, or 0 if there
+   * hasn't been one yet.
+   */
+  private long startTime = 0;
+
+  /** The amount of bytes left in the current chunk. */
+  private int chunkRemaining = 0;
+
+  /** The amount of chunks read so far. */
+  private int chunkCount = 0;
+
+  /** Set when the end of the capture has been reached. */
+  private boolean ended = false;
+
+  /**
+   * Creates a new <code>CaptureInputStream</code> which reads a capture from the specified stream.
+   * Throws an <code>IOException</code> if the stream doesn't start with a capture header of a known
+   * version.
+   */
+  public CaptureInputStream(InputStream in, boolean paced) throws IOException {
+    this.in = new DataInputStream(new BufferedInputStream(in));
+    this.paced = paced;
+
+    byte[] magic = new byte[CaptureOutputStream.MAGIC.length];
+    this.in.readFully(magic);
+    for (int i = 0; i < magic.length; i++)
+      if (magic[i] != CaptureOutputStream.MAGIC[i]) throw new IOException("Not a capture");
+
+    int version = this.in.readInt();
+    if (version != CaptureOutputStream.VERSION)
+      throw new IOException("Unsupported capture version: " + version);
+  }
+
+  /**
+   * Makes sure we're inside a chunk, reading the next chunk's header (and waiting until its time,
+   * if paced) if needed. Returns <code>false</code> if the end of the capture has been reached.
+   */
+  private boolean nextChunk() throws IOException {
+    if (ended) return false;
+    if (chunkRemaining > 0) return true;
+
+    if (startTime == 0) startTime = System.nanoTime();
+
+    long time;
+    try {
+      time = in.readLong();
+    } catch (EOFException e) {
+      ended = true;
+      return false;
+    }
+    chunkRemaining = in.readInt();
+    chunkCount++;
+
+    if (paced) {
+      long delay = startTime + time * 1000 - System.nanoTime();
+      if (delay > 0) {
+        try {
+          Thread.sleep(delay / 1000000, (int) (delay % 1000000));
+        } catch (InterruptedException e) {
+          throw new InterruptedIOException();
+        }
+      }
+    }
+
+    return true;
+  }
+
+  /** Reads a single byte. */
+  @Override
+  public int read() throws IOException {
+    if (!nextChunk()) return -1;
+
+    int b = in.read();
+    if (b == -1) throw new EOFException("Truncated chunk");
+    chunkRemaining--;
+    return b;
+  }
+
+  /** Reads up to the specified amount of bytes, but no more than are left in the current chunk. */
+  @Override
+  public int read(byte[] buf, int offset, int length) throws IOException {
+    if (length == 0) return 0;
+    if (!nextChunk()) return -1;
+
+    int count = in.read(buf, offset, Math.min(length, chunkRemaining));
+    if (count == -1) throw new EOFException("Truncated chunk");
+    chunkRemaining -= count;
+    return count;
+  }
+
+  /** Returns the amount of bytes which can be read without blocking from the current chunk. */
+  @Override
+  public int available() throws IOException {
+    return Math.min(chunkRemaining, in.available());
+  }
+
+  /** Returns the amount of chunks read so far. */
+  public int getChunkCount() {
+    return chunkCount;
+  }
+
+  /** Closes the underlying stream. */
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+}
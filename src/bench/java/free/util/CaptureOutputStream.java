@@ -0,0 +1,92 @@
+/**
+ * The utillib library. More information is available at http://www.jinchess.com/. Copyright (C)
+ * 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * <p>The utillib library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * <p>The utillib library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU Lesser General Public License along with utillib
+ * library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+ * MA 02111-1307 USA
+ */
+package free.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An <code>OutputStream</code> which records the data written into it, along with the time it was
+ * written, in a capture format readable by {@link CaptureInputStream}. Each invocation of <code>
+ * write</code> produces a single chunk, so when the data is written as it arrives from a socket,
+ * the capture preserves both the original chunking of the data and its timing.
+ *
+ * <p>The format is the 4 bytes of {@link #MAGIC}, followed by the version (an int), followed by the
+ * chunks. Each chunk is the time it was written, in microseconds since the stream was created (a
+ * long), the length of the data (an int) and the data itself. All numbers are big-endian, as
+ * written by <code>DataOutputStream</code>.
+ */
+public class CaptureOutputStream extends OutputStream {
+
+  /** The bytes a capture starts with. */
+  public static final byte[] MAGIC = {'J', 'C', 'A', 'P'};
+
+  /** The version of the capture format. */
+  public static final int VERSION = 1;
+
+  /** The stream we write the capture into. */
+  private final DataOutputStream out;
+
+  /** The time, as returned by <code>System.nanoTime()</code>, at which the capture started. */
+  private final long startTime;
+
+  /**
+   * Creates a new <code>CaptureOutputStream</code> which writes a capture into the given stream.
+   */
+  public CaptureOutputStream(OutputStream out) throws IOException {
+    this.out = new DataOutputStream(new BufferedOutputStream(out));
+    this.startTime = System.nanoTime();
+
+    this.out.write(MAGIC);
+    this.out.writeInt(VERSION);
+    this.out.flush();
+  }
+
+  /** Writes a chunk consisting of the specified byte. */
+  @Override
+  public void write(int b) throws IOException {
+    write(new byte[] {(byte) b}, 0, 1);
+  }
+
+  /**
+   * Writes a chunk consisting of the specified bytes. The chunk is flushed to the underlying stream
+   * immediately, so that the capture is complete even if the process is killed.
+   */
+  @Override
+  public synchronized void write(byte[] buf, int offset, int length) throws IOException {
+    if (length == 0) return;
+
+    out.writeLong((System.nanoTime() - startTime) / 1000);
+    out.writeInt(length);
+    out.write(buf, offset, length);
+    out.flush();
+  }
+
+  /** Flushes the underlying stream. */
+  @Override
+  public synchronized void flush() throws IOException {
+    out.flush();
+  }
+
+  /** Closes the underlying stream. */
+  @Override
+  public synchronized void close() throws IOException {
+    out.close();
+  }
+}
@@ -0,0 +1,99 @@
+/**
+ * The utillib library. More information is available at http://www.jinchess.com/. Copyright (C)
+ * 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * <p>The utillib library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * <p>The utillib library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU Lesser General Public License along with utillib
+ * library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+ * MA 02111-1307 USA
+ */
+package free.util;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * Records sessions with a server for {@link SessionReplayer}. Like {@link Bounce}, it listens on a
+ * local port and relays the data between anyone who connects to it and the specified server, but it
+ * also records the data sent in each direction, with its timing, by a {@link CaptureOutputStream}.
+ * The "in-log" of a connection holds the data sent by the server, and is what is played back into a
+ * {@link Connection}.
+ */
+public class SessionRecorder {
+
+  /** The main method. */
+  public static void main(String[] args) {
+    if (args.length < 3) {
+      printUsage();
+      System.exit(1);
+    }
+
+    int localPort;
+    int remotePort;
+    try {
+      localPort = Integer.parseInt(args[0]);
+      remotePort = Integer.parseInt(args[2]);
+    } catch (NumberFormatException e) {
+      System.err.println("Bad port value: " + e.getMessage());
+      printUsage();
+      System.exit(2);
+      return;
+    }
+
+    String hostname = args[1];
+    int numConnections = 0;
+
+    try {
+      ServerSocket ssock = new ServerSocket(localPort);
+      while (true) {
+        Socket incomingSock = ssock.accept();
+        Socket outgoingSock = new Socket(hostname, remotePort);
+        numConnections++;
+
+        String incomingLogName =
+            "in-log-"
+                + incomingSock.getInetAddress().getHostName()
+                + "("
+                + localPort
+                + ")-"
+                + numConnections
+                + ".cap";
+        String outgoingLogName =
+            "out-log-" + hostname + "(" + remotePort + ")-" + numConnections + ".cap";
+        OutputStream incomingLog = new CaptureOutputStream(new FileOutputStream(incomingLogName));
+        OutputStream outgoingLog = new CaptureOutputStream(new FileOutputStream(outgoingLogName));
+
+        InputStream incomingIn = incomingSock.getInputStream();
+        InputStream outgoingIn = outgoingSock.getInputStream();
+        OutputStream incomingOut =
+            new MultiOutputStream(incomingSock.getOutputStream(), incomingLog);
+        OutputStream outgoingOut =
+            new MultiOutputStream(outgoingSock.getOutputStream(), outgoingLog);
+
+        PumpThread t1 = new PumpThread(incomingIn, outgoingOut);
+        PumpThread t2 = new PumpThread(outgoingIn, incomingOut);
+        t1.start();
+        t2.start();
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
+      System.exit(3);
+    }
+  }
+
+  /** Dumps usage information to the standard error stream. */
+  private static void printUsage() {
+    System.err.println("Usage: java free.util.SessionRecorder localPort hostname remotePort");
+  }
+}
@@ -0,0 +1,357 @@
+/**
+ * The utillib library. More information is available at http://www.jinchess.com/. Copyright (C)
+ * 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * <p>The utillib library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * <p>The utillib library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU Lesser General Public License along with utillib
+ * library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+ * MA 02111-1307 USA
+ */
+package free.util;
+
+import com.sun.management.ThreadMXBean;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Constructor;
+import java.net.Socket;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plays a session recorded by {@link SessionRecorder} (the data sent by the server, in the format
+ * of {@link CaptureOutputStream}) back into a {@link Connection}, without any network. The data is
+ * fed to the connection through a socket given to {@link Connection#initiateConnect(Socket)}, so
+ * it's read, parsed and handled exactly as data from a live server would be, while anything the
+ * connection sends is discarded. The capture may be played at its original pace or as fast as
+ * possible.
+ *
+ * <p>Once all the data has been handled, the replayer reports the amount of messages, their rate,
+ * the time spent handling them (in {@link Connection#handleMessage(Object)}, normally on the AWT
+ * event dispatching thread) and the amount of memory allocated per message, where the JVM supports
+ * measuring it. The connection is then disconnected, as if the server closed the connection.
+ */
+public class SessionReplayer {
+
+  /** The connection we play the capture into. */
+  private final Connection connection;
+
+  /** The file holding the capture. */
+  private final File captureFile;
+
+  /** Whether the capture is played at its original pace. */
+  private final boolean paced;
+
+  /** The lock on which the end of the capture is signalled and waited for. */
+  private final Object endLock = new String("SessionReplayer endLock");
+
+  /** Set when the reader has reached the end of the capture, or the socket has been closed. */
+  private boolean inputEnded = false;
+
+  /** Set when the reader may go on to see the end of the capture. */
+  private boolean endReleased = false;
+
+  /** The amount of chunks played. */
+  private int chunkCount;
+
+  /** The amount of messages handled. */
+  private long messageCount;
+
+  /** The time, in nanoseconds, it took to play and handle the capture. */
+  private long elapsedTime;
+
+  /** The time, in nanoseconds, spent handling the messages. */
+  private long handlingTime;
+
+  /** The amount of bytes allocated while playing the capture, or -1 if unknown. */
+  private long allocatedBytes;
+
+  /** The amount of bytes sent by the connection. */
+  private long sentBytes;
+
+  /**
+   * Creates a new <code>SessionReplayer</code> which will play the capture in the specified file
+   * into the specified, not yet connected, connection.
+   */
+  public SessionReplayer(Connection connection, File captureFile, boolean paced) {
+    if (connection == null) throw new IllegalArgumentException("Connection may not be null");
+    if (captureFile == null) throw new IllegalArgumentException("Capture file may not be null");
+
+    this.connection = connection;
+    this.captureFile = captureFile;
+    this.paced = paced;
+  }
+
+  /**
+   * Plays the capture into the connection, returning once all of it has been read and all the
+   * messages read from it have been handled. May only be invoked once.
+   */
+  public void replay() throws IOException, InterruptedException {
+    CaptureInputStream capture = new CaptureInputStream(new FileInputStream(captureFile), paced);
+    ReplaySocket socket = new ReplaySocket(new ReplayInputStream(capture));
+
+    connection.keepMessageStatistics();
+    long startAllocatedBytes = measureAllocatedBytes();
+    long startMessageCount = connection.getHandledMessageCount();
+    long startHandlingTime = connection.getMessageHandlingTime();
+    long startTime = System.nanoTime();
+
+    connection.initiateConnect(socket);
+
+    synchronized (endLock) {
+      while (!inputEnded) endLock.wait();
+    }
+
+    while (connection.getHandledMessageCount() < connection.getReceivedMessageCount()) {
+      if (Thread.interrupted()) throw new InterruptedException();
+      LockSupport.parkNanos(100000);
+    }
+
+    elapsedTime = System.nanoTime() - startTime;
+    long endAllocatedBytes = measureAllocatedBytes();
+    allocatedBytes =
+        (startAllocatedBytes == -1) || (endAllocatedBytes == -1)
+            ? -1
+            : endAllocatedBytes - startAllocatedBytes;
+    messageCount = connection.getHandledMessageCount() - startMessageCount;
+    handlingTime = connection.getMessageHandlingTime() - startHandlingTime;
+    chunkCount = capture.getChunkCount();
+    sentBytes = socket.getSentBytes();
+
+    synchronized (endLock) {
+      endReleased = true;
+      endLock.notifyAll();
+    }
+  }
+
+  /**
+   * Returns the total amount of bytes allocated so far by all live threads, or -1 if the JVM
+   * doesn't support measuring it.
+   */
+  private static long measureAllocatedBytes() {
+    if (!(ManagementFactory.getThreadMXBean() instanceof ThreadMXBean)) return -1;
+
+    ThreadMXBean bean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    if (!bean.isThreadAllocatedMemorySupported() || !bean.isThreadAllocatedMemoryEnabled())
+      return -1;
+
+    long[] allocated = bean.getThreadAllocatedBytes(bean.getAllThreadIds());
+    long total = 0;
+    for (int i = 0; i < allocated.length; i++) if (allocated[i] > 0) total += allocated[i];
+
+    return total;
+  }
+
+  /**
+   * Invoked when the reader reaches the end of the capture, or the socket is closed. Unless the
+   * socket has been closed, waits until the results have been measured, so that the reader thread
+   * (and the memory it allocated) is still alive while they are.
+   */
+  private void inputEnded(boolean wait) {
+    synchronized (endLock) {
+      inputEnded = true;
+      endLock.notifyAll();
+
+      if (!wait) return;
+
+      try {
+        while (!endReleased) endLock.wait();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /** Returns the amount of chunks played. */
+  public int getChunkCount() {
+    return chunkCount;
+  }
+
+  /** Returns the amount of messages handled. */
+  public long getMessageCount() {
+    return messageCount;
+  }
+
+  /** Returns the time, in nanoseconds, it took to play the capture and handle all the messages. */
+  public long getElapsedTime() {
+    return elapsedTime;
+  }
+
+  /** Returns the time, in nanoseconds, spent handling the messages. */
+  public long getHandlingTime() {
+    return handlingTime;
+  }
+
+  /**
+   * Returns the amount of bytes allocated, by all threads, while the capture was played, or -1 if
+   * the JVM doesn't support measuring it.
+   */
+  public long getAllocatedBytes() {
+    return allocatedBytes;
+  }
+
+  /** Returns the amount of bytes the connection sent. */
+  public long getSentBytes() {
+    return sentBytes;
+  }
+
+  /** Prints the results of the replay into the specified stream. */
+  public void printReport(PrintStream out) {
+    double seconds = elapsedTime / 1e9;
+    long messages = Math.max(messageCount, 1);
+
+    out.println(
+        "Played "
+            + chunkCount
+            + " chunks ("
+            + (paced ? "paced" : "as fast as possible")
+            + "), "
+            + messageCount
+            + " messages in "
+            + (elapsedTime / 1000000)
+            + " ms");
+    out.println("Messages per second: " + Math.round(messageCount / Math.max(seconds, 1e-9)));
+    out.println(
+        "Handling time per message: " + Math.round(handlingTime / 1000.0 / messages) + " us");
+    out.println(
+        "Allocated bytes per message: "
+            + (allocatedBytes == -1 ? "unknown" : String.valueOf(allocatedBytes / messages)));
+    out.println("Bytes sent: " + sentBytes);
+  }
+
+  /**
+   * Plays a capture into a new connection of the specified class. The class must have a public
+   * constructor taking a username, a password and a log <code>PrintStream</code>, or just a
+   * username and a password.
+   */
+  public static void main(String[] args) throws Exception {
+    if (args.length < 2) {
+      printUsage();
+      System.exit(1);
+    }
+
+    File captureFile = new File(args[0]);
+    Class connectionClass = Class.forName(args[1]);
+    boolean paced = args.length > 2 ? Boolean.valueOf(args[2]).booleanValue() : false;
+
+    Connection connection;
+    try {
+      Constructor constructor =
+          connectionClass.getConstructor(
+              new Class[] {String.class, String.class, PrintStream.class});
+      connection = (Connection) constructor.newInstance(new Object[] {"guest", "", null});
+    } catch (NoSuchMethodException e) {
+      Constructor constructor =
+          connectionClass.getConstructor(new Class[] {String.class, String.class});
+      connection = (Connection) constructor.newInstance(new Object[] {"guest", ""});
+    }
+
+    SessionReplayer replayer = new SessionReplayer(connection, captureFile, paced);
+    replayer.replay();
+    replayer.printReport(System.out);
+
+    System.exit(0);
+  }
+
+  /** Dumps usage information to the standard error stream. */
+  private static void printUsage() {
+    System.err.println("Usage: java free.util.SessionReplayer captureFile connectionClass [paced]");
+  }
+
+  /**
+   * The stream from which the connection reads the capture. Holds back the end of the capture until
+   * the results have been measured.
+   */
+  private class ReplayInputStream extends FilterInputStream {
+
+    /** Creates a new <code>ReplayInputStream</code> reading the specified capture. */
+    ReplayInputStream(InputStream in) {
+      super(in);
+    }
+
+    /** Reads a single byte. */
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b == -1) inputEnded(true);
+      return b;
+    }
+
+    /** Reads up to the specified amount of bytes. */
+    @Override
+    public int read(byte[] buf, int offset, int length) throws IOException {
+      int count = super.read(buf, offset, length);
+      if (count == -1) inputEnded(true);
+      return count;
+    }
+  }
+
+  /**
+   * The socket we give the connection. It has no channel, so it's read by a reader thread, and
+   * discards anything written into it.
+   */
+  private class ReplaySocket extends Socket {
+
+    /** The stream from which the capture is read. */
+    private final InputStream in;
+
+    /** The stream which discards and counts the data sent by the connection. */
+    private final CountingOutputStream out = new CountingOutputStream();
+
+    /** Creates a new <code>ReplaySocket</code> from which the specified stream is read. */
+    ReplaySocket(InputStream in) {
+      this.in = in;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+      return in;
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+      return out;
+    }
+
+    /** Returns the amount of bytes sent by the connection. */
+    long getSentBytes() {
+      return out.count;
+    }
+
+    /** Closes the capture, which terminates the replay. */
+    @Override
+    public synchronized void close() throws IOException {
+      inputEnded(false);
+      in.close();
+      super.close();
+    }
+  }
+
+  /** An <code>OutputStream</code> which discards the data written into it, counting it. */
+  private static class CountingOutputStream extends OutputStream {
+
+    /** The amount of bytes written. */
+    private volatile long count = 0;
+
+    @Override
+    public void write(int b) {
+      count++;
+    }
+
+    @Override
+    public void write(byte[] buf, int offset, int length) {
+      count += length;
+    }
+  }
+}
@@ -16,10 +16,8 @@
  */
 package free.chess;
 
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
+import free.util.swing.AnimationScheduler;
 import javax.swing.JComponent;
-import javax.swing.Timer;
 
 /** The abstract superclass of all components who display a chess clock (one part of it). */
 public abstract class AbstractChessClock extends JComponent {
@@ -55,16 +53,28 @@ public abstract class AbstractChessClock extends JComponent {
    */
   private int minutesSecondsThreshold = 20 * 60 * 1000;
 
-  /** The repaint timer. */
-  private final Timer repaintTimer =
-      new Timer(
-          100,
-          new ActionListener() {
-            @Override
-            public void actionPerformed(ActionEvent evt) {
-              repaint();
-            }
-          });
+  /**
+   * The animation which repaints the clock, while it's running, whenever what it displays changes.
+   */
+  private final AnimationScheduler.Animation repaintAnimation =
+      new AnimationScheduler.Animation() {
+        @Override
+        public long animate(long time) {
+          if (!isRunning()) return -1;
+
+          repaint();
+
+          // Measured from the time we were given, as repainting may have taken a while
+          int displayedTime = AbstractChessClock.this.time - (int) (time - runStart);
+          return time + getTimeToDisplayChange(displayedTime);
+        }
+      };
+
+  /**
+   * The delay between repaints of the clock, as set by {@link #setRepaintDelay(int)}. No longer
+   * used.
+   */
+  private int repaintDelay = 100;
 
   /**
    * The value of the system clock at the time the clock was set to run. -1 if the clock is not
@@ -94,6 +104,7 @@ public abstract class AbstractChessClock extends JComponent {
     this.time = time;
     if (isRunning()) runStart = System.currentTimeMillis();
     repaint();
+    rescheduleRepaint();
   }
 
   /** Returns the time displayed by this clock, in milliseconds. */
@@ -113,11 +124,66 @@ public abstract class AbstractChessClock extends JComponent {
 
     if (isRunning) {
       runStart = System.currentTimeMillis();
-      repaintTimer.start();
+      AnimationScheduler.getInstance().start(repaintAnimation);
     } else {
       time = time - (int) (System.currentTimeMillis() - runStart);
       runStart = -1;
-      repaintTimer.stop();
+      AnimationScheduler.getInstance().stop(repaintAnimation);
+    }
+  }
+
+  /**
+   * Makes the running clock work out anew when what it displays next changes, after something
+   * affecting it has changed.
+   */
+  private void rescheduleRepaint() {
+    if (isRunning()) AnimationScheduler.getInstance().start(repaintAnimation);
+  }
+
+  /**
+   * Returns the amount of milliseconds, from the moment the clock shows the specified time, until
+   * what it displays changes. This is when the time crosses a multiple of the display resolution
+   * or, in <code>TIME_DEPENDENT_DISPLAY_MODE</code>, one of the thresholds at which the display
+   * mode changes.
+   */
+  private long getTimeToDisplayChange(int time) {
+    long resolution = Math.max(1, getDisplayResolution());
+    long absTime = Math.abs((long) time);
+    boolean isTimeDependent = getDisplayMode() == TIME_DEPENDENT_DISPLAY_MODE;
+
+    long delay;
+    if (time >= 0) { // The absolute time is decreasing
+      delay = absTime % resolution + 1;
+      if (isTimeDependent && (absTime >= secondTenthsThreshold))
+        delay = Math.min(delay, absTime - secondTenthsThreshold + 1);
+      if (isTimeDependent && (absTime >= minutesSecondsThreshold))
+        delay = Math.min(delay, absTime - minutesSecondsThreshold + 1);
+    } else { // The absolute time is increasing
+      delay = resolution - absTime % resolution;
+      if (isTimeDependent && (absTime < secondTenthsThreshold))
+        delay = Math.min(delay, secondTenthsThreshold - absTime);
+      if (isTimeDependent && (absTime < minutesSecondsThreshold))
+        delay = Math.min(delay, minutesSecondsThreshold - absTime);
+    }
+
+    return delay;
+  }
+
+  /**
+   * Returns the resolution, in milliseconds, of what the clock displays in its current actual
+   * display mode. The clock is repainted whenever the time crosses a multiple of this value.
+   * Subclasses which display the time differently should override this method accordingly.
+   */
+  protected int getDisplayResolution() {
+    switch (getActualDisplayMode()) {
+      case HOUR_MINUTE_DISPLAY_MODE:
+        return 60 * 1000;
+      case MINUTE_SECOND_DISPLAY_MODE:
+        return 1000;
+      case SECOND_TENTHS_DISPLAY_MODE:
+        return 100;
+      default:
+        throw new IllegalStateException("Bad display mode value: " + getActualDisplayMode());
     }
   }
 
@@ -130,16 +196,29 @@ public abstract class AbstractChessClock extends JComponent {
     this.secondTenthsThreshold = secondTenths;
 
     repaint();
+    rescheduleRepaint();
   }
 
-  /** Sets the delay between repaints of the clock when it is running, in milliseconds. */
+  /**
+   * Sets the delay between repaints of the clock when it is running, in milliseconds.
+   *
+   * @deprecated The clock is now repainted exactly when what it displays changes, so the delay is
+   *     ignored.
+   */
+  @Deprecated
   public void setRepaintDelay(int delay) {
-    repaintTimer.setDelay(delay);
+    this.repaintDelay = delay;
   }
 
-  /** Returns the delay between repaints of the clock when it is running, in milliseconds. */
+  /**
+   * Returns the delay between repaints of the clock when it is running, in milliseconds.
+   *
+   * @deprecated The clock is now repainted exactly when what it displays changes, so the delay is
+   *     ignored.
+   */
+  @Deprecated
   public int getRepaintDelay() {
-    return repaintTimer.getDelay();
+    return repaintDelay;
   }
 
   /**
@@ -160,6 +239,7 @@ public abstract class AbstractChessClock extends JComponent {
 
     this.displayMode = displayMode;
     repaint();
+    rescheduleRepaint();
   }
 
   /**
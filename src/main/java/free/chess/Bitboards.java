@@ -0,0 +1,218 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * <p>The chess framework library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * <p>The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Static methods for working with the 64-bit square masks kept by {@link Position}. In a mask, the
+ * square with file <code>f</code> and rank <code>r</code> is the bit <code>r*8+f</code>.
+ */
+public final class Bitboards {
+
+  /** The mask of the squares on the a-file. */
+  public static final long FILE_A = 0x0101010101010101L;
+
+  /** The mask of the squares on the h-file. */
+  public static final long FILE_H = FILE_A << 7;
+
+  /** The mask of the squares on the first rank. */
+  public static final long RANK_1 = 0xffL;
+
+  /** The mask of the squares on the eighth rank. */
+  public static final long RANK_8 = RANK_1 << 56;
+
+  /** The squares a knight standing on each square attacks. */
+  private static final long[] KNIGHT_ATTACKS =
+      createJumpingAttacks(
+          new int[][] {{-1, -2}, {1, -2}, {-2, -1}, {2, -1}, {-2, 1}, {2, 1}, {-1, 2}, {1, 2}});
+
+  /** The squares a king standing on each square attacks. */
+  private static final long[] KING_ATTACKS =
+      createJumpingAttacks(
+          new int[][] {{-1, -1}, {0, -1}, {1, -1}, {-1, 0}, {1, 0}, {-1, 1}, {0, 1}, {1, 1}});
+
+  /** The file and rank offsets of the eight ray directions, rook directions first. */
+  private static final int[][] DIRECTIONS = {
+    {0, 1}, {1, 0}, {0, -1}, {-1, 0}, {1, 1}, {1, -1}, {-1, -1}, {-1, 1}
+  };
+
+  /**
+   * The squares on the ray from each square in each direction (not including the square itself),
+   * indexed by <code>direction*64+square</code>.
+   */
+  private static final long[] RAYS = createRays();
+
+  /** This class is not instantiable. */
+  private Bitboards() {}
+
+  /** Creates the attack table of a piece which jumps by the given offsets. */
+  private static long[] createJumpingAttacks(int[][] offsets) {
+    long[] attacks = new long[64];
+    for (int square = 0; square < 64; square++) {
+      int file = square & 7;
+      int rank = square >> 3;
+      for (int i = 0; i < offsets.length; i++) {
+        int targetFile = file + offsets[i][0];
+        int targetRank = rank + offsets[i][1];
+        if ((targetFile >= 0) && (targetFile < 8) && (targetRank >= 0) && (targetRank < 8))
+          attacks[square] |= 1L << (targetRank * 8 + targetFile);
+      }
+    }
+
+    return attacks;
+  }
+
+  /** Creates the <code>RAYS</code> table. */
+  private static long[] createRays() {
+    long[] rays = new long[DIRECTIONS.length * 64];
+    for (int direction = 0; direction < DIRECTIONS.length; direction++) {
+      for (int square = 0; square < 64; square++) {
+        int file = (square & 7) + DIRECTIONS[direction][0];
+        int rank = (square >> 3) + DIRECTIONS[direction][1];
+        while ((file >= 0) && (file < 8) && (rank >= 0) && (rank < 8)) {
+          rays[direction * 64 + square] |= 1L << (rank * 8 + file);
+          file += DIRECTIONS[direction][0];
+          rank += DIRECTIONS[direction][1];
+        }
+      }
+    }
+
+    return rays;
+  }
+
+  /** Returns the mask of the specified square. */
+  public static long squareMask(Square square) {
+    return 1L << squareIndex(square);
+  }
+
+  /** Returns the index of the bit of the specified square. */
+  public static int squareIndex(Square square) {
+    return square.getIndex();
+  }
+
+  /** Returns the square of the bit with the specified index. */
+  public static Square getSquare(int index) {
+    return Square.getInstance(index);
+  }
+
+  /** Returns a list of the squares in the specified mask, in the order of their indices. */
+  public static List toSquares(long mask) {
+    List squares = new LinkedList();
+    while (mask != 0) {
+      squares.add(getSquare(Long.numberOfTrailingZeros(mask)));
+      mask &= mask - 1;
+    }
+
+    return squares;
+  }
+
+  /** Returns the squares attacked by a knight standing on the square with the specified index. */
+  public static long knightAttacks(int square) {
+    return KNIGHT_ATTACKS[square];
+  }
+
+  /** Returns the squares attacked by a king standing on the square with the specified index. */
+  public static long kingAttacks(int square) {
+    return KING_ATTACKS[square];
+  }
+
+  /**
+   * Returns the squares attacked by pawns of the specified color standing on the squares of the
+   * specified mask.
+   */
+  public static long pawnAttacks(long pawns, int color) {
+    if (color == Piece.WHITE) return ((pawns & ~FILE_A) << 7) | ((pawns & ~FILE_H) << 9);
+    else return ((pawns & ~FILE_H) >>> 7) | ((pawns & ~FILE_A) >>> 9);
+  }
+
+  /**
+   * Returns the squares attacked, given the specified occupied squares, by a piece sliding from the
+   * square with the specified index in the specified directions (indices into <code>
+   * DIRECTIONS</code>). A ray stops at (and includes) the first occupied square.
+   */
+  private static long slidingAttacks(
+      int square, long occupied, int firstDirection, int lastDirection) {
+    long attacks = 0;
+    for (int direction = firstDirection; direction <= lastDirection; direction++) {
+      long ray = RAYS[direction * 64 + square];
+      long blockers = ray & occupied;
+      if (blockers != 0) {
+        // Directions 0, 1, 4 and 7 go towards higher bits, so the nearest blocker is the lowest.
+        boolean increasing =
+            (direction == 0) || (direction == 1) || (direction == 4) || (direction == 7);
+        int blocker =
+            increasing
+                ? Long.numberOfTrailingZeros(blockers)
+                : 63 - Long.numberOfLeadingZeros(blockers);
+        ray &= ~RAYS[direction * 64 + blocker];
+      }
+      attacks |= ray;
+    }
+
+    return attacks;
+  }
+
+  /** Returns the squares attacked by a rook on the specified square, given the occupied squares. */
+  public static long rookAttacks(int square, long occupied) {
+    return slidingAttacks(square, occupied, 0, 3);
+  }
+
+  /**
+   * Returns the squares attacked by a bishop on the specified square, given the occupied squares.
+   */
+  public static long bishopAttacks(int square, long occupied) {
+    return slidingAttacks(square, occupied, 4, 7);
+  }
+
+  /**
+   * Returns the squares attacked by a queen on the specified square, given the occupied squares.
+   */
+  public static long queenAttacks(int square, long occupied) {
+    return slidingAttacks(square, occupied, 0, 7);
+  }
+
+  /**
+   * Returns the mask of the squares with ChessPieces of the specified color which attack the square
+   * with the specified index in the specified position, treating the squares of the specified
+   * <code>occupied</code> mask as the occupied ones (for the purpose of blocking sliding pieces).
+   */
+  public static long getAttackers(Position pos, int square, int color, long occupied) {
+    long attackers =
+        (knightAttacks(square) & pos.getPieceMask(color, ChessPiece.KNIGHT))
+            | (kingAttacks(square) & pos.getPieceMask(color, ChessPiece.KING))
+            | (pawnAttacks(1L << square, -color) & pos.getPieceMask(color, ChessPiece.PAWN));
+
+    long queens = pos.getPieceMask(color, ChessPiece.QUEEN);
+    long rooks = queens | pos.getPieceMask(color, ChessPiece.ROOK);
+    if (rooks != 0) attackers |= rookAttacks(square, occupied) & rooks;
+
+    long bishops = queens | pos.getPieceMask(color, ChessPiece.BISHOP);
+    if (bishops != 0) attackers |= bishopAttacks(square, occupied) & bishops;
+
+    return attackers;
+  }
+
+  /**
+   * Returns whether the square with the specified index is attacked by a ChessPiece of the
+   * specified color in the specified position.
+   */
+  public static boolean isAttacked(Position pos, int square, int color) {
+    return getAttackers(pos, square, color, pos.getOccupiedMask()) != 0;
+  }
+}
@@ -201,7 +201,9 @@ public class BoardImageBoardPainter implements ResourceBoardPainter {
 
         for (Iterator i = componentsToRepaint.iterator(); i.hasNext(); ) {
           Component component = (Component) i.next();
-          if (component != null) component.repaint();
+          // A JBoard caches the board, so it must be told to paint it anew
+          if (component instanceof JBoard) ((JBoard) component).invalidateLayers();
+          else if (component != null) component.repaint();
         }
       }
     }
@@ -39,4 +39,10 @@ public final class Chess extends ChesslikeGenericVariant {
   private Chess() {
     super(INITIAL_POSITION_FEN, "Chess");
   }
+
+  /** Returns a new {@link MoveGenerator}, which implements the rules of chess. */
+  @Override
+  public MoveGenerator createMoveGenerator() {
+    return new MoveGenerator();
+  }
 }
@@ -35,7 +35,7 @@ import java.util.List;
  * String)} method as it already calls the forementioned methods when determining the properties of
  * the created ChessMove.
  */
-public class ChesslikeGenericVariant implements WildVariant {
+public class ChesslikeGenericVariant implements BitboardVariant {
 
   /**
    * An array containing WHITE_QUEEN, WHITE_ROOK, WHITE_BISHOP and WHITE_KNIGHT. These are the
@@ -583,12 +583,52 @@ public class ChesslikeGenericVariant implements WildVariant {
     return piece.toShortString();
   }
 
-  /** {@inheritDoc} */
+  /**
+   * Returns the squares to which the piece at the specified square may move, as described in {@link
+   * #getTargetSquareSet(Position, Square)}.
+   */
   @Override
   public Collection getTargetSquares(Position pos, Square square) {
+    return getTargetSquareSet(pos, square).toList();
+  }
+
+  /**
+   * Returns the squares to which the piece at the specified square may move. If the variant has a
+   * move generator (see {@link #createMoveGenerator()}) and the piece belongs to the player to
+   * move, these are exactly its legal target squares, with the castling rights and en passant
+   * square taken from the position's FEN if it has one, and assumed as permissively as the
+   * placement of the pieces allows otherwise. Otherwise (premoves, for example), all the moves the
+   * piece could make on an empty board, as well as captures, are allowed.
+   */
+  @Override
+  public SquareSet getTargetSquareSet(Position pos, Square square) {
     checkPosition(pos);
 
-    return getChessTargetSquares(pos, square);
+    Piece piece = pos.getPieceAt(square);
+    if ((piece != null) && (piece.getPlayer() == pos.getCurrentPlayer())) {
+      MoveGenerator generator = createMoveGenerator();
+      if (generator != null) {
+        try {
+          generator.setPosition(pos);
+          return SquareSet.valueOf(generator.getLegalTargets(square));
+        } catch (IllegalArgumentException e) {
+          // Not a position the generator understands - fall back to the permissive targets.
+        }
+      }
+    }
+
+    return SquareSet.valueOf(getChessTargetSquares(pos, square));
+  }
+
+  /**
+   * Returns a new {@link MoveGenerator} implementing the rules of this variant, or <code>null
+   * </code> if there is none, in which case legality is only checked permissively. The returned
+   * generator may hold any position; set it with {@link MoveGenerator#setPosition(Position)}. The
+   * default implementation returns <code>null</code>, since instances of this class, as opposed to
+   * subclasses, may stand for variants whose rules are unknown.
+   */
+  public MoveGenerator createMoveGenerator() {
+    return null;
   }
 
   /**
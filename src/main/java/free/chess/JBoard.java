@@ -20,41 +20,54 @@ import free.chess.event.MoveEvent;
 import free.chess.event.MoveListener;
 import free.chess.event.MoveProgressEvent;
 import free.chess.event.MoveProgressListener;
+import free.chess.event.PositionChangeEvent;
 import free.util.MathUtilities;
 import free.util.PaintHook;
 import free.util.PlatformUtils;
 import free.util.Utilities;
+import free.util.swing.AnimationScheduler;
 import java.awt.AWTEvent;
+import java.awt.AlphaComposite;
 import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
 import java.awt.Insets;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.RenderingHints;
+import java.awt.Shape;
 import java.awt.Stroke;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
+import java.awt.Transparency;
 import java.awt.event.InputEvent;
 import java.awt.event.MouseEvent;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.GeneralPath;
-import java.util.Collection;
-import java.util.Iterator;
+import java.awt.image.BufferedImage;
 import java.util.Vector;
 import javax.swing.JComponent;
 import javax.swing.JFrame;
 import javax.swing.SwingUtilities;
-import javax.swing.Timer;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 
 /**
  * An implementation of a chess board component. <B>IMPORTANT:</B> This class is not thread safe -
  * all modifications should be done in the AWT event dispatching thread.
+ *
+ * <p>The board keeps two cached layers: a background layer, holding the squares, and a translucent
+ * overlay layer, holding the move highlighting, the coordinates and whatever the {@link PaintHook}s
+ * paint, which is painted over the pieces. Repainting a part of the board (as is done when a piece
+ * moves or slides) only copies that part of the layers and paints the pieces in it. The layers are
+ * painted anew when the board's size changes, and when a property which affects them (the flipped
+ * state, the board painter, the colors etc.) is set. Code which changes what the layers show behind
+ * the board's back, such as the colors of its board painter, should invoke {@link
+ * #invalidateLayers()}, and PaintHooks whose painting changes should invoke {@link
+ * #repaintOverlay(Rectangle)}.
  */
 public class JBoard extends JComponent {
 
@@ -143,6 +156,12 @@ public class JBoard extends JComponent {
    */
   private Position positionCopy;
 
+  /**
+   * The mask of the squares which changed in the position since <code>positionCopy</code> was last
+   * made equal to it, as reported by its {@link PositionChangeEvent}s.
+   */
+  private long changedSquares = 0;
+
   /** A flag we set when we make a move entered by the user, on this board. */
   private boolean isMakingUserMove = false;
 
@@ -157,6 +176,10 @@ public class JBoard extends JComponent {
       new ChangeListener() {
         @Override
         public void stateChanged(ChangeEvent evt) {
+          if (evt instanceof PositionChangeEvent)
+            changedSquares |= ((PositionChangeEvent) evt).getChangedSquares().getMask();
+          else changedSquares = -1L;
+
           if (positionChangedByMove) {
             positionChangedByMove = false;
             return;
@@ -168,7 +191,8 @@ public class JBoard extends JComponent {
 
   /**
    * Updates the board from the specified current position to the specified target position, causing
-   * the required areas to be repainted.
+   * the required areas to be repainted. Only the squares in <code>changedSquares</code> are
+   * examined.
    */
   private void updateBoard(Position startPosition, Position endPosition) {
     // Repaint only the parts that really need to be repainted by checking
@@ -179,22 +203,23 @@ public class JBoard extends JComponent {
     // Repaint the dragged piece position.
     if (checkMovingPieceSquare) repaint(tmpRect = getMoveAreaRect(tmpRect));
 
-    for (int file = 0; file < 8; file++) {
-      for (int rank = 0; rank < 8; rank++) {
-        Piece oldPiece = startPosition.getPieceAt(file, rank);
-        Piece newPiece = endPosition.getPieceAt(file, rank);
-
-        // We don't need to repaint the origin square of the moving piece.
-        if (checkMovingPieceSquare
-            && (file == movedPieceSquare.getFile())
-            && (rank == movedPieceSquare.getRank())) {
-          checkMovingPieceSquare = false;
-          continue;
-        }
-
-        if (!Utilities.areEqual(oldPiece, newPiece))
-          repaint(tmpRect = squareToRect(file, rank, tmpRect));
+    long changed = changedSquares;
+    while (changed != 0) {
+      int index = Long.numberOfTrailingZeros(changed);
+      changed &= changed - 1;
+      int file = index & 7;
+      int rank = index >> 3;
+
+      // We don't need to repaint the origin square of the moving piece.
+      if (checkMovingPieceSquare && (index == movedPieceSquare.getIndex())) {
+        checkMovingPieceSquare = false;
+        continue;
       }
+
+      Piece oldPiece = startPosition.getPieceAt(file, rank);
+      Piece newPiece = endPosition.getPieceAt(file, rank);
+      if (!Utilities.areEqual(oldPiece, newPiece))
+        repaint(tmpRect = squareToRect(file, rank, tmpRect));
     }
 
     if (isHighlightMadeMoveSquares() && (movedPieceSquare != null))
@@ -215,10 +240,11 @@ public class JBoard extends JComponent {
       slideEndSquare = null;
       slidePiece = null;
       slideTakenPiece = null;
-      slideTimer.stop();
+      AnimationScheduler.getInstance().stop(slideAnimation);
     }
 
     positionCopy.copyFrom(endPosition);
+    changedSquares = 0;
   }
 
   /** The <code>MoveListener</code> of the position. */
@@ -249,7 +275,7 @@ public class JBoard extends JComponent {
           slideStartTime = System.currentTimeMillis();
           slideTime = 0;
 
-          slideTimer.restart();
+          AnimationScheduler.getInstance().start(slideAnimation);
         }
       };
 
@@ -341,7 +367,19 @@ public class JBoard extends JComponent {
    * </code> even during a move, if it's not required (neither in snap-to-legal-square, nor in
    * highlight-legal-moves mode).
    */
-  private Collection legalTargetSquares = null;
+  private SquareSet legalTargetSquares = null;
+
+  /**
+   * A scratch rectangle used when handling mouse motion events, so that dragging a piece doesn't
+   * allocate.
+   */
+  private final Rectangle motionRect = new Rectangle();
+
+  /** A scratch rectangle used when calculating the target square of a moved piece. */
+  private final Rectangle targetRect = new Rectangle();
+
+  /** A scratch rectangle used by {@link #locationToSquare(int, int)}. */
+  private final Rectangle locationRect = new Rectangle();
 
   /**
    * Indicates the current move gesture if in <code>UNIFIED_MOVE_INPUT_STYLE</code>. Possible values
@@ -385,37 +423,36 @@ public class JBoard extends JComponent {
    */
   private long slideTime;
 
-  /** The time which invoked repaint() periodically to animate sliding. */
-  private final Timer slideTimer =
-      new Timer(
-          20,
-          new ActionListener() {
-            private final Rectangle rect = new Rectangle();
-
-            @Override
-            public void actionPerformed(ActionEvent e) {
-              int slideDuration = getSlideDuration();
-
-              // Repaint the old location
-              repaint(slideRect(((double) slideTime) / slideDuration, rect));
-
-              slideTime = System.currentTimeMillis() - slideStartTime;
-              if (slideTime > slideDuration) { // we're done sliding
-                // Clear sliding data
-                slideStartSquare = null;
-                slideEndSquare = null;
-                slidePiece = null;
-                slideTakenPiece = null;
-                slideTimer.stop();
-
-                // We're done animating, so procede as usual
-                positionChangeListener.stateChanged(new ChangeEvent(position));
-              } else {
-                // Repaint the new location
-                repaint(slideRect(((double) slideTime) / slideDuration, rect));
-              }
-            }
-          });
+  /** The animation which repaints the sliding piece on every frame. */
+  private final AnimationScheduler.Animation slideAnimation =
+      new AnimationScheduler.Animation() {
+        private final Rectangle rect = new Rectangle();
+
+        @Override
+        public long animate(long time) {
+          int slideDuration = getSlideDuration();
+
+          // Repaint the old location
+          repaint(slideRect(((double) slideTime) / slideDuration, rect));
+
+          slideTime = time - slideStartTime;
+          if (slideTime > slideDuration) { // we're done sliding
+            // Clear sliding data
+            slideStartSquare = null;
+            slideEndSquare = null;
+            slidePiece = null;
+            slideTakenPiece = null;
+
+            // We're done animating, so procede as usual
+            updateBoard(positionCopy, position);
+            return -1;
+          } else {
+            // Repaint the new location
+            repaint(slideRect(((double) slideTime) / slideDuration, rect));
+            return time;
+          }
+        }
+      };
 
   /**
    * A boolean telling us whether we're currently showing the promotion target selection dialog.
@@ -424,6 +461,39 @@ public class JBoard extends JComponent {
    */
   private boolean isShowingModalDialog = false;
 
+  /**
+   * The cached image of the board's background - the component's background color and the squares.
+   * <code>null</code> until first needed.
+   */
+  private BufferedImage backgroundLayer = null;
+
+  /**
+   * The background color <code>backgroundLayer</code> was painted with. The background may be
+   * inherited from the parent, so we can't rely on being told when it changes.
+   */
+  private Color backgroundLayerColor = null;
+
+  /**
+   * Whether <code>backgroundLayer</code> is up to date. This is cleared by image loading threads
+   * too, when an image the board painter paints finishes loading.
+   */
+  private volatile boolean isBackgroundLayerValid = false;
+
+  /**
+   * The cached translucent image of what's painted over the pieces - the move highlighting, the
+   * coordinates and whatever the PaintHooks paint. <code>null</code> when there's nothing to paint.
+   */
+  private BufferedImage overlayLayer = null;
+
+  /** Whether <code>overlayLayer</code> is up to date. */
+  private volatile boolean isOverlayLayerValid = false;
+
+  /** The horizontal scale of the layers' pixels, relative to the component's coordinates. */
+  private double layerScaleX = 1;
+
+  /** The vertical scale of the layers' pixels, relative to the component's coordinates. */
+  private double layerScaleY = 1;
+
   /** Creates a new JBoard with the specified position and BoardPainter and PiecePainter. */
   public JBoard(Position position, BoardPainter boardPainter, PiecePainter piecePainter) {
     if (position == null) throw new IllegalArgumentException("The Position may not be null");
@@ -484,12 +554,14 @@ public class JBoard extends JComponent {
 
   /**
    * Adds the given PaintHook to the list of PaintHooks which are called during the painting of this
-   * JBoard.
+   * JBoard. The hooks paint into the overlay layer, so when what a hook paints changes, it should
+   * invoke {@link #repaintOverlay(Rectangle)}.
    */
   public void addPaintHook(PaintHook hook) {
     if (paintHooks == null) paintHooks = new Vector(2);
 
     paintHooks.addElement(hook);
+    isOverlayLayerValid = false;
   }
 
   /**
@@ -498,10 +570,42 @@ public class JBoard extends JComponent {
    */
   public void removePaintHook(PaintHook hook) {
     paintHooks.removeElement(hook);
+    isOverlayLayerValid = false;
 
     if (paintHooks.size() == 0) paintHooks = null;
   }
 
+  /**
+   * Repaints the specified area of the board, painting the overlay layer (the move highlighting and
+   * whatever the PaintHooks paint) anew.
+   */
+  public void repaintOverlay(Rectangle rect) {
+    isOverlayLayerValid = false;
+    repaint(rect);
+  }
+
+  /**
+   * Repaints the whole board, painting its background and overlay layers anew. This should be
+   * invoked when something the layers show changes without the board knowing about it, such as the
+   * colors of the board painter. May be invoked from any thread.
+   */
+  public void invalidateLayers() {
+    isBackgroundLayerValid = false;
+    isOverlayLayerValid = false;
+    repaint();
+  }
+
+  /**
+   * Marks the background layer as out of date when an image finishes loading, as the images the
+   * board painter paints report their loading to us.
+   */
+  @Override
+  public boolean imageUpdate(Image img, int infoflags, int x, int y, int width, int height) {
+    if ((infoflags & (SOMEBITS | FRAMEBITS | ALLBITS)) != 0) isBackgroundLayerValid = false;
+
+    return super.imageUpdate(img, infoflags, x, y, width, height);
+  }
+
   /** Returns the Position on this JBoard. */
   public Position getPosition() {
     return position;
@@ -522,6 +626,7 @@ public class JBoard extends JComponent {
 
     if (positionCopy == null) positionCopy = new Position(position);
     else positionCopy.copyFrom(position);
+    changedSquares = 0;
 
     repaint();
 
@@ -629,7 +734,7 @@ public class JBoard extends JComponent {
 
     int oldStyle = moveHighlightingStyle;
     this.moveHighlightingStyle = newStyle;
-    if (highlightedMove != null) repaint();
+    if (highlightedMove != null) invalidateLayers();
     firePropertyChange("moveHighlightingStyle", oldStyle, newStyle);
   }
 
@@ -651,6 +756,8 @@ public class JBoard extends JComponent {
    * Calculates the area that needs to be repainted for the current highlighting and repaints it.
    */
   private void repaintHighlighting() {
+    isOverlayLayerValid = false;
+
     int moveHighlightingStyle = getMoveHighlightingStyle();
     if ((moveHighlightingStyle == NO_MOVE_HIGHLIGHTING) || (highlightedMove == null)) return;
 
@@ -686,7 +793,7 @@ public class JBoard extends JComponent {
     this.isHighlightLegalTargetSquares = newValue;
 
     if (isMovingPiece()) {
-      if (newValue) legalTargetSquares = position.getTargetSquares(movedPieceSquare);
+      if (newValue) legalTargetSquares = position.getTargetSquareSet(movedPieceSquare);
       else legalTargetSquares = null;
 
       repaint();
@@ -751,7 +858,7 @@ public class JBoard extends JComponent {
 
     int oldStyle = coordsDisplayStyle;
     this.coordsDisplayStyle = newStyle;
-    repaint();
+    invalidateLayers();
     firePropertyChange("coordsDisplayStyle", oldStyle, newStyle);
   }
 
@@ -767,7 +874,7 @@ public class JBoard extends JComponent {
   public void setFlipped(boolean isFlipped) {
     boolean oldFlipped = this.isFlipped;
     this.isFlipped = isFlipped;
-    repaint();
+    invalidateLayers();
     firePropertyChange("flipped", oldFlipped, isFlipped);
   }
 
@@ -813,7 +920,7 @@ public class JBoard extends JComponent {
 
     Object oldBoardPainter = this.boardPainter;
     this.boardPainter = boardPainter;
-    repaint();
+    invalidateLayers();
     firePropertyChange("boardPainter", oldBoardPainter, boardPainter);
   }
 
@@ -840,7 +947,7 @@ public class JBoard extends JComponent {
 
     Object oldColor = this.moveHighlightingColor;
     this.moveHighlightingColor = moveHighlightingColor;
-    repaint();
+    invalidateLayers();
     firePropertyChange("moveHighlightingColor", oldColor, moveHighlightingColor);
   }
 
@@ -858,7 +965,7 @@ public class JBoard extends JComponent {
 
     Object oldColor = this.coordsDisplayColor;
     this.coordsDisplayColor = coordsDisplayColor;
-    repaint();
+    invalidateLayers();
     firePropertyChange("coordsDisplayColor", oldColor, coordsDisplayColor);
   }
 
@@ -940,14 +1047,16 @@ public class JBoard extends JComponent {
     super.paintComponent(graphics);
 
     Rectangle originalClip = graphics.getClipBounds();
+    if (originalClip == null) originalClip = new Rectangle(0, 0, getWidth(), getHeight());
 
     // The documentation of JComponent#paintComponent(Graphics) says we
     // shouldn't make permanent changes to the Graphics object, but we want to
     // clip it.
     Graphics2D g = (Graphics2D) graphics.create();
 
-    g.setColor(getBackground());
-    g.fillRect(0, 0, getWidth(), getHeight());
+    // Copy the background, the board and the coordinates from the background layer
+    updateLayerScale(g.getTransform());
+    drawLayer(g, getBackgroundLayer(), originalClip);
 
     Rectangle rect = null; // Helper rect - reused many times
 
@@ -956,15 +1065,10 @@ public class JBoard extends JComponent {
     Rectangle clipRect = g.getClipBounds();
 
     Position displayedPosition = slideStartSquare == null ? getPosition() : positionCopy;
-    BoardPainter boardPainter = getBoardPainter();
     PiecePainter piecePainter = getPiecePainter();
 
     boolean isPieceFollowsCursor = isPieceFollowsCursor();
     boolean isHighlightMadeMoveSquares = isHighlightMadeMoveSquares();
-    int moveHighlightingStyle = getMoveHighlightingStyle();
-
-    // Paint the board
-    boardPainter.paintBoard(g, this, rect.x, rect.y, rect.width, rect.height);
 
     // Paint the stationary pieces
     for (int file = 0; file < 8; file++) {
@@ -997,41 +1101,21 @@ public class JBoard extends JComponent {
     // Paint possible target squares
     if (isHighlightLegalTargetSquares && (legalTargetSquares != null)) {
       g.setColor(legalTargetSquaresHighlightColor);
-      for (Iterator i = legalTargetSquares.iterator(); i.hasNext(); ) {
-        rect = squareToRect((Square) i.next(), rect);
+      for (Square square = legalTargetSquares.first();
+          square != null;
+          square = legalTargetSquares.next(square)) {
+        rect = squareToRect(square, rect);
         if (rect.intersects(clipRect)) g.fill(rect);
       }
     }
 
-    // Paint move highlighting
-    if ((moveHighlightingStyle != NO_MOVE_HIGHLIGHTING) && (highlightedMove != null)) {
-      Square from = highlightedMove.getStartingSquare();
-      Square to = highlightedMove.getEndingSquare();
-
-      squareToRect(Square.getInstance(0, 0), rect); // Just a sample square
-      int highlightSize = Math.max(2, Math.min(rect.width, rect.height) / 12);
-      if ((from != null) && (to != null)) {
-        if (moveHighlightingStyle == BOTH_SQUARES_MOVE_HIGHLIGHTING) {
-          drawSquare(
-              g, from, highlightSize - Math.max(1, highlightSize / 3), getMoveHighlightingColor());
-          drawSquare(g, to, highlightSize, getMoveHighlightingColor());
-        } else if (moveHighlightingStyle == ARROW_MOVE_HIGHLIGHTING)
-          drawArrow(g, from, to, highlightSize + 1, getMoveHighlightingColor());
-      }
-      if ((to != null) && (moveHighlightingStyle == TARGET_SQUARE_MOVE_HIGHLIGHTING))
-        drawSquare(g, to, highlightSize, getMoveHighlightingColor());
-    }
-
-    // Paint the coordinates. Reset the original clip because of
-    // OUTSIDE_COORDS mode, where the coordinates are drawn outside of our
-    // usual clip rectangle.
-    rect = g.getClipBounds();
+    // Copy the move highlighting, the coordinates and whatever the PaintHooks
+    // paint from the overlay layer. Use the original clip because of
+    // OUTSIDE_COORDS mode, where the coordinates are drawn outside of the board.
+    Shape boardClip = g.getClip();
     g.setClip(originalClip);
-    drawCoords(graphics);
-    g.setClip(rect);
-
-    // Allow PaintHooks to paint
-    callPaintHooks(g);
+    drawLayer(g, getOverlayLayer(), originalClip);
+    g.setClip(boardClip);
 
     // Paint the sliding piece
     if (slidePiece != null) {
@@ -1069,6 +1153,183 @@ public class JBoard extends JComponent {
         piecePainter.paintPiece(piece, g, this, rect, false);
       }
     }
+
+    g.dispose();
+  }
+
+  /**
+   * Sets the scale of the layers' pixels to that of the specified transform (that of the <code>
+   * Graphics</code> we're painting on), discarding the layers if it has changed.
+   */
+  private void updateLayerScale(AffineTransform transform) {
+    double scaleX = 1;
+    double scaleY = 1;
+    if ((transform.getType() & (AffineTransform.TYPE_GENERAL_ROTATION | AffineTransform.TYPE_FLIP))
+        == 0) {
+      scaleX = Math.abs(transform.getScaleX());
+      scaleY = Math.abs(transform.getScaleY());
+    }
+
+    if ((scaleX != layerScaleX) || (scaleY != layerScaleY)) {
+      layerScaleX = scaleX;
+      layerScaleY = scaleY;
+      backgroundLayer = null;
+      overlayLayer = null;
+    }
+  }
+
+  /**
+   * Returns whether the specified layer exists and is of the right size for the current size of the
+   * board and the current layer scale.
+   */
+  private boolean isLayerSizeValid(BufferedImage layer) {
+    return (layer != null)
+        && (layer.getWidth() == (int) Math.ceil(getWidth() * layerScaleX))
+        && (layer.getHeight() == (int) Math.ceil(getHeight() * layerScaleY));
+  }
+
+  /**
+   * Creates a new layer of the current size of the board with the specified transparency (one of
+   * the constants in <code>java.awt.Transparency</code>). Returns <code>null</code> if the board
+   * has no area.
+   */
+  private BufferedImage createLayer(int transparency) {
+    int width = (int) Math.ceil(getWidth() * layerScaleX);
+    int height = (int) Math.ceil(getHeight() * layerScaleY);
+    if ((width <= 0) || (height <= 0)) return null;
+
+    GraphicsConfiguration config = getGraphicsConfiguration();
+    if (config != null) return config.createCompatibleImage(width, height, transparency);
+
+    return new BufferedImage(
+        width,
+        height,
+        transparency == Transparency.OPAQUE
+            ? BufferedImage.TYPE_INT_RGB
+            : BufferedImage.TYPE_INT_ARGB_PRE);
+  }
+
+  /**
+   * Returns a <code>Graphics</code> object for painting into the specified layer in the component's
+   * coordinates.
+   */
+  private Graphics2D createLayerGraphics(BufferedImage layer) {
+    Graphics2D g = layer.createGraphics();
+    g.scale(layerScaleX, layerScaleY);
+    g.setClip(0, 0, getWidth(), getHeight());
+    return g;
+  }
+
+  /**
+   * Copies the specified area (in the component's coordinates) of the specified layer into the
+   * specified <code>Graphics</code>. The layer may be <code>null</code>, in which case nothing is
+   * copied.
+   */
+  private void drawLayer(Graphics2D g, BufferedImage layer, Rectangle area) {
+    if ((layer == null) || area.isEmpty()) return;
+
+    Shape oldClip = g.getClip();
+    AffineTransform oldTransform = g.getTransform();
+
+    g.clipRect(area.x, area.y, area.width, area.height);
+    g.scale(1 / layerScaleX, 1 / layerScaleY);
+    g.drawImage(layer, 0, 0, null);
+
+    g.setTransform(oldTransform);
+    g.setClip(oldClip);
+  }
+
+  /** Returns the background layer, painting it first if it isn't up to date. */
+  private BufferedImage getBackgroundLayer() {
+    if (!isLayerSizeValid(backgroundLayer)) {
+      backgroundLayer = createLayer(Transparency.OPAQUE);
+      isBackgroundLayerValid = false;
+    }
+
+    Color background = getBackground();
+    if (!Utilities.areEqual(background, backgroundLayerColor)) isBackgroundLayerValid = false;
+
+    if ((backgroundLayer != null) && !isBackgroundLayerValid) {
+      // Set before painting, so that an image which finishes loading while
+      // we paint still marks the layer as out of date.
+      isBackgroundLayerValid = true;
+      backgroundLayerColor = background;
+
+      Graphics2D g = createLayerGraphics(backgroundLayer);
+      g.setColor(background);
+      g.fillRect(0, 0, getWidth(), getHeight());
+
+      Rectangle boardRect = getBoardRect(null);
+      g.clipRect(boardRect.x, boardRect.y, boardRect.width, boardRect.height);
+      getBoardPainter()
+          .paintBoard(g, this, boardRect.x, boardRect.y, boardRect.width, boardRect.height);
+
+      g.dispose();
+    }
+
+    return backgroundLayer;
+  }
+
+  /**
+   * Returns the overlay layer, painting it first if it isn't up to date. Returns <code>null</code>
+   * if there's nothing to paint over the pieces.
+   */
+  private BufferedImage getOverlayLayer() {
+    boolean isMoveHighlighted =
+        (getMoveHighlightingStyle() != NO_MOVE_HIGHLIGHTING) && (highlightedMove != null);
+    if (!isMoveHighlighted && (getCoordsDisplayStyle() == NO_COORDS) && (paintHooks == null)) {
+      overlayLayer = null;
+      return null;
+    }
+
+    if (!isLayerSizeValid(overlayLayer)) {
+      overlayLayer = createLayer(Transparency.TRANSLUCENT);
+      isOverlayLayerValid = false;
+    }
+
+    if ((overlayLayer != null) && !isOverlayLayerValid) {
+      isOverlayLayerValid = true;
+
+      Graphics2D g = createLayerGraphics(overlayLayer);
+      g.setComposite(AlphaComposite.Clear);
+      g.fillRect(0, 0, getWidth(), getHeight());
+      g.setComposite(AlphaComposite.SrcOver);
+
+      Rectangle boardRect = getBoardRect(null);
+      g.clipRect(boardRect.x, boardRect.y, boardRect.width, boardRect.height);
+      if (isMoveHighlighted) drawMoveHighlighting(g);
+
+      // The coordinates are drawn outside the board in OUTSIDE_COORDS mode
+      g.setClip(0, 0, getWidth(), getHeight());
+      drawCoords(g);
+      g.setClip(boardRect.x, boardRect.y, boardRect.width, boardRect.height);
+
+      callPaintHooks(g);
+
+      g.dispose();
+    }
+
+    return overlayLayer;
+  }
+
+  /** Draws the highlighting of the highlighted move. */
+  private void drawMoveHighlighting(Graphics2D g) {
+    int moveHighlightingStyle = getMoveHighlightingStyle();
+    Square from = highlightedMove.getStartingSquare();
+    Square to = highlightedMove.getEndingSquare();
+
+    Rectangle rect = squareToRect(Square.getInstance(0, 0), null); // Just a sample square
+    int highlightSize = Math.max(2, Math.min(rect.width, rect.height) / 12);
+    if ((from != null) && (to != null)) {
+      if (moveHighlightingStyle == BOTH_SQUARES_MOVE_HIGHLIGHTING) {
+        drawSquare(
+            g, from, highlightSize - Math.max(1, highlightSize / 3), getMoveHighlightingColor());
+        drawSquare(g, to, highlightSize, getMoveHighlightingColor());
+      } else if (moveHighlightingStyle == ARROW_MOVE_HIGHLIGHTING)
+        drawArrow(g, from, to, highlightSize + 1, getMoveHighlightingColor());
+    }
+    if ((to != null) && (moveHighlightingStyle == TARGET_SQUARE_MOVE_HIGHLIGHTING))
+      drawSquare(g, to, highlightSize, getMoveHighlightingColor());
   }
 
   /**
@@ -1434,12 +1695,13 @@ public class JBoard extends JComponent {
       if (movedPieceSquare.equals(cursorSquare) || legalTargetSquares.contains(cursorSquare))
         return cursorSquare;
 
-      Rectangle rect = squareToRect(0, 0, null);
+      Rectangle rect = squareToRect(0, 0, targetRect);
       int minDistanceSquared = // We don't want squares which are too far.
           MathUtilities.sqr((int) (1.5 * Math.max(rect.width, rect.height)));
       Square nearestSquare = null;
-      for (Iterator i = legalTargetSquares.iterator(); i.hasNext(); ) {
-        Square square = (Square) i.next();
+      for (Square square = legalTargetSquares.first();
+          square != null;
+          square = legalTargetSquares.next(square)) {
         squareToRect(square, rect);
 
         int dx = cursorLocation.x - (rect.x + rect.width / 2);
@@ -1493,7 +1755,7 @@ public class JBoard extends JComponent {
    * location is not on the visible board.
    */
   public Square locationToSquare(int x, int y) {
-    Rectangle boardRect = getBoardRect(null);
+    Rectangle boardRect = getBoardRect(locationRect);
     x -= boardRect.x;
     y -= boardRect.y;
 
@@ -1551,8 +1813,10 @@ public class JBoard extends JComponent {
 
   /** Causes the possible target squares to be repainted. */
   private void repaintLegalTargetSquares(Rectangle helpRect) {
-    for (Iterator i = legalTargetSquares.iterator(); i.hasNext(); )
-      repaint(helpRect = squareToRect((Square) i.next(), helpRect));
+    for (Square square = legalTargetSquares.first();
+        square != null;
+        square = legalTargetSquares.next(square))
+      repaint(helpRect = squareToRect(square, helpRect));
   }
 
   /**
@@ -1632,7 +1896,7 @@ public class JBoard extends JComponent {
         movedPieceLoc = new Point(x, y);
 
         if (isHighlightLegalTargetSquares() || isSnapToLegalSquare())
-          legalTargetSquares = position.getTargetSquares(movedPieceSquare);
+          legalTargetSquares = position.getTargetSquareSet(movedPieceSquare);
 
         targetSquare = calcTargetSquare(movedPieceLoc);
 
@@ -1715,7 +1979,7 @@ public class JBoard extends JComponent {
     int x = evt.getX();
     int y = evt.getY();
 
-    Rectangle helpRect = null;
+    Rectangle helpRect = motionRect;
 
     if ((evtID == MouseEvent.MOUSE_DRAGGED)
         || ((evtID == MouseEvent.MOUSE_MOVED) && isGesture(CLICK_N_CLICK_MOVE_INPUT_STYLE))) {
@@ -161,6 +161,17 @@ public class JChessClock extends AbstractChessClock {
     }
   }
 
+  /**
+   * Returns half a second in <code>HOUR_MINUTE_DISPLAY_MODE</code> while the clock is running, as
+   * the hours/minutes separator then blinks every half a second.
+   */
+  @Override
+  protected int getDisplayResolution() {
+    if (isRunning() && (getActualDisplayMode() == HOUR_MINUTE_DISPLAY_MODE)) return 500;
+
+    return super.getDisplayResolution();
+  }
+
   /** Overrides JComponent.paintComponent(Graphics) to paint this JChessClock. */
   @Override
   public void paintComponent(Graphics g) {
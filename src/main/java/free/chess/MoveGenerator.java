@@ -0,0 +1,1046 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * <p>The chess framework library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * <p>The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess;
+
+/**
+ * Generates the legal moves of standard chess, taking check, pins, castling rights (including
+ * castling out of and through check) and en passant into account. The generator keeps its own copy
+ * of the position as masks of the squares occupied by each piece (see {@link Bitboards}), along
+ * with the castling rights and en passant square, which a {@link Position} doesn't hold. Moves can
+ * be made and unmade on it, which is what {@link #perft(int)} does.
+ *
+ * <p>The rules are defined by a set of protected methods, which subclasses override to implement
+ * the rules of other chess variants: how pieces move, how castling is done, what pawns promote to,
+ * whether the king must be kept out of check, whether capturing is mandatory and what else happens
+ * when a move is made. Wild variants make their generator available via {@link
+ * ChesslikeGenericVariant#createMoveGenerator()}.
+ *
+ * <p>Moves are encoded as ints: the index of the starting square (<code>rank*8+file</code>) is in
+ * bits 0-5, the index of the ending square in bits 6-11, the move flags ({@link #CAPTURE}, {@link
+ * #DOUBLE_PAWN_PUSH}, {@link #EN_PASSANT}, {@link #CASTLING} and {@link #LONG_CASTLING}) in bits
+ * 12-16 and the type of the promotion target, if any, in bits 17-19. Use the static <code>getXXX
+ * </code> methods to decode them. The ending square of a castling move is the square the king ends
+ * up on.
+ *
+ * <p><B>IMPORTANT:</B> This class is not thread safe. Use {@link #copy()} to give each thread its
+ * own copy.
+ */
+public class MoveGenerator implements Cloneable {
+
+  /** The castling right for white's short castling. */
+  public static final int WHITE_SHORT_CASTLING = 1;
+
+  /** The castling right for white's long castling. */
+  public static final int WHITE_LONG_CASTLING = 2;
+
+  /** The castling right for black's short castling. */
+  public static final int BLACK_SHORT_CASTLING = 4;
+
+  /** The castling right for black's long castling. */
+  public static final int BLACK_LONG_CASTLING = 8;
+
+  /** All the castling rights. */
+  public static final int ALL_CASTLING = 15;
+
+  /** The move flag of a capture (including en passant). */
+  public static final int CAPTURE = 1;
+
+  /** The move flag of a double pawn push. */
+  public static final int DOUBLE_PAWN_PUSH = 2;
+
+  /** The move flag of an en passant capture. */
+  public static final int EN_PASSANT = 4;
+
+  /** The move flag of castling. */
+  public static final int CASTLING = 8;
+
+  /** The move flag set, along with {@link #CASTLING}, for long castling. */
+  public static final int LONG_CASTLING = 16;
+
+  /**
+   * The value of the en passant square meaning it's unknown whether the last move was a double pawn
+   * push, so en passant captures are allowed wherever such a move could have been made.
+   */
+  public static final int UNKNOWN_EN_PASSANT = -2;
+
+  /** The maximum amount of legal moves in a position. */
+  public static final int MAX_MOVES = 256;
+
+  /** The index of the white pieces in <code>pieces</code> (add the type minus one). */
+  protected static final int WHITE = 0;
+
+  /** The index of the black pieces in <code>pieces</code> (add the type minus one). */
+  protected static final int BLACK = 6;
+
+  /** The types of pieces a pawn may promote to in standard chess. */
+  private static final int[] CHESS_PROMOTION_TYPES = {
+    ChessPiece.QUEEN, ChessPiece.ROOK, ChessPiece.BISHOP, ChessPiece.KNIGHT
+  };
+
+  /** The pieces, in the order of the piece masks. */
+  private static final ChessPiece[] PIECES = {
+    ChessPiece.WHITE_PAWN,
+    ChessPiece.WHITE_KNIGHT,
+    ChessPiece.WHITE_BISHOP,
+    ChessPiece.WHITE_ROOK,
+    ChessPiece.WHITE_QUEEN,
+    ChessPiece.WHITE_KING,
+    ChessPiece.BLACK_PAWN,
+    ChessPiece.BLACK_KNIGHT,
+    ChessPiece.BLACK_BISHOP,
+    ChessPiece.BLACK_ROOK,
+    ChessPiece.BLACK_QUEEN,
+    ChessPiece.BLACK_KING
+  };
+
+  /** The amount of longs each made move takes on the undo stack. */
+  private static final int UNDO_SIZE = 15;
+
+  /**
+   * The masks of the squares occupied by each piece, in the order of <code>PIECES</code>, that is,
+   * indexed by {@link #WHITE} or {@link #BLACK} plus the type of the piece minus one.
+   */
+  protected long[] pieces = new long[12];
+
+  /** The mask of the squares occupied by white pieces. */
+  protected long whiteMask;
+
+  /** The mask of the squares occupied by black pieces. */
+  protected long blackMask;
+
+  /** Whether it's white's turn to move. */
+  protected boolean whiteToMove;
+
+  /** The current castling rights. */
+  private int castlingRights;
+
+  /**
+   * The index of the square a pawn which just made a double push passed, -1 if the last move wasn't
+   * a double pawn push, or {@link #UNKNOWN_EN_PASSANT}.
+   */
+  private int enPassantSquare;
+
+  /**
+   * The squares of the rooks taking part in each castling, indexed by the number of the bit of the
+   * castling right, or -1 for castlings without the right.
+   */
+  private int[] castlingRookSquares = new int[4];
+
+  /** The squares of the white and black kings when they still have castling rights, or -1. */
+  private int[] castlingKingSquares = new int[2];
+
+  /** The castling rights which remain after a move starting or ending on each square. */
+  private int[] castlingRightsKept = new int[64];
+
+  /**
+   * The state before each made move: the piece masks, the color masks and the castling rights, en
+   * passant square and player to move packed into a long; {@link #UNDO_SIZE} longs per move.
+   */
+  private long[] undoStack = new long[UNDO_SIZE * 64];
+
+  /** The amount of longs in <code>undoStack</code>. */
+  private int undoSize = 0;
+
+  /** The move buffers used by {@link #perft(int)}, one per depth. */
+  private int[][] perftMoves = new int[0][];
+
+  /** Creates a new <code>MoveGenerator</code> with the initial position of chess. */
+  public MoveGenerator() {
+    setFEN(Chess.INITIAL_POSITION_FEN);
+  }
+
+  /**
+   * Creates a new <code>MoveGenerator</code> with the specified position, as set by {@link
+   * #setPosition(Position)}.
+   */
+  public MoveGenerator(Position position) {
+    setPosition(position);
+  }
+
+  /**
+   * Returns a copy of this generator, with the same rules and position, but none of the made moves
+   * to unmake.
+   */
+  public MoveGenerator copy() {
+    try {
+      MoveGenerator copy = (MoveGenerator) clone();
+      copy.pieces = pieces.clone();
+      copy.castlingRookSquares = castlingRookSquares.clone();
+      copy.castlingKingSquares = castlingKingSquares.clone();
+      copy.castlingRightsKept = castlingRightsKept.clone();
+      copy.undoStack = new long[UNDO_SIZE * 64];
+      copy.undoSize = 0;
+      copy.perftMoves = new int[0][];
+      return copy;
+    } catch (CloneNotSupportedException e) {
+      throw new InternalError("Cloneable, but cloning failed");
+    }
+  }
+
+  /**
+   * Sets the position to the one described by the specified FEN string, including the castling
+   * rights and en passant square. The castling rights may be given either as "KQkq" or, for
+   * positions where it isn't clear which rook is meant, as the files of the rooks ("HAha"). The
+   * move counters are ignored.
+   *
+   * @throws PositionFormatException if the string is not a valid FEN of a chess position.
+   * @throws IllegalArgumentException if the castling rights are malformed.
+   */
+  public void setFEN(String fen) throws PositionFormatException {
+    Position position = new Position(Chess.getInstance());
+    position.setFEN(fen);
+    setPosition(position);
+  }
+
+  /**
+   * Sets the position to the specified one. If the position has a FEN (see {@link
+   * Position#getFEN()}), the castling rights and en passant square are taken from it. Otherwise,
+   * castling rights are assumed for every king and rook standing where they could castle and en
+   * passant is allowed wherever the last move could have been a double pawn push (see {@link
+   * #UNKNOWN_EN_PASSANT}).
+   *
+   * @throws IllegalArgumentException if the position holds pieces other than chess pieces, or its
+   *     FEN has malformed castling rights.
+   */
+  public void setPosition(Position position) {
+    String fen = position.getFEN();
+    String castlingField = null;
+    int epSquare = UNKNOWN_EN_PASSANT;
+    if (fen != null) {
+      String[] fields = fen.split(" ");
+      if (fields.length >= 4) {
+        castlingField = fields[2];
+        epSquare =
+            fields[3].equals("-") ? -1 : Bitboards.squareIndex(Square.parseSquare(fields[3]));
+      }
+    }
+
+    setPieces(position);
+    setCastling(castlingField);
+    this.enPassantSquare = epSquare;
+  }
+
+  /**
+   * Sets the position to the specified one, with the specified castling rights (a combination of
+   * the <code>XXX_CASTLING</code> constants, or -1 to infer them from the placement of the pieces)
+   * and en passant square (the index of the square passed by a pawn which just made a double push,
+   * -1 if there is none, or {@link #UNKNOWN_EN_PASSANT}).
+   *
+   * @throws IllegalArgumentException if the position holds pieces other than chess pieces.
+   */
+  public void setPosition(Position position, int castlingRights, int enPassantSquare) {
+    setPieces(position);
+    setCastling(null);
+    if (castlingRights != -1) this.castlingRights &= castlingRights;
+    this.enPassantSquare = enPassantSquare;
+  }
+
+  /** Copies the pieces and the player to move from the specified position. */
+  private void setPieces(Position position) {
+    long occupied = position.getOccupiedMask();
+    for (int i = 0; i < PIECES.length; i++) {
+      pieces[i] = position.getPieceMask(PIECES[i]);
+      occupied &= ~pieces[i];
+    }
+    if (occupied != 0)
+      throw new IllegalArgumentException("The position holds pieces other than chess pieces");
+
+    whiteMask = position.getColorMask(Piece.WHITE);
+    blackMask = position.getColorMask(Piece.BLACK);
+    whiteToMove = position.getCurrentPlayer().isWhite();
+    undoSize = 0;
+  }
+
+  /**
+   * Sets up the castling rights from the specified castling field of a FEN, or, if it's <code>null
+   * </code>, from the placement of the pieces. Rights for which there is no rook are dropped.
+   */
+  private void setCastling(String field) {
+    castlingRights = 0;
+    for (int i = 0; i < 4; i++) castlingRookSquares[i] = -1;
+
+    for (int color = 0; color < 2; color++) {
+      int us = color == 0 ? WHITE : BLACK;
+      int backRank = color == 0 ? 0 : 56;
+      long kings = pieces[us + ChessPiece.KING - 1];
+      castlingKingSquares[color] = -1;
+      if ((Long.bitCount(kings) != 1) || (Long.numberOfTrailingZeros(kings) >> 3 != backRank >> 3))
+        continue;
+
+      int kingSquare = Long.numberOfTrailingZeros(kings);
+      castlingKingSquares[color] = kingSquare;
+      for (int side = 0; side < 2; side++) {
+        boolean isShort = side == 0;
+        int rookSquare = -1;
+        if (field == null) rookSquare = findCastlingRook(kingSquare, isShort);
+        else {
+          for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == '-') continue;
+            if (Character.isUpperCase(c) != (color == 0)) continue;
+
+            char lower = Character.toLowerCase(c);
+            if ((lower == 'k') || (lower == 'q')) {
+              if ((lower == 'k') == isShort) rookSquare = findCastlingRook(kingSquare, isShort);
+            } else if ((lower >= 'a') && (lower <= 'h')) {
+              int rookFile = lower - 'a';
+              if ((rookFile > (kingSquare & 7)) == isShort) {
+                int square = backRank + rookFile;
+                if ((pieces[us + ChessPiece.ROOK - 1] & (1L << square)) != 0) rookSquare = square;
+              }
+            } else throw new IllegalArgumentException("Bad castling rights: " + field);
+          }
+        }
+
+        if (rookSquare != -1) {
+          int right = 2 * color + side;
+          castlingRookSquares[right] = rookSquare;
+          castlingRights |= 1 << right;
+        }
+      }
+    }
+
+    for (int i = 0; i < 64; i++) castlingRightsKept[i] = ALL_CASTLING;
+    for (int color = 0; color < 2; color++) {
+      int colorRights =
+          color == 0
+              ? WHITE_SHORT_CASTLING | WHITE_LONG_CASTLING
+              : BLACK_SHORT_CASTLING | BLACK_LONG_CASTLING;
+      if (castlingKingSquares[color] != -1)
+        castlingRightsKept[castlingKingSquares[color]] &= ~colorRights;
+    }
+    for (int right = 0; right < 4; right++)
+      if (castlingRookSquares[right] != -1)
+        castlingRightsKept[castlingRookSquares[right]] &= ~(1 << right);
+  }
+
+  /**
+   * Returns the square of the rook with which the king on the specified square may castle to the
+   * specified side, if neither has moved, or -1 if there is none. In standard chess, this is the
+   * rook in the corner, on the same side of the king, when the king is on the e-file.
+   */
+  protected int findCastlingRook(int kingSquare, boolean isShort) {
+    if ((kingSquare & 7) != 4) return -1;
+
+    int rookSquare = kingSquare + (isShort ? 3 : -4);
+    long rooks = pieces[(isWhiteSquare(kingSquare) ? WHITE : BLACK) + ChessPiece.ROOK - 1];
+    return (rooks & (1L << rookSquare)) != 0 ? rookSquare : -1;
+  }
+
+  /**
+   * Returns whether the king on the specified square is white's; used by the castling methods,
+   * which are only invoked for kings on their back rank.
+   */
+  protected boolean isWhiteSquare(int kingSquare) {
+    return (whiteMask & (1L << kingSquare)) != 0;
+  }
+
+  /**
+   * Returns the square the king on the specified square ends up on when castling to the specified
+   * side. In standard chess, this is the g-file for short castling and the c-file for long
+   * castling.
+   */
+  protected int getCastlingKingTarget(int kingSquare, boolean isShort) {
+    return (kingSquare & ~7) + (isShort ? 6 : 2);
+  }
+
+  /**
+   * Returns the square the rook ends up on when the king on the specified square castles to the
+   * specified side. In standard chess, this is the f-file for short castling and the d-file for
+   * long castling.
+   */
+  protected int getCastlingRookTarget(int kingSquare, boolean isShort) {
+    return (kingSquare & ~7) + (isShort ? 5 : 3);
+  }
+
+  /** Returns whether a move may not leave the mover's king in check. True in standard chess. */
+  protected boolean isKingSafetyRequired() {
+    return true;
+  }
+
+  /** Returns whether a capture must be made if one is possible. False in standard chess. */
+  protected boolean isCaptureMandatory() {
+    return false;
+  }
+
+  /**
+   * Returns whether pawns may make a double push from their initial rank (and so be captured en
+   * passant). True in standard chess.
+   */
+  protected boolean isDoublePawnPushAllowed() {
+    return true;
+  }
+
+  /**
+   * Returns the types of pieces to which pawns may promote, in order of preference. The array must
+   * not be modified. In standard chess, these are the queen, rook, bishop and knight.
+   */
+  protected int[] getPromotionTypes() {
+    return CHESS_PROMOTION_TYPES;
+  }
+
+  /**
+   * Returns the squares a piece of the specified type (other than a pawn) on the square with the
+   * specified index attacks, given the occupied squares. The attacks of each type must be
+   * symmetric: a piece on <code>a</code> attacks <code>b</code> exactly when one on <code>b</code>
+   * would attack <code>a</code>.
+   */
+  protected long getAttacks(int type, int square, long occupied) {
+    switch (type) {
+      case ChessPiece.KNIGHT:
+        return Bitboards.knightAttacks(square);
+      case ChessPiece.BISHOP:
+        return Bitboards.bishopAttacks(square, occupied);
+      case ChessPiece.ROOK:
+        return Bitboards.rookAttacks(square, occupied);
+      case ChessPiece.QUEEN:
+        return Bitboards.queenAttacks(square, occupied);
+      case ChessPiece.KING:
+        return Bitboards.kingAttacks(square);
+      default:
+        throw new IllegalArgumentException("Bad piece type: " + type);
+    }
+  }
+
+  /**
+   * Returns whether the specified square is attacked by the pieces of the side whose pieces start
+   * at the specified index in <code>pieces</code>, given the specified occupied squares, ignoring
+   * the attacker pieces on the squares of the specified <code>removed</code> mask. Subclasses which
+   * change how pieces move in {@link #getAttacks(int, int, long)} should override this method too,
+   * or delegate to {@link #isAttackedByAny(int, int, long, long)}.
+   */
+  protected boolean isAttackedBy(int square, int them, long occupied, long removed) {
+    long keep = ~removed;
+    if ((Bitboards.knightAttacks(square) & pieces[them + ChessPiece.KNIGHT - 1] & keep) != 0)
+      return true;
+    if ((Bitboards.kingAttacks(square) & pieces[them + ChessPiece.KING - 1] & keep) != 0)
+      return true;
+    if ((getPawnAttackers(square, them) & keep) != 0) return true;
+
+    long queens = pieces[them + ChessPiece.QUEEN - 1];
+    long rooks = (pieces[them + ChessPiece.ROOK - 1] | queens) & keep;
+    if ((rooks != 0) && ((Bitboards.rookAttacks(square, occupied) & rooks) != 0)) return true;
+    long bishops = (pieces[them + ChessPiece.BISHOP - 1] | queens) & keep;
+    if ((bishops != 0) && ((Bitboards.bishopAttacks(square, occupied) & bishops) != 0)) return true;
+
+    return false;
+  }
+
+  /**
+   * Implements {@link #isAttackedBy(int, int, long, long)} in terms of {@link #getAttacks(int, int,
+   * long)}, for subclasses which change how pieces move.
+   */
+  protected final boolean isAttackedByAny(int square, int them, long occupied, long removed) {
+    long keep = ~removed;
+    if ((getPawnAttackers(square, them) & keep) != 0) return true;
+
+    for (int type = ChessPiece.KNIGHT; type <= ChessPiece.KING; type++) {
+      long attackers = pieces[them + type - 1] & keep;
+      if ((attackers != 0) && ((getAttacks(type, square, occupied) & attackers) != 0)) return true;
+    }
+
+    return false;
+  }
+
+  /**
+   * Returns the pawns of the side whose pieces start at the specified index which attack the
+   * specified square.
+   */
+  private long getPawnAttackers(int square, int them) {
+    int ourColor = them == WHITE ? Piece.BLACK : Piece.WHITE;
+    return Bitboards.pawnAttacks(1L << square, ourColor) & pieces[them + ChessPiece.PAWN - 1];
+  }
+
+  /**
+   * Returns whether the specified move, which is legal as far as the other rules go, is allowed.
+   * Invoked for each generated move; may make and unmake the move to examine its outcome. Always
+   * returns <code>true</code> in standard chess.
+   */
+  protected boolean isAllowed(int move) {
+    return true;
+  }
+
+  /** Returns the piece on the square with the specified index, or <code>null</code> if none. */
+  public ChessPiece getPieceAt(int square) {
+    long mask = 1L << square;
+    if (((whiteMask | blackMask) & mask) == 0) return null;
+
+    for (int i = 0; i < pieces.length; i++) if ((pieces[i] & mask) != 0) return PIECES[i];
+
+    return null;
+  }
+
+  /**
+   * Returns the (shared) <code>ChessPiece</code> of the specified color, {@link Piece#WHITE} or
+   * {@link Piece#BLACK}, and type.
+   */
+  public static ChessPiece getPiece(int color, int type) {
+    if ((type < ChessPiece.PAWN) || (type > ChessPiece.KING))
+      throw new IllegalArgumentException("Bad piece type: " + type);
+
+    return PIECES[(color == Piece.WHITE ? 0 : 6) + type - ChessPiece.PAWN];
+  }
+
+  /** Returns whether it's white's turn to move. */
+  public boolean isWhiteToMove() {
+    return whiteToMove;
+  }
+
+  /** Returns the current castling rights. */
+  public int getCastlingRights() {
+    return castlingRights;
+  }
+
+  /**
+   * Returns the current en passant square, as described in {@link #setPosition(Position, int,
+   * int)}.
+   */
+  public int getEnPassantSquare() {
+    return enPassantSquare;
+  }
+
+  /**
+   * Returns the {@link Zobrist} key of the current castling rights and of the en passant captures
+   * which are legal in the current position. XORed into the key of a position (see {@link
+   * Position#getZobristKey()}), which only covers the pieces and the player to move, it tells apart
+   * positions which differ in the rights the rules on repetition consider. As in those rules, an en
+   * passant square only counts if an en passant capture is actually possible.
+   */
+  public long getRightsKey() {
+    long key = Zobrist.getCastlingKey(castlingRights);
+    if (enPassantSquare == -1) return key;
+
+    int[] moves = new int[MAX_MOVES];
+    int count = generateLegalMoves(moves);
+    long targets = 0;
+    for (int i = 0; i < count; i++)
+      if ((getFlags(moves[i]) & EN_PASSANT) != 0) targets |= 1L << getTo(moves[i]);
+
+    while (targets != 0) {
+      key ^= Zobrist.getEnPassantKey(Long.numberOfTrailingZeros(targets));
+      targets &= targets - 1;
+    }
+
+    return key;
+  }
+
+  /** Returns the starting square index of the specified move. */
+  public static int getFrom(int move) {
+    return move & 63;
+  }
+
+  /** Returns the ending square index of the specified move. */
+  public static int getTo(int move) {
+    return (move >>> 6) & 63;
+  }
+
+  /** Returns the flags of the specified move. */
+  public static int getFlags(int move) {
+    return (move >>> 12) & 31;
+  }
+
+  /** Returns the type of the promotion target of the specified move, or 0 if it's no promotion. */
+  public static int getPromotionType(int move) {
+    return (move >>> 17) & 7;
+  }
+
+  /** Encodes a move. */
+  protected static int encode(int from, int to, int flags, int promotionType) {
+    return from | (to << 6) | (flags << 12) | (promotionType << 17);
+  }
+
+  /** Returns the specified move in coordinate notation, for example "e2e4" or "e7e8q". */
+  public static String toString(int move) {
+    String s =
+        Bitboards.getSquare(getFrom(move)).toString() + Bitboards.getSquare(getTo(move)).toString();
+    int promotionType = getPromotionType(move);
+    return promotionType == 0 ? s : s + " pnbrqk".charAt(promotionType);
+  }
+
+  /** Returns whether the side to move is in check. */
+  public boolean isInCheck() {
+    int us = whiteToMove ? WHITE : BLACK;
+    long king = pieces[us + ChessPiece.KING - 1];
+    if (king == 0) return false;
+
+    return isAttackedBy(
+        Long.numberOfTrailingZeros(king), whiteToMove ? BLACK : WHITE, whiteMask | blackMask, 0);
+  }
+
+  /**
+   * Puts the legal moves in the current position into the specified array, which should have room
+   * for at least {@link #MAX_MOVES} moves, and returns their amount.
+   */
+  public int generateLegalMoves(int[] moves) {
+    return generateLegalMoves(moves, -1L, -1L);
+  }
+
+  /**
+   * Puts the legal moves from the squares in the specified mask to the squares in the specified
+   * mask into the specified array, and returns their amount. Only the moves between the masks are
+   * checked for legality, so this is much faster than generating all the moves and picking the
+   * wanted ones.
+   */
+  public int generateLegalMoves(int[] moves, long fromMask, long toMask) {
+    if (!isCaptureMandatory()) return generateMoves(moves, fromMask, toMask);
+
+    // Whether the piece may move depends on whether any piece can capture.
+    int count = generateMoves(moves, -1L, -1L);
+    boolean canCapture = false;
+    for (int i = 0; (i < count) && !canCapture; i++)
+      canCapture = (getFlags(moves[i]) & CAPTURE) != 0;
+
+    int kept = 0;
+    for (int i = 0; i < count; i++) {
+      int move = moves[i];
+      if (canCapture && ((getFlags(move) & CAPTURE) == 0)) continue;
+      if ((fromMask & (1L << getFrom(move))) == 0) continue;
+      if ((toMask & (1L << getTo(move))) == 0) continue;
+
+      moves[kept++] = move;
+    }
+
+    return kept;
+  }
+
+  /**
+   * Puts the moves allowed by all the rules except mandatory capture, from the squares in the
+   * specified mask to the squares in the specified mask, into the specified array, and returns
+   * their amount.
+   */
+  private int generateMoves(int[] moves, long fromMask, long toMask) {
+    int us = whiteToMove ? WHITE : BLACK;
+    int them = whiteToMove ? BLACK : WHITE;
+    long own = whiteToMove ? whiteMask : blackMask;
+    long enemy = whiteToMove ? blackMask : whiteMask;
+    long occupied = own | enemy;
+    long kingMask = pieces[us + ChessPiece.KING - 1];
+    int kingSquare =
+        (kingMask == 0) || !isKingSafetyRequired() ? -1 : Long.numberOfTrailingZeros(kingMask);
+
+    int count = 0;
+
+    // Knights, bishops, rooks, queens and kings
+    for (int type = ChessPiece.KNIGHT; type <= ChessPiece.KING; type++) {
+      long movers = pieces[us + type - 1] & fromMask;
+      while (movers != 0) {
+        int from = Long.numberOfTrailingZeros(movers);
+        movers &= movers - 1;
+
+        long targets = getAttacks(type, from, occupied) & ~own & toMask;
+        while (targets != 0) {
+          int to = Long.numberOfTrailingZeros(targets);
+          targets &= targets - 1;
+
+          long toBit = 1L << to;
+          int flags = (enemy & toBit) != 0 ? CAPTURE : 0;
+          int king = (type == ChessPiece.KING) && (kingSquare != -1) ? to : kingSquare;
+          if (isSafe(king, them, from, toBit, occupied))
+            moves[count++] = encode(from, to, flags, 0);
+        }
+      }
+    }
+
+    // Pawns
+    int forward = whiteToMove ? 8 : -8;
+    int pawnColor = whiteToMove ? Piece.WHITE : Piece.BLACK;
+    long pawns = pieces[us + ChessPiece.PAWN - 1] & fromMask;
+    while (pawns != 0) {
+      int from = Long.numberOfTrailingZeros(pawns);
+      pawns &= pawns - 1;
+      int rank = from >> 3;
+
+      int to = from + forward;
+      if ((to >= 0) && (to < 64) && ((occupied & (1L << to)) == 0)) {
+        if (((toMask & (1L << to)) != 0) && isSafe(kingSquare, them, from, 1L << to, occupied))
+          count = addPawnMoves(moves, count, from, to, 0);
+
+        int doubleTo = to + forward;
+        if ((rank == (whiteToMove ? 1 : 6))
+            && ((occupied & (1L << doubleTo)) == 0)
+            && ((toMask & (1L << doubleTo)) != 0)
+            && isDoublePawnPushAllowed()) {
+          if (isSafe(kingSquare, them, from, 1L << doubleTo, occupied))
+            moves[count++] = encode(from, doubleTo, DOUBLE_PAWN_PUSH, 0);
+        }
+      }
+
+      long pawnAttacks = Bitboards.pawnAttacks(1L << from, pawnColor);
+      long captures = pawnAttacks & enemy & toMask;
+      while (captures != 0) {
+        int target = Long.numberOfTrailingZeros(captures);
+        captures &= captures - 1;
+        if (isSafe(kingSquare, them, from, 1L << target, occupied))
+          count = addPawnMoves(moves, count, from, target, CAPTURE);
+      }
+
+      long epTargets = getEnPassantTargets(from) & pawnAttacks & ~occupied & toMask;
+      while (epTargets != 0) {
+        int target = Long.numberOfTrailingZeros(epTargets);
+        epTargets &= epTargets - 1;
+        long capturedMask = 1L << (target - forward);
+        long newOccupied = (occupied & ~(1L << from) & ~capturedMask) | (1L << target);
+        if ((kingSquare == -1) || !isAttackedBy(kingSquare, them, newOccupied, capturedMask))
+          moves[count++] = encode(from, target, CAPTURE | EN_PASSANT, 0);
+      }
+    }
+
+    // Castling
+    if ((kingMask & fromMask) != 0) count = addCastlingMoves(moves, count, them, occupied);
+
+    // Any other rules, and the target squares of castling
+    int allowed = 0;
+    for (int i = 0; i < count; i++) {
+      int move = moves[i];
+      if (((toMask & (1L << getTo(move))) != 0) && isAllowed(move)) moves[allowed++] = move;
+    }
+
+    return allowed;
+  }
+
+  /**
+   * Returns whether the king on the specified square (-1 if there is no king or it may be left in
+   * check) is safe from the pieces of the specified side after a piece moves from <code>from</code>
+   * to the square of <code>toMask</code>, capturing whatever stands there.
+   */
+  private boolean isSafe(int kingSquare, int them, int from, long toMask, long occupied) {
+    if (kingSquare == -1) return true;
+
+    long newOccupied = (occupied & ~(1L << from)) | toMask;
+    return !isAttackedBy(kingSquare, them, newOccupied, toMask);
+  }
+
+  /**
+   * Adds the move of a pawn from the specified square to the specified square, as promotions to
+   * each of the promotion targets if the pawn reaches the last rank. Returns the new amount of
+   * moves.
+   */
+  private int addPawnMoves(int[] moves, int count, int from, int to, int flags) {
+    if ((to < 8) || (to >= 56)) {
+      int[] promotionTypes = getPromotionTypes();
+      for (int i = 0; i < promotionTypes.length; i++)
+        moves[count++] = encode(from, to, flags, promotionTypes[i]);
+    } else moves[count++] = encode(from, to, flags, 0);
+
+    return count;
+  }
+
+  /**
+   * Returns the squares to which the pawn of the side to move on the specified square may capture
+   * en passant, not considering whether the capture leaves the king in check.
+   */
+  private long getEnPassantTargets(int from) {
+    if ((enPassantSquare == -1) || !isDoublePawnPushAllowed()) return 0;
+    if (enPassantSquare >= 0) return 1L << enPassantSquare;
+
+    // Unknown - any enemy pawn which stands next to ours and could have just made a double push.
+    int epRank = whiteToMove ? 4 : 3;
+    if ((from >> 3) != epRank) return 0;
+
+    long enemyPawns = pieces[(whiteToMove ? BLACK : WHITE) + ChessPiece.PAWN - 1];
+    long occupied = whiteMask | blackMask;
+    int forward = whiteToMove ? 8 : -8;
+    long targets = 0;
+    for (int fileOffset = -1; fileOffset <= 1; fileOffset += 2) {
+      int file = (from & 7) + fileOffset;
+      if ((file < 0) || (file > 7)) continue;
+
+      int pawnSquare = from + fileOffset;
+      int passedSquare = pawnSquare + forward;
+      int originSquare = passedSquare + forward;
+      if (((enemyPawns & (1L << pawnSquare)) != 0)
+          && ((occupied & ((1L << passedSquare) | (1L << originSquare))) == 0))
+        targets |= 1L << passedSquare;
+    }
+
+    return targets;
+  }
+
+  /**
+   * Adds the castling moves of the side to move, returning the new amount of moves. Castling
+   * requires the squares between the king and rook and their destinations to be empty (except for
+   * the king and rook themselves) and, if the king must be kept out of check, the king not to be in
+   * check and not to pass or land on an attacked square.
+   */
+  private int addCastlingMoves(int[] moves, int count, int them, long occupied) {
+    int color = whiteToMove ? 0 : 1;
+    int kingSquare = castlingKingSquares[color];
+    if ((kingSquare == -1) || ((castlingRights & (3 << (2 * color))) == 0)) return count;
+
+    int us = whiteToMove ? WHITE : BLACK;
+    long kingMask = 1L << kingSquare;
+    if ((pieces[us + ChessPiece.KING - 1] & kingMask) == 0) return count;
+
+    boolean isKingSafetyRequired = isKingSafetyRequired();
+    if (isKingSafetyRequired && isAttackedBy(kingSquare, them, occupied, 0)) return count;
+
+    for (int side = 0; side < 2; side++) {
+      int right = 2 * color + side;
+      if ((castlingRights & (1 << right)) == 0) continue;
+
+      int rookSquare = castlingRookSquares[right];
+      long rookMask = 1L << rookSquare;
+      if ((pieces[us + ChessPiece.ROOK - 1] & rookMask) == 0) continue;
+
+      boolean isShort = side == 0;
+      int kingTarget = getCastlingKingTarget(kingSquare, isShort);
+      int rookTarget = getCastlingRookTarget(kingSquare, isShort);
+
+      long others = occupied & ~kingMask & ~rookMask;
+      if ((others & getSpan(kingSquare, kingTarget)) != 0) continue;
+      if ((others & getSpan(rookSquare, rookTarget)) != 0) continue;
+
+      if (isKingSafetyRequired) {
+        long path = getSpan(kingSquare, kingTarget) & ~kingMask;
+        boolean attacked = false;
+        while ((path != 0) && !attacked) {
+          attacked = isAttackedBy(Long.numberOfTrailingZeros(path), them, others, 0);
+          path &= path - 1;
+        }
+        if (attacked) continue;
+      }
+
+      moves[count++] =
+          encode(kingSquare, kingTarget, isShort ? CASTLING : CASTLING | LONG_CASTLING, 0);
+    }
+
+    return count;
+  }
+
+  /**
+   * Returns the mask of the squares between the two specified squares on the same rank, both
+   * included.
+   */
+  private static long getSpan(int square1, int square2) {
+    int low = Math.min(square1, square2);
+    int high = Math.max(square1, square2);
+    return (-1L >>> (63 - high)) & (-1L << low);
+  }
+
+  /**
+   * Returns the mask of the squares to which the piece on the specified square may legally move.
+   * Returns 0 if the square is empty or holds a piece of the side not to move.
+   */
+  public long getLegalTargets(Square square) {
+    int[] moves = new int[MAX_MOVES];
+    int count = generateLegalMoves(moves, 1L << Bitboards.squareIndex(square), -1L);
+    long targets = 0;
+    for (int i = 0; i < count; i++) targets |= 1L << getTo(moves[i]);
+
+    return targets;
+  }
+
+  /**
+   * Returns the legal move from the specified square to the specified square, promoting to a piece
+   * of the specified type (0 if none), or 0 if there is no such legal move. If the move is a
+   * promotion and the type is 0, the first promotion target of the variant (a queen, in chess) is
+   * assumed. If both castling and a regular king move match, the regular move is returned.
+   */
+  public int findLegalMove(Square from, Square to, int promotionType) {
+    int[] moves = new int[MAX_MOVES];
+    int toIndex = Bitboards.squareIndex(to);
+    int count = generateLegalMoves(moves, 1L << Bitboards.squareIndex(from), 1L << toIndex);
+    int defaultPromotionType = getPromotionTypes()[0];
+    int found = 0;
+    for (int i = 0; i < count; i++) {
+      int move = moves[i];
+      if (getTo(move) != toIndex) continue;
+
+      int moveType = getPromotionType(move);
+      if ((moveType != promotionType)
+          && ((promotionType != 0) || (moveType != defaultPromotionType))) continue;
+
+      if ((getFlags(move) & CASTLING) == 0) return move;
+      found = move;
+    }
+
+    return found;
+  }
+
+  /**
+   * Returns the legal move matching the specified move, including whether it's a castling, or 0 if
+   * the move is illegal in the current position.
+   */
+  public int findLegalMove(ChessMove move) {
+    if ((move.getPlayer().isWhite()) != whiteToMove) return 0;
+
+    ChessPiece promotionTarget = move.getPromotionTarget();
+    int promotionType = promotionTarget == null ? 0 : promotionTarget.getType();
+    int[] moves = new int[MAX_MOVES];
+    int to = Bitboards.squareIndex(move.getEndingSquare());
+    int count =
+        generateLegalMoves(moves, 1L << Bitboards.squareIndex(move.getStartingSquare()), 1L << to);
+    int castlingFlags =
+        move.isShortCastling() ? CASTLING : move.isLongCastling() ? CASTLING | LONG_CASTLING : 0;
+    for (int i = 0; i < count; i++) {
+      int legalMove = moves[i];
+      if ((getTo(legalMove) == to)
+          && (getPromotionType(legalMove) == promotionType)
+          && ((getFlags(legalMove) & (CASTLING | LONG_CASTLING)) == castlingFlags))
+        return legalMove;
+    }
+
+    return 0;
+  }
+
+  /** Returns whether the specified move is legal in the current position. */
+  public boolean isLegal(ChessMove move) {
+    return findLegalMove(move) != 0;
+  }
+
+  /** Makes the specified move, which must be legal in the current position. */
+  public void makeMove(int move) {
+    if (undoSize + UNDO_SIZE > undoStack.length) {
+      long[] newStack = new long[undoStack.length * 2];
+      System.arraycopy(undoStack, 0, newStack, 0, undoSize);
+      undoStack = newStack;
+    }
+    System.arraycopy(pieces, 0, undoStack, undoSize, 12);
+    undoStack[undoSize + 12] = whiteMask;
+    undoStack[undoSize + 13] = blackMask;
+    undoStack[undoSize + 14] =
+        (castlingRights & 0xffL) | ((enPassantSquare & 0xffL) << 8) | (whiteToMove ? 1L << 16 : 0);
+    undoSize += UNDO_SIZE;
+
+    int from = getFrom(move);
+    int to = getTo(move);
+    applyMove(move, whiteToMove ? WHITE : BLACK);
+
+    castlingRights &= castlingRightsKept[from] & castlingRightsKept[to];
+    if (castlingRights != 0) {
+      // Rooks may also disappear without moving or being captured, in variants such as atomic.
+      for (int right = 0; right < 4; right++) {
+        int rookSquare = castlingRookSquares[right];
+        if ((rookSquare != -1) && (((whiteMask | blackMask) & (1L << rookSquare)) == 0))
+          castlingRights &= ~(1 << right);
+      }
+    }
+    enPassantSquare = (getFlags(move) & DOUBLE_PAWN_PUSH) != 0 ? (from + to) / 2 : -1;
+    whiteToMove = !whiteToMove;
+  }
+
+  /** Unmakes the last move made with {@link #makeMove(int)}. */
+  public void unmakeMove() {
+    if (undoSize == 0) throw new IllegalStateException("No move to unmake");
+
+    undoSize -= UNDO_SIZE;
+    System.arraycopy(undoStack, undoSize, pieces, 0, 12);
+    whiteMask = undoStack[undoSize + 12];
+    blackMask = undoStack[undoSize + 13];
+    long state = undoStack[undoSize + 14];
+    castlingRights = (int) (state & 0xff);
+    enPassantSquare = (byte) (state >>> 8);
+    whiteToMove = (state & (1L << 16)) != 0;
+  }
+
+  /** Returns the amount of made moves which can be unmade. */
+  public int getMadeMoveCount() {
+    return undoSize / UNDO_SIZE;
+  }
+
+  /**
+   * Moves the pieces as the specified move, made by the side whose pieces start at the specified
+   * index in <code>pieces</code>, requires. Subclasses may override this method to have moves
+   * affect other pieces too.
+   */
+  protected void applyMove(int move, int us) {
+    int from = getFrom(move);
+    int to = getTo(move);
+    int flags = getFlags(move);
+    int them = us == WHITE ? BLACK : WHITE;
+
+    if ((flags & CAPTURE) != 0) {
+      int capturedSquare = (flags & EN_PASSANT) != 0 ? to + (us == WHITE ? -8 : 8) : to;
+      removePieceAt(capturedSquare, them);
+    }
+
+    if ((flags & CASTLING) != 0) {
+      boolean isShort = (flags & LONG_CASTLING) == 0;
+      int right = 2 * (us == WHITE ? 0 : 1) + (isShort ? 0 : 1);
+      int rookSquare = castlingRookSquares[right];
+      removePieceAt(from, us);
+      removePieceAt(rookSquare, us);
+      putPieceAt(to, us + ChessPiece.KING - 1);
+      putPieceAt(getCastlingRookTarget(from, isShort), us + ChessPiece.ROOK - 1);
+      return;
+    }
+
+    int moving = removePieceAt(from, us);
+    int promotionType = getPromotionType(move);
+    putPieceAt(to, promotionType == 0 ? moving : us + promotionType - 1);
+  }
+
+  /**
+   * Removes the piece of the side whose pieces start at the specified index in <code>pieces</code>
+   * from the specified square, returning its index in <code>pieces</code>, or -1 if there is none.
+   */
+  protected final int removePieceAt(int square, int side) {
+    long mask = 1L << square;
+    for (int i = side; i < side + 6; i++) {
+      if ((pieces[i] & mask) != 0) {
+        pieces[i] &= ~mask;
+        if (side == WHITE) whiteMask &= ~mask;
+        else blackMask &= ~mask;
+        return i;
+      }
+    }
+
+    return -1;
+  }
+
+  /** Puts the piece with the specified index in <code>pieces</code> on the specified square. */
+  protected final void putPieceAt(int square, int piece) {
+    long mask = 1L << square;
+    pieces[piece] |= mask;
+    if (piece < BLACK) whiteMask |= mask;
+    else blackMask |= mask;
+  }
+
+  /**
+   * Returns the amount of leaf nodes of the legal move tree of the specified depth from the current
+   * position. This is the standard way of checking and benchmarking move generators; see the <code>
+   * Perft</code> benchmark.
+   */
+  public long perft(int depth) {
+    if (depth <= 0) return 1;
+
+    if (perftMoves.length < depth) {
+      int[][] newMoves = new int[depth][];
+      for (int i = 0; i < depth; i++)
+        newMoves[i] = i < perftMoves.length ? perftMoves[i] : new int[MAX_MOVES];
+      perftMoves = newMoves;
+    }
+
+    return perft(depth, perftMoves);
+  }
+
+  /** Implements {@link #perft(int)} using the specified move buffers. */
+  private long perft(int depth, int[][] moveBuffers) {
+    int[] moves = moveBuffers[depth - 1];
+    int count = generateLegalMoves(moves);
+    if (depth == 1) return count;
+
+    long nodes = 0;
+    for (int i = 0; i < count; i++) {
+      makeMove(moves[i]);
+      nodes += perft(depth - 1, moveBuffers);
+      unmakeMove();
+    }
+
+    return nodes;
+  }
+}
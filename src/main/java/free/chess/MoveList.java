@@ -0,0 +1,294 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * <p>The chess framework library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * <p>The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess;
+
+/**
+ * A compact list of the moves made in a game. Moves are appended as they are made and removed from
+ * the end when they are taken back. Each {@link ChessMove} is kept as a single <code>int</code>
+ * along with its (interned) string representation, and is recreated when it's retrieved; any other
+ * kind of move is kept as is.
+ *
+ * <p>{@link #snapshot()} returns an unmodifiable copy of the list in constant time. The copy shares
+ * its storage with the list, which only copies the storage if it's about to overwrite moves the
+ * copy can see, that is, when a move is added after moves have been taken back.
+ */
+public final class MoveList {
+
+  /** The code of a move which isn't encoded, but kept in <code>moves</code>. */
+  private static final int NOT_ENCODED = -1;
+
+  /** The mask of the starting square index in a move code. */
+  private static final int FROM_MASK = 0x3f;
+
+  /** The offset of the ending square index in a move code. */
+  private static final int TO_SHIFT = 6;
+
+  /** The bit set in the code of a move made by the black player. */
+  private static final int BLACK_BIT = 1 << 12;
+
+  /** The bit set in the code of an en-passant move. */
+  private static final int EN_PASSANT_BIT = 1 << 13;
+
+  /** The bit set in the code of a short castling move. */
+  private static final int SHORT_CASTLING_BIT = 1 << 14;
+
+  /** The bit set in the code of a long castling move. */
+  private static final int LONG_CASTLING_BIT = 1 << 15;
+
+  /** The offset of the captured piece's index in <code>PIECES</code> in a move code. */
+  private static final int CAPTURED_SHIFT = 16;
+
+  /** The offset of the promotion target's index in <code>PIECES</code> in a move code. */
+  private static final int PROMOTION_SHIFT = 20;
+
+  /** The offset of the double pawn push file, plus one, in a move code. */
+  private static final int DOUBLE_PAWN_PUSH_SHIFT = 24;
+
+  /** The pieces which may be encoded; the index of a piece (0 for none) is what we encode. */
+  private static final ChessPiece[] PIECES = {
+    null,
+    ChessPiece.WHITE_PAWN,
+    ChessPiece.WHITE_KNIGHT,
+    ChessPiece.WHITE_BISHOP,
+    ChessPiece.WHITE_ROOK,
+    ChessPiece.WHITE_QUEEN,
+    ChessPiece.WHITE_KING,
+    ChessPiece.BLACK_PAWN,
+    ChessPiece.BLACK_KNIGHT,
+    ChessPiece.BLACK_BISHOP,
+    ChessPiece.BLACK_ROOK,
+    ChessPiece.BLACK_QUEEN,
+    ChessPiece.BLACK_KING
+  };
+
+  /** The codes of the moves, or <code>NOT_ENCODED</code> for moves kept in <code>moves</code>. */
+  private int[] codes;
+
+  /** The interned string representations of the encoded moves. */
+  private String[] strings;
+
+  /** The moves which couldn't be encoded, or <code>null</code> if there have been none. */
+  private Move[] moves;
+
+  /** The amount of moves in the list. */
+  private int size;
+
+  /** Whether this list is a snapshot, and thus can't be modified. */
+  private final boolean isSnapshot;
+
+  /**
+   * The amount of moves visible to snapshots sharing our storage. Moves at lower indices may not be
+   * overwritten without copying the storage first.
+   */
+  private int sharedSize = 0;
+
+  /** Creates a new, empty <code>MoveList</code>. */
+  public MoveList() {
+    this.codes = new int[64];
+    this.strings = new String[64];
+    this.moves = null;
+    this.size = 0;
+    this.isSnapshot = false;
+  }
+
+  /** Creates a snapshot of the specified list. */
+  private MoveList(MoveList list) {
+    this.codes = list.codes;
+    this.strings = list.strings;
+    this.moves = list.moves;
+    this.size = list.size;
+    this.isSnapshot = true;
+  }
+
+  /** Returns the index of the specified piece in <code>PIECES</code>, or -1 if it isn't there. */
+  private static int pieceIndex(ChessPiece piece) {
+    for (int i = 0; i < PIECES.length; i++) if (PIECES[i] == piece) return i;
+
+    return -1;
+  }
+
+  /**
+   * Returns the code of the specified move, or <code>NOT_ENCODED</code> if it can't be encoded
+   * without losing information.
+   */
+  private static int encode(Move move) {
+    if (move.getClass() != ChessMove.class) return NOT_ENCODED;
+
+    ChessMove chessMove = (ChessMove) move;
+    Square from = chessMove.getStartingSquare();
+    Square to = chessMove.getEndingSquare();
+    if (!Square.isValid(from.getFile(), from.getRank())
+        || !Square.isValid(to.getFile(), to.getRank())) return NOT_ENCODED;
+
+    int captured = pieceIndex(chessMove.getCapturedPiece());
+    int promotion = pieceIndex(chessMove.getPromotionTarget());
+    if ((captured == -1) || (promotion == -1)) return NOT_ENCODED;
+
+    int code = from.getIndex() | (to.getIndex() << TO_SHIFT);
+    if (chessMove.getPlayer().isBlack()) code |= BLACK_BIT;
+    if (chessMove.isEnPassant()) code |= EN_PASSANT_BIT;
+    if (chessMove.isShortCastling()) code |= SHORT_CASTLING_BIT;
+    if (chessMove.isLongCastling()) code |= LONG_CASTLING_BIT;
+    code |= captured << CAPTURED_SHIFT;
+    code |= promotion << PROMOTION_SHIFT;
+    code |= (chessMove.getDoublePawnPushFile() + 1) << DOUBLE_PAWN_PUSH_SHIFT;
+
+    return code;
+  }
+
+  /** Recreates the move with the specified code and string representation. */
+  private static ChessMove decode(int code, String string) {
+    return new ChessMove(
+        Square.getInstance(code & FROM_MASK),
+        Square.getInstance((code >> TO_SHIFT) & FROM_MASK),
+        (code & BLACK_BIT) == 0 ? Player.WHITE_PLAYER : Player.BLACK_PLAYER,
+        (code & EN_PASSANT_BIT) != 0,
+        (code & SHORT_CASTLING_BIT) != 0,
+        (code & LONG_CASTLING_BIT) != 0,
+        PIECES[(code >> CAPTURED_SHIFT) & 0xf],
+        ((code >> DOUBLE_PAWN_PUSH_SHIFT) & 0xf) - 1,
+        PIECES[(code >> PROMOTION_SHIFT) & 0xf],
+        string);
+  }
+
+  /** Throws an <code>IllegalStateException</code> if this list is a snapshot. */
+  private void checkModifiable() {
+    if (isSnapshot) throw new IllegalStateException("A MoveList snapshot may not be modified");
+  }
+
+  /**
+   * Makes sure the storage has room for the specified amount of moves and that the move at index
+   * <code>size</code> may be written, copying the storage if needed.
+   */
+  private void prepareWrite(int capacity) {
+    if ((capacity <= codes.length) && (size >= sharedSize)) return;
+
+    int newLength = codes.length;
+    while (newLength < capacity) newLength *= 2;
+
+    int[] newCodes = new int[newLength];
+    String[] newStrings = new String[newLength];
+    System.arraycopy(codes, 0, newCodes, 0, size);
+    System.arraycopy(strings, 0, newStrings, 0, size);
+    if (moves != null) {
+      Move[] newMoves = new Move[newLength];
+      System.arraycopy(moves, 0, newMoves, 0, size);
+      moves = newMoves;
+    }
+
+    codes = newCodes;
+    strings = newStrings;
+    sharedSize = 0;
+  }
+
+  /** Appends the specified move. */
+  public void add(Move move) {
+    if (move == null) throw new IllegalArgumentException("Null move");
+    checkModifiable();
+    prepareWrite(size + 1);
+
+    int code = encode(move);
+    if (code == NOT_ENCODED) {
+      if (moves == null) moves = new Move[codes.length];
+      moves[size] = move;
+      strings[size] = null;
+    } else {
+      if (moves != null) moves[size] = null;
+      String string = move.getStringRepresentation();
+      strings[size] = string == null ? null : string.intern();
+    }
+    codes[size] = code;
+
+    size++;
+  }
+
+  /** Removes moves from the end, leaving the specified amount. */
+  public void truncate(int newSize) {
+    checkModifiable();
+    if ((newSize < 0) || (newSize > size))
+      throw new IllegalArgumentException("Bad size: " + newSize);
+
+    // Snapshots may still be referencing the moves, in which case they are released when the
+    // storage is copied.
+    for (int i = Math.max(newSize, sharedSize); i < size; i++) {
+      strings[i] = null;
+      if (moves != null) moves[i] = null;
+    }
+
+    size = newSize;
+  }
+
+  /** Removes all the moves. */
+  public void clear() {
+    truncate(0);
+  }
+
+  /** Returns the amount of moves in the list. */
+  public int size() {
+    return size;
+  }
+
+  /** Returns the move at the specified index. */
+  public Move get(int index) {
+    if ((index < 0) || (index >= size)) throw new IndexOutOfBoundsException("Bad index: " + index);
+
+    int code = codes[index];
+    return code == NOT_ENCODED ? moves[index] : decode(code, strings[index]);
+  }
+
+  /** Returns the last move, or <code>null</code> if the list is empty. */
+  public Move getLast() {
+    return size == 0 ? null : get(size - 1);
+  }
+
+  /**
+   * Returns the player who made the move at the specified index. Unlike {@link #get(int)}, this
+   * doesn't create a move object.
+   */
+  public Player getPlayer(int index) {
+    if ((index < 0) || (index >= size)) throw new IndexOutOfBoundsException("Bad index: " + index);
+
+    int code = codes[index];
+    if (code == NOT_ENCODED) return moves[index].getPlayer();
+    return (code & BLACK_BIT) == 0 ? Player.WHITE_PLAYER : Player.BLACK_PLAYER;
+  }
+
+  /**
+   * Returns the string representation of the move at the specified index, as returned by its <code>
+   * toString</code> method. Unlike {@link #get(int)}, this usually doesn't create any objects.
+   */
+  public String getString(int index) {
+    if ((index < 0) || (index >= size)) throw new IndexOutOfBoundsException("Bad index: " + index);
+
+    int code = codes[index];
+    if ((code == NOT_ENCODED) || (strings[index] == null)) return get(index).toString();
+    return strings[index];
+  }
+
+  /** Returns an unmodifiable copy of this list, sharing its storage. */
+  public MoveList snapshot() {
+    if (isSnapshot) return this;
+
+    sharedSize = Math.max(sharedSize, size);
+    return new MoveList(this);
+  }
+
+  /** Returns whether this list is a snapshot, and thus can't be modified. */
+  public boolean isSnapshot() {
+    return isSnapshot;
+  }
+}
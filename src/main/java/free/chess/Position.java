@@ -18,10 +18,10 @@ package free.chess;
 
 import free.chess.event.MoveEvent;
 import free.chess.event.MoveListener;
+import free.chess.event.PositionChangeEvent;
 import free.util.Utilities;
 import java.util.Collection;
 import java.util.StringTokenizer;
-import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 import javax.swing.event.EventListenerList;
 
@@ -30,14 +30,57 @@ import javax.swing.event.EventListenerList;
  * variant independent, but it does make some assumptions, such as the board being a 8x8 container
  * of pieces, there being two players and other things common to most chess variants.
  * <B>IMPORTANT:</B> This class is not thread safe.
+ *
+ * <p>Alongside the pieces themselves, the position keeps 64-bit occupancy masks, where the square
+ * with file <code>f</code> and rank <code>r</code> is the bit <code>r*8+f</code> (a1 is bit 0, h8
+ * is bit 63). Masks of the squares occupied by each player are always kept. If the wild variant
+ * implements {@link BitboardVariant}, a mask per type and color of {@link ChessPiece} is kept as
+ * well, which makes copying and comparing positions a matter of a few long assignments and lets
+ * attack and occupancy queries be answered by bit operations (see {@link Bitboards}).
  */
 public final class Position {
 
   /** The WildVariant of this Position. */
   private final WildVariant variant;
 
-  /** A matrix to keep references to the pieces. */
-  private final Piece[][] pieces = new Piece[8][8];
+  /** The pieces, indexed by <code>rank*8+file</code>. */
+  private final Piece[] board = new Piece[64];
+
+  /** Whether we keep the per-piece masks, that is, whether our variant is a BitboardVariant. */
+  private final boolean keepPieceMasks;
+
+  /**
+   * The masks of the squares occupied by each ChessPiece, indexed by {@link #getMaskIndex(int,
+   * int)}. Only kept if <code>keepPieceMasks</code> is set.
+   */
+  private final long[] pieceMasks = new long[12];
+
+  /** The mask of the squares occupied by white pieces. */
+  private long whiteMask;
+
+  /** The mask of the squares occupied by black pieces. */
+  private long blackMask;
+
+  /**
+   * The amount of pieces on the board which aren't represented in <code>pieceMasks</code>. Only
+   * kept if <code>keepPieceMasks</code> is set.
+   */
+  private int foreignPieceCount;
+
+  /**
+   * The total approximate material value (see {@link
+   * WildVariant#getApproximateMaterialValue(Piece)}) of the white pieces on the board.
+   */
+  private int whiteMaterial;
+
+  /** The total approximate material value of the black pieces on the board. */
+  private int blackMaterial;
+
+  /**
+   * The Zobrist key of the position, the XOR of the {@link Zobrist} keys of all the pieces on their
+   * squares and of {@link Zobrist#BLACK_TO_MOVE} if it's black's turn.
+   */
+  private long zobristKey;
 
   /** The Modifier of this Position. */
   private final Modifier modifier;
@@ -48,11 +91,20 @@ public final class Position {
   /** A FEN representation of the position. */
   private String positionFEN;
 
+  /** The mask of the squares whose pieces changed since the last change event was fired. */
+  private long changedSquares;
+
+  /** Whether the current player changed since the last change event was fired. */
+  private boolean currentPlayerChanged;
+
   /**
-   * Only one ChangeEvent is needed per model instance since the event's only (read-only) state is
-   * the source property. The source of events generated here is always "this".
+   * The last snapshot taken of the position by {@link #getSnapshot()}, or <code>null</code> if
+   * none. Its ranks are shared by the next snapshot, where possible.
    */
-  protected transient ChangeEvent changeEvent = null;
+  private PositionSnapshot snapshot;
+
+  /** The mask of the squares whose pieces changed since <code>snapshot</code> was taken. */
+  private long snapshotChangedSquares;
 
   /** The listeners waiting for model changes. */
   protected EventListenerList listenerList = new EventListenerList();
@@ -69,6 +121,7 @@ public final class Position {
   /** Creates a new Position with the given WildVariant. */
   public Position(WildVariant variant) {
     this.variant = variant;
+    this.keepPieceMasks = variant instanceof BitboardVariant;
     this.modifier = new Modifier(this);
     init();
   }
@@ -76,6 +129,7 @@ public final class Position {
   /** Creates a new Position which is exactly like the given Position. */
   public Position(Position source) {
     this.variant = source.variant;
+    this.keepPieceMasks = source.keepPieceMasks;
     this.modifier = new Modifier(this);
     copyFrom(source);
   }
@@ -96,7 +150,7 @@ public final class Position {
 
   /** Returns the piece at the square with the given file and rank. */
   public Piece getPieceAt(int file, int rank) {
-    return pieces[file][rank];
+    return board[rank * 8 + file];
   }
 
   /**
@@ -128,6 +182,150 @@ public final class Position {
     setPieceAt(piece, Square.parseSquare(square));
   }
 
+  /**
+   * Returns whether the per-piece masks of this position are available, that is, whether its wild
+   * variant implements {@link BitboardVariant} and all the pieces on the board are ChessPieces.
+   * When they aren't, {@link #getPieceMask(Piece)} still works, but scans the board.
+   */
+  public boolean hasPieceMasks() {
+    return keepPieceMasks && (foreignPieceCount == 0);
+  }
+
+  /**
+   * Returns the Zobrist key of this position, a 64-bit hash of the pieces on the board and the
+   * player to move, which is kept up to date as the position changes. Equal positions (of the same
+   * variant) have equal keys, and positions with different keys are never equal.
+   */
+  public long getZobristKey() {
+    return zobristKey;
+  }
+
+  /** Returns the mask of the occupied squares. */
+  public long getOccupiedMask() {
+    return whiteMask | blackMask;
+  }
+
+  /** Returns the mask of the squares occupied by the pieces of the specified player. */
+  public long getPlayerMask(Player player) {
+    return player.isWhite() ? whiteMask : blackMask;
+  }
+
+  /** Returns the mask of the squares occupied by pieces of the specified color. */
+  public long getColorMask(int color) {
+    return color == Piece.WHITE ? whiteMask : blackMask;
+  }
+
+  /** Returns the mask of the squares occupied by pieces equal to the specified one. */
+  public long getPieceMask(Piece piece) {
+    if (hasPieceMasks() && isMaskedPiece(piece))
+      return pieceMasks[getMaskIndex(piece.getColor(), piece.getType())];
+
+    long mask = 0;
+    long occupied = whiteMask | blackMask;
+    while (occupied != 0) {
+      int index = Long.numberOfTrailingZeros(occupied);
+      occupied &= occupied - 1;
+      if (piece.equals(board[index])) mask |= 1L << index;
+    }
+
+    return mask;
+  }
+
+  /**
+   * Returns the mask of the squares occupied by ChessPieces of the specified color and type. This
+   * is the same as <code>getPieceMask(new ChessPiece(color, type))</code>, without creating the
+   * piece.
+   */
+  public long getPieceMask(int color, int type) {
+    if (hasPieceMasks()) return pieceMasks[getMaskIndex(color, type)];
+
+    return getPieceMask(MASKED_PIECES[getMaskIndex(color, type)]);
+  }
+
+  /**
+   * Returns whether the specified piece is one whose squares are kept in <code>pieceMasks</code>.
+   */
+  private static boolean isMaskedPiece(Piece piece) {
+    if (piece.getClass() != ChessPiece.class) return false;
+
+    int type = piece.getType();
+    return (type >= ChessPiece.PAWN) && (type <= ChessPiece.KING);
+  }
+
+  /** The pieces whose squares are kept in <code>pieceMasks</code>, in the order of the masks. */
+  private static final ChessPiece[] MASKED_PIECES = {
+    ChessPiece.WHITE_PAWN,
+    ChessPiece.WHITE_KNIGHT,
+    ChessPiece.WHITE_BISHOP,
+    ChessPiece.WHITE_ROOK,
+    ChessPiece.WHITE_QUEEN,
+    ChessPiece.WHITE_KING,
+    ChessPiece.BLACK_PAWN,
+    ChessPiece.BLACK_KNIGHT,
+    ChessPiece.BLACK_BISHOP,
+    ChessPiece.BLACK_ROOK,
+    ChessPiece.BLACK_QUEEN,
+    ChessPiece.BLACK_KING
+  };
+
+  /** Returns the index in <code>pieceMasks</code> of the ChessPiece of the given color and type. */
+  private static int getMaskIndex(int color, int type) {
+    return (color == Piece.WHITE ? 0 : 6) + type - 1;
+  }
+
+  /**
+   * Returns the amount of ChessPieces of the specified color and type on the board. Takes constant
+   * time if the piece masks are available (see {@link #hasPieceMasks()}).
+   */
+  public int getPieceCount(int color, int type) {
+    return Long.bitCount(getPieceMask(color, type));
+  }
+
+  /** Returns the amount of pieces of the specified player on the board. */
+  public int getPieceCount(Player player) {
+    return Long.bitCount(getPlayerMask(player));
+  }
+
+  /**
+   * Returns the squares of the ChessPieces of the specified color and type, as a piece list which
+   * can be iterated without allocation (see {@link SquareSet}).
+   */
+  public SquareSet getPieceSquares(int color, int type) {
+    return SquareSet.valueOf(getPieceMask(color, type));
+  }
+
+  /**
+   * Returns the square of the king of the specified player, or <code>null</code> if the player has
+   * no ChessPiece king on the board. If there is more than one (in variants where pawns may promote
+   * to a king), the one on the square with the lowest index is returned.
+   */
+  public Square getKingSquare(Player player) {
+    long kings = getPieceMask(player.getPieceColor(), ChessPiece.KING);
+    return kings == 0 ? null : Square.getInstance(Long.numberOfTrailingZeros(kings));
+  }
+
+  /**
+   * Returns whether the king of the specified player is attacked by a ChessPiece of the opponent,
+   * according to the moves of the pieces in chess. Returns <code>false</code> if the player has no
+   * king.
+   */
+  public boolean isKingAttacked(Player player) {
+    Square king = getKingSquare(player);
+    if (king == null) return false;
+
+    return Bitboards.isAttacked(this, king.getIndex(), -player.getPieceColor());
+  }
+
+  /**
+   * Returns the total approximate material value (see {@link
+   * WildVariant#getApproximateMaterialValue(Piece)}) of the pieces of the specified player. The
+   * value is kept up to date as pieces are put on the board and removed, so this method takes
+   * constant time.
+   */
+  public int getMaterial(Player player) {
+    return player.isWhite() ? whiteMaterial : blackMaterial;
+  }
+
   /** Returns the player whose turn it is in this position, the "current" player. */
   public Player getCurrentPlayer() {
     return currentPlayer;
@@ -160,7 +358,7 @@ public final class Position {
     try {
       for (int rank = 7; rank >= 0; rank--) {
         for (int file = 0; file < 8; file++) {
-          setPieceAtImpl(variant.parsePiece("" + pos.charAt(i++)), Square.getInstance(file, rank));
+          setPieceAtImpl(variant.parsePiece("" + pos.charAt(i++)), rank * 8 + file);
         }
       }
     } catch (IllegalArgumentException e) {
@@ -181,7 +379,7 @@ public final class Position {
     StringBuffer buf = new StringBuffer(64);
     for (int rank = 7; rank >= 0; rank--)
       for (int file = 0; file < 8; file++) {
-        Piece piece = getPieceAt(Square.getInstance(file, rank));
+        Piece piece = board[rank * 8 + file];
         if (piece == null) buf.append("-");
         else buf.append(piece.toShortColorString());
       }
@@ -218,12 +416,12 @@ public final class Position {
         if (Character.isDigit(c)) {
           int emptyFiles = Character.digit(c, 10);
           while (emptyFiles-- > 0) {
-            setPieceAtImpl(null, Square.getInstance(file, rank));
+            setPieceAtImpl(null, rank * 8 + file);
             file++;
           }
         } else {
           try {
-            setPieceAtImpl(variant.parsePiece(String.valueOf(c)), Square.getInstance(file, rank));
+            setPieceAtImpl(variant.parsePiece(String.valueOf(c)), rank * 8 + file);
             file++;
           } catch (IllegalArgumentException e) {
             throw new PositionFormatException(e);
@@ -263,8 +461,16 @@ public final class Position {
    * pieces.
    */
   public void clear() {
-    for (int file = 0; file < 8; file++)
-      for (int rank = 0; rank < 8; rank++) setPieceAtImpl(null, Square.getInstance(file, rank));
+    changedSquares |= whiteMask | blackMask;
+    snapshotChangedSquares |= whiteMask | blackMask;
+    for (int i = 0; i < board.length; i++) board[i] = null;
+    for (int i = 0; i < pieceMasks.length; i++) pieceMasks[i] = 0;
+    whiteMask = 0;
+    blackMask = 0;
+    foreignPieceCount = 0;
+    whiteMaterial = 0;
+    blackMaterial = 0;
+    zobristKey = isBlackToMove() ? Zobrist.BLACK_TO_MOVE : 0;
     setCurrentPlayerImpl(Player.WHITE_PLAYER);
 
     fireStateChanged();
@@ -294,19 +500,91 @@ public final class Position {
     if (!variant.equals(position.variant))
       throw new IllegalArgumentException("The WildVariants of the positions don't match");
 
-    for (int file = 0; file < pieces.length; file++) {
-      for (int rank = 0; rank < pieces[file].length; rank++) {
-        pieces[file][rank] = position.pieces[file][rank];
-      }
+    long changed = 0;
+    if (hasPieceMasks() && position.hasPieceMasks()) {
+      for (int i = 0; i < pieceMasks.length; i++) changed |= pieceMasks[i] ^ position.pieceMasks[i];
+    } else {
+      for (int i = 0; i < board.length; i++)
+        if (!Utilities.areEqual(board[i], position.board[i])) changed |= 1L << i;
     }
+    changedSquares |= changed;
+    snapshotChangedSquares |= changed;
+
+    System.arraycopy(position.board, 0, board, 0, board.length);
+    System.arraycopy(position.pieceMasks, 0, pieceMasks, 0, pieceMasks.length);
+    whiteMask = position.whiteMask;
+    blackMask = position.blackMask;
+    foreignPieceCount = position.foreignPieceCount;
+    whiteMaterial = position.whiteMaterial;
+    blackMaterial = position.blackMaterial;
 
     setCurrentPlayerImpl(position.getCurrentPlayer());
+    zobristKey = position.zobristKey;
 
     this.positionFEN = position.positionFEN;
 
+    if (position.isSnapshotValid()) {
+      snapshot = position.snapshot;
+      snapshotChangedSquares = 0;
+    }
+
     fireStateChanged();
   }
 
+  /**
+   * Sets this position to the position in the specified snapshot. Only the squares whose pieces
+   * differ are modified. The WildVariants of the position and the snapshot must match.
+   *
+   * @param snapshot The snapshot to copy.
+   */
+  public void copyFrom(PositionSnapshot snapshot) {
+    if (!variant.equals(snapshot.getVariant()))
+      throw new IllegalArgumentException(
+          "The WildVariants of the position and snapshot don't match");
+
+    for (int i = 0; i < board.length; i++) {
+      Piece piece = snapshot.getPieceAt(i);
+      if (!Utilities.areEqual(board[i], piece)) setPieceAtImpl(piece, i);
+    }
+    setCurrentPlayerImpl(snapshot.getCurrentPlayer());
+
+    this.positionFEN = snapshot.getFEN();
+    this.snapshot = snapshot;
+    this.snapshotChangedSquares = 0;
+
+    fireStateChanged();
+  }
+
+  /**
+   * Returns an immutable snapshot of this position. Taking a snapshot of a position which hasn't
+   * changed since the last one was taken returns the same snapshot, and otherwise copies only the
+   * ranks which changed, sharing the rest with the previous snapshot.
+   */
+  public PositionSnapshot getSnapshot() {
+    if (!isSnapshotValid()) {
+      snapshot =
+          new PositionSnapshot(
+              snapshot,
+              snapshotChangedSquares,
+              variant,
+              board,
+              currentPlayer,
+              zobristKey,
+              positionFEN);
+      snapshotChangedSquares = 0;
+    }
+
+    return snapshot;
+  }
+
+  /** Returns whether <code>snapshot</code> is a snapshot of the current state of the position. */
+  private boolean isSnapshotValid() {
+    return (snapshot != null)
+        && (snapshotChangedSquares == 0)
+        && (snapshot.getCurrentPlayer() == currentPlayer)
+        && (snapshot.getFEN() == positionFEN);
+  }
+
   /**
    * Puts the given piece at the given square, replacing the piece that was there before. The
    * difference between this and the setPieceAt(Piece,Square) method is that this method does not
@@ -318,8 +596,57 @@ public final class Position {
    * @see #setPieceAt(Piece, Square);
    */
   private void setPieceAtImpl(Piece piece, Square square) {
-    pieces[square.getFile()][square.getRank()] = piece;
+    setPieceAtImpl(piece, square.getRank() * 8 + square.getFile());
+  }
+
+  /**
+   * Puts the given piece at the square with the given index (<code>rank*8+file</code>), updating
+   * the masks, Zobrist key and material, without firing a ChangeEvent.
+   */
+  private void setPieceAtImpl(Piece piece, int index) {
+    Piece oldPiece = board[index];
+    board[index] = piece;
     positionFEN = null;
+
+    long bit = 1L << index;
+    if (!Utilities.areEqual(oldPiece, piece)) {
+      changedSquares |= bit;
+      snapshotChangedSquares |= bit;
+    }
+    if (oldPiece != null) {
+      zobristKey ^= Zobrist.getPieceKey(oldPiece, index);
+
+      if (oldPiece.isWhite()) {
+        whiteMask &= ~bit;
+        whiteMaterial -= variant.getApproximateMaterialValue(oldPiece);
+      } else {
+        blackMask &= ~bit;
+        blackMaterial -= variant.getApproximateMaterialValue(oldPiece);
+      }
+
+      if (keepPieceMasks) {
+        if (isMaskedPiece(oldPiece))
+          pieceMasks[getMaskIndex(oldPiece.getColor(), oldPiece.getType())] &= ~bit;
+        else foreignPieceCount--;
+      }
+    }
+    if (piece != null) {
+      zobristKey ^= Zobrist.getPieceKey(piece, index);
+
+      if (piece.isWhite()) {
+        whiteMask |= bit;
+        whiteMaterial += variant.getApproximateMaterialValue(piece);
+      } else {
+        blackMask |= bit;
+        blackMaterial += variant.getApproximateMaterialValue(piece);
+      }
+
+      if (keepPieceMasks) {
+        if (isMaskedPiece(piece))
+          pieceMasks[getMaskIndex(piece.getColor(), piece.getType())] |= bit;
+        else foreignPieceCount++;
+      }
+    }
   }
 
   /**
@@ -330,10 +657,21 @@ public final class Position {
    * @param player The player whose turn it is next.
    */
   private void setCurrentPlayerImpl(Player player) {
+    if (isBlackToMove()) zobristKey ^= Zobrist.BLACK_TO_MOVE;
+    if (player != currentPlayer) currentPlayerChanged = true;
     this.currentPlayer = player;
+    if (isBlackToMove()) zobristKey ^= Zobrist.BLACK_TO_MOVE;
     positionFEN = null;
   }
 
+  /**
+   * Returns whether it's black's turn to move. Unlike <code>getCurrentPlayer().isBlack()</code>,
+   * works before the current player is first set.
+   */
+  private boolean isBlackToMove() {
+    return (currentPlayer != null) && currentPlayer.isBlack();
+  }
+
   /**
    * Adds a ChangeListener. The change listeners are run each time the Position changes.
    *
@@ -354,14 +692,23 @@ public final class Position {
     listenerList.remove(ChangeListener.class, l);
   }
 
-  /** Run each ChangeListeners stateChanged() method. */
+  /**
+   * Runs each ChangeListeners stateChanged() method with a {@link PositionChangeEvent} carrying the
+   * squares changed since the previous event.
+   */
   protected void fireStateChanged() {
+    // Reset before notifying, in case a listener changes the position.
+    long changed = changedSquares;
+    boolean playerChanged = currentPlayerChanged;
+    changedSquares = 0;
+    currentPlayerChanged = false;
+
+    PositionChangeEvent changeEvent = null;
     Object[] listeners = listenerList.getListenerList();
     for (int i = listeners.length - 2; i >= 0; i -= 2) {
       if (listeners[i] == ChangeListener.class) {
-        if (changeEvent == null) {
-          changeEvent = new ChangeEvent(this);
-        }
+        if (changeEvent == null)
+          changeEvent = new PositionChangeEvent(this, SquareSet.valueOf(changed), playerChanged);
         ((ChangeListener) listeners[i + 1]).stateChanged(changeEvent);
       }
     }
@@ -413,6 +760,15 @@ public final class Position {
     return variant.getTargetSquares(this, square);
   }
 
+  /**
+   * Returns the same squares as {@link #getTargetSquares(Square)}, as a {@link SquareSet}.
+   *
+   * @see WildVariant#getTargetSquareSet(Position, Square square)
+   */
+  public SquareSet getTargetSquareSet(Square square) {
+    return variant.getTargetSquareSet(this, square);
+  }
+
   /** Returns a textual representation of the board. */
   @Override
   public String toString() {
@@ -424,11 +780,20 @@ public final class Position {
   public boolean equals(Position pos) {
     if (!variant.equals(pos.variant)) return false;
 
+    if (zobristKey != pos.zobristKey) return false;
+
     if (!currentPlayer.equals(pos.currentPlayer)) return false;
 
-    for (int file = 0; file < pieces.length; file++)
-      for (int rank = 0; rank < pieces[file].length; rank++)
-        if (!Utilities.areEqual(pieces[file][rank], pos.pieces[file][rank])) return false;
+    if ((whiteMask != pos.whiteMask) || (blackMask != pos.blackMask)) return false;
+
+    if (hasPieceMasks() && pos.hasPieceMasks()) {
+      for (int i = 0; i < pieceMasks.length; i++)
+        if (pieceMasks[i] != pos.pieceMasks[i]) return false;
+      return true;
+    }
+
+    for (int i = 0; i < board.length; i++)
+      if (!Utilities.areEqual(board[i], pos.board[i])) return false;
 
     return true;
   }
@@ -444,20 +809,10 @@ public final class Position {
     return equals((Position) obj);
   }
 
-  /** Returns the hashcode of this position. */
+  /** Returns the hashcode of this position, derived from its Zobrist key. */
   @Override
   public int hashCode() {
-    int result = 17;
-    result = 37 * result + variant.hashCode();
-    result = 37 * result + currentPlayer.hashCode();
-    for (int file = 0; file < pieces.length; file++)
-      for (int rank = 0; rank < pieces[file].length; rank++) {
-        Piece piece = pieces[file][rank];
-        int c = (piece == null) ? 0 : piece.hashCode();
-        result = 37 * result + c;
-      }
-
-    return result;
+    return 37 * variant.hashCode() + (int) (zobristKey ^ (zobristKey >>> 32));
   }
 
   /**
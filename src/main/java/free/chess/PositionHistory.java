@@ -0,0 +1,91 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * <p>The chess framework library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * <p>The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess;
+
+/**
+ * Keeps {@link PositionSnapshot}s of the positions which occurred in a game, in order, so that the
+ * position at any ply can be retrieved in constant time instead of by replaying the moves from the
+ * initial position. Positions are added as the game progresses and removed from the end when moves
+ * are taken back. Since consecutive snapshots share the ranks a move doesn't change, the history
+ * takes little memory even for long games.
+ */
+public final class PositionHistory {
+
+  /** The snapshots of the positions in the order they occurred, indexed by ply. */
+  private PositionSnapshot[] snapshots = new PositionSnapshot[64];
+
+  /** The amount of positions in the history. */
+  private int size = 0;
+
+  /** Creates a new, empty <code>PositionHistory</code>. */
+  public PositionHistory() {}
+
+  /** Adds a snapshot of the specified position. */
+  public void add(Position position) {
+    add(position.getSnapshot());
+  }
+
+  /** Adds the specified snapshot. */
+  public void add(PositionSnapshot snapshot) {
+    if (snapshot == null) throw new IllegalArgumentException("Null snapshot");
+
+    if (size == snapshots.length) {
+      PositionSnapshot[] newSnapshots = new PositionSnapshot[snapshots.length * 2];
+      System.arraycopy(snapshots, 0, newSnapshots, 0, size);
+      snapshots = newSnapshots;
+    }
+
+    snapshots[size++] = snapshot;
+  }
+
+  /** Removes the last position. */
+  public void removeLast() {
+    if (size == 0) throw new IllegalStateException("The history is empty");
+
+    snapshots[--size] = null;
+  }
+
+  /** Removes positions from the end, leaving the specified amount. */
+  public void truncate(int newSize) {
+    if ((newSize < 0) || (newSize > size))
+      throw new IllegalArgumentException("Bad size: " + newSize);
+
+    while (size > newSize) snapshots[--size] = null;
+  }
+
+  /** Removes all the positions. */
+  public void clear() {
+    truncate(0);
+  }
+
+  /** Returns the amount of positions in the history. */
+  public int size() {
+    return size;
+  }
+
+  /** Returns the snapshot of the position at the specified ply (index). */
+  public PositionSnapshot get(int ply) {
+    if ((ply < 0) || (ply >= size)) throw new IndexOutOfBoundsException("Bad ply: " + ply);
+
+    return snapshots[ply];
+  }
+
+  /** Returns the snapshot of the last position, or <code>null</code> if the history is empty. */
+  public PositionSnapshot getLast() {
+    return size == 0 ? null : snapshots[size - 1];
+  }
+}
@@ -0,0 +1,171 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * <p>The chess framework library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * <p>The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess;
+
+import free.util.Utilities;
+
+/**
+ * An immutable snapshot of a {@link Position}: the pieces on the board, the player to move and the
+ * FEN the position was set from, if any. Snapshots are obtained via {@link Position#getSnapshot()}
+ * and a position may be set back to a snapshot via {@link Position#copyFrom(PositionSnapshot)}.
+ *
+ * <p>The board is kept as eight rank arrays which are never modified once the snapshot is created,
+ * so a snapshot taken after a move shares the ranks the move didn't touch with the snapshot taken
+ * before it. Keeping a snapshot for every ply of a game thus costs little more than the moves
+ * themselves, and passing a snapshot around costs nothing at all. Since snapshots are immutable,
+ * they may be freely shared between threads.
+ */
+public final class PositionSnapshot {
+
+  /** The WildVariant of the position. */
+  private final WildVariant variant;
+
+  /** The ranks of the board, each holding its pieces indexed by file. Never modified. */
+  private final Piece[][] ranks;
+
+  /** The player to move. */
+  private final Player currentPlayer;
+
+  /** The Zobrist key of the position. */
+  private final long zobristKey;
+
+  /** The FEN the position was set from, or <code>null</code> if none. */
+  private final String fen;
+
+  /**
+   * Creates a new <code>PositionSnapshot</code> of a position with the specified properties. The
+   * ranks of the specified base snapshot (if any) are shared, except those containing squares in
+   * the specified mask of changed squares, which are copied from the specified board.
+   */
+  PositionSnapshot(
+      PositionSnapshot base,
+      long changedSquares,
+      WildVariant variant,
+      Piece[] board,
+      Player currentPlayer,
+      long zobristKey,
+      String fen) {
+    this.variant = variant;
+    this.ranks = new Piece[8][];
+    this.currentPlayer = currentPlayer;
+    this.zobristKey = zobristKey;
+    this.fen = fen;
+
+    for (int rank = 0; rank < 8; rank++) {
+      if ((base != null) && (((changedSquares >>> (rank * 8)) & 0xff) == 0))
+        ranks[rank] = base.ranks[rank];
+      else {
+        Piece[] pieces = new Piece[8];
+        System.arraycopy(board, rank * 8, pieces, 0, 8);
+        ranks[rank] = pieces;
+      }
+    }
+  }
+
+  /** Returns the WildVariant of the position. */
+  public WildVariant getVariant() {
+    return variant;
+  }
+
+  /** Returns the piece at the square with the specified file and rank. */
+  public Piece getPieceAt(int file, int rank) {
+    return ranks[rank][file];
+  }
+
+  /** Returns the piece at the specified square. */
+  public Piece getPieceAt(Square square) {
+    return ranks[square.getRank()][square.getFile()];
+  }
+
+  /** Returns the piece at the square with the specified index (<code>rank*8+file</code>). */
+  Piece getPieceAt(int index) {
+    return ranks[index >> 3][index & 7];
+  }
+
+  /** Returns the player to move. */
+  public Player getCurrentPlayer() {
+    return currentPlayer;
+  }
+
+  /** Returns the Zobrist key of the position (see {@link Position#getZobristKey()}). */
+  public long getZobristKey() {
+    return zobristKey;
+  }
+
+  /**
+   * Returns the FEN the position was set from, or <code>null</code> if it wasn't set via {@link
+   * Position#setFEN(String)} (or was modified since).
+   */
+  public String getFEN() {
+    return fen;
+  }
+
+  /** Returns a new <code>Position</code> set to this snapshot. */
+  public Position toPosition() {
+    Position position = new Position(variant);
+    position.copyFrom(this);
+    return position;
+  }
+
+  /**
+   * Returns whether the specified snapshot is of the same position as this one. Only the pieces and
+   * the player to move are compared.
+   */
+  public boolean equals(PositionSnapshot snapshot) {
+    if (snapshot == this) return true;
+
+    if (!variant.equals(snapshot.variant)) return false;
+
+    if (zobristKey != snapshot.zobristKey) return false;
+
+    if (!currentPlayer.equals(snapshot.currentPlayer)) return false;
+
+    for (int rank = 0; rank < 8; rank++) {
+      Piece[] pieces = ranks[rank];
+      Piece[] otherPieces = snapshot.ranks[rank];
+      if (pieces == otherPieces) continue;
+
+      for (int file = 0; file < 8; file++)
+        if (!Utilities.areEqual(pieces[file], otherPieces[file])) return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * Returns whether the specified object is a <code>PositionSnapshot</code> of the same position as
+   * this one.
+   */
+  @Override
+  public boolean equals(Object obj) {
+    if (!(obj instanceof PositionSnapshot)) return false;
+
+    return equals((PositionSnapshot) obj);
+  }
+
+  /** Returns the hashcode of this snapshot, which is the same as that of its position. */
+  @Override
+  public int hashCode() {
+    return 37 * variant.hashCode() + (int) (zobristKey ^ (zobristKey >>> 32));
+  }
+
+  /** Returns a textual representation of this snapshot. */
+  @Override
+  public String toString() {
+    return "Snapshot of " + toPosition();
+  }
+}
@@ -0,0 +1,202 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * <p>The chess framework library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * <p>The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess;
+
+/**
+ * Keeps the Zobrist keys (see {@link Position#getZobristKey()}) of the positions which occurred in
+ * a game, in order, along with how many times each of them occurred. Positions are added as the
+ * game progresses and removed from the end when moves are taken back, and each operation takes
+ * constant time, so the table can be used to detect repetitions as they happen and to find the ply
+ * at which a position first occurred.
+ *
+ * <p>Positions added with {@link #add(Position)} are identified by the pieces on the board and the
+ * player to move only, as that is all a <code>Position</code> holds. To also tell apart positions
+ * with different castling and en passant rights, as the rules on repetition require, add their keys
+ * combined with {@link MoveGenerator#getRightsKey()} instead.
+ */
+public final class RepetitionTable {
+
+  /** The keys of the positions in the order they occurred, indexed by ply. */
+  private long[] history = new long[64];
+
+  /** The amount of positions in the table. */
+  private int size = 0;
+
+  /** The hash table of distinct keys, using linear probing. Its length is a power of 2. */
+  private long[] slotKeys = new long[128];
+
+  /** The amount of times the key in the corresponding slot occurred; 0 for an empty slot. */
+  private int[] slotCounts = new int[128];
+
+  /** The ply at which the key in the corresponding slot first occurred. */
+  private int[] slotFirstPlies = new int[128];
+
+  /** The amount of used slots. */
+  private int usedSlots = 0;
+
+  /** Creates a new, empty <code>RepetitionTable</code>. */
+  public RepetitionTable() {}
+
+  /** Adds the specified position, returning the amount of times it has now occurred. */
+  public int add(Position position) {
+    return add(position.getZobristKey());
+  }
+
+  /**
+   * Adds the position with the specified key, returning the amount of times it has now occurred.
+   */
+  public int add(long key) {
+    if (size == history.length) {
+      long[] newHistory = new long[history.length * 2];
+      System.arraycopy(history, 0, newHistory, 0, size);
+      history = newHistory;
+    }
+    if ((usedSlots + 1) * 2 > slotKeys.length) rehash(slotKeys.length * 2);
+
+    int slot = findSlot(key);
+    if (slotCounts[slot] == 0) {
+      slotKeys[slot] = key;
+      slotFirstPlies[slot] = size;
+      usedSlots++;
+    }
+    history[size++] = key;
+
+    return ++slotCounts[slot];
+  }
+
+  /** Removes the last position. */
+  public void removeLast() {
+    if (size == 0) throw new IllegalStateException("The table is empty");
+
+    int slot = findSlot(history[--size]);
+    if (--slotCounts[slot] == 0) deleteSlot(slot);
+  }
+
+  /** Removes positions from the end, leaving the specified amount. */
+  public void truncate(int newSize) {
+    if ((newSize < 0) || (newSize > size))
+      throw new IllegalArgumentException("Bad size: " + newSize);
+
+    while (size > newSize) removeLast();
+  }
+
+  /** Removes all the positions. */
+  public void clear() {
+    size = 0;
+    usedSlots = 0;
+    for (int i = 0; i < slotCounts.length; i++) slotCounts[i] = 0;
+  }
+
+  /** Returns the amount of positions in the table. */
+  public int size() {
+    return size;
+  }
+
+  /** Returns the key of the position at the specified ply (index). */
+  public long getKey(int ply) {
+    if ((ply < 0) || (ply >= size)) throw new IndexOutOfBoundsException("Bad ply: " + ply);
+
+    return history[ply];
+  }
+
+  /** Returns the amount of times the position with the specified key occurred. */
+  public int getCount(long key) {
+    return slotCounts[findSlot(key)];
+  }
+
+  /** Returns the amount of times the specified position occurred. */
+  public int getCount(Position position) {
+    return getCount(position.getZobristKey());
+  }
+
+  /**
+   * Returns the ply (index) at which the position with the specified key first occurred, or -1 if
+   * it didn't.
+   */
+  public int indexOf(long key) {
+    int slot = findSlot(key);
+    return slotCounts[slot] == 0 ? -1 : slotFirstPlies[slot];
+  }
+
+  /** Returns the amount of times the last position has occurred, or 0 if the table is empty. */
+  public int getLastPositionCount() {
+    return size == 0 ? 0 : getCount(history[size - 1]);
+  }
+
+  /** Returns whether the last position has occurred (at least) three times. */
+  public boolean isThreefoldRepetition() {
+    return getLastPositionCount() >= 3;
+  }
+
+  /** Returns the slot holding the specified key, or the empty slot where it would be put. */
+  private int findSlot(long key) {
+    int mask = slotKeys.length - 1;
+    int slot = (int) (key ^ (key >>> 32)) & mask;
+    while ((slotCounts[slot] != 0) && (slotKeys[slot] != key)) slot = (slot + 1) & mask;
+
+    return slot;
+  }
+
+  /**
+   * Empties the specified slot, moving back any keys further along the probe sequence which could
+   * otherwise no longer be found.
+   */
+  private void deleteSlot(int slot) {
+    int mask = slotKeys.length - 1;
+    usedSlots--;
+
+    int next = slot;
+    while (true) {
+      slotCounts[slot] = 0;
+      while (true) {
+        next = (next + 1) & mask;
+        if (slotCounts[next] == 0) return;
+
+        // Move the key at next into the hole unless its home slot lies cyclically in (slot, next].
+        int home = (int) (slotKeys[next] ^ (slotKeys[next] >>> 32)) & mask;
+        boolean homeAfterHole =
+            slot <= next ? (slot < home) && (home <= next) : (slot < home) || (home <= next);
+        if (!homeAfterHole) break;
+      }
+
+      slotKeys[slot] = slotKeys[next];
+      slotCounts[slot] = slotCounts[next];
+      slotFirstPlies[slot] = slotFirstPlies[next];
+      slot = next;
+    }
+  }
+
+  /** Rebuilds the hash table with the specified amount of slots. */
+  private void rehash(int slotCount) {
+    long[] oldKeys = slotKeys;
+    int[] oldCounts = slotCounts;
+    int[] oldFirstPlies = slotFirstPlies;
+
+    slotKeys = new long[slotCount];
+    slotCounts = new int[slotCount];
+    slotFirstPlies = new int[slotCount];
+
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldCounts[i] == 0) continue;
+
+      int slot = findSlot(oldKeys[i]);
+      slotKeys[slot] = oldKeys[i];
+      slotCounts[slot] = oldCounts[i];
+      slotFirstPlies[slot] = oldFirstPlies[i];
+    }
+  }
+}
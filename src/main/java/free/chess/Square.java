@@ -19,8 +19,12 @@ package free.chess;
 /** Represents a location on the chess board. */
 public class Square {
 
-  /** The pool of unique immutable instances of Square. */
-  private static final Square[][] POOL = new Square[8][8];
+  /** The pool of unique immutable instances of Square, indexed by <code>rank*8+file</code>. */
+  private static final Square[] POOL = new Square[64];
+
+  static {
+    for (int i = 0; i < POOL.length; i++) POOL[i] = new Square(i & 7, i >> 3);
+  }
 
   /** The file of the square. */
   private final int file;
@@ -63,14 +67,31 @@ public class Square {
 
   /**
    * Same as {@link #getInstance(int, int)}, but instead of throwing an exception for illegal
-   * values, simply returns <code>null</code>.
+   * values, simply returns <code>null</code>. The instances are created up front, so this method is
+   * cheap, and needs no synchronization.
    */
-  public static synchronized Square getInstanceNonStrict(int file, int rank) {
+  public static Square getInstanceNonStrict(int file, int rank) {
     if (!isValid(file, rank)) return null;
 
-    if (POOL[file][rank] == null) POOL[file][rank] = new Square(file, rank);
+    return POOL[rank * 8 + file];
+  }
+
+  /**
+   * Returns the square with the specified index, <code>rank*8+file</code>, as used by {@link
+   * Bitboards}.
+   *
+   * @throws IllegalArgumentException if the index is not in the range [0-63].
+   */
+  public static Square getInstance(int index) {
+    if ((index < 0) || (index >= 64))
+      throw new IllegalArgumentException("Square index must be in the range [0-63]: " + index);
+
+    return POOL[index];
+  }
 
-    return POOL[file][rank];
+  /** Returns the index of this square, <code>rank*8+file</code>, as used by {@link Bitboards}. */
+  public int getIndex() {
+    return (rank << 3) | file;
   }
 
   /**
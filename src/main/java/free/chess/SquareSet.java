@@ -0,0 +1,143 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * <p>The chess framework library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * <p>The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * An immutable set of squares, represented by a 64-bit mask in which the square with file <code>f
+ * </code> and rank <code>r</code> is bit <code>r*8+f</code> (see {@link Bitboards}). Checking
+ * whether a square is in the set takes constant time, and the set can be iterated without
+ * allocating anything:
+ *
+ * <pre>
+ * for (Square square = set.first(); square != null; square = set.next(square))
+ *   ...
+ * </pre>
+ */
+public final class SquareSet {
+
+  /** The empty set. */
+  public static final SquareSet EMPTY = new SquareSet(0);
+
+  /** The set of all the squares on the board. */
+  public static final SquareSet ALL = new SquareSet(-1L);
+
+  /** The mask of the squares in the set. */
+  private final long mask;
+
+  /** Creates a new <code>SquareSet</code> with the specified mask. */
+  private SquareSet(long mask) {
+    this.mask = mask;
+  }
+
+  /** Returns the set of the squares in the specified mask. */
+  public static SquareSet valueOf(long mask) {
+    if (mask == 0) return EMPTY;
+    else if (mask == -1L) return ALL;
+    else return new SquareSet(mask);
+  }
+
+  /** Returns the set of the squares in the specified collection of <code>Square</code>s. */
+  public static SquareSet valueOf(Collection squares) {
+    long mask = 0;
+    for (Iterator i = squares.iterator(); i.hasNext(); )
+      mask |= Bitboards.squareMask((Square) i.next());
+
+    return valueOf(mask);
+  }
+
+  /** Returns the mask of the squares in this set. */
+  public long getMask() {
+    return mask;
+  }
+
+  /** Returns whether the specified square is in this set. <code>null</code> is in no set. */
+  public boolean contains(Square square) {
+    return (square != null) && ((mask & Bitboards.squareMask(square)) != 0);
+  }
+
+  /** Returns whether the square with the specified file and rank is in this set. */
+  public boolean contains(int file, int rank) {
+    return Square.isValid(file, rank) && ((mask & (1L << (rank * 8 + file))) != 0);
+  }
+
+  /** Returns whether this set is empty. */
+  public boolean isEmpty() {
+    return mask == 0;
+  }
+
+  /** Returns the amount of squares in this set. */
+  public int size() {
+    return Long.bitCount(mask);
+  }
+
+  /**
+   * Returns the first square in this set, in the order of their indices (a1, b1, ..., h8), or
+   * <code>null</code> if the set is empty.
+   */
+  public Square first() {
+    return mask == 0 ? null : Bitboards.getSquare(Long.numberOfTrailingZeros(mask));
+  }
+
+  /**
+   * Returns the square following the specified one in this set, in the order of their indices, or
+   * <code>null</code> if there is none. The specified square need not be in the set.
+   */
+  public Square next(Square square) {
+    int index = Bitboards.squareIndex(square);
+    if (index == 63) return null;
+
+    long rest = mask & (-2L << index);
+    return rest == 0 ? null : Bitboards.getSquare(Long.numberOfTrailingZeros(rest));
+  }
+
+  /** Returns a new list of the squares in this set, in the order of their indices. */
+  public List toList() {
+    return Bitboards.toSquares(mask);
+  }
+
+  /** Returns the union of this set and the specified one. */
+  public SquareSet union(SquareSet set) {
+    return valueOf(mask | set.mask);
+  }
+
+  /** Returns the intersection of this set and the specified one. */
+  public SquareSet intersection(SquareSet set) {
+    return valueOf(mask & set.mask);
+  }
+
+  /** Returns whether the specified object is a <code>SquareSet</code> with the same squares. */
+  @Override
+  public boolean equals(Object o) {
+    return (o instanceof SquareSet) && (((SquareSet) o).mask == mask);
+  }
+
+  /** Returns the hash code of this set. */
+  @Override
+  public int hashCode() {
+    return (int) (mask ^ (mask >>> 32));
+  }
+
+  /** Returns a textual representation of this set, such as "[e2, e3, e4]". */
+  @Override
+  public String toString() {
+    return toList().toString();
+  }
+}
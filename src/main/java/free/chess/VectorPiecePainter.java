@@ -121,12 +121,12 @@ public abstract class VectorPiecePainter extends AbstractColoredPiecePainter {
     int width = rect.width;
     int height = rect.height;
 
-    g.translate(x, y);
-
     if (!(piece instanceof ChessPiece)) return;
 
     ChessPiece cPiece = (ChessPiece) piece;
 
+    g.translate(x, y);
+
     if ((cachedPieceSize.width != width) || (cachedPieceSize.height != height)) {
       clearPieceCache();
       cachedPieceSize.width = width;
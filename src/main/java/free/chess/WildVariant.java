@@ -118,6 +118,13 @@ public interface WildVariant {
    */
   Collection getTargetSquares(Position position, Square square);
 
+  /**
+   * Returns the same squares as {@link #getTargetSquares(Position, Square)}, as a {@link
+   * SquareSet}. This is the method to use when the squares are looked up repeatedly, such as while
+   * the user drags a piece.
+   */
+  SquareSet getTargetSquareSet(Position position, Square square);
+
   /** Returns the name of this WildVariant. */
   String getName();
 
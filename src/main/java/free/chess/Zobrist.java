@@ -0,0 +1,99 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * <p>The chess framework library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * <p>The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess;
+
+/**
+ * The random keys from which {@link Position} builds its Zobrist key, a 64-bit hash of the pieces
+ * on the board and the player to move which is updated incrementally, as pieces are put and
+ * removed, by XORing in and out the key of the piece on the square. The keys are generated from a
+ * fixed seed, so the key of a position is the same in every run of the program.
+ *
+ * <p>There are also keys for the castling rights and en passant captures, which a <code>Position
+ * </code> doesn't hold; see {@link MoveGenerator#getRightsKey()}.
+ */
+public final class Zobrist {
+
+  /** The key XORed into the key of a position when it's black's turn to move. */
+  public static final long BLACK_TO_MOVE = mix(0x426c61636b4c6cL);
+
+  /**
+   * The keys of the 12 standard chess pieces on each square, indexed by <code>piece*64+square
+   * </code>.
+   */
+  private static final long[] CHESS_PIECE_KEYS = createKeys(12 * 64, 0x4a696e4368657373L);
+
+  /** The keys of the castling rights, indexed by the number of the bit of the right. */
+  private static final long[] CASTLING_KEYS = createKeys(4, 0x436173746c65L);
+
+  /** The keys of en passant captures, indexed by the square the capturing pawn moves to. */
+  private static final long[] EN_PASSANT_KEYS = createKeys(64, 0x456e50617373616eL);
+
+  /** This class is not instantiable. */
+  private Zobrist() {}
+
+  /** Creates a table of the specified amount of keys, generated from the specified seed. */
+  private static long[] createKeys(int count, long seed) {
+    long[] keys = new long[count];
+    for (int i = 0; i < keys.length; i++) keys[i] = mix(seed += 0x9e3779b97f4a7c15L);
+
+    return keys;
+  }
+
+  /** The SplitMix64 finalizer; scrambles the bits of the specified value. */
+  private static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+
+  /**
+   * Returns the key of the specified piece standing on the square with the specified index (<code>
+   * rank*8+file</code>). Pieces which are equal have the same key on the same square.
+   */
+  public static long getPieceKey(Piece piece, int square) {
+    if (piece.getClass() == ChessPiece.class) {
+      int type = piece.getType();
+      if ((type >= ChessPiece.PAWN) && (type <= ChessPiece.KING))
+        return CHESS_PIECE_KEYS[((piece.isWhite() ? 0 : 6) + type - 1) * 64 + square];
+    }
+
+    // Pieces of other variants are equal when their class and value are, so we derive their key
+    // from those. Class names, unlike the identity hashcodes of classes, are the same in every run.
+    long pieceId = ((long) piece.getClass().getName().hashCode() << 32) ^ piece.hashCode();
+    return mix(mix(pieceId) + square);
+  }
+
+  /**
+   * Returns the key of the specified castling rights, a combination of the castling right constants
+   * of {@link MoveGenerator}.
+   */
+  public static long getCastlingKey(int castlingRights) {
+    long key = 0;
+    for (int right = 0; right < CASTLING_KEYS.length; right++)
+      if ((castlingRights & (1 << right)) != 0) key ^= CASTLING_KEYS[right];
+
+    return key;
+  }
+
+  /**
+   * Returns the key of an en passant capture to the square with the specified index (<code>
+   * rank*8+file</code>).
+   */
+  public static long getEnPassantKey(int square) {
+    return EN_PASSANT_KEYS[square];
+  }
+}
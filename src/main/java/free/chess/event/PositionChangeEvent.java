@@ -0,0 +1,63 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * <p>The chess framework library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * <p>The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess.event;
+
+import free.chess.Position;
+import free.chess.SquareSet;
+import javax.swing.event.ChangeEvent;
+
+/**
+ * The <code>ChangeEvent</code> a {@link Position} fires when it changes. Besides the position, it
+ * tells which squares changed since the previous event, and whether the player to move changed, so
+ * that listeners don't need to compare the whole board with a copy of it to find out.
+ */
+public class PositionChangeEvent extends ChangeEvent {
+
+  /** The squares whose pieces changed. */
+  private final SquareSet changedSquares;
+
+  /** Whether the player to move changed. */
+  private final boolean currentPlayerChanged;
+
+  /**
+   * Creates a new <code>PositionChangeEvent</code> with the specified source position, changed
+   * squares and whether the player to move changed.
+   */
+  public PositionChangeEvent(Position pos, SquareSet changedSquares, boolean currentPlayerChanged) {
+    super(pos);
+    this.changedSquares = changedSquares;
+    this.currentPlayerChanged = currentPlayerChanged;
+  }
+
+  /** Returns the position that changed. */
+  public Position getPosition() {
+    return (Position) getSource();
+  }
+
+  /**
+   * Returns the squares whose pieces changed since the position fired its previous event. A square
+   * may be included even though its piece ended up the same as before.
+   */
+  public SquareSet getChangedSquares() {
+    return changedSquares;
+  }
+
+  /** Returns whether the player to move changed since the position fired its previous event. */
+  public boolean isCurrentPlayerChanged() {
+    return currentPlayerChanged;
+  }
+}
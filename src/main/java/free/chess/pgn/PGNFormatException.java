@@ -0,0 +1,41 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * <p>The chess framework library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * <p>The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess.pgn;
+
+import free.util.FormatException;
+
+/** Thrown when the PGN being read is malformed. */
+public class PGNFormatException extends FormatException {
+
+  /** The number of the line on which the error occurred. */
+  private final int lineNumber;
+
+  /**
+   * Creates a new <code>PGNFormatException</code> with the specified message, for an error on the
+   * line with the specified number.
+   */
+  public PGNFormatException(String message, int lineNumber) {
+    super(message + " (line " + lineNumber + ")");
+
+    this.lineNumber = lineNumber;
+  }
+
+  /** Returns the number of the line on which the error occurred. */
+  public int getLineNumber() {
+    return lineNumber;
+  }
+}
@@ -0,0 +1,556 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * <p>The chess framework library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * <p>The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess.pgn;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A pull parser of PGN (Portable Game Notation) databases. Each invocation of {@link #next()} reads
+ * the next element (a tag pair, a move, a comment etc.) and returns its type, after which its
+ * contents are available via the accessor methods until the next invocation. The parser keeps no
+ * state beyond the current element, so databases of any size are read in constant memory.
+ *
+ * <p>The data may be read from an <code>InputStream</code> or from a file, which is then memory
+ * mapped, a window at a time. As the PGN standard specifies, the data is decoded as ISO 8859-1.
+ * Moves are returned as they appear in the movetext (without the annotations following them, which
+ * are returned as NAGs); use {@link SANResolver} to resolve them against a position. A typical loop
+ * looks like:
+ *
+ * <pre>
+ * int type;
+ * while ((type = reader.next()) != PGNReader.END) {
+ *   if ((type == PGNReader.MOVE) &amp;&amp; (reader.getVariationDepth() == 0))
+ *     ...
+ * }
+ * </pre>
+ */
+public class PGNReader {
+
+  /** The type returned by {@link #next()} when the end of the input is reached. */
+  public static final int END = 0;
+
+  /** The type of a tag pair; see {@link #getTagName()} and {@link #getTagValue()}. */
+  public static final int TAG = 1;
+
+  /** The type of a move; see {@link #getText()}. */
+  public static final int MOVE = 2;
+
+  /** The type of a comment, either in braces or to the end of the line; see {@link #getText()}. */
+  public static final int COMMENT = 3;
+
+  /**
+   * The type of a numeric annotation glyph, or of a suffix annotation ("!", "?!" etc.), which is
+   * converted to the corresponding NAG; see {@link #getNag()}.
+   */
+  public static final int NAG = 4;
+
+  /** The type of the start of a variation ("("). */
+  public static final int VARIATION_START = 5;
+
+  /** The type of the end of a variation (")"). */
+  public static final int VARIATION_END = 6;
+
+  /**
+   * The type of the end of a game, either at its game termination marker or, if it has none, at the
+   * start of the next game or the end of the input; see {@link #getResult()}.
+   */
+  public static final int GAME_END = 7;
+
+  /** The suffix annotations, indexed by their NAGs. */
+  private static final String[] SUFFIX_ANNOTATIONS = {null, "!", "?", "!!", "??", "!?", "?!"};
+
+  /** The size of the buffer into which an <code>InputStream</code> is read. */
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /** The size of the windows in which a file is mapped. */
+  private static final long WINDOW_SIZE = 64L * 1024 * 1024;
+
+  /** The stream we read, or <code>null</code> if we read a file channel. */
+  private final InputStream in;
+
+  /** The file channel we map, or <code>null</code> if we read a stream. */
+  private final FileChannel channel;
+
+  /** The position in the channel at which the next window starts. */
+  private long channelPosition = 0;
+
+  /** The array backing the buffer, when reading a stream. */
+  private final byte[] array;
+
+  /** The buffer holding the data not yet read. */
+  private ByteBuffer buffer;
+
+  /** A character which was read and put back, or -1 if none. */
+  private int pushback = -1;
+
+  /** The number of the current line. */
+  private int lineNumber = 1;
+
+  /** Whether the next character read starts a line. */
+  private boolean atLineStart = true;
+
+  /** The text of the current element: the move, the comment, the tag name or the result. */
+  private final StringBuilder text = new StringBuilder();
+
+  /** The value of the current tag pair. */
+  private final StringBuilder tagValue = new StringBuilder();
+
+  /** The current NAG. */
+  private int nag;
+
+  /** The NAG of the suffix annotation of the last move, to be returned next, or 0 if none. */
+  private int pendingNag = 0;
+
+  /** Whether any element of the current game has been read. */
+  private boolean inGame = false;
+
+  /** Whether the movetext of the current game has started. */
+  private boolean inMoveText = false;
+
+  /** The depth of variations we're in. */
+  private int variationDepth = 0;
+
+  /** The type of the current element. */
+  private int type = END;
+
+  /** Creates a new <code>PGNReader</code> which reads the specified stream. */
+  public PGNReader(InputStream in) {
+    if (in == null) throw new IllegalArgumentException("Null stream");
+
+    this.in = in;
+    this.channel = null;
+    this.array = new byte[BUFFER_SIZE];
+    this.buffer = ByteBuffer.wrap(array, 0, 0);
+  }
+
+  /**
+   * Creates a new <code>PGNReader</code> which reads the specified file channel, from its start,
+   * mapping it into memory.
+   */
+  public PGNReader(FileChannel channel) {
+    if (channel == null) throw new IllegalArgumentException("Null channel");
+
+    this.in = null;
+    this.channel = channel;
+    this.array = null;
+    this.buffer = ByteBuffer.allocate(0);
+  }
+
+  /**
+   * Returns a new <code>PGNReader</code> which reads the specified file, mapping it into memory.
+   * Closing the reader closes the file.
+   */
+  public static PGNReader open(File file) throws IOException {
+    return new PGNReader(new RandomAccessFile(file, "r").getChannel());
+  }
+
+  /** Closes the stream or file channel we read. */
+  public void close() throws IOException {
+    if (in != null) in.close();
+    else channel.close();
+  }
+
+  /**
+   * Reads the next element and returns its type, one of the type constants defined in this class,
+   * or {@link #END} if the end of the input has been reached.
+   *
+   * @throws PGNFormatException if the input is malformed.
+   */
+  public int next() throws IOException {
+    return type = readNext();
+  }
+
+  /** Reads the next element, returning its type. */
+  private int readNext() throws IOException {
+    if (pendingNag != 0) {
+      nag = pendingNag;
+      pendingNag = 0;
+      return NAG;
+    }
+
+    while (true) {
+      boolean lineStart = atLineStart;
+      atLineStart = false;
+
+      int c = read();
+      switch (c) {
+        case -1:
+          if (inGame) return endGame("*");
+          return END;
+        case '\n':
+          atLineStart = true;
+          continue;
+        case ' ':
+        case '\t':
+        case '\r':
+        case '\f':
+          continue;
+        case '%':
+          if (!lineStart) throw error("Unexpected character: %");
+          skipLine();
+          continue;
+        case '[':
+          if (inMoveText) { // A game without a termination marker
+            unread(c);
+            return endGame("*");
+          }
+          inGame = true;
+          readTag();
+          return TAG;
+        case '{':
+          startMoveText();
+          readBraceComment();
+          return COMMENT;
+        case ';':
+          startMoveText();
+          readLineComment();
+          return COMMENT;
+        case '(':
+          startMoveText();
+          variationDepth++;
+          return VARIATION_START;
+        case ')':
+          if (variationDepth == 0) throw error("Unexpected end of variation");
+          variationDepth--;
+          return VARIATION_END;
+        case '$':
+          startMoveText();
+          nag = readNumber();
+          return NAG;
+        case '!':
+        case '?':
+          startMoveText();
+          unread(c);
+          nag = readSuffixAnnotation();
+          if (nag == 0) throw error("Unknown annotation");
+          return NAG;
+        case '*':
+          if (variationDepth != 0) throw error("Game termination marker inside a variation");
+          return endGame("*");
+        default:
+          if (!isSymbolStart(c)) throw error("Unexpected character: " + (char) c);
+          startMoveText();
+          readSymbol(c);
+          if (isMoveNumber()) {
+            skipPeriods();
+            continue;
+          }
+          if (isResult()) {
+            if (variationDepth != 0) throw error("Game termination marker inside a variation");
+            inGame = false;
+            inMoveText = false;
+            return GAME_END;
+          }
+          pendingNag = readSuffixAnnotation();
+          return MOVE;
+      }
+    }
+  }
+
+  /** Notes that the movetext of a game has started. */
+  private void startMoveText() {
+    inGame = true;
+    inMoveText = true;
+  }
+
+  /** Ends the current game with the specified result, returning {@link #GAME_END}. */
+  private int endGame(String result) {
+    text.setLength(0);
+    text.append(result);
+    inGame = false;
+    inMoveText = false;
+    variationDepth = 0;
+    return GAME_END;
+  }
+
+  /** Reads a tag pair, the opening bracket of which has already been read. */
+  private void readTag() throws IOException {
+    int c = skipSpaces();
+    if (!isSymbolStart(c)) throw error("Bad tag name");
+    readSymbol(c);
+
+    if (skipSpaces() != '"') throw error("Missing tag value");
+
+    tagValue.setLength(0);
+    while (true) {
+      c = read();
+      if ((c == -1) || (c == '\n')) throw error("Unterminated tag value");
+      if (c == '"') break;
+      if (c == '\\') {
+        c = read();
+        if ((c == -1) || (c == '\n')) throw error("Unterminated tag value");
+      }
+      tagValue.append((char) c);
+    }
+
+    if (skipSpaces() != ']') throw error("Missing end of tag");
+  }
+
+  /** Reads a comment in braces, the opening brace of which has already been read. */
+  private void readBraceComment() throws IOException {
+    text.setLength(0);
+    int c;
+    while ((c = read()) != '}') {
+      if (c == -1) throw error("Unterminated comment");
+      text.append((char) c);
+    }
+  }
+
+  /** Reads a comment to the end of the line, the semicolon of which has already been read. */
+  private void readLineComment() throws IOException {
+    text.setLength(0);
+    int c;
+    while (((c = read()) != '\n') && (c != -1)) if (c != '\r') text.append((char) c);
+    atLineStart = true;
+  }
+
+  /** Skips to the start of the next line. */
+  private void skipLine() throws IOException {
+    int c;
+    while (((c = read()) != '\n') && (c != -1)) ;
+    atLineStart = true;
+  }
+
+  /** Skips spaces and tabs, returning the first other character. */
+  private int skipSpaces() throws IOException {
+    int c;
+    while (((c = read()) == ' ') || (c == '\t')) ;
+    return c;
+  }
+
+  /** Skips the periods following a move number. */
+  private void skipPeriods() throws IOException {
+    int c;
+    while ((c = read()) == '.') ;
+    unread(c);
+  }
+
+  /** Reads a decimal number, returning it. */
+  private int readNumber() throws IOException {
+    int c = read();
+    if ((c < '0') || (c > '9')) throw error("Missing number");
+
+    int value = 0;
+    while ((c >= '0') && (c <= '9')) {
+      value = value * 10 + c - '0';
+      c = read();
+    }
+    unread(c);
+
+    return value;
+  }
+
+  /**
+   * Reads a suffix annotation, if there is one, returning its NAG, or 0 if there is none or it's
+   * not a known one.
+   */
+  private int readSuffixAnnotation() throws IOException {
+    int c1 = read();
+    if ((c1 != '!') && (c1 != '?')) {
+      unread(c1);
+      return 0;
+    }
+
+    int c2 = read();
+    if ((c2 != '!') && (c2 != '?')) {
+      unread(c2);
+      c2 = -1;
+    }
+
+    for (int i = 1; i < SUFFIX_ANNOTATIONS.length; i++) {
+      String annotation = SUFFIX_ANNOTATIONS[i];
+      if ((annotation.charAt(0) == c1)
+          && (annotation.length() == (c2 == -1 ? 1 : 2))
+          && ((c2 == -1) || (annotation.charAt(1) == c2))) return i;
+    }
+
+    return 0;
+  }
+
+  /** Reads a symbol token into <code>text</code>, the first character of which is specified. */
+  private void readSymbol(int c) throws IOException {
+    text.setLength(0);
+    do {
+      text.append((char) c);
+      c = read();
+    } while (isSymbolContinuation(c));
+    unread(c);
+  }
+
+  /** Returns whether the symbol in <code>text</code> is a move number (the periods excluded). */
+  private boolean isMoveNumber() {
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if ((c < '0') || (c > '9')) return false;
+    }
+
+    return true;
+  }
+
+  /** Returns whether the symbol in <code>text</code> is a game termination marker. */
+  private boolean isResult() {
+    return equalsText("1-0") || equalsText("0-1") || equalsText("1/2-1/2");
+  }
+
+  /** Returns whether <code>text</code> holds the specified string. */
+  private boolean equalsText(String s) {
+    if (text.length() != s.length()) return false;
+
+    for (int i = 0; i < s.length(); i++) if (text.charAt(i) != s.charAt(i)) return false;
+
+    return true;
+  }
+
+  /** Returns whether the specified character may start a symbol token. */
+  private static boolean isSymbolStart(int c) {
+    return ((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z')) || ((c >= '0') && (c <= '9'));
+  }
+
+  /** Returns whether the specified character may continue a symbol token. */
+  private static boolean isSymbolContinuation(int c) {
+    return isSymbolStart(c)
+        || (c == '_')
+        || (c == '+')
+        || (c == '#')
+        || (c == '=')
+        || (c == ':')
+        || (c == '-')
+        || (c == '/');
+  }
+
+  /** Reads the next character, or returns -1 at the end of the input. */
+  private int read() throws IOException {
+    int c = pushback;
+    if (c != -1) pushback = -1;
+    else if (buffer.hasRemaining() || fill()) c = buffer.get() & 0xff;
+    else return -1;
+
+    if (c == '\n') lineNumber++;
+    return c;
+  }
+
+  /** Puts back the specified character (if not -1), so that it's returned by the next read. */
+  private void unread(int c) {
+    if (c == -1) return;
+
+    if (c == '\n') lineNumber--;
+    pushback = c;
+  }
+
+  /** Refills the buffer, returning <code>false</code> if the end of the input has been reached. */
+  private boolean fill() throws IOException {
+    if (channel != null) {
+      long size = channel.size();
+      if (channelPosition >= size) return false;
+
+      long length = Math.min(WINDOW_SIZE, size - channelPosition);
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, channelPosition, length);
+      channelPosition += length;
+      return true;
+    }
+
+    int count;
+    do {
+      count = in.read(array, 0, array.length);
+    } while (count == 0);
+    if (count == -1) return false;
+
+    buffer.clear();
+    buffer.limit(count);
+    return true;
+  }
+
+  /** Returns a <code>PGNFormatException</code> with the specified message for the current line. */
+  private PGNFormatException error(String message) {
+    return new PGNFormatException(message, lineNumber);
+  }
+
+  /** Returns the type of the current element, as last returned by {@link #next()}. */
+  public int getType() {
+    return type;
+  }
+
+  /**
+   * Returns the text of the current element: the move if it's a {@link #MOVE}, the text of the
+   * comment if it's a {@link #COMMENT}, the tag name if it's a {@link #TAG} and the result if it's
+   * a {@link #GAME_END}.
+   */
+  public String getText() {
+    return text.toString();
+  }
+
+  /**
+   * Returns the text of the current element, as {@link #getText()}, but without copying it. The
+   * returned sequence is only valid until the next element is read.
+   */
+  public CharSequence getTextSequence() {
+    return text;
+  }
+
+  /** Returns the name of the current tag pair. */
+  public String getTagName() {
+    return text.toString();
+  }
+
+  /** Returns the value of the current tag pair. */
+  public String getTagValue() {
+    return tagValue.toString();
+  }
+
+  /** Returns the current NAG. */
+  public int getNag() {
+    return nag;
+  }
+
+  /** Returns the result of the game which just ended: "1-0", "0-1", "1/2-1/2" or "*". */
+  public String getResult() {
+    return text.toString();
+  }
+
+  /**
+   * Returns the depth of the variation in which the current element is, 0 if it's in the main line.
+   */
+  public int getVariationDepth() {
+    return variationDepth;
+  }
+
+  /** Returns the number of the line the reader is on. */
+  public int getLineNumber() {
+    return lineNumber;
+  }
+
+  /**
+   * Skips to the end of the current game, returning <code>false</code> if the end of the input was
+   * reached instead.
+   */
+  public boolean skipGame() throws IOException {
+    int elementType;
+    while ((elementType = next()) != GAME_END) if (elementType == END) return false;
+
+    return true;
+  }
+
+  /** Returns the suffix annotation ("!", "?!" etc.) corresponding to the specified NAG, or null. */
+  public static String getSuffixAnnotation(int nag) {
+    return (nag > 0) && (nag < SUFFIX_ANNOTATIONS.length) ? SUFFIX_ANNOTATIONS[nag] : null;
+  }
+}
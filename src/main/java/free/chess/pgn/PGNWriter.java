@@ -0,0 +1,197 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * <p>The chess framework library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * <p>The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess.pgn;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes games in PGN (Portable Game Notation). A game is written as a series of tag pairs,
+ * followed by its moves (and possibly comments, NAGs and variations), followed by {@link
+ * #endGame(String)}. The movetext is broken into lines no longer than the maximum line length, with
+ * each move number kept on the same line as its move. The output is buffered and, as the PGN
+ * standard specifies, encoded as ISO 8859-1.
+ */
+public class PGNWriter {
+
+  /** The default maximum length of movetext lines. */
+  public static final int DEFAULT_LINE_LENGTH = 80;
+
+  /** The writer we write into. */
+  private final Writer out;
+
+  /** The maximum length of movetext lines. */
+  private final int maxLineLength;
+
+  /** The movetext line being built. */
+  private final StringBuilder line = new StringBuilder();
+
+  /** The movetext token being built. */
+  private final StringBuilder token = new StringBuilder();
+
+  /** Whether the movetext of the current game has started. */
+  private boolean inMoveText = false;
+
+  /**
+   * Whether the next black move needs its move number, because it's the first move of the game or
+   * of a variation, or follows a comment, NAG or variation.
+   */
+  private boolean needsMoveNumber = true;
+
+  /** Creates a new <code>PGNWriter</code> writing into the specified stream. */
+  public PGNWriter(OutputStream out) {
+    this(new OutputStreamWriter(out, StandardCharsets.ISO_8859_1));
+  }
+
+  /** Creates a new <code>PGNWriter</code> writing into the specified writer. */
+  public PGNWriter(Writer out) {
+    this(out, DEFAULT_LINE_LENGTH);
+  }
+
+  /**
+   * Creates a new <code>PGNWriter</code> writing into the specified writer, with the specified
+   * maximum length of movetext lines.
+   */
+  public PGNWriter(Writer out, int maxLineLength) {
+    if (out == null) throw new IllegalArgumentException("Null writer");
+    if (maxLineLength <= 0) throw new IllegalArgumentException("Bad line length: " + maxLineLength);
+
+    this.out = out instanceof BufferedWriter ? out : new BufferedWriter(out);
+    this.maxLineLength = maxLineLength;
+  }
+
+  /** Writes a tag pair with the specified name and value. */
+  public void writeTag(String name, String value) throws IOException {
+    if (inMoveText) throw new IllegalStateException("Tags must precede the movetext");
+
+    out.write('[');
+    out.write(name);
+    out.write(" \"");
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if ((c == '"') || (c == '\\')) out.write('\\');
+      out.write(c);
+    }
+    out.write("\"]\n");
+  }
+
+  /**
+   * Writes the specified move (in SAN), which is a move of the specified number (starting with 1),
+   * by white or black, preceded by its move number if needed.
+   */
+  public void writeMove(int moveNumber, boolean isWhite, String san) throws IOException {
+    token.setLength(0);
+    if (isWhite) token.append(moveNumber).append(". ");
+    else if (needsMoveNumber) token.append(moveNumber).append("... ");
+    token.append(san);
+    writeToken(token);
+
+    needsMoveNumber = false;
+  }
+
+  /** Writes the specified comment. Closing braces in it are replaced, as they can't be escaped. */
+  public void writeComment(String comment) throws IOException {
+    token.setLength(0);
+    token.append('{').append(comment.replace('}', ')')).append('}');
+    writeToken(token);
+
+    needsMoveNumber = true;
+  }
+
+  /** Writes the specified numeric annotation glyph. */
+  public void writeNag(int nag) throws IOException {
+    token.setLength(0);
+    token.append('$').append(nag);
+    writeToken(token);
+
+    needsMoveNumber = true;
+  }
+
+  /** Starts a variation. */
+  public void startVariation() throws IOException {
+    token.setLength(0);
+    token.append('(');
+    writeToken(token);
+
+    needsMoveNumber = true;
+  }
+
+  /** Ends a variation. */
+  public void endVariation() throws IOException {
+    // No space between the last token of the variation and its end
+    if (line.length() + 1 > maxLineLength) flushLine();
+    line.append(')');
+
+    needsMoveNumber = true;
+  }
+
+  /**
+   * Ends the current game with the specified result ("1-0", "0-1", "1/2-1/2" or "*"), after which
+   * the next game may be written.
+   */
+  public void endGame(String result) throws IOException {
+    token.setLength(0);
+    token.append(result);
+    writeToken(token);
+    flushLine();
+    out.write('\n');
+
+    inMoveText = false;
+    needsMoveNumber = true;
+  }
+
+  /** Appends the specified token to the movetext line, breaking the line if needed. */
+  private void writeToken(CharSequence text) throws IOException {
+    if (!inMoveText) {
+      out.write('\n');
+      inMoveText = true;
+    }
+
+    boolean isAfterVariationStart = (line.length() > 0) && (line.charAt(line.length() - 1) == '(');
+    int separatorLength = (line.length() == 0) || isAfterVariationStart ? 0 : 1;
+    if ((line.length() > 0) && (line.length() + separatorLength + text.length() > maxLineLength)) {
+      flushLine();
+      separatorLength = 0;
+    }
+
+    if (separatorLength != 0) line.append(' ');
+    line.append(text);
+  }
+
+  /** Writes the movetext line, if there is one. */
+  private void flushLine() throws IOException {
+    if (line.length() == 0) return;
+
+    out.append(line);
+    out.write('\n');
+    line.setLength(0);
+  }
+
+  /** Flushes the written data. */
+  public void flush() throws IOException {
+    out.flush();
+  }
+
+  /** Flushes the written data and closes the underlying writer. */
+  public void close() throws IOException {
+    out.close();
+  }
+}
@@ -0,0 +1,263 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * <p>The chess framework library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * <p>The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess.pgn;
+
+import free.chess.Bitboards;
+import free.chess.ChessPiece;
+import free.chess.ChesslikeGenericVariant;
+import free.chess.Move;
+import free.chess.MoveFormatException;
+import free.chess.MoveGenerator;
+import free.chess.Piece;
+import free.chess.Position;
+import free.chess.Square;
+import free.chess.WildVariant;
+
+/**
+ * Converts between moves in SAN (Standard Algebraic Notation) and the moves of a {@link
+ * MoveGenerator}, in the generator's current position. Resolving is lenient about the details which
+ * vary between PGN producers: check and annotation suffixes are ignored, castling may be written
+ * with zeros, and superfluous disambiguation, capture marks and a missing "=" before the promotion
+ * piece are accepted. Moves are always written in the canonical form.
+ *
+ * <p>A resolver keeps a move buffer, which it reuses, so it isn't thread safe, but it may be used
+ * with any number of generators.
+ */
+public class SANResolver {
+
+  /** The letters of the pieces, indexed by their type. */
+  private static final String PIECE_LETTERS = " PNBRQK";
+
+  /** The buffer into which the legal moves are generated. */
+  private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+
+  /** Creates a new <code>SANResolver</code>. */
+  public SANResolver() {}
+
+  /**
+   * Returns the legal move in the current position of the specified generator which the specified
+   * SAN describes.
+   *
+   * @throws MoveFormatException if the SAN is malformed, or describes no legal move or more than
+   *     one.
+   */
+  public int resolve(MoveGenerator generator, CharSequence san) {
+    int length = san.length();
+    while ((length > 0) && ("+#!?".indexOf(san.charAt(length - 1)) != -1)) length--;
+    if (length < 2) throw new MoveFormatException("Bad move: " + san);
+
+    if ((san.charAt(0) == 'O') || (san.charAt(0) == '0')) return resolveCastling(generator, san);
+
+    int end = length;
+    int promotionType = 0;
+    int typeIndex = getPieceType(Character.toUpperCase(san.charAt(end - 1)));
+    if (typeIndex > ChessPiece.PAWN) {
+      promotionType = typeIndex;
+      end--;
+      if (san.charAt(end - 1) == '=') end--;
+    }
+
+    if (end < 2) throw new MoveFormatException("Bad move: " + san);
+    int toFile = san.charAt(end - 2) - 'a';
+    int toRank = san.charAt(end - 1) - '1';
+    if ((toFile < 0) || (toFile > 7) || (toRank < 0) || (toRank > 7))
+      throw new MoveFormatException("Bad move: " + san);
+    int to = toRank * 8 + toFile;
+    end -= 2;
+
+    int start = 0;
+    int pieceType = ChessPiece.PAWN;
+    if ((end > 0) && (getPieceType(san.charAt(0)) != 0)) {
+      pieceType = getPieceType(san.charAt(0));
+      start = 1;
+    }
+
+    int fromFile = -1;
+    int fromRank = -1;
+    for (int i = start; i < end; i++) {
+      char c = san.charAt(i);
+      if ((c >= 'a') && (c <= 'h')) fromFile = c - 'a';
+      else if ((c >= '1') && (c <= '8')) fromRank = c - '1';
+      else if ((c != 'x') && (c != ':') && (c != '-'))
+        throw new MoveFormatException("Bad move: " + san);
+    }
+
+    long fromMask = -1L;
+    if (fromFile != -1) fromMask &= Bitboards.FILE_A << fromFile;
+    if (fromRank != -1) fromMask &= Bitboards.RANK_1 << (fromRank * 8);
+
+    int count = generator.generateLegalMoves(moves, fromMask, 1L << to);
+    int found = 0;
+    for (int i = 0; i < count; i++) {
+      int move = moves[i];
+      if (MoveGenerator.getPromotionType(move) != promotionType) continue;
+      if ((MoveGenerator.getFlags(move) & MoveGenerator.CASTLING) != 0) continue;
+      if (generator.getPieceAt(MoveGenerator.getFrom(move)).getType() != pieceType) continue;
+
+      if (found != 0) throw new MoveFormatException("Ambiguous move: " + san);
+      found = move;
+    }
+
+    if (found == 0) throw new MoveFormatException("Illegal move: " + san);
+
+    return found;
+  }
+
+  /** Resolves the specified castling SAN ("O-O", "0-0-0" etc.). */
+  private int resolveCastling(MoveGenerator generator, CharSequence san) {
+    int length = san.length();
+    while ((length > 0) && ("+#!?".indexOf(san.charAt(length - 1)) != -1)) length--;
+
+    boolean isLong;
+    if (isCastling(san, length, 3)) isLong = false;
+    else if (isCastling(san, length, 5)) isLong = true;
+    else throw new MoveFormatException("Bad move: " + san);
+
+    int count = generator.generateLegalMoves(moves);
+    for (int i = 0; i < count; i++) {
+      int flags = MoveGenerator.getFlags(moves[i]);
+      if (((flags & MoveGenerator.CASTLING) != 0)
+          && (((flags & MoveGenerator.LONG_CASTLING) != 0) == isLong)) return moves[i];
+    }
+
+    throw new MoveFormatException("Illegal move: " + san);
+  }
+
+  /**
+   * Returns whether the first <code>length</code> characters of the specified string are "O-O" or
+   * "O-O-O" (or the same with zeros), of the specified length.
+   */
+  private static boolean isCastling(CharSequence san, int length, int expectedLength) {
+    if (length != expectedLength) return false;
+
+    char letter = san.charAt(0);
+    for (int i = 0; i < length; i++) {
+      char c = san.charAt(i);
+      if ((i % 2 == 0) ? (c != letter) : (c != '-')) return false;
+    }
+
+    return true;
+  }
+
+  /** Returns the type of the piece with the specified SAN letter, or 0 if it isn't one. */
+  private static int getPieceType(char letter) {
+    int type = PIECE_LETTERS.indexOf(letter);
+    return type <= 0 ? 0 : type;
+  }
+
+  /**
+   * Returns the SAN of the specified move, which must be legal in the current position of the
+   * specified generator, including the check or checkmate suffix.
+   */
+  public String toSAN(MoveGenerator generator, int move) {
+    StringBuilder buf = new StringBuilder(8);
+    int from = MoveGenerator.getFrom(move);
+    int to = MoveGenerator.getTo(move);
+    int flags = MoveGenerator.getFlags(move);
+
+    if ((flags & MoveGenerator.CASTLING) != 0)
+      buf.append((flags & MoveGenerator.LONG_CASTLING) != 0 ? "O-O-O" : "O-O");
+    else {
+      int pieceType = generator.getPieceAt(from).getType();
+      if (pieceType != ChessPiece.PAWN) {
+        buf.append(PIECE_LETTERS.charAt(pieceType));
+        appendDisambiguation(generator, move, pieceType, buf);
+      } else if ((flags & MoveGenerator.CAPTURE) != 0) buf.append((char) ('a' + (from & 7)));
+
+      if ((flags & MoveGenerator.CAPTURE) != 0) buf.append('x');
+      buf.append((char) ('a' + (to & 7)));
+      buf.append((char) ('1' + (to >> 3)));
+
+      int promotionType = MoveGenerator.getPromotionType(move);
+      if (promotionType != 0) {
+        buf.append('=');
+        buf.append(PIECE_LETTERS.charAt(promotionType));
+      }
+    }
+
+    generator.makeMove(move);
+    if (generator.isInCheck()) buf.append(generator.generateLegalMoves(moves) == 0 ? '#' : '+');
+    generator.unmakeMove();
+
+    return buf.toString();
+  }
+
+  /**
+   * Appends to the specified buffer the starting file and/or rank needed to distinguish the
+   * specified move from other legal moves of pieces of the same type to the same square.
+   */
+  private void appendDisambiguation(
+      MoveGenerator generator, int move, int pieceType, StringBuilder buf) {
+    int from = MoveGenerator.getFrom(move);
+    int to = MoveGenerator.getTo(move);
+    boolean isAmbiguous = false;
+    boolean isFileShared = false;
+    boolean isRankShared = false;
+
+    int count = generator.generateLegalMoves(moves, -1L, 1L << to);
+    for (int i = 0; i < count; i++) {
+      int other = moves[i];
+      int otherFrom = MoveGenerator.getFrom(other);
+      if (otherFrom == from) continue;
+      if ((MoveGenerator.getFlags(other) & MoveGenerator.CASTLING) != 0) continue;
+      if (generator.getPieceAt(otherFrom).getType() != pieceType) continue;
+
+      isAmbiguous = true;
+      if ((otherFrom & 7) == (from & 7)) isFileShared = true;
+      if ((otherFrom >> 3) == (from >> 3)) isRankShared = true;
+    }
+
+    if (!isAmbiguous) return;
+
+    if (!isFileShared) buf.append((char) ('a' + (from & 7)));
+    else if (!isRankShared) buf.append((char) ('1' + (from >> 3)));
+    else {
+      buf.append((char) ('a' + (from & 7)));
+      buf.append((char) ('1' + (from >> 3)));
+    }
+  }
+
+  /**
+   * Creates a <code>Move</code> for the specified move of a generator, which must be legal in the
+   * specified position (whose variant must be a <code>ChesslikeGenericVariant</code>), with the
+   * specified SAN (may be <code>null</code>).
+   */
+  public static Move createMove(Position position, int move, String san) {
+    WildVariant variant = position.getVariant();
+    if (!(variant instanceof ChesslikeGenericVariant))
+      throw new IllegalArgumentException("Not a chess-like variant: " + variant);
+
+    int flags = MoveGenerator.getFlags(move);
+    if ((flags & MoveGenerator.CASTLING) != 0) {
+      return (flags & MoveGenerator.LONG_CASTLING) != 0
+          ? variant.createLongCastling(position)
+          : variant.createShortCastling(position);
+    }
+
+    int from = MoveGenerator.getFrom(move);
+    int to = MoveGenerator.getTo(move);
+    int promotionType = MoveGenerator.getPromotionType(move);
+    Piece promotionTarget = null;
+    if (promotionType != 0) {
+      int color = position.getCurrentPlayer().isWhite() ? Piece.WHITE : Piece.BLACK;
+      promotionTarget = MoveGenerator.getPiece(color, promotionType);
+    }
+
+    return variant.createMove(
+        position, Square.getInstance(from), Square.getInstance(to), promotionTarget, san);
+  }
+}
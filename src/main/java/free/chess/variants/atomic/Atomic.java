@@ -21,6 +21,7 @@ import free.chess.ChessMove;
 import free.chess.ChessPiece;
 import free.chess.ChesslikeGenericVariant;
 import free.chess.Move;
+import free.chess.MoveGenerator;
 import free.chess.Position;
 import free.chess.Square;
 
@@ -58,6 +59,12 @@ public class Atomic extends ChesslikeGenericVariant {
     super(Chess.INITIAL_POSITION_FEN, "Atomic");
   }
 
+  /** Returns a new {@link AtomicMoveGenerator}, which implements the rules of this variant. */
+  @Override
+  public MoveGenerator createMoveGenerator() {
+    return new AtomicMoveGenerator();
+  }
+
   /**
    * Makes the given ChessMove in the given Position. <B>This method shoudln't (and can't) be called
    * directly - call {@link Position#makeMove(Move)} instead.</B>
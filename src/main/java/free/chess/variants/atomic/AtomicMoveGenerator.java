@@ -0,0 +1,67 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * <p>The chess framework library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * <p>The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess.variants.atomic;
+
+import free.chess.Bitboards;
+import free.chess.ChessPiece;
+import free.chess.MoveGenerator;
+
+/**
+ * A {@link MoveGenerator} implementing the rules of atomic chess, as played on ICC. A capture
+ * destroys the capturing piece and all the pieces, except pawns, next to the square of the capture.
+ * Check isn't recognized, so the king may be left attacked, but a move may not destroy the mover's
+ * own king.
+ */
+public class AtomicMoveGenerator extends MoveGenerator {
+
+  /** Creates a new <code>AtomicMoveGenerator</code>. */
+  public AtomicMoveGenerator() {}
+
+  /** Returns <code>false</code>, since check isn't recognized in atomic chess. */
+  @Override
+  protected boolean isKingSafetyRequired() {
+    return false;
+  }
+
+  /** Returns whether the specified move doesn't destroy the mover's king. */
+  @Override
+  protected boolean isAllowed(int move) {
+    if ((getFlags(move) & CAPTURE) == 0) return true;
+
+    int ourKing = (isWhiteToMove() ? WHITE : BLACK) + ChessPiece.KING - 1;
+    makeMove(move);
+    boolean kingSurvives = pieces[ourKing] != 0;
+    unmakeMove();
+
+    return kingSurvives;
+  }
+
+  /** Makes the move, exploding the square of a capture. */
+  @Override
+  protected void applyMove(int move, int us) {
+    super.applyMove(move, us);
+
+    if ((getFlags(move) & CAPTURE) != 0) {
+      int to = getTo(move);
+      long pawns = pieces[WHITE + ChessPiece.PAWN - 1] | pieces[BLACK + ChessPiece.PAWN - 1];
+      long explosion = (Bitboards.kingAttacks(to) & ~pawns) | (1L << to);
+      for (int i = 0; i < pieces.length; i++) pieces[i] &= ~explosion;
+      whiteMask &= ~explosion;
+      blackMask &= ~explosion;
+    }
+  }
+}
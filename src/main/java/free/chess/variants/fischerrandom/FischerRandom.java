@@ -21,6 +21,7 @@ import free.chess.ChessMove;
 import free.chess.ChessPiece;
 import free.chess.ChesslikeGenericVariant;
 import free.chess.Move;
+import free.chess.MoveGenerator;
 import free.chess.Piece;
 import free.chess.Player;
 import free.chess.Position;
@@ -56,6 +57,14 @@ public class FischerRandom extends ChesslikeGenericVariant {
     super(Chess.INITIAL_POSITION_FEN /* Not used anyway */, "Fischer random");
   }
 
+  /**
+   * Returns a new {@link FischerRandomMoveGenerator}, which implements the rules of this variant.
+   */
+  @Override
+  public MoveGenerator createMoveGenerator() {
+    return new FischerRandomMoveGenerator();
+  }
+
   /**
    * Returns <code>true</code> if the move defined by the given arguments is a short castling move
    * according to the rules of the "fischer random" variant. Returns <code>false</code> otherwise.
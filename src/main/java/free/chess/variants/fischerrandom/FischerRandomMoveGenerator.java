@@ -0,0 +1,51 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * <p>The chess framework library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * <p>The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess.variants.fischerrandom;
+
+import free.chess.ChessPiece;
+import free.chess.MoveGenerator;
+
+/**
+ * A {@link MoveGenerator} implementing the rules of Fischer random chess. Castling is done with the
+ * rooks on either side of the king, wherever they start, and puts the king and rook on their
+ * standard chess castling squares. Castling rights given as "KQkq" refer to the outermost rooks;
+ * the files of the rooks ("HAha") may be given instead.
+ */
+public class FischerRandomMoveGenerator extends MoveGenerator {
+
+  /** Creates a new <code>FischerRandomMoveGenerator</code>. */
+  public FischerRandomMoveGenerator() {}
+
+  /**
+   * Returns the square of the outermost rook, on the specified side of the king, on the king's
+   * rank, or -1 if there is none.
+   */
+  @Override
+  protected int findCastlingRook(int kingSquare, boolean isShort) {
+    long rooks = pieces[(isWhiteSquare(kingSquare) ? WHITE : BLACK) + ChessPiece.ROOK - 1];
+    int rankStart = kingSquare & ~7;
+    if (isShort) {
+      for (int square = rankStart + 7; square > kingSquare; square--)
+        if ((rooks & (1L << square)) != 0) return square;
+    } else {
+      for (int square = rankStart; square < kingSquare; square++)
+        if ((rooks & (1L << square)) != 0) return square;
+    }
+
+    return -1;
+  }
+}
@@ -19,6 +19,7 @@ package free.chess.variants.giveaway;
 import free.chess.Chess;
 import free.chess.ChessPiece;
 import free.chess.ChesslikeGenericVariant;
+import free.chess.MoveGenerator;
 import free.chess.Piece;
 import free.chess.Position;
 import free.chess.Square;
@@ -74,6 +75,12 @@ public class Giveaway extends ChesslikeGenericVariant {
     super(Chess.INITIAL_POSITION_FEN, "Giveaway");
   }
 
+  /** Returns a new {@link GiveawayMoveGenerator}, which implements the rules of this variant. */
+  @Override
+  public MoveGenerator createMoveGenerator() {
+    return new GiveawayMoveGenerator();
+  }
+
   /**
    * If the a move created by the given starting square and ending square in the given position is a
    * promotion, returns an array containing a knight, bishop, rook and queen of the color of the
@@ -29,6 +29,7 @@ import free.chess.PiecePainter;
 import free.chess.Player;
 import free.chess.Position;
 import free.chess.Square;
+import free.chess.SquareSet;
 import free.chess.WildVariant;
 import java.util.Collection;
 
@@ -230,6 +231,12 @@ public class Kriegspiel implements WildVariant {
     return Chess.getInstance().getTargetSquares(pos, square);
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public SquareSet getTargetSquareSet(Position pos, Square square) {
+    return SquareSet.valueOf(getTargetSquares(pos, square));
+  }
+
   /** Returns the string "Kriegspiel". */
   @Override
   public String getName() {
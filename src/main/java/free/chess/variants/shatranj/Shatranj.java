@@ -2,6 +2,7 @@ package free.chess.variants.shatranj;
 
 import free.chess.Chess;
 import free.chess.ChessPiece;
+import free.chess.MoveGenerator;
 import free.chess.Piece;
 import free.chess.Position;
 import free.chess.Square;
@@ -46,6 +47,12 @@ public class Shatranj extends NoCastlingVariant {
     super(SHATRANJ_INITIAL_POSITION_FEN, "Shatranj");
   }
 
+  /** Returns a new {@link ShatranjMoveGenerator}, which implements the rules of this variant. */
+  @Override
+  public MoveGenerator createMoveGenerator() {
+    return new ShatranjMoveGenerator();
+  }
+
   /**
    * If the move created by the given starting square and ending square in the given position is a
    * promotion, returns an array containing a fers (queen) of the color of the promoted pawn.
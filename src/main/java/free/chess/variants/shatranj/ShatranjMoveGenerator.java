@@ -0,0 +1,82 @@
+package free.chess.variants.shatranj;
+
+import free.chess.ChessPiece;
+import free.chess.MoveGenerator;
+
+/**
+ * A {@link MoveGenerator} implementing the rules of Shatranj. The fers (queen) moves a single
+ * square diagonally and the elephant (bishop) jumps exactly two squares diagonally. There is no
+ * castling, no double pawn push (and therefore no en passant) and pawns only promote to a fers.
+ */
+public class ShatranjMoveGenerator extends MoveGenerator {
+
+  /** The types of pieces to which pawns may promote in Shatranj. */
+  private static final int[] PROMOTION_TYPES = {ChessPiece.QUEEN};
+
+  /** The squares attacked by a fers on each square. */
+  private static final long[] FERS_ATTACKS = createAttackTable(1);
+
+  /** The squares attacked by an elephant on each square. */
+  private static final long[] ELEPHANT_ATTACKS = createAttackTable(2);
+
+  /** Creates a new <code>ShatranjMoveGenerator</code>. */
+  public ShatranjMoveGenerator() {}
+
+  /**
+   * Creates a table of the squares a piece on each square attacks by moving the specified amount of
+   * squares diagonally.
+   */
+  private static long[] createAttackTable(int distance) {
+    long[] table = new long[64];
+    for (int square = 0; square < 64; square++) {
+      int file = square & 7;
+      int rank = square >> 3;
+      for (int df = -distance; df <= distance; df += 2 * distance) {
+        for (int dr = -distance; dr <= distance; dr += 2 * distance) {
+          int f = file + df;
+          int r = rank + dr;
+          if ((f >= 0) && (f < 8) && (r >= 0) && (r < 8)) table[square] |= 1L << (r * 8 + f);
+        }
+      }
+    }
+
+    return table;
+  }
+
+  /** Returns -1, since there is no castling in Shatranj. */
+  @Override
+  protected int findCastlingRook(int kingSquare, boolean isShort) {
+    return -1;
+  }
+
+  /** Returns <code>false</code>. */
+  @Override
+  protected boolean isDoublePawnPushAllowed() {
+    return false;
+  }
+
+  /** Returns the fers (queen). */
+  @Override
+  protected int[] getPromotionTypes() {
+    return PROMOTION_TYPES;
+  }
+
+  /** Returns the attacks of the fers and elephant, and those of chess for the other pieces. */
+  @Override
+  protected long getAttacks(int type, int square, long occupied) {
+    switch (type) {
+      case ChessPiece.QUEEN:
+        return FERS_ATTACKS[square];
+      case ChessPiece.BISHOP:
+        return ELEPHANT_ATTACKS[square];
+      default:
+        return super.getAttacks(type, square, occupied);
+    }
+  }
+
+  /** Returns whether the specified square is attacked, with the Shatranj moves of the pieces. */
+  @Override
+  protected boolean isAttackedBy(int square, int them, long occupied, long removed) {
+    return isAttackedByAny(square, them, occupied, removed);
+  }
+}
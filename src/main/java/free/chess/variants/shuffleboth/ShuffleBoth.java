@@ -17,6 +17,7 @@
 package free.chess.variants.shuffleboth;
 
 import free.chess.Chess;
+import free.chess.MoveGenerator;
 import free.chess.Position;
 import free.chess.variants.BothSidesCastlingVariant;
 
@@ -49,6 +50,12 @@ public class ShuffleBoth extends BothSidesCastlingVariant {
     super(Chess.INITIAL_POSITION_FEN /* Not used anyway */, "Shuffle both");
   }
 
+  /** Returns a new {@link ShuffleBothMoveGenerator}, which implements the rules of this variant. */
+  @Override
+  public MoveGenerator createMoveGenerator() {
+    return new ShuffleBothMoveGenerator();
+  }
+
   /**
    * Initializes the given position to a random state subject to the constraints specified in the
    * rules.
@@ -0,0 +1,63 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * <p>The chess framework library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * <p>The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess.variants.shuffleboth;
+
+import free.chess.ChessPiece;
+import free.chess.MoveGenerator;
+
+/**
+ * A {@link MoveGenerator} implementing the rules of Shuffle Both. When the king starts on the
+ * e-file, castling is as in chess. When it starts on the d-file, short castling (with the rook on
+ * the a-file) puts the king on the b-file and the rook on the c-file, and long castling (with the
+ * rook on the h-file) puts the king on the f-file and the rook on the e-file.
+ */
+public class ShuffleBothMoveGenerator extends MoveGenerator {
+
+  /** Creates a new <code>ShuffleBothMoveGenerator</code>. */
+  public ShuffleBothMoveGenerator() {}
+
+  /**
+   * Returns the square of the rook in the corner on the specified side of a king on the d or e
+   * files, or -1 if there is none.
+   */
+  @Override
+  protected int findCastlingRook(int kingSquare, boolean isShort) {
+    int kingFile = kingSquare & 7;
+    if ((kingFile != 3) && (kingFile != 4)) return -1;
+
+    boolean towardsH = isShort == (kingFile == 4);
+    int rookSquare = (kingSquare & ~7) + (towardsH ? 7 : 0);
+    long rooks = pieces[(isWhiteSquare(kingSquare) ? WHITE : BLACK) + ChessPiece.ROOK - 1];
+    return (rooks & (1L << rookSquare)) != 0 ? rookSquare : -1;
+  }
+
+  /** Returns the square the king ends up on when castling. */
+  @Override
+  protected int getCastlingKingTarget(int kingSquare, boolean isShort) {
+    if ((kingSquare & 7) == 4) return super.getCastlingKingTarget(kingSquare, isShort);
+
+    return (kingSquare & ~7) + (isShort ? 1 : 5);
+  }
+
+  /** Returns the square the rook ends up on when castling. */
+  @Override
+  protected int getCastlingRookTarget(int kingSquare, boolean isShort) {
+    if ((kingSquare & 7) == 4) return super.getCastlingRookTarget(kingSquare, isShort);
+
+    return (kingSquare & ~7) + (isShort ? 2 : 4);
+  }
+}
@@ -18,6 +18,7 @@ package free.chess.variants.suicide;
 
 import free.chess.Chess;
 import free.chess.ChessPiece;
+import free.chess.MoveGenerator;
 import free.chess.Piece;
 import free.chess.Position;
 import free.chess.Square;
@@ -70,6 +71,12 @@ public class Suicide extends NoCastlingVariant {
     super(Chess.INITIAL_POSITION_FEN, "Suicide");
   }
 
+  /** Returns a new {@link SuicideMoveGenerator}, which implements the rules of this variant. */
+  @Override
+  public MoveGenerator createMoveGenerator() {
+    return new SuicideMoveGenerator();
+  }
+
   /**
    * If the a move created by the given starting square and ending square in the given position is a
    * promotion, returns an array containing a king, pawn, knight, bishop, rook queen of the color of
@@ -0,0 +1,53 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * <p>The chess framework library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * <p>The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess.variants.suicide;
+
+import free.chess.ChessPiece;
+import free.chess.MoveGenerator;
+import free.chess.variants.giveaway.GiveawayMoveGenerator;
+
+/**
+ * A {@link MoveGenerator} implementing the rules of suicide, which are those of giveaway, except
+ * that castling isn't allowed and pawns may also "promote" to a pawn.
+ */
+public class SuicideMoveGenerator extends GiveawayMoveGenerator {
+
+  /** The types of pieces to which pawns may promote in suicide. */
+  private static final int[] PROMOTION_TYPES = {
+    ChessPiece.QUEEN,
+    ChessPiece.ROOK,
+    ChessPiece.BISHOP,
+    ChessPiece.KNIGHT,
+    ChessPiece.PAWN,
+    ChessPiece.KING
+  };
+
+  /** Creates a new <code>SuicideMoveGenerator</code>. */
+  public SuicideMoveGenerator() {}
+
+  /** Returns -1, since castling isn't allowed in suicide. */
+  @Override
+  protected int findCastlingRook(int kingSquare, boolean isShort) {
+    return -1;
+  }
+
+  /** Returns the queen, rook, bishop, knight, pawn and king. */
+  @Override
+  protected int[] getPromotionTypes() {
+    return PROMOTION_TYPES;
+  }
+}
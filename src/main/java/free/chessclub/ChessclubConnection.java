@@ -22,20 +22,16 @@ import free.chessclub.level2.DatagramEvent;
 import free.chessclub.level2.DatagramListener;
 import free.util.Connection;
 import free.util.EventListenerList;
-import free.util.FormatException;
-import java.io.BufferedInputStream;
-import java.io.EOFException;
+import free.util.MessageFramer;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.io.PrintStream;
-import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.BitSet;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.LinkedList;
-import java.util.List;
-import java.util.StringTokenizer;
 
 /**
  * This class is responsible for connecting to the chessclub.com server, logging on and further
@@ -47,21 +43,6 @@ import java.util.StringTokenizer;
  */
 public class ChessclubConnection extends free.util.Connection {
 
-  /** The standard delimiter, used to delimit both level1 and level2. */
-  private static final char STANDARD_DELIMITER = '\u0019';
-
-  /** The start-of-level1-packet delimiter. */
-  private static final char PACKET_START_DELIMITER = '[';
-
-  /** The end-of-level1-packet delimiter. */
-  private static final char PACKET_END_DELIMITER = ']';
-
-  /** The start-of-level2-datagram delimiter. */
-  private static final char DATAGRAM_START_DELIMITER = '(';
-
-  /** The end-of-datagram delimiter. */
-  private static final char DATAGRAM_END_DELIMITER = ')';
-
   /** Maps rating keys to their english names. */
   private final Hashtable ratingCategoryNames = new Hashtable();
 
@@ -103,6 +84,12 @@ public class ChessclubConnection extends free.util.Connection {
   /** The queue of commands we are to send on-login. */
   private LinkedList onLoginCommandQueue = new LinkedList();
 
+  /** The framer which splits the data read from the server into messages. */
+  private ChessclubMessageFramer messageFramer;
+
+  /** The buffer into which data is read from the server. */
+  private ByteBuffer inputBuffer;
+
   /** A list of listeners to our datagram events, lazily instantiated. */
   private final EventListenerList[] datagramListeners =
       new EventListenerList[Datagram.MAX_DG_ID + 1];
@@ -352,8 +339,8 @@ public class ChessclubConnection extends free.util.Connection {
   @Override
   protected void sendLoginSequence() {
     if ((getPassword() == null) || (getPassword().length() == 0))
-      sendCommandImpl(getRequestedUsername(), true);
-    else sendCommandImpl(getRequestedUsername() + " " + getPassword(), false);
+      sendCommandImpl(getRequestedUsername(), true, false);
+    else sendCommandImpl(getRequestedUsername() + " " + getPassword(), false, false);
   }
 
   /**
@@ -362,7 +349,7 @@ public class ChessclubConnection extends free.util.Connection {
    */
   @Override
   protected void handleConnected() {
-    sendCommandImpl("level1=" + level1State, true);
+    sendCommandImpl("level1=" + level1State, true, false);
 
     int largestSetDGNumber = level2Settings.size();
     while ((largestSetDGNumber >= 0) && !level2Settings.get(largestSetDGNumber))
@@ -372,7 +359,7 @@ public class ChessclubConnection extends free.util.Connection {
       for (int i = 0; i <= largestSetDGNumber; i++) {
         buf.append(level2Settings.get(i) ? "1" : "0");
       }
-      sendCommandImpl(buf.toString(), true);
+      sendCommandImpl(buf.toString(), true, false);
       level2SettingsSent = true;
     }
 
@@ -413,186 +400,62 @@ public class ChessclubConnection extends free.util.Connection {
   }
 
   /**
-   * Overrides {@link Connection#createInputStream(InputStream)} to wrap the specified <code>
-   * InputStream</code> in a <code>BufferedInputStream</code> and a <code>PushbackInputStream</code>
-   * .
+   * Overrides {@link Connection#createInputStream(InputStream)} to set up a fresh {@link
+   * ChessclubMessageFramer} for the new socket. The stream itself is returned unwrapped since we do
+   * our own buffering.
    */
   @Override
   protected InputStream createInputStream(InputStream in) {
-    return new PushbackInputStream(new BufferedInputStream(in), 2);
+    messageFramer = new ChessclubMessageFramer();
+    inputBuffer = ByteBuffer.allocate(8192);
+    inputBuffer.flip();
+    return in;
   }
 
   /** Reads either a line of plain text, a level1 packet or a level2 datagram from the server. */
   @Override
   protected Object readMessage(InputStream in) throws IOException {
-    PushbackInputStream pin = (PushbackInputStream) in;
-
     while (true) {
-      int b = pin.read();
+      Object message = messageFramer.nextMessage(inputBuffer);
+      if (message != null) return message;
 
-      if (b < 0) // Clean disconnection
+      if (messageFramer.isSessionEnded()) // Clean logout
       return null;
 
-      if (b == STANDARD_DELIMITER) { // May be a level1 packet or datagram (but may also be just a
-        // line with this character
-        int next = pin.read();
-        if (next < 0) throw new EOFException("EOF after STANDARD_DELIMITER");
-
-        pin.unread(next);
-        pin.unread(b);
-
-        if (next == PACKET_START_DELIMITER) return readPacket(pin);
-        else if (next == DATAGRAM_START_DELIMITER) return readDatagram(pin);
-        else if (next == PACKET_END_DELIMITER) // This means a clean logout
-        return null;
-      } else {
-        pin.unread(b);
-        String line = readLine(pin);
-        return filterLine(line);
-      }
-    }
-  }
-
-  /**
-   * Reads and parses a level1 packet from the specified input stream.
-   *
-   * @throws IOException if an I/O error occurs while reading the datagram
-   */
-  private Packet readPacket(PushbackInputStream in) throws IOException {
-    StringBuffer header = new StringBuffer();
-
-    // Read until the newline
-    while (true) {
-      int b = in.read();
-      if (b < 0) throw new EOFException("EOF in a packet");
-
-      if (b == '\n') break;
+      int count = in.read(inputBuffer.array());
+      if (count < 0) // Clean disconnection, unless there is an unterminated line
+      return messageFramer.finish();
 
-      header.append((char) b);
+      inputBuffer.position(0).limit(count);
     }
-
-    // In contradiction to formats.txt, the servers seems to end the header line with \r\n
-    int len = header.length();
-    if (header.charAt(len - 1) == '\r') header.setLength(len - 1);
-
-    StringTokenizer tokenizer = new StringTokenizer(header.substring(2), " ");
-    int commandCode = Integer.parseInt(tokenizer.nextToken());
-    String playerName = tokenizer.nextToken();
-    String clientTag = tokenizer.hasMoreTokens() ? tokenizer.nextToken() : null;
-
-    List items = new LinkedList();
-    // Read until the matching ^Y]
-    while (true) {
-      int first = in.read();
-      if (first < 0) throw new EOFException("EOF in a packet");
-
-      int second = in.read();
-      if (second < 0) throw new EOFException("EOF in a packet");
-
-      if ((first == STANDARD_DELIMITER) && (second == PACKET_END_DELIMITER)) break;
-
-      in.unread(second);
-      in.unread(first);
-
-      items.add(readMessage(in));
-    }
-
-    return new Packet(commandCode, playerName, clientTag, items.toArray(new Object[items.size()]));
   }
 
   /**
-   * Reads and parses a level2 datagram from the specified input stream.
-   *
-   * @throws IOException if an I/O error occurs while reading the datagram
-   * @throws FormatException if the data read from the input stream can't be parsed as a datagram.
+   * Overrides {@link Connection#createMessageFramer()} to return a new {@link
+   * ChessclubMessageFramer}.
    */
-  private Datagram readDatagram(InputStream in) throws IOException {
-    StringBuffer buf = new StringBuffer();
-
-    int lastChar = -1;
-
-    // Read until ^Y) is encountered
-    while (true) {
-      int b = in.read();
-      if (b < 0) throw new EOFException("EOF in a datagram");
-
-      buf.append((char) b);
-
-      if ((lastChar == STANDARD_DELIMITER) && (b == DATAGRAM_END_DELIMITER))
-        return Datagram.parseDatagram(
-            buf.substring(2, buf.length() - 2)); // Strip off the delimiters
-
-      lastChar = b;
-    }
+  @Override
+  protected MessageFramer createMessageFramer() {
+    return new ChessclubMessageFramer();
   }
 
-  /** Read a line of plain text from the server. */
-  private String readLine(PushbackInputStream in) throws IOException {
-    StringBuffer buf = new StringBuffer();
-
-    while (true) {
-      int b = in.read();
-
-      if (b < 0) break;
-
-      // End of line
-      if (b == '\n') break;
-
-      // '\r' is also a line delimiter
-      if (b == '\r') {
-        b = in.read(); // Eat the following '\n', if any
-        if ((b > 0) && (b != '\n')) in.unread(b);
-        break;
-      }
-
-      // Don't read any datagrams
-      if (b == STANDARD_DELIMITER) {
-        in.unread(b);
-        break;
-      }
-
-      buf.append((char) b);
-    }
-
-    return buf.toString();
+  /** Sends the "exit" command to the server, when logged in. */
+  public void exit() {
+    sendCommand("exit", true, true, null);
   }
 
   /**
-   * Filters certain characters and character sequences (such as BEL and the prompt) from plain
-   * lines of text. Returns the string after filter, or <code>null</code> if the line should be
-   * completely ignored.
+   * Sends a command to the server with the specified options.
+   *
+   * @param command The command.
+   * @param whenLoggedIn If set and we are not yet logged in, wait until login and then send the
+   *     command. If unset, the command is sent immediately.
+   * @param avoidAliasing Avoid triggering any aliases with the command.
+   * @param tag The client tag ("arbitrary-string" in formats.txt) with which we tag the command;
+   *     <code>null</code> if none.
    */
-  private String filterLine(String line) {
-    int len = line.length();
-
-    // Keep initially empty lines.
-    if (len == 0) return "";
-
-    StringBuffer buf = new StringBuffer();
-
-    int i = 0;
-
-    // Skip leading prompt
-    while (line.startsWith("aics% ", i)) i += "aics% ".length();
-
-    for (; i < len; i++) {
-      char c = line.charAt(i);
-
-      // Ignore BEL
-      if (c == 7) continue;
-
-      buf.append(c);
-    }
-
-    // Ignore lines which have been completely filtered out
-    if (buf.length() == 0) return null;
-
-    return buf.toString();
-  }
-
-  /** Sends the "exit" command to the server, when logged in. */
-  public void exit() {
-    sendCommand("exit", true, true, null);
+  public void sendCommand(String command, boolean whenLoggedIn, boolean avoidAliasing, String tag) {
+    sendCommand(command, whenLoggedIn, avoidAliasing, tag, false);
   }
 
   /**
@@ -604,12 +467,14 @@ public class ChessclubConnection extends free.util.Connection {
    * @param avoidAliasing Avoid triggering any aliases with the command.
    * @param tag The client tag ("arbitrary-string" in formats.txt) with which we tag the command;
    *     <code>null</code> if none.
+   * @param urgent Send the command right away, without waiting for commands sent after it to be
+   *     coalesced with it. Meant for time critical commands, such as moves.
    */
   public synchronized void sendCommand(
-      String command, boolean whenLoggedIn, boolean avoidAliasing, String tag) {
+      String command, boolean whenLoggedIn, boolean avoidAliasing, String tag, boolean urgent) {
     command = makeCommand(command, avoidAliasing, tag);
 
-    if (isLoggedIn() || !whenLoggedIn) sendCommandImpl(command, true);
+    if (isLoggedIn() || !whenLoggedIn) sendCommandImpl(command, true, urgent);
     else onLoginCommandQueue.addLast(command);
   }
 
@@ -629,20 +494,20 @@ public class ChessclubConnection extends free.util.Connection {
     return command;
   }
 
-  /** Sends the given command to the server, optionally logging it to the log stream. */
-  private synchronized void sendCommandImpl(String command, boolean log) {
+  /**
+   * Queues the given command to be sent to the server, optionally logging it to the log stream and
+   * optionally without waiting to coalesce it with further commands.
+   */
+  private synchronized void sendCommandImpl(String command, boolean log, boolean urgent) {
     if (!isConnected()) throw new IllegalStateException("Not connected");
 
     if (log && (logStream != null)) logStream.println("SENDING COMMAND: " + command);
 
-    try {
-      OutputStream out = getOutputStream();
-      out.write(command.getBytes("ISO8859_1"));
-      out.write('\n');
-      out.flush();
-    } catch (IOException e) {
-      connectionInterrupted(e);
-    }
+    byte[] bytes = command.getBytes(StandardCharsets.ISO_8859_1);
+    byte[] data = new byte[bytes.length + 1];
+    System.arraycopy(bytes, 0, data, 0, bytes.length);
+    data[bytes.length] = '\n';
+    sendData(data, urgent);
   }
 
   /**
@@ -0,0 +1,376 @@
+/**
+ * The chessclub.com connection library. More information is available at http://www.jinchess.com/.
+ * Copyright (C) 2002-2003 Alexander Maryanovsky. All rights reserved.
+ *
+ * <p>The chessclub.com connection library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * <p>The chessclub.com connection library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU Lesser General Public License along with the
+ * chessclub.com connection library; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package free.chessclub;
+
+import free.chessclub.level1.Packet;
+import free.chessclub.level2.Datagram;
+import free.util.FormatException;
+import free.util.MessageFramer;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.StringTokenizer;
+
+/**
+ * Splits the raw byte stream sent by a chessclub.com server into messages - lines of plain text (
+ * <code>String</code>s), level1 packets ({@link Packet}s) and level2 datagrams ({@link Datagram}s).
+ * The framer is incremental - it may be fed arbitrary chunks of data and a partial message is kept
+ * until the rest of it arrives. Finding where a message ends is resumed from where it stopped, so a
+ * large message arriving in many chunks is still only scanned once before being parsed.
+ *
+ * <p>Bytes are mapped to characters as ISO-8859-1.
+ */
+public class ChessclubMessageFramer implements MessageFramer {
+
+  /** The standard delimiter, used to delimit both level1 and level2. */
+  private static final byte STANDARD_DELIMITER = '\u0019';
+
+  /** The start-of-level1-packet delimiter. */
+  private static final byte PACKET_START_DELIMITER = '[';
+
+  /** The end-of-level1-packet delimiter. */
+  private static final byte PACKET_END_DELIMITER = ']';
+
+  /** The start-of-level2-datagram delimiter. */
+  private static final byte DATAGRAM_START_DELIMITER = '(';
+
+  /** The end-of-datagram delimiter. */
+  private static final byte DATAGRAM_END_DELIMITER = ')';
+
+  /** The prompt we filter out. */
+  private static final byte[] PROMPT = {'a', 'i', 'c', 's', '%', ' '};
+
+  /** The data which has been received, but not yet turned into messages. */
+  private byte[] pending = new byte[1024];
+
+  /** The index of the first byte in <code>pending</code> which hasn't been consumed yet. */
+  private int start = 0;
+
+  /** The index after the last byte in <code>pending</code>. */
+  private int end = 0;
+
+  /**
+   * The index at which the search for the end of the current message resumes, or -1 if the search
+   * hasn't started yet.
+   */
+  private int scanPosition = -1;
+
+  /**
+   * The packet nesting depth at <code>scanPosition</code>, when the current message is a packet.
+   */
+  private int scanDepth = 0;
+
+  /** The index of the next byte to be parsed, while parsing a complete message. */
+  private int position;
+
+  /** Whether a '\n' (or a NUL) at the beginning of the next message should be dropped. */
+  private boolean eatLineFeed = false;
+
+  /** Set when the end-of-session marker has been read. Any data after it is ignored. */
+  private boolean sessionEnded = false;
+
+  /** The buffer into which datagrams are copied before being parsed. */
+  private char[] datagramBuffer = new char[512];
+
+  /**
+   * Returns whether the server has indicated the end of the session (a clean logout). No more
+   * messages are returned after that.
+   */
+  public boolean isSessionEnded() {
+    return sessionEnded;
+  }
+
+  @Override
+  public Object nextMessage(ByteBuffer in) throws IOException {
+    append(in);
+
+    while (start < end) {
+      if (sessionEnded) {
+        start = end = 0;
+        break;
+      }
+
+      if (eatLineFeed) {
+        eatLineFeed = false;
+        if ((pending[start] == '\n') || (pending[start] == 0)) start++;
+        continue;
+      }
+
+      int messageEnd = findMessageEnd();
+      if (messageEnd == -1) break;
+
+      position = start;
+      Object message = parseMessage(messageEnd, true);
+      start = messageEnd;
+      scanPosition = -1;
+
+      if (message != null) return message;
+    }
+
+    return null;
+  }
+
+  @Override
+  public Object finish() throws IOException {
+    if (sessionEnded || (start == end)) {
+      start = end = 0;
+      return null;
+    }
+
+    if (pending[start] == STANDARD_DELIMITER) {
+      if (start + 1 == end) throw new EOFException("EOF after STANDARD_DELIMITER");
+      else if (pending[start + 1] == DATAGRAM_START_DELIMITER)
+        throw new EOFException("EOF in a datagram");
+      else throw new EOFException("EOF in a packet");
+    }
+
+    // An unterminated line
+    position = start;
+    Object line = parseLine(end);
+    start = end = 0;
+    scanPosition = -1;
+    return line;
+  }
+
+  /** Appends the remaining bytes of the specified buffer to <code>pending</code>. */
+  private void append(ByteBuffer in) {
+    int count = in.remaining();
+    if (count == 0) return;
+
+    if (start > 0) {
+      System.arraycopy(pending, start, pending, 0, end - start);
+      if (scanPosition != -1) scanPosition -= start;
+      end -= start;
+      start = 0;
+    }
+
+    if (end + count > pending.length) {
+      byte[] newPending = new byte[Math.max(pending.length * 2, end + count)];
+      System.arraycopy(pending, 0, newPending, 0, end);
+      pending = newPending;
+    }
+
+    in.get(pending, end, count);
+    end += count;
+  }
+
+  /**
+   * Returns the index after the end of the message starting at <code>start</code>, or -1 if the
+   * message is not complete yet.
+   */
+  private int findMessageEnd() {
+    if (pending[start] != STANDARD_DELIMITER) return findLineEnd();
+
+    if (start + 1 == end) return -1;
+
+    switch (pending[start + 1]) {
+      case DATAGRAM_START_DELIMITER:
+        return findDatagramEnd();
+      case PACKET_START_DELIMITER:
+        return findPacketEnd();
+      case PACKET_END_DELIMITER:
+        return start + 2;
+      default: // A stray delimiter
+        return start + 1;
+    }
+  }
+
+  /** Finds the end of the line starting at <code>start</code>. */
+  private int findLineEnd() {
+    for (int i = (scanPosition == -1) ? start : scanPosition; i < end; i++) {
+      byte b = pending[i];
+      if ((b == '\n') || (b == '\r')) return i + 1;
+      else if (b == STANDARD_DELIMITER) return i;
+    }
+
+    scanPosition = end;
+    return -1;
+  }
+
+  /** Finds the end of the datagram starting at <code>start</code>. */
+  private int findDatagramEnd() {
+    for (int i = (scanPosition == -1) ? start + 2 : scanPosition; i < end; i++)
+      if ((pending[i] == DATAGRAM_END_DELIMITER) && (pending[i - 1] == STANDARD_DELIMITER))
+        return i + 1;
+
+    scanPosition = end;
+    return -1;
+  }
+
+  /** Finds the end of the packet starting at <code>start</code>, including nested packets. */
+  private int findPacketEnd() {
+    int depth = (scanPosition == -1) ? 1 : scanDepth;
+    for (int i = (scanPosition == -1) ? start + 2 : scanPosition; i < end; i++) {
+      if (pending[i - 1] != STANDARD_DELIMITER) continue;
+
+      if (pending[i] == PACKET_START_DELIMITER) depth++;
+      else if ((pending[i] == PACKET_END_DELIMITER) && (--depth == 0)) return i + 1;
+    }
+
+    scanPosition = end;
+    scanDepth = depth;
+    return -1;
+  }
+
+  /**
+   * Parses the message starting at <code>position</code>, which is complete and ends no later than
+   * the specified limit. Returns <code>null</code> if the message should be ignored.
+   */
+  private Object parseMessage(int limit, boolean topLevel) {
+    if (pending[position] != STANDARD_DELIMITER) return parseLine(limit);
+
+    switch (pending[position + 1]) {
+      case PACKET_START_DELIMITER:
+        return parsePacket(limit);
+      case DATAGRAM_START_DELIMITER:
+        return parseDatagram(limit);
+      case PACKET_END_DELIMITER: // This means a clean logout
+        position += 2;
+        if (topLevel) sessionEnded = true;
+        return null;
+      default: // Ignore stray delimiters
+        position++;
+        return null;
+    }
+  }
+
+  /** Parses a line of plain text. */
+  private String parseLine(int limit) {
+    int lineStart = position;
+    int lineEnd = limit;
+    while (position < limit) {
+      byte b = pending[position];
+
+      // Don't read any datagrams
+      if (b == STANDARD_DELIMITER) {
+        lineEnd = position;
+        break;
+      }
+
+      position++;
+
+      // End of line
+      if (b == '\n') {
+        lineEnd = position - 1;
+        break;
+      }
+
+      // '\r' is also a line delimiter; eat the following '\n', if any
+      if (b == '\r') {
+        lineEnd = position - 1;
+        if (position == limit) eatLineFeed = true;
+        else if ((pending[position] == '\n') || (pending[position] == 0)) position++;
+        break;
+      }
+    }
+
+    return filterLine(pending, lineStart, lineEnd);
+  }
+
+  /** Parses a level2 datagram. */
+  private Datagram parseDatagram(int limit) {
+    int contentStart = position + 2;
+    int i = contentStart;
+    while ((i < limit)
+        && !((pending[i] == DATAGRAM_END_DELIMITER) && (pending[i - 1] == STANDARD_DELIMITER))) i++;
+    if (i == limit) throw new FormatException("Unterminated datagram");
+
+    int length = i - 1 - contentStart; // Strip off the delimiters
+    if (length > datagramBuffer.length)
+      datagramBuffer = new char[Math.max(datagramBuffer.length * 2, length)];
+
+    char[] buf = datagramBuffer;
+    for (int j = 0; j < length; j++) buf[j] = (char) (pending[contentStart + j] & 0xff);
+
+    position = i + 1;
+    return Datagram.parseDatagram(buf, 0, length);
+  }
+
+  /** Parses a level1 packet. */
+  private Packet parsePacket(int limit) {
+    int headerStart = position + 2;
+    int headerEnd = headerStart;
+    while ((headerEnd < limit) && (pending[headerEnd] != '\n')) headerEnd++;
+    if (headerEnd == limit) throw new FormatException("Unterminated packet header");
+    position = headerEnd + 1;
+
+    // In contradiction to formats.txt, the servers seems to end the header line with \r\n
+    if ((headerEnd > headerStart) && (pending[headerEnd - 1] == '\r')) headerEnd--;
+
+    String header =
+        new String(pending, headerStart, headerEnd - headerStart, StandardCharsets.ISO_8859_1);
+    StringTokenizer tokenizer = new StringTokenizer(header, " ");
+    int commandCode = Integer.parseInt(tokenizer.nextToken());
+    String playerName = tokenizer.nextToken();
+    String clientTag = tokenizer.hasMoreTokens() ? tokenizer.nextToken() : null;
+
+    List items = new LinkedList();
+    // Read until the matching ^Y]
+    while (true) {
+      if (position + 1 >= limit) throw new FormatException("Unterminated packet");
+
+      if ((pending[position] == STANDARD_DELIMITER)
+          && (pending[position + 1] == PACKET_END_DELIMITER)) {
+        position += 2;
+        break;
+      }
+
+      Object item = parseMessage(limit, false);
+      if (item != null) items.add(item);
+    }
+
+    return new Packet(commandCode, playerName, clientTag, items.toArray(new Object[items.size()]));
+  }
+
+  /**
+   * Filters certain characters and character sequences (such as BEL and the prompt) from the
+   * specified line of text. Returns the string after filter, or <code>null</code> if the line
+   * should be completely ignored.
+   */
+  private static String filterLine(byte[] buf, int offset, int end) {
+    // Keep initially empty lines.
+    if (offset == end) return "";
+
+    // Skip leading prompt
+    while (startsWithPrompt(buf, offset, end)) offset += PROMPT.length;
+
+    StringBuffer line = new StringBuffer(end - offset);
+    for (int i = offset; i < end; i++) {
+      // Ignore BEL
+      if (buf[i] == 7) continue;
+
+      line.append((char) (buf[i] & 0xff));
+    }
+
+    // Ignore lines which have been completely filtered out
+    if (line.length() == 0) return null;
+
+    return line.toString();
+  }
+
+  /** Returns whether the specified range of the specified buffer starts with the prompt. */
+  private static boolean startsWithPrompt(byte[] buf, int offset, int end) {
+    if (end - offset < PROMPT.length) return false;
+
+    for (int i = 0; i < PROMPT.length; i++) if (buf[offset + i] != PROMPT[i]) return false;
+
+    return true;
+  }
+}
@@ -17,8 +17,6 @@
 package free.chessclub.level2;
 
 import free.util.FormatException;
-import java.util.LinkedList;
-import java.util.List;
 
 /**
  * Represents a datagram sent by the chessclub.com server in the format described at <code>
@@ -155,15 +153,46 @@ public class Datagram {
   /** The ID of the datagram. */
   private final int id;
 
-  /** An array holding the datagram fields. */
+  /**
+   * An array holding the datagram fields, when the datagram was created from already split fields;
+   * <code>null</code> otherwise.
+   */
   private final String[] fields;
 
+  /**
+   * The contents of the datagram, followed by a single space, when the datagram was created by
+   * {@link #parseDatagram(char[], int, int)}; <code>null</code> otherwise. Fields are only turned
+   * into strings when requested.
+   */
+  private final char[] data;
+
+  /**
+   * The offsets of the fields in <code>data</code>. The start (inclusive) of field <code>i</code>
+   * is at index <code>2*i</code>, the end (exclusive) at <code>2*i+1</code>.
+   */
+  private final int[] fieldOffsets;
+
+  /** The number of fields. */
+  private final int fieldCount;
+
   /** Creates a new <code>Datagram</code> with the specified datagram id and fields. */
   public Datagram(int id, String[] fields) {
     if (fields == null) throw new IllegalArgumentException("Datagram fields may not be null");
 
     this.id = id;
     this.fields = fields;
+    this.data = null;
+    this.fieldOffsets = null;
+    this.fieldCount = fields.length;
+  }
+
+  /** Creates a new <code>Datagram</code> whose fields are located in the specified buffer. */
+  private Datagram(int id, char[] data, int[] fieldOffsets, int fieldCount) {
+    this.id = id;
+    this.fields = null;
+    this.data = data;
+    this.fieldOffsets = fieldOffsets;
+    this.fieldCount = fieldCount;
   }
 
   /** Returns the ID of the datagram. */
@@ -173,12 +202,16 @@ public class Datagram {
 
   /** Returns the number of fields in this Datagram. */
   public int getFieldCount() {
-    return fields.length;
+    return fieldCount;
   }
 
   /** Returns the specified field, unparsed. */
   public String getField(int fieldIndex) {
-    return fields[fieldIndex];
+    if (fields != null) return fields[fieldIndex];
+
+    checkFieldIndex(fieldIndex);
+    int start = fieldOffsets[2 * fieldIndex];
+    return new String(data, start, fieldOffsets[2 * fieldIndex + 1] - start);
   }
 
   /** Returns the specified field parsed as a string. */
@@ -188,12 +221,20 @@ public class Datagram {
 
   /** Returns the specified field parsed as an integer. */
   public int getInteger(int fieldIndex) {
-    return Integer.parseInt(getField(fieldIndex));
+    if (fields != null) return Integer.parseInt(fields[fieldIndex]);
+
+    long value = parseLong(fieldIndex);
+    if ((value < Integer.MIN_VALUE) || (value > Integer.MAX_VALUE))
+      throw new NumberFormatException("Value out of range: " + getField(fieldIndex));
+
+    return (int) value;
   }
 
   /** Returns the specified field parsed as a long. */
   public long getLong(int fieldIndex) {
-    return Long.parseLong(getField(fieldIndex));
+    if (fields != null) return Long.parseLong(fields[fieldIndex]);
+
+    return parseLong(fieldIndex);
   }
 
   /**
@@ -201,7 +242,50 @@ public class Datagram {
    * </code> is returned, otherwise <code>false</code> is returned.
    */
   public boolean getBoolean(int fieldIndex) {
-    return getField(fieldIndex).equals("1");
+    if (fields != null) return fields[fieldIndex].equals("1");
+
+    checkFieldIndex(fieldIndex);
+    int start = fieldOffsets[2 * fieldIndex];
+    return (fieldOffsets[2 * fieldIndex + 1] - start == 1) && (data[start] == '1');
+  }
+
+  /** Throws an <code>ArrayIndexOutOfBoundsException</code> if there's no such field. */
+  private void checkFieldIndex(int fieldIndex) {
+    if ((fieldIndex < 0) || (fieldIndex >= fieldCount))
+      throw new ArrayIndexOutOfBoundsException(fieldIndex);
+  }
+
+  /**
+   * Parses the specified field as a decimal long, directly from <code>data</code>. Accepts the same
+   * input as <code>Long.parseLong</code>.
+   */
+  private long parseLong(int fieldIndex) {
+    checkFieldIndex(fieldIndex);
+    int start = fieldOffsets[2 * fieldIndex];
+    int end = fieldOffsets[2 * fieldIndex + 1];
+
+    int i = start;
+    boolean negative = false;
+    if ((i < end) && ((data[i] == '-') || (data[i] == '+'))) negative = data[i++] == '-';
+
+    if (i == end) throw badNumber(fieldIndex);
+
+    // Accumulate negatively, like Long.parseLong, so that Long.MIN_VALUE fits
+    long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+    long result = 0;
+    for (; i < end; i++) {
+      int digit = Character.digit(data[i], 10);
+      if ((digit < 0) || (result < limit / 10) || (result * 10 < limit + digit))
+        throw badNumber(fieldIndex);
+      result = result * 10 - digit;
+    }
+
+    return negative ? result : -result;
+  }
+
+  /** Creates a <code>NumberFormatException</code> for the specified field. */
+  private NumberFormatException badNumber(int fieldIndex) {
+    return new NumberFormatException("For input string: \"" + getField(fieldIndex) + "\"");
   }
 
   /**
@@ -213,49 +297,85 @@ public class Datagram {
    *     not in the proper format.
    */
   public static Datagram parseDatagram(String dgString) throws FormatException {
+    return parseDatagram(dgString.toCharArray(), 0, dgString.length());
+  }
+
+  /**
+   * Parses the specified range of the specified buffer and returns a <code>Datagram</code> object
+   * corresponding to the datagram represented by it. The range should be the contents of the
+   * datagram, without the surrounding delimiters. The contents are copied, so the caller is free to
+   * reuse the buffer. Only the offsets of the fields are recorded - the field values are parsed (or
+   * turned into strings) only when requested.
+   *
+   * @throws FormatException if the specified range cannot be parsed as a datagram because it is not
+   *     in the proper format.
+   */
+  public static Datagram parseDatagram(char[] buf, int offset, int length) throws FormatException {
+    // So that each field is suffixed with a space
+    char[] data = new char[length + 1];
+    System.arraycopy(buf, offset, data, 0, length);
+    data[length] = ' ';
+
+    int index = indexOf(data, ' ', 0); // Never -1, thanks to the trailing space
+    int id;
     try {
-      int index = dgString.indexOf(' ');
-      if (index == -1) // No arguments in the datagram
-      index = dgString.length();
-      int id = Integer.parseInt(dgString.substring(0, index));
-
-      dgString += " "; // So that each field is suffixed with a space
-
-      List fields = new LinkedList();
-
-      index++;
-      int dgLength = dgString.length();
-      while (index < dgLength) {
-        int startIndex, endIndex;
-        char firstChar = dgString.charAt(index);
-        if (firstChar == '{') { // The delimiters are { and }
-          startIndex = index + 1;
-          endIndex = dgString.indexOf('}', startIndex);
-          index = endIndex + 2; // "} "
-        } else if (firstChar == SPECIAL_STRING_DELIM_START) { // The delimiters are ^Y{ and ^Y}
-          startIndex = index + 2;
-          endIndex = dgString.indexOf(SPECIAL_STRING_DELIM_START, startIndex);
-          index = endIndex + 3; // "^Y} "
-        } else {
-          while (firstChar == ' ') { // Skip any extra spaces just in case
-            index++;
-            firstChar = dgString.charAt(index);
-          }
-
-          startIndex = index;
-          endIndex = dgString.indexOf(' ', startIndex);
-          index = endIndex + 1;
+      id = Integer.parseInt(new String(data, 0, index));
+    } catch (NumberFormatException e) {
+      throw new FormatException(e);
+    }
+
+    int[] fieldOffsets = new int[16];
+    int fieldCount = 0;
+
+    index++;
+    int dgLength = data.length;
+    while (index < dgLength) {
+      int startIndex, endIndex;
+      char firstChar = data[index];
+      if (firstChar == '{') { // The delimiters are { and }
+        startIndex = index + 1;
+        endIndex = indexOf(data, '}', startIndex);
+        index = endIndex + 2; // "} "
+      } else if (firstChar == SPECIAL_STRING_DELIM_START) { // The delimiters are ^Y{ and ^Y}
+        startIndex = index + 2;
+        endIndex = indexOf(data, SPECIAL_STRING_DELIM_START, startIndex);
+        index = endIndex + 3; // "^Y} "
+      } else {
+        while (firstChar == ' ') { // Skip any extra spaces just in case
+          index++;
+          if (index >= dgLength) throw new FormatException("Unexpected end of datagram");
+          firstChar = data[index];
         }
 
-        fields.add(dgString.substring(startIndex, endIndex));
+        startIndex = index;
+        endIndex = indexOf(data, ' ', startIndex);
+        index = endIndex + 1;
       }
 
-      return new Datagram(id, (String[]) fields.toArray(new String[fields.size()]));
-    } catch (NumberFormatException e) {
-      throw new FormatException(e);
-    } catch (StringIndexOutOfBoundsException e) {
-      throw new FormatException(e);
+      if ((endIndex < 0) || (startIndex > endIndex))
+        throw new FormatException("Unterminated field in datagram");
+
+      if (2 * fieldCount == fieldOffsets.length) {
+        int[] newOffsets = new int[fieldOffsets.length * 2];
+        System.arraycopy(fieldOffsets, 0, newOffsets, 0, fieldOffsets.length);
+        fieldOffsets = newOffsets;
+      }
+      fieldOffsets[2 * fieldCount] = startIndex;
+      fieldOffsets[2 * fieldCount + 1] = endIndex;
+      fieldCount++;
     }
+
+    return new Datagram(id, data, fieldOffsets, fieldCount);
+  }
+
+  /**
+   * Returns the index of the first occurrence of the specified character in the specified buffer,
+   * starting at the specified index, or -1 if there is none.
+   */
+  private static int indexOf(char[] buf, char c, int fromIndex) {
+    for (int i = Math.max(fromIndex, 0); i < buf.length; i++) if (buf[i] == c) return i;
+
+    return -1;
   }
 
   /** Returns a textual representation of this datagram. */
@@ -0,0 +1,314 @@
+/**
+ * The freechess.org connection library. More information is available at http://www.jinchess.com/.
+ * Copyright (C) 2002, 2003 Alexander Maryanovsky. All rights reserved.
+ *
+ * <p>The freechess.org connection library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * <p>The freechess.org connection library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU Lesser General Public License along with the
+ * freechess.org connection library; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package free.freechess;
+
+/**
+ * Decides, in a single pass over the beginning of a line, which of the line handlers of {@link
+ * FreechessConnection} could possibly accept it. The result is a bit mask of line kinds, where the
+ * bit index of each kind is its position in the handler chain, so iterating the set bits from the
+ * lowest one preserves the original order in which the handlers are tried.
+ *
+ * <p>Most kinds are identified by a fixed prefix. Lines starting with a username are identified by
+ * what follows the username and its titles, which picks at most one kind of tell, shout, kibitz or
+ * whisper. A handler is only left out if its regular expression cannot match the line - the text
+ * following the part of the line which identifies its kind is left to that regular expression.
+ * Lines matching none of the kinds go straight to the line filter and <code>processLine</code>.
+ */
+final class FicsLineClassifier {
+
+  /** The line kinds, in the order in which their handlers are tried. */
+  static final int GAME_INFO = 0;
+
+  static final int STYLE12 = 1;
+  static final int DELTA_BOARD = 2;
+  static final int SEEKS_CLEARED = 3;
+  static final int SEEK_ADDED = 4;
+  static final int SEEKS_REMOVED = 5;
+  static final int BUGHOUSE_HOLDINGS = 6;
+  static final int GAME_END = 7;
+  static final int STOPPED_OBSERVING = 8;
+  static final int STOPPED_EXAMINING = 9;
+  static final int ENTERED_BSETUP_MODE = 10;
+  static final int EXITED_BSETUP_MODE = 11;
+  static final int ILLEGAL_MOVE = 12;
+  static final int CHANNEL_TELL = 13;
+  static final int LOGIN = 14;
+  static final int IVAR_STATE_CHANGED = 15;
+  static final int PERSONAL_TELL = 16;
+  static final int SAY_TELL = 17;
+  static final int PTELL = 18;
+  static final int SHOUT = 19;
+  static final int ISHOUT = 20;
+  static final int TSHOUT = 21;
+  static final int CSHOUT = 22;
+  static final int ANNOUNCEMENT = 23;
+  static final int KIBITZ = 24;
+  static final int WHISPER = 25;
+  static final int QTELL = 26;
+  static final int OFFER = 27;
+  static final int OFFER_REMOVED = 28;
+  static final int PLAYER_OFFERED = 29;
+  static final int PLAYER_DECLINED = 30;
+  static final int PLAYER_WITHDREW = 31;
+  static final int PLAYER_COUNTERED_TAKEBACK_OFFER = 32;
+  static final int SIMUL_CURRENT_BOARD_CHANGED = 33;
+  static final int PRIMARY_GAME_CHANGED = 34;
+
+  /** The root of the prefix trie. */
+  private static final Node ROOT = new Node();
+
+  static {
+    add("<g1> ", GAME_INFO);
+    add("<12> ", STYLE12);
+    add("<d1> ", DELTA_BOARD);
+    add("<sc>", SEEKS_CLEARED);
+    add("<s> ", SEEK_ADDED);
+    add("<sn> ", SEEK_ADDED);
+    add("<sr> ", SEEKS_REMOVED);
+    add("<b1> ", BUGHOUSE_HOLDINGS);
+    add("{Game ", GAME_END);
+    add("Removing game ", STOPPED_OBSERVING);
+    add("You are no longer examining game ", STOPPED_EXAMINING);
+    add("Entering setup mode.", ENTERED_BSETUP_MODE);
+    add("Game is validated - entering examine mode.", EXITED_BSETUP_MODE);
+    add("Illegal move ", ILLEGAL_MOVE);
+    add("It is not your move.", ILLEGAL_MOVE);
+    add("The clock is paused, use \"unpause\" to resume.", ILLEGAL_MOVE);
+    add("**** ", LOGIN);
+    add("--> ", ISHOUT);
+    add(":", TSHOUT);
+    add(":", QTELL);
+    add("    **ANNOUNCEMENT** from ", ANNOUNCEMENT);
+    add("<pt> ", OFFER);
+    add("<pf> ", OFFER);
+    add("<pr> ", OFFER_REMOVED);
+    add("Game ", PLAYER_OFFERED);
+    add("Game ", PLAYER_DECLINED);
+    add("Game ", PLAYER_WITHDREW);
+    add("Game ", PLAYER_COUNTERED_TAKEBACK_OFFER);
+    add("You are now at ", SIMUL_CURRENT_BOARD_CHANGED);
+    add("Your primary game is now game ", PRIMARY_GAME_CHANGED);
+  }
+
+  /** No instances. */
+  private FicsLineClassifier() {}
+
+  /** Returns the mask bit of the specified line kind. */
+  private static long bit(int kind) {
+    return 1L << kind;
+  }
+
+  /** Adds the specified prefix, identifying the specified kind of line, to the trie. */
+  private static void add(String prefix, int kind) {
+    Node node = ROOT;
+    for (int i = 0; i < prefix.length(); i++) node = node.getOrCreateChild(prefix.charAt(i));
+    node.kinds |= bit(kind);
+  }
+
+  /**
+   * Returns a bit mask of the kinds of lines the specified line may be. Bit <code>n</code> is set
+   * if the line may be of the kind whose value is <code>n</code>.
+   */
+  static long classify(String line) {
+    int length = line.length();
+    if (length == 0) return 0;
+
+    char first = line.charAt(0);
+    long kinds = 0;
+    if (isUsernameChar(first)) {
+      int kind = classifyUsernameLine(line);
+      if (kind != -1) kinds |= bit(kind);
+    }
+    if (isWordChar(first) && isIvarStateLine(line)) kinds |= bit(IVAR_STATE_CHANGED);
+
+    // Collect the kinds of all the prefixes the line starts with
+    Node node = ROOT;
+    for (int i = 0; i < length; i++) {
+      node = node.getChild(line.charAt(i));
+      if (node == null) break;
+      kinds |= node.kinds;
+    }
+
+    return kinds;
+  }
+
+  /**
+   * Returns the kind of the specified line if it starts with a username and may be one of the kinds
+   * of lines which do, or -1 otherwise. The username (<code>[A-z]{3,17}</code>) and its optional
+   * titles are skipped, and the kind is decided by the text following them.
+   */
+  private static int classifyUsernameLine(String line) {
+    int length = line.length();
+    int usernameEnd = 0;
+    while ((usernameEnd < length) && isUsernameChar(line.charAt(usernameEnd))) usernameEnd++;
+
+    // A '[' is a username character, but followed by a digit it opens the "[game]" of a say
+    if ((line.charAt(usernameEnd - 1) == '[')
+        && (usernameEnd < length)
+        && isDigit(line.charAt(usernameEnd))) usernameEnd--;
+    if ((usernameEnd < 3) || (usernameEnd > 17)) return -1;
+
+    int index = skipTitles(line, usernameEnd);
+    if ((index == -1) || (index == length)) return -1;
+
+    switch (line.charAt(index)) {
+      case ' ':
+        if (line.startsWith(" tells you: ", index)) return PERSONAL_TELL;
+        if (line.startsWith(" says: ", index)) return SAY_TELL;
+        if (line.startsWith(" (your partner) tells you: ", index)) return PTELL;
+        if (line.startsWith(" shouts: ", index)) return SHOUT;
+        if (line.startsWith(" c-shouts: ", index)) return CSHOUT;
+        return -1;
+      case '[': // "[game] says: "
+        {
+          int digitsEnd = skipDigits(line, index + 1);
+          return (digitsEnd > index + 1) && line.startsWith("] says: ", digitsEnd) ? SAY_TELL : -1;
+        }
+      case '(': // "(channel): " or "(rating)[game] kibitzes: " or "... whispers: "
+        return classifyParenthesizedLine(line, index);
+      default:
+        return -1;
+    }
+  }
+
+  /**
+   * Returns the index following the titles (<code>\([A-Z\*\(\)]*\)</code>, possibly several of them
+   * in a row) which start at the specified index of the specified line, the specified index itself
+   * if there are none, or -1 if the titles are malformed. As titles may contain parentheses, a '('
+   * ending them is taken to open the parenthesized part which follows them.
+   */
+  private static int skipTitles(String line, int index) {
+    int length = line.length();
+    if ((index == length) || (line.charAt(index) != '(')) return index;
+
+    int end = index + 1;
+    while ((end < length) && isTitleChar(line.charAt(end))) end++;
+
+    char last = line.charAt(end - 1);
+    if (last == ')') return end;
+    if ((last == '(') && ((end - 1 == index) || (line.charAt(end - 2) == ')'))) return end - 1;
+    return -1;
+  }
+
+  /**
+   * Returns the kind of the specified line, whose username and titles end at the specified index,
+   * where a '(' follows them: a channel tell, a kibitz, a whisper, or -1 if it's none of them.
+   */
+  private static int classifyParenthesizedLine(String line, int index) {
+    int length = line.length();
+    int start = index + 1;
+    while ((start < length) && (line.charAt(start) == ' ')) start++;
+    int spaceCount = start - index - 1;
+
+    int end = start;
+    boolean digitsOnly = true;
+    while ((end < length) && (isDigit(line.charAt(end)) || (line.charAt(end) == '-'))) {
+      if (line.charAt(end) == '-') digitsOnly = false;
+      end++;
+    }
+    if ((end == start) || !line.startsWith(")", end)) return -1;
+    end++;
+
+    if (line.startsWith(": ", end)) return (spaceCount == 0) && digitsOnly ? CHANNEL_TELL : -1;
+
+    if ((spaceCount > 3) || !line.startsWith("[", end)) return -1;
+    int digitsEnd = skipDigits(line, end + 1);
+    if (digitsEnd == end + 1) return -1;
+    if (line.startsWith("] kibitzes: ", digitsEnd)) return KIBITZ;
+    if (line.startsWith("] whispers: ", digitsEnd)) return WHISPER;
+    return -1;
+  }
+
+  /**
+   * Returns whether the specified line, which starts with a word character, has the form of an ivar
+   * state change notification: <code>(\w+) (un)?set.</code>
+   */
+  private static boolean isIvarStateLine(String line) {
+    int length = line.length();
+    int wordEnd = 1;
+    while ((wordEnd < length) && isWordChar(line.charAt(wordEnd))) wordEnd++;
+
+    int restLength = length - wordEnd;
+    return ((restLength == " set.".length()) && line.startsWith(" set", wordEnd))
+        || ((restLength == " unset.".length()) && line.startsWith(" unset", wordEnd));
+  }
+
+  /** Returns the index of the first non-digit at or following the specified index of the line. */
+  private static int skipDigits(String line, int index) {
+    int length = line.length();
+    while ((index < length) && isDigit(line.charAt(index))) index++;
+    return index;
+  }
+
+  /** Returns whether the specified character matches <code>[A-z]</code>. */
+  private static boolean isUsernameChar(char c) {
+    return (c >= 'A') && (c <= 'z');
+  }
+
+  /** Returns whether the specified character matches <code>[A-Z\*\(\)]</code>. */
+  private static boolean isTitleChar(char c) {
+    return ((c >= 'A') && (c <= 'Z')) || (c == '*') || (c == '(') || (c == ')');
+  }
+
+  /** Returns whether the specified character matches <code>\w</code>. */
+  private static boolean isWordChar(char c) {
+    return isUsernameChar(c) && ((c <= 'Z') || (c >= 'a') || (c == '_')) || isDigit(c);
+  }
+
+  /** Returns whether the specified character matches <code>\d</code>. */
+  private static boolean isDigit(char c) {
+    return (c >= '0') && (c <= '9');
+  }
+
+  /** A trie node. */
+  private static final class Node {
+
+    /** The characters leading to the child nodes. */
+    private char[] keys = new char[0];
+
+    /** The child nodes, parallel to <code>keys</code>. */
+    private Node[] children = new Node[0];
+
+    /** The kinds of lines identified by the prefix ending at this node. */
+    private long kinds = 0;
+
+    /** Returns the child node for the specified character, or <code>null</code> if none. */
+    Node getChild(char c) {
+      for (int i = 0; i < keys.length; i++) if (keys[i] == c) return children[i];
+
+      return null;
+    }
+
+    /** Returns the child node for the specified character, creating it if necessary. */
+    Node getOrCreateChild(char c) {
+      Node child = getChild(c);
+      if (child != null) return child;
+
+      int count = keys.length;
+      char[] newKeys = new char[count + 1];
+      Node[] newChildren = new Node[count + 1];
+      System.arraycopy(keys, 0, newKeys, 0, count);
+      System.arraycopy(children, 0, newChildren, 0, count);
+      newKeys[count] = c;
+      newChildren[count] = child = new Node();
+      keys = newKeys;
+      children = newChildren;
+
+      return child;
+    }
+  }
+}
@@ -0,0 +1,139 @@
+/**
+ * The freechess.org connection library. More information is available at http://www.jinchess.com/.
+ * Copyright (C) 2002, 2003 Alexander Maryanovsky. All rights reserved.
+ *
+ * <p>The freechess.org connection library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * <p>The freechess.org connection library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU Lesser General Public License along with the
+ * freechess.org connection library; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package free.freechess;
+
+import free.util.MessageFramer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Splits the raw byte stream sent by a freechess.org server into lines. Bytes are accumulated in a
+ * reused buffer and the only allocation per line is the resulting <code>String</code>. The framer
+ * is incremental - it may be fed arbitrary chunks of data and a partial line is simply resumed when
+ * the next chunk arrives.
+ *
+ * <p>The framing rules are:
+ *
+ * <ul>
+ *   <li>A line ends with <code>\n</code>. FICS actually sends <code>\n\r</code>, so a <code>\r
+ *       </code> (or a NUL) immediately following the <code>\n</code> is dropped.
+ *   <li>The <code>fics% </code> prompt is stripped from the beginning of a line, as many times as
+ *       it occurs there.
+ *   <li>Lines which consist of nothing but the prompt are dropped.
+ * </ul>
+ *
+ * Bytes are mapped to characters as ISO-8859-1.
+ */
+public class FicsLineFramer implements MessageFramer {
+
+  /** The prompt we filter out. */
+  private static final byte[] PROMPT = {'f', 'i', 'c', 's', '%', ' '};
+
+  /** The buffer holding the line currently being read. */
+  private byte[] line = new byte[256];
+
+  /** The amount of bytes in the current line. */
+  private int lineLength = 0;
+
+  /** Whether a prompt has been stripped from the current line. */
+  private boolean lineStartsWithPrompt = false;
+
+  /** Whether the next byte should be dropped if it's a '\r' (that is, we just read a '\n'). */
+  private boolean eatCarriageReturn = false;
+
+  /**
+   * Consumes bytes from the specified buffer until a complete line has been read, and returns that
+   * line. Returns <code>null</code> if the buffer has been exhausted before a line is complete, in
+   * which case the partial line is kept and will be completed by subsequent invocations.
+   */
+  public String nextLine(ByteBuffer src) {
+    while (src.hasRemaining()) {
+      int b = src.get() & 0xff;
+
+      if (eatCarriageReturn) {
+        eatCarriageReturn = false;
+        if ((b == '\r') || (b == 0)) continue;
+      }
+
+      // End of line
+      if (b == '\n') {
+        eatCarriageReturn = true;
+
+        // Ignore all-prompt lines
+        if (lineStartsWithPrompt && (lineLength == 0)) {
+          lineStartsWithPrompt = false;
+          continue;
+        }
+
+        return takeLine();
+      }
+
+      if (lineLength == line.length) {
+        byte[] newLine = new byte[line.length * 2];
+        System.arraycopy(line, 0, newLine, 0, lineLength);
+        line = newLine;
+      }
+      line[lineLength++] = (byte) b;
+
+      // Filter out the prompt
+      if (isPrompt()) {
+        lineLength = 0;
+        lineStartsWithPrompt = true;
+      }
+    }
+
+    return null;
+  }
+
+  /** Returns the next complete line, as {@link #nextLine(ByteBuffer)} does. */
+  @Override
+  public Object nextMessage(ByteBuffer src) {
+    return nextLine(src);
+  }
+
+  /**
+   * Invoked when the end of the stream is reached. Returns the final, unterminated line, or <code>
+   * null</code> if there is none.
+   */
+  @Override
+  public String finish() {
+    eatCarriageReturn = false;
+    if (lineLength == 0) {
+      lineStartsWithPrompt = false;
+      return null;
+    }
+
+    return takeLine();
+  }
+
+  /** Returns whether the current line consists of exactly the prompt. */
+  private boolean isPrompt() {
+    if (lineLength != PROMPT.length) return false;
+
+    for (int i = 0; i < PROMPT.length; i++) if (line[i] != PROMPT[i]) return false;
+
+    return true;
+  }
+
+  /** Creates a <code>String</code> from the current line and resets the state for the next one. */
+  private String takeLine() {
+    String result = new String(line, 0, lineLength, StandardCharsets.ISO_8859_1);
+    lineLength = 0;
+    lineStartsWithPrompt = false;
+    return result;
+  }
+}
@@ -0,0 +1,165 @@
+/**
+ * The freechess.org connection library. More information is available at http://www.jinchess.com/.
+ * Copyright (C) 2002, 2003 Alexander Maryanovsky. All rights reserved.
+ *
+ * <p>The freechess.org connection library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * <p>The freechess.org connection library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU Lesser General Public License along with the
+ * freechess.org connection library; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package free.freechess;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Splits a line into tokens the way a <code>StringTokenizer</code> would, but lets the caller parse
+ * numbers and compare tokens in place, without creating a string for each token. Used to parse the
+ * fixed-format lines (style12, gameinfo etc.) the server sends.
+ */
+final class FieldScanner {
+
+  /** The line we scan. */
+  private final String line;
+
+  /** The delimiter characters. */
+  private final String delimiters;
+
+  /** The index at which the current token starts. */
+  private int tokenStart = 0;
+
+  /** The index after the end of the current token. */
+  private int tokenEnd = 0;
+
+  /** Creates a new <code>FieldScanner</code> for the specified line and delimiter characters. */
+  FieldScanner(String line, String delimiters) {
+    this.line = line;
+    this.delimiters = delimiters;
+  }
+
+  /** Returns whether the specified character is a delimiter. */
+  private boolean isDelimiter(char c) {
+    return delimiters.indexOf(c) != -1;
+  }
+
+  /**
+   * Advances to the next token, setting <code>tokenStart</code> and <code>tokenEnd</code>. Throws a
+   * <code>NoSuchElementException</code> if there are no more tokens.
+   */
+  void advance() {
+    int length = line.length();
+    int start = tokenEnd;
+    while ((start < length) && isDelimiter(line.charAt(start))) start++;
+    if (start == length) throw new NoSuchElementException();
+
+    int end = start + 1;
+    while ((end < length) && !isDelimiter(line.charAt(end))) end++;
+
+    tokenStart = start;
+    tokenEnd = end;
+  }
+
+  /** Returns the next token. */
+  String nextToken() {
+    advance();
+    return line.substring(tokenStart, tokenEnd);
+  }
+
+  /** Returns whether the next token is equal to the specified string. */
+  boolean nextTokenEquals(String s) {
+    advance();
+    return currentTokenEquals(s);
+  }
+
+  /** Returns whether the token last advanced to is equal to the specified string. */
+  boolean currentTokenEquals(String s) {
+    return (s != null)
+        && (tokenEnd - tokenStart == s.length())
+        && line.regionMatches(tokenStart, s, 0, s.length());
+  }
+
+  /** Returns the length of the token last advanced to. */
+  int currentTokenLength() {
+    return tokenEnd - tokenStart;
+  }
+
+  /**
+   * Copies the token last advanced to into the specified array, at the specified offset. Returns
+   * the amount of characters copied.
+   */
+  int getCurrentToken(char[] buf, int offset) {
+    line.getChars(tokenStart, tokenEnd, buf, offset);
+    return tokenEnd - tokenStart;
+  }
+
+  /** Returns the last character of the token last advanced to. */
+  char lastChar() {
+    return line.charAt(tokenEnd - 1);
+  }
+
+  /** Returns the token last advanced to. */
+  String getCurrentToken() {
+    return line.substring(tokenStart, tokenEnd);
+  }
+
+  /**
+   * Checks that the next token is the specified string. Throws an <code>IllegalArgumentException
+   * </code> if it isn't.
+   */
+  void assertToken(String token) {
+    if (!nextTokenEquals(token))
+      throw new IllegalArgumentException(
+          "Bad token \"" + getCurrentToken() + "\", expected \"" + token + "\" instead");
+  }
+
+  /** Parses the next token as a decimal integer. */
+  int nextInt() {
+    advance();
+    return parseInt(tokenStart, tokenEnd, 10);
+  }
+
+  /** Parses the next token as an integer in the specified radix. */
+  int nextInt(int radix) {
+    advance();
+    return parseInt(tokenStart, tokenEnd, radix);
+  }
+
+  /**
+   * Parses the next token as "1" (<code>true</code>) or "0" (<code>false</code>). Throws an <code>
+   * IllegalArgumentException</code> for any other value.
+   */
+  boolean nextBoolean() {
+    advance();
+    if (tokenEnd - tokenStart == 1) {
+      char c = line.charAt(tokenStart);
+      if (c == '1') return true;
+      else if (c == '0') return false;
+    }
+
+    throw new IllegalArgumentException("Bad boolean value: " + getCurrentToken());
+  }
+
+  /**
+   * Parses the specified range of the line as an integer in the specified radix, the same way
+   * <code>Integer.parseInt</code> would.
+   */
+  int parseInt(int start, int end, int radix) {
+    return Integer.parseInt(line, start, end, radix);
+  }
+
+  /** Returns the index at which the token last advanced to starts. */
+  int getTokenStart() {
+    return tokenStart;
+  }
+
+  /** Returns the index after the end of the token last advanced to. */
+  int getTokenEnd() {
+    return tokenEnd;
+  }
+}
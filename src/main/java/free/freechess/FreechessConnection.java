@@ -17,17 +17,19 @@
 package free.freechess;
 
 import free.util.Connection;
-import java.io.BufferedInputStream;
+import free.util.MessageFramer;
+import free.util.Pair;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.io.PrintStream;
-import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.BitSet;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.StringTokenizer;
+import java.util.regex.MatchResult;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -81,6 +83,18 @@ public class FreechessConnection extends Connection {
   /** The queue of commands we are to send on-login. */
   private LinkedList onLoginCommandQueue = new LinkedList();
 
+  /** Splits the data arriving from the server into lines. Created anew for each socket. */
+  private FicsLineFramer lineFramer;
+
+  /** The buffer into which we read data from the server, before passing it to the line framer. */
+  private ByteBuffer inputBuffer;
+
+  /**
+   * The last style12 board we parsed. The next board shares with it the strings (player names, for
+   * example) which haven't changed.
+   */
+  private volatile Style12Struct lastStyle12 = null;
+
   /** The value we're supposed to assign to the interface variable during login. */
   private String interfaceVar = "Java freechess.org library by Alexander Maryanovsky";
 
@@ -198,7 +212,7 @@ public class FreechessConnection extends Connection {
   /** Invoked when a connection to the server is established. Sends ivar settings to the server. */
   @Override
   protected void handleConnected() {
-    sendCommandImpl(createLoginIvarsSettingString(requestedIvarStates), true);
+    sendCommandImpl(createLoginIvarsSettingString(requestedIvarStates), true, false);
     filterLine("#Ivars set.");
     ivarStates = (BitSet) requestedIvarStates.clone();
 
@@ -208,8 +222,8 @@ public class FreechessConnection extends Connection {
   /** Sends the login information to the server. */
   @Override
   protected void sendLoginSequence() {
-    sendCommandImpl(getRequestedUsername(), true);
-    if (getPassword() != null) sendCommandImpl(getPassword(), false);
+    sendCommandImpl(getRequestedUsername(), true, false);
+    if (getPassword() != null) sendCommandImpl(getPassword(), false, false);
   }
 
   /** Creates the string we send on the login line to set ivars. */
@@ -251,7 +265,7 @@ public class FreechessConnection extends Connection {
 
       for (Iterator i = onLoginCommandQueue.iterator(); i.hasNext(); ) {
         String command = (String) i.next();
-        sendCommandImpl(command, true);
+        sendCommandImpl(command, true, false);
       }
       onLoginCommandQueue.clear();
     }
@@ -266,11 +280,31 @@ public class FreechessConnection extends Connection {
    * @param avoidAliasing Avoid triggering any aliases with the command.
    * @param avoidUnidling Avoid resetting the user's idle time counter with the command.
    */
-  public synchronized void sendCommand(
+  public void sendCommand(
       String command, boolean whenLoggedIn, boolean avoidAliasing, boolean avoidUnidling) {
+    sendCommand(command, whenLoggedIn, avoidAliasing, avoidUnidling, false);
+  }
+
+  /**
+   * Sends a command to the server with the specified options.
+   *
+   * @param command The command.
+   * @param whenLoggedIn If set and we are not yet logged in, wait until login and then send the
+   *     command. If unset, the command is sent immediately.
+   * @param avoidAliasing Avoid triggering any aliases with the command.
+   * @param avoidUnidling Avoid resetting the user's idle time counter with the command.
+   * @param urgent Send the command right away, without waiting for commands sent after it to be
+   *     coalesced with it. Meant for time critical commands, such as moves.
+   */
+  public synchronized void sendCommand(
+      String command,
+      boolean whenLoggedIn,
+      boolean avoidAliasing,
+      boolean avoidUnidling,
+      boolean urgent) {
     command = makeCommand(command, avoidAliasing, avoidUnidling);
 
-    if (isLoggedIn() || !whenLoggedIn) sendCommandImpl(command, true);
+    if (isLoggedIn() || !whenLoggedIn) sendCommandImpl(command, true, urgent);
     else onLoginCommandQueue.addLast(command);
   }
 
@@ -284,20 +318,20 @@ public class FreechessConnection extends Connection {
     else return command;
   }
 
-  /** Sends the given command to the server, optionally echoing it to System.out. */
-  private synchronized void sendCommandImpl(String command, boolean echo) {
+  /**
+   * Queues the given command to be sent to the server, optionally echoing it to System.out and
+   * optionally without waiting to coalesce it with further commands.
+   */
+  private synchronized void sendCommandImpl(String command, boolean echo, boolean urgent) {
     if (!isConnected()) throw new IllegalStateException("Not connected");
 
     if (echo) System.out.println("SENDING COMMAND: " + command);
 
-    try {
-      OutputStream out = getOutputStream();
-      out.write(command.getBytes("ASCII"));
-      out.write('\n');
-      out.flush();
-    } catch (IOException e) {
-      connectionInterrupted(e);
-    }
+    byte[] bytes = command.getBytes(StandardCharsets.US_ASCII);
+    byte[] data = new byte[bytes.length + 1];
+    System.arraycopy(bytes, 0, data, 0, bytes.length);
+    data[bytes.length] = '\n';
+    sendData(data, urgent);
   }
 
   /**
@@ -310,106 +344,98 @@ public class FreechessConnection extends Connection {
   protected void processDisconnection() {}
 
   /**
-   * Overrides {@link Connection#createInputStream(InputStream)} to wrap the specified <code>
-   * InputStream</code> in a <code>BufferedInputStream</code> and a <code>PushbackInputStream</code>
-   * .
+   * Overrides {@link Connection#createInputStream(InputStream)} to set up a fresh {@link
+   * FicsLineFramer} for the new socket. The stream itself is returned unwrapped since we do our own
+   * buffering.
    */
   @Override
   protected InputStream createInputStream(InputStream in) {
-    return new PushbackInputStream(new BufferedInputStream(in));
+    lineFramer = new FicsLineFramer();
+    inputBuffer = ByteBuffer.allocate(8192);
+    inputBuffer.flip();
+    return in;
   }
 
   /** Reads a single line from the server. */
   @Override
   protected Object readMessage(InputStream inputStream) throws IOException {
-    PushbackInputStream pin = (PushbackInputStream) inputStream;
-    StringBuffer buf = new StringBuffer();
-
-    boolean lineStartsWithPrompt = false;
     while (true) {
-      int b = pin.read();
+      String line = lineFramer.nextLine(inputBuffer);
+      if (line != null) return line;
 
-      if (b < 0) {
-        if (buf.length() == 0) // Clean disconnection
-        return null;
-        break;
-      }
+      int count = inputStream.read(inputBuffer.array());
+      if (count < 0) // Clean disconnection, unless there is an unterminated line
+      return lineFramer.finish();
 
-      // End of line
-      if (b == '\n') {
-        // FICS uses \n\r for an end-of-line marker!?
-        // Eat the following '\r', if there is one
-        b = pin.read();
-        if ((b > 0) && (b != '\r')) pin.unread(b);
-
-        // Ignore all-prompt lines
-        if (lineStartsWithPrompt && (buf.length() == 0)) {
-          lineStartsWithPrompt = false;
-          continue;
-        } else break;
-      }
+      inputBuffer.position(0).limit(count);
+    }
+  }
 
-      buf.append((char) b);
+  /** Overrides {@link Connection#createMessageFramer()} to return a new {@link FicsLineFramer}. */
+  @Override
+  protected MessageFramer createMessageFramer() {
+    return new FicsLineFramer();
+  }
 
-      // Filter out the prompt
-      if (buf.toString().equals("fics% ")) {
-        buf.setLength(0);
-        lineStartsWithPrompt = true;
-      }
+  /**
+   * Overrides {@link Connection#parseMessage(Object)} to classify and parse the line on the reader
+   * thread, so that only the processing of the already parsed data is left for {@link
+   * #handleMessage(Object)}. If parsing fails, the line is returned as is, to be parsed (and fail)
+   * again in <code>handleMessage</code>, just like when it is handed a line directly.
+   */
+  @Override
+  protected Object parseMessage(Object message) {
+    try {
+      return parseLine((String) message);
+    } catch (RuntimeException e) {
+      return message;
     }
+  }
 
-    return buf.toString();
+  /**
+   * Classifies the specified line and parses it as the first kind of line it is found to be. This
+   * method does not depend on the state of the connection (other than the last parsed style12
+   * board, which only serves to share unchanged strings with) and is safe to call from any thread.
+   */
+  private ParsedLine parseLine(String line) {
+    long candidates = FicsLineClassifier.classify(line);
+    while (candidates != 0) {
+      int kind = Long.numberOfTrailingZeros(candidates);
+      candidates &= candidates - 1;
+
+      Object data = parseLine(kind, line);
+      if (data != null) return new ParsedLine(line, kind, data, candidates);
+    }
+
+    return new ParsedLine(line, -1, null, 0);
   }
 
   /**
-   * The method is responsible for determining the type of the information, parsing it and sending
-   * it for further processing.
+   * The method is responsible for processing a line sent by the server. The specified message is
+   * either a <code>ParsedLine</code> created on the reader thread by {@link #parseMessage(Object)},
+   * or a plain line, in which case it's parsed here.
    */
   @Override
-  protected void handleMessage(Object lineObj) {
-    String line = (String) lineObj;
+  protected void handleMessage(Object message) {
+    ParsedLine parsedLine =
+        message instanceof ParsedLine ? (ParsedLine) message : parseLine((String) message);
+    String line = parsedLine.getLine();
 
     if (logStream != null) logStream.println(line);
 
-    if (handleGameInfo(line)) return;
-    if (handleStyle12(line)) return;
-    if (handleDeltaBoard(line)) return;
-    if (handleSeeksCleared(line)) return;
-    if (handleSeekAdded(line)) return;
-    if (handleSeeksRemoved(line)) return;
-    if (handleBughouseHoldings(line)) return;
-    if (handleGameEnd(line)) return;
-    if (handleStoppedObserving(line)) return;
-    if (handleStoppedExamining(line)) return;
-    if (handleEnteredBSetupMode(line)) return;
-    if (handleExitedBSetupMode(line)) return;
-    if (handleIllegalMove(line)) return;
-    if (handleChannelTell(line)) return;
-    if (handleLogin(line)) return;
-    if (handleIvarStateChanged(line)) return;
-    if (handlePersonalTell(line)) return;
-    if (handleSayTell(line)) return;
-    if (handlePTell(line)) return;
-    if (handleShout(line)) return;
-    if (handleIShout(line)) return;
-    if (handleTShout(line)) return;
-    if (handleCShout(line)) return;
-    if (handleAnnouncement(line)) return;
-    if (handleKibitz(line)) return;
-    if (handleWhisper(line)) return;
-    if (handleQTell(line)) return;
-    if (handleOffer(line)) return;
-    if (handleOfferRemoved(line)) return;
-    if (handlePlayerOffered(line)) //
-    return; // We have to handle these
-    if (handlePlayerDeclined(line)) // "manually", since the
-    return; // server currently does
-    if (handlePlayerWithdrew(line)) // not inform us of offers
-    return; // in games we're
-    if (handlePlayerCounteredTakebackOffer(line)) // observing.
-    return; //
-    if (handleSimulCurrentBoardChanged(line)) return;
-    if (handlePrimaryGameChanged(line)) return;
+    int kind = parsedLine.getKind();
+    if ((kind != -1) && handleLine(kind, line, parsedLine.getData())) return;
+
+    // Some handlers decline lines they have parsed successfully (depending on our state, or on what
+    // a processXXX method returns), in which case the line goes on to the rest of the candidates.
+    long candidates = parsedLine.getRemainingKinds();
+    while (candidates != 0) {
+      kind = Long.numberOfTrailingZeros(candidates);
+      candidates &= candidates - 1;
+
+      Object data = parseLine(kind, line);
+      if ((data != null) && handleLine(kind, line, data)) return;
+    }
 
     Integer filterCount = (Integer) linesToFilter.get(line);
     if (filterCount == null) processLine(line);
@@ -417,6 +443,171 @@ public class FreechessConnection extends Connection {
     else linesToFilter.put(line, new Integer(filterCount.intValue() - 1));
   }
 
+  /**
+   * Parses the specified line as the specified kind of line (one of the <code>FicsLineClassifier
+   * </code> constants). Returns the parsed data, or <code>null</code> if the line is not of that
+   * kind.
+   */
+  private Object parseLine(int kind, String line) {
+    switch (kind) {
+      case FicsLineClassifier.GAME_INFO:
+        return parseGameInfo(line);
+      case FicsLineClassifier.STYLE12:
+        return parseStyle12(line);
+      case FicsLineClassifier.DELTA_BOARD:
+        return parseDeltaBoard(line);
+      case FicsLineClassifier.SEEKS_CLEARED:
+        return Boolean.TRUE; // A simple check, left to handleSeeksCleared
+      case FicsLineClassifier.SEEK_ADDED:
+        return parseSeekAdded(line);
+      case FicsLineClassifier.SEEKS_REMOVED:
+        return parseSeeksRemoved(line);
+      case FicsLineClassifier.BUGHOUSE_HOLDINGS:
+        return Boolean.TRUE; // A simple check, left to handleBughouseHoldings
+      case FicsLineClassifier.GAME_END:
+        return parseGameEnd(line);
+      case FicsLineClassifier.STOPPED_OBSERVING:
+        return parseStoppedObserving(line);
+      case FicsLineClassifier.STOPPED_EXAMINING:
+        return parseStoppedExamining(line);
+      case FicsLineClassifier.ENTERED_BSETUP_MODE:
+        return Boolean.TRUE; // A simple check, left to handleEnteredBSetupMode
+      case FicsLineClassifier.EXITED_BSETUP_MODE:
+        return Boolean.TRUE; // A simple check, left to handleExitedBSetupMode
+      case FicsLineClassifier.ILLEGAL_MOVE:
+        return parseIllegalMove(line);
+      case FicsLineClassifier.CHANNEL_TELL:
+        return parseChannelTell(line);
+      case FicsLineClassifier.LOGIN:
+        return parseLogin(line);
+      case FicsLineClassifier.IVAR_STATE_CHANGED:
+        return parseIvarStateChanged(line);
+      case FicsLineClassifier.PERSONAL_TELL:
+        return parsePersonalTell(line);
+      case FicsLineClassifier.SAY_TELL:
+        return parseSayTell(line);
+      case FicsLineClassifier.PTELL:
+        return parsePTell(line);
+      case FicsLineClassifier.SHOUT:
+        return parseShout(line);
+      case FicsLineClassifier.ISHOUT:
+        return parseIShout(line);
+      case FicsLineClassifier.TSHOUT:
+        return parseTShout(line);
+      case FicsLineClassifier.CSHOUT:
+        return parseCShout(line);
+      case FicsLineClassifier.ANNOUNCEMENT:
+        return parseAnnouncement(line);
+      case FicsLineClassifier.KIBITZ:
+        return parseKibitz(line);
+      case FicsLineClassifier.WHISPER:
+        return parseWhisper(line);
+      case FicsLineClassifier.QTELL:
+        return parseQTell(line);
+      case FicsLineClassifier.OFFER:
+        return parseOffer(line);
+      case FicsLineClassifier.OFFER_REMOVED:
+        return parseOfferRemoved(line);
+      case FicsLineClassifier.PLAYER_OFFERED:
+        return parsePlayerOffered(line);
+      case FicsLineClassifier.PLAYER_DECLINED:
+        return parsePlayerDeclined(line);
+      case FicsLineClassifier.PLAYER_WITHDREW:
+        return parsePlayerWithdrew(line);
+      case FicsLineClassifier.PLAYER_COUNTERED_TAKEBACK_OFFER:
+        return parsePlayerCounteredTakebackOffer(line);
+      case FicsLineClassifier.SIMUL_CURRENT_BOARD_CHANGED:
+        return parseSimulCurrentBoardChanged(line);
+      case FicsLineClassifier.PRIMARY_GAME_CHANGED:
+        return parsePrimaryGameChanged(line);
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Passes the specified line, and the data parsed from it by {@link #parseLine(int, String)}, to
+   * the handler of the specified kind of line. Returns whether the handler accepted the line.
+   */
+  private boolean handleLine(int kind, String line, Object data) {
+    switch (kind) {
+      case FicsLineClassifier.GAME_INFO:
+        return handleGameInfo(line, (GameInfoStruct) data);
+      case FicsLineClassifier.STYLE12:
+        return handleStyle12(line, (Style12Struct) data);
+      case FicsLineClassifier.DELTA_BOARD:
+        return handleDeltaBoard(line, (DeltaBoardStruct) data);
+      case FicsLineClassifier.SEEKS_CLEARED:
+        return handleSeeksCleared(line);
+      case FicsLineClassifier.SEEK_ADDED:
+        return handleSeekAdded(line, (SeekInfoStruct) data);
+      case FicsLineClassifier.SEEKS_REMOVED:
+        return handleSeeksRemoved(line, (int[]) data);
+      case FicsLineClassifier.BUGHOUSE_HOLDINGS:
+        return handleBughouseHoldings(line);
+      case FicsLineClassifier.GAME_END:
+        return handleGameEnd(line, (MatchResult) data);
+      case FicsLineClassifier.STOPPED_OBSERVING:
+        return handleStoppedObserving(line, (MatchResult) data);
+      case FicsLineClassifier.STOPPED_EXAMINING:
+        return handleStoppedExamining(line, (MatchResult) data);
+      case FicsLineClassifier.ENTERED_BSETUP_MODE:
+        return handleEnteredBSetupMode(line);
+      case FicsLineClassifier.EXITED_BSETUP_MODE:
+        return handleExitedBSetupMode(line);
+      case FicsLineClassifier.ILLEGAL_MOVE:
+        return handleIllegalMove(line, (Pair) data);
+      case FicsLineClassifier.CHANNEL_TELL:
+        return handleChannelTell(line, (MatchResult) data);
+      case FicsLineClassifier.LOGIN:
+        return handleLogin(line, (Pair) data);
+      case FicsLineClassifier.IVAR_STATE_CHANGED:
+        return handleIvarStateChanged(line, (Pair) data);
+      case FicsLineClassifier.PERSONAL_TELL:
+        return handlePersonalTell(line, (MatchResult) data);
+      case FicsLineClassifier.SAY_TELL:
+        return handleSayTell(line, (MatchResult) data);
+      case FicsLineClassifier.PTELL:
+        return handlePTell(line, (MatchResult) data);
+      case FicsLineClassifier.SHOUT:
+        return handleShout(line, (MatchResult) data);
+      case FicsLineClassifier.ISHOUT:
+        return handleIShout(line, (MatchResult) data);
+      case FicsLineClassifier.TSHOUT:
+        return handleTShout(line, (MatchResult) data);
+      case FicsLineClassifier.CSHOUT:
+        return handleCShout(line, (MatchResult) data);
+      case FicsLineClassifier.ANNOUNCEMENT:
+        return handleAnnouncement(line, (MatchResult) data);
+      case FicsLineClassifier.KIBITZ:
+        return handleKibitz(line, (MatchResult) data);
+      case FicsLineClassifier.WHISPER:
+        return handleWhisper(line, (MatchResult) data);
+      case FicsLineClassifier.QTELL:
+        return handleQTell(line, (MatchResult) data);
+      case FicsLineClassifier.OFFER:
+        return handleOffer(line, (Pair) data);
+      case FicsLineClassifier.OFFER_REMOVED:
+        return handleOfferRemoved(line, (Integer) data);
+        // We have to handle these "manually", since the server currently does not inform us of
+        // offers in games we're observing.
+      case FicsLineClassifier.PLAYER_OFFERED:
+        return handlePlayerOffered(line, (Pair) data);
+      case FicsLineClassifier.PLAYER_DECLINED:
+        return handlePlayerDeclined(line, (MatchResult) data);
+      case FicsLineClassifier.PLAYER_WITHDREW:
+        return handlePlayerWithdrew(line, (MatchResult) data);
+      case FicsLineClassifier.PLAYER_COUNTERED_TAKEBACK_OFFER:
+        return handlePlayerCounteredTakebackOffer(line, (MatchResult) data);
+      case FicsLineClassifier.SIMUL_CURRENT_BOARD_CHANGED:
+        return handleSimulCurrentBoardChanged(line, (MatchResult) data);
+      case FicsLineClassifier.PRIMARY_GAME_CHANGED:
+        return handlePrimaryGameChanged(line, (MatchResult) data);
+      default:
+        return false;
+    }
+  }
+
   /**
    * The regular expression matching lines which are notifications of an the state of an ivar
    * changing.
@@ -427,18 +618,29 @@ public class FreechessConnection extends Connection {
    * Called to determine whether the specified line is a notification that the state of some ivar
    * has changed.
    */
-  private boolean handleIvarStateChanged(String line) {
-    if (line.indexOf("set") == -1) return false;
+  private static Pair parseIvarStateChanged(String line) {
+    if (line.indexOf("set") == -1) return null;
 
     Matcher matcher = IVAR_SET_REGEX.matcher(line);
-    if (!matcher.matches()) return false;
+    if (!matcher.matches()) return null;
 
     String ivarName = matcher.group(1);
     boolean state = (matcher.group(2) == null) || "".equals(matcher.group(2));
 
     Ivar ivar = Ivar.getByName(ivarName);
     if (ivar == null) // It's a notification that something has been set, but not a known ivar
-    return false;
+    return null;
+
+    return new Pair(ivar, Boolean.valueOf(state));
+  }
+
+  /**
+   * Processes a line successfully parsed by {@link #parseIvarStateChanged(String)}. The specified
+   * pair holds the <code>Ivar</code> and its new state.
+   */
+  private boolean handleIvarStateChanged(String line, Pair ivarAndState) {
+    Ivar ivar = (Ivar) ivarAndState.getFirst();
+    boolean state = ((Boolean) ivarAndState.getSecond()).booleanValue();
 
     ivarStates.set(ivar.getIndex());
 
@@ -471,16 +673,29 @@ public class FreechessConnection extends Connection {
    * information if it is. Returns <code>true</code> if the given line is a login confirming line,
    * otherwise, returns <code>false</code>.
    */
-  private boolean handleLogin(String line) {
+  private static Pair parseLogin(String line) {
     Matcher matcher = LOGIN_REGEX.matcher(line);
-    if ((!isLoggedIn()) && matcher.matches()) {
-      loginSucceeded(matcher.group(1));
+    if (matcher.matches()) return new Pair(Boolean.TRUE, matcher.toMatchResult());
+    else if (WRONG_PASSWORD_REGEX.matcher(line).matches()) return new Pair(Boolean.FALSE, null);
+
+    return null;
+  }
+
+  /**
+   * Processes a line successfully parsed by {@link #parseLogin(String)}. The specified pair holds
+   * whether the login succeeded and, if it did, the <code>MatchResult</code> of the login line.
+   * Whether we are already logged in can only be checked here, on the client thread.
+   */
+  private boolean handleLogin(String line, Pair login) {
+    if (isLoggedIn()) return false;
+
+    if (((Boolean) login.getFirst()).booleanValue()) {
+      loginSucceeded(((MatchResult) login.getSecond()).group(1));
 
       processLine(line);
 
       return true;
-    } else if ((!isLoggedIn()) && WRONG_PASSWORD_REGEX.matcher(line).matches())
-      loginFailed("Invalid password");
+    } else loginFailed("Invalid password");
 
     return false;
   }
@@ -493,12 +708,15 @@ public class FreechessConnection extends Connection {
    * Called to determine whether the given line of text is a personal tell and to further process it
    * if it is.
    */
-  private boolean handlePersonalTell(String line) {
-    if (line.indexOf("tells you: ") == -1) return false;
+  private static MatchResult parsePersonalTell(String line) {
+    if (line.indexOf("tells you: ") == -1) return null;
 
     Matcher matcher = PERSONAL_TELL_REGEX.matcher(line);
-    if (!matcher.matches()) return false;
+    return matcher.matches() ? matcher.toMatchResult() : null;
+  }
 
+  /** Processes a line successfully parsed by {@link #parsePersonalTell(String)}. */
+  private boolean handlePersonalTell(String line, MatchResult matcher) {
     String username = matcher.group(1);
     String titles = matcher.group(2);
     String message = matcher.group(3);
@@ -521,12 +739,15 @@ public class FreechessConnection extends Connection {
    * Called to determine whether the given line of text is a "say" tell and to further process it if
    * it is.
    */
-  private boolean handleSayTell(String line) {
-    if (line.indexOf("says: ") == -1) return false;
+  private static MatchResult parseSayTell(String line) {
+    if (line.indexOf("says: ") == -1) return null;
 
     Matcher matcher = SAY_REGEX.matcher(line);
-    if (!matcher.matches()) return false;
+    return matcher.matches() ? matcher.toMatchResult() : null;
+  }
 
+  /** Processes a line successfully parsed by {@link #parseSayTell(String)}. */
+  private boolean handleSayTell(String line, MatchResult matcher) {
     String username = matcher.group(1);
     String titles = matcher.group(2);
     String gameNumberString = matcher.group(4);
@@ -556,12 +777,15 @@ public class FreechessConnection extends Connection {
    * Called to determine whether the given line of text is a "ptell" tell and to further process it
    * if it is.
    */
-  private boolean handlePTell(String line) {
-    if (line.indexOf("(your partner) tells you: ") == -1) return false;
+  private static MatchResult parsePTell(String line) {
+    if (line.indexOf("(your partner) tells you: ") == -1) return null;
 
     Matcher matcher = PTELL_REGEX.matcher(line);
-    if (!matcher.matches()) return false;
+    return matcher.matches() ? matcher.toMatchResult() : null;
+  }
 
+  /** Processes a line successfully parsed by {@link #parsePTell(String)}. */
+  private boolean handlePTell(String line, MatchResult matcher) {
     String username = matcher.group(1);
     String titles = matcher.group(2);
     String message = matcher.group(3);
@@ -584,12 +808,15 @@ public class FreechessConnection extends Connection {
    * Called to determine whether the given line of text is a channel tell and to further process it
    * if it is.
    */
-  private boolean handleChannelTell(String line) {
-    if (line.indexOf("): ") == -1) return false;
+  private static MatchResult parseChannelTell(String line) {
+    if (line.indexOf("): ") == -1) return null;
 
     Matcher matcher = CHANNEL_TELL_REGEX.matcher(line);
-    if (!matcher.matches()) return false;
+    return matcher.matches() ? matcher.toMatchResult() : null;
+  }
 
+  /** Processes a line successfully parsed by {@link #parseChannelTell(String)}. */
+  private boolean handleChannelTell(String line, MatchResult matcher) {
     String username = matcher.group(1);
     String titles = matcher.group(2);
     String channelNumberString = matcher.group(3);
@@ -621,12 +848,15 @@ public class FreechessConnection extends Connection {
    * Called to determine whether the given line of text is a kibitz and to further process it if it
    * is.
    */
-  private boolean handleKibitz(String line) {
-    if (line.indexOf("kibitzes: ") == -1) return false;
+  private static MatchResult parseKibitz(String line) {
+    if (line.indexOf("kibitzes: ") == -1) return null;
 
     Matcher matcher = KIBITZ_REGEX.matcher(line);
-    if (!matcher.matches()) return false;
+    return matcher.matches() ? matcher.toMatchResult() : null;
+  }
 
+  /** Processes a line successfully parsed by {@link #parseKibitz(String)}. */
+  private boolean handleKibitz(String line, MatchResult matcher) {
     String username = matcher.group(1);
     String titles = matcher.group(2);
     String ratingString = matcher.group(3);
@@ -666,12 +896,15 @@ public class FreechessConnection extends Connection {
    * Called to determine whether the given line of text is a whisper and to further process it if it
    * is.
    */
-  private boolean handleWhisper(String line) {
-    if (line.indexOf("whispers: ") == -1) return false;
+  private static MatchResult parseWhisper(String line) {
+    if (line.indexOf("whispers: ") == -1) return null;
 
     Matcher matcher = WHISPER_REGEX.matcher(line);
-    if (!matcher.matches()) return false;
+    return matcher.matches() ? matcher.toMatchResult() : null;
+  }
 
+  /** Processes a line successfully parsed by {@link #parseWhisper(String)}. */
+  private boolean handleWhisper(String line, MatchResult matcher) {
     String username = matcher.group(1);
     String titles = matcher.group(2);
     String ratingString = matcher.group(3);
@@ -705,12 +938,15 @@ public class FreechessConnection extends Connection {
    * Called to determine whether the given line of text is a qtell and to further process it if it
    * is.
    */
-  private boolean handleQTell(String line) {
-    if (!line.startsWith(":")) return false;
+  private static MatchResult parseQTell(String line) {
+    if (!line.startsWith(":")) return null;
 
     Matcher matcher = QTELL_REGEX.matcher(line);
-    if (!matcher.matches()) return false;
+    return matcher.matches() ? matcher.toMatchResult() : null;
+  }
 
+  /** Processes a line successfully parsed by {@link #parseQTell(String)}. */
+  private boolean handleQTell(String line, MatchResult matcher) {
     String message = matcher.group(1);
 
     if (!processQTell(message)) processLine(line);
@@ -731,12 +967,15 @@ public class FreechessConnection extends Connection {
    * Called to determine whether the given line of text is a shout and to further process it if it
    * is.
    */
-  private boolean handleShout(String line) {
-    if (line.indexOf("shouts: ") == -1) return false;
+  private static MatchResult parseShout(String line) {
+    if (line.indexOf("shouts: ") == -1) return null;
 
     Matcher matcher = SHOUT_REGEX.matcher(line);
-    if (!matcher.matches()) return false;
+    return matcher.matches() ? matcher.toMatchResult() : null;
+  }
 
+  /** Processes a line successfully parsed by {@link #parseShout(String)}. */
+  private boolean handleShout(String line, MatchResult matcher) {
     String username = matcher.group(1);
     String titles = matcher.group(2);
     String message = matcher.group(3);
@@ -759,12 +998,15 @@ public class FreechessConnection extends Connection {
    * Called to determine whether the given line of text is an "ishout" and to further process it if
    * it is.
    */
-  private boolean handleIShout(String line) {
-    if (!line.startsWith("--> ")) return false;
+  private static MatchResult parseIShout(String line) {
+    if (!line.startsWith("--> ")) return null;
 
     Matcher matcher = ISHOUT_REGEX.matcher(line);
-    if (!matcher.matches()) return false;
+    return matcher.matches() ? matcher.toMatchResult() : null;
+  }
 
+  /** Processes a line successfully parsed by {@link #parseIShout(String)}. */
+  private boolean handleIShout(String line, MatchResult matcher) {
     String username = matcher.group(1);
     String titles = matcher.group(2);
     String message = matcher.group(3);
@@ -787,12 +1029,15 @@ public class FreechessConnection extends Connection {
    * Called to determine whether the given line of text is a "tshout" and to further process it if
    * it is.
    */
-  private boolean handleTShout(String line) {
-    if (line.indexOf("t-shouts: ") == -1) return false;
+  private static MatchResult parseTShout(String line) {
+    if (line.indexOf("t-shouts: ") == -1) return null;
 
     Matcher matcher = TSHOUT_REGEX.matcher(line);
-    if (!matcher.matches()) return false;
+    return matcher.matches() ? matcher.toMatchResult() : null;
+  }
 
+  /** Processes a line successfully parsed by {@link #parseTShout(String)}. */
+  private boolean handleTShout(String line, MatchResult matcher) {
     String username = matcher.group(1);
     String titles = matcher.group(2);
     String message = matcher.group(3);
@@ -815,12 +1060,15 @@ public class FreechessConnection extends Connection {
    * Called to determine whether the given line of text is a "cshout" and to further process it if
    * it is.
    */
-  private boolean handleCShout(String line) {
-    if (line.indexOf("c-shouts: ") == -1) return false;
+  private static MatchResult parseCShout(String line) {
+    if (line.indexOf("c-shouts: ") == -1) return null;
 
     Matcher matcher = CSHOUT_REGEX.matcher(line);
-    if (!matcher.matches()) return false;
+    return matcher.matches() ? matcher.toMatchResult() : null;
+  }
 
+  /** Processes a line successfully parsed by {@link #parseCShout(String)}. */
+  private boolean handleCShout(String line, MatchResult matcher) {
     String username = matcher.group(1);
     String titles = matcher.group(2);
     String message = matcher.group(3);
@@ -843,12 +1091,15 @@ public class FreechessConnection extends Connection {
    * Called to determine whether the given line of text is an announcement and to further process it
    * if it is.
    */
-  private boolean handleAnnouncement(String line) {
-    if (!line.startsWith("    **ANNOUNCEMENT** from ")) return false;
+  private static MatchResult parseAnnouncement(String line) {
+    if (!line.startsWith("    **ANNOUNCEMENT** from ")) return null;
 
     Matcher matcher = ANNOUNCEMENT_REGEX.matcher(line);
-    if (!matcher.matches()) return false;
+    return matcher.matches() ? matcher.toMatchResult() : null;
+  }
 
+  /** Processes a line successfully parsed by {@link #parseAnnouncement(String)}. */
+  private boolean handleAnnouncement(String line, MatchResult matcher) {
     String username = matcher.group(1);
     String message = matcher.group(2);
 
@@ -866,11 +1117,14 @@ public class FreechessConnection extends Connection {
    * Called to determine whether the given line of text is a gameinfo line and to further process it
    * if it is.
    */
-  private boolean handleGameInfo(String line) {
-    if (!line.startsWith("<g1> ")) return false;
+  private static GameInfoStruct parseGameInfo(String line) {
+    if (!line.startsWith("<g1> ")) return null;
 
-    GameInfoStruct data = GameInfoStruct.parseGameInfoLine(line);
+    return GameInfoStruct.parseGameInfoLine(line);
+  }
 
+  /** Processes a line successfully parsed by {@link #parseGameInfo(String)}. */
+  private boolean handleGameInfo(String line, GameInfoStruct data) {
     if (!processGameInfo(data)) processLine(line);
 
     return true;
@@ -888,11 +1142,16 @@ public class FreechessConnection extends Connection {
    * Called to determine whether the given line of text is a style12 line and to further process it
    * if it is.
    */
-  private boolean handleStyle12(String line) {
-    if (!line.startsWith("<12> ")) return false;
+  private Style12Struct parseStyle12(String line) {
+    if (!line.startsWith("<12> ")) return null;
 
-    Style12Struct data = Style12Struct.parseStyle12Line(line);
+    Style12Struct data = Style12Struct.parseStyle12Line(line, lastStyle12);
+    lastStyle12 = data;
+    return data;
+  }
 
+  /** Processes a line successfully parsed by {@link #parseStyle12(String)}. */
+  private boolean handleStyle12(String line, Style12Struct data) {
     if (!processStyle12(data)) processLine(line);
 
     return true;
@@ -910,11 +1169,14 @@ public class FreechessConnection extends Connection {
    * Called to determine whether the given line of text is a delta board line and to further process
    * it if it is.
    */
-  private boolean handleDeltaBoard(String line) {
-    if (!line.startsWith("<d1> ")) return false;
+  private static DeltaBoardStruct parseDeltaBoard(String line) {
+    if (!line.startsWith("<d1> ")) return null;
 
-    DeltaBoardStruct data = DeltaBoardStruct.parseDeltaBoardLine(line);
+    return DeltaBoardStruct.parseDeltaBoardLine(line);
+  }
 
+  /** Processes a line successfully parsed by {@link #parseDeltaBoard(String)}. */
+  private boolean handleDeltaBoard(String line, DeltaBoardStruct data) {
     if (!processDeltaBoard(data)) processLine(line);
 
     return true;
@@ -957,12 +1219,15 @@ public class FreechessConnection extends Connection {
    * Called to determine whether the given line of text is a game end line and to further process it
    * if it is.
    */
-  private boolean handleGameEnd(String line) {
-    if (!line.startsWith("{Game ")) return false;
+  private static MatchResult parseGameEnd(String line) {
+    if (!line.startsWith("{Game ")) return null;
 
     Matcher matcher = GAME_END_REGEX.matcher(line);
-    if (!matcher.matches()) return false;
+    return matcher.matches() ? matcher.toMatchResult() : null;
+  }
 
+  /** Processes a line successfully parsed by {@link #parseGameEnd(String)}. */
+  private boolean handleGameEnd(String line, MatchResult matcher) {
     int gameNumber = Integer.parseInt(matcher.group(1));
     String whiteName = matcher.group(2);
     String blackName = matcher.group(3);
@@ -992,12 +1257,15 @@ public class FreechessConnection extends Connection {
    * Called to determine whether the given line of text is a line specifying that we've stopped
    * observing a game and to further process it if it is.
    */
-  private boolean handleStoppedObserving(String line) {
-    if (!line.startsWith("Removing game ")) return false;
+  private static MatchResult parseStoppedObserving(String line) {
+    if (!line.startsWith("Removing game ")) return null;
 
     Matcher matcher = STOPPED_OBSERVING_REGEX.matcher(line);
-    if (!matcher.matches()) return false;
+    return matcher.matches() ? matcher.toMatchResult() : null;
+  }
 
+  /** Processes a line successfully parsed by {@link #parseStoppedObserving(String)}. */
+  private boolean handleStoppedObserving(String line, MatchResult matcher) {
     int gameNumber = Integer.parseInt(matcher.group(1));
 
     if (!processStoppedObserving(gameNumber)) processLine(line);
@@ -1024,12 +1292,15 @@ public class FreechessConnection extends Connection {
    * Called to determine whether the given line of text is a line specifying that we've stopped
    * examining a game and to further process it if it is.
    */
-  private boolean handleStoppedExamining(String line) {
-    if (!line.startsWith("You are no longer examining game ")) return false;
+  private static MatchResult parseStoppedExamining(String line) {
+    if (!line.startsWith("You are no longer examining game ")) return null;
 
     Matcher matcher = STOPPED_EXAMINING_REGEX.matcher(line);
-    if (!matcher.matches()) return false;
+    return matcher.matches() ? matcher.toMatchResult() : null;
+  }
 
+  /** Processes a line successfully parsed by {@link #parseStoppedExamining(String)}. */
+  private boolean handleStoppedExamining(String line, MatchResult matcher) {
     int gameNumber = Integer.parseInt(matcher.group(1));
 
     if (!processStoppedExamining(gameNumber)) processLine(line);
@@ -1105,32 +1376,45 @@ public class FreechessConnection extends Connection {
    * Called to determine whether the given line of text is a line specifying that an illegal move
    * has been attempted and to further process it if it is.
    */
-  private boolean handleIllegalMove(String line) {
+  private static Pair parseIllegalMove(String line) {
     if (!(line.startsWith("Illegal move ")
         || line.equals("It is not your move.")
-        || line.equals("The clock is paused, use \"unpause\" to resume."))) return false;
+        || line.equals("The clock is paused, use \"unpause\" to resume."))) return null;
 
     Matcher illegalMoveMatcher = ILLEGAL_MOVE_REGEX.matcher(line);
     Matcher notYourTurnMatcher = NOT_YOUR_TURN_REGEX.matcher(line);
     Matcher movedWhenGamePausedMatcher = MOVED_WHEN_GAME_PAUSED.matcher(line);
 
+    if (illegalMoveMatcher.matches())
+      return new Pair(
+          Integer.valueOf(MOVE_REJECTED_ILLEGAL_MOVE), illegalMoveMatcher.toMatchResult());
+    else if (notYourTurnMatcher.matches())
+      return new Pair(
+          Integer.valueOf(MOVE_REJECTED_NOT_YOUR_TURN), notYourTurnMatcher.toMatchResult());
+    else if (movedWhenGamePausedMatcher.matches())
+      return new Pair(
+          Integer.valueOf(MOVE_REJECTED_GAME_PAUSED), movedWhenGamePausedMatcher.toMatchResult());
+    else return null;
+  }
+
+  /**
+   * Processes a line successfully parsed by {@link #parseIllegalMove(String)}. The specified pair
+   * holds the reason code and the <code>MatchResult</code> of the matching regular expression.
+   */
+  private boolean handleIllegalMove(String line, Pair illegalMove) {
+    int reasonCode = ((Integer) illegalMove.getFirst()).intValue();
+    MatchResult matcher = (MatchResult) illegalMove.getSecond();
+
     String moveString;
-    int reasonCode;
     String reason;
 
-    if (illegalMoveMatcher.matches()) {
-      moveString = illegalMoveMatcher.group(1);
-      reasonCode = MOVE_REJECTED_ILLEGAL_MOVE;
-      reason = illegalMoveMatcher.group(2);
-    } else if (notYourTurnMatcher.matches()) {
+    if (reasonCode == MOVE_REJECTED_ILLEGAL_MOVE) {
+      moveString = matcher.group(1);
+      reason = matcher.group(2);
+    } else {
       moveString = null; // sigh
-      reasonCode = MOVE_REJECTED_NOT_YOUR_TURN;
-      reason = notYourTurnMatcher.group(1);
-    } else if (movedWhenGamePausedMatcher.matches()) {
-      moveString = null;
-      reasonCode = MOVE_REJECTED_GAME_PAUSED;
-      reason = movedWhenGamePausedMatcher.group(1);
-    } else return false;
+      reason = matcher.group(1);
+    }
 
     if (!processIllegalMove(moveString, reasonCode, reason)) processLine(line);
 
@@ -1171,11 +1455,14 @@ public class FreechessConnection extends Connection {
    * Called to determine whether the given line of text is a line specifying that a new seek has
    * been added.
    */
-  private boolean handleSeekAdded(String line) {
-    if (!(line.startsWith("<s> ") || line.startsWith("<sn> "))) return false;
+  private static SeekInfoStruct parseSeekAdded(String line) {
+    if (!(line.startsWith("<s> ") || line.startsWith("<sn> "))) return null;
 
-    SeekInfoStruct seekInfo = SeekInfoStruct.parseSeekInfoLine(line);
+    return SeekInfoStruct.parseSeekInfoLine(line);
+  }
 
+  /** Processes a line successfully parsed by {@link #parseSeekAdded(String)}. */
+  private boolean handleSeekAdded(String line, SeekInfoStruct seekInfo) {
     if (!processSeekAdded(seekInfo)) processLine(line);
 
     return true;
@@ -1190,8 +1477,8 @@ public class FreechessConnection extends Connection {
    * Called to determine whether the given line of text is a line specifying that seeks have been
    * removed.
    */
-  private boolean handleSeeksRemoved(String line) {
-    if (!line.startsWith("<sr> ")) return false;
+  private static int[] parseSeeksRemoved(String line) {
+    if (!line.startsWith("<sr> ")) return null;
 
     StringTokenizer tokenizer = new StringTokenizer(line, " ");
     tokenizer.nextToken(); // Skip the "<sr>"
@@ -1200,6 +1487,11 @@ public class FreechessConnection extends Connection {
     for (int i = 0; i < removedSeeks.length; i++)
       removedSeeks[i] = Integer.parseInt(tokenizer.nextToken());
 
+    return removedSeeks;
+  }
+
+  /** Processes a line successfully parsed by {@link #parseSeeksRemoved(String)}. */
+  private boolean handleSeeksRemoved(String line, int[] removedSeeks) {
     if (!processSeeksRemoved(removedSeeks)) processLine(line);
 
     return true;
@@ -1227,17 +1519,28 @@ public class FreechessConnection extends Connection {
    * Called to determine whether the specified line is a line informing us that an offer has been
    * made (either to or by the user).
    */
-  private boolean handleOffer(String line) {
-    if (!(line.startsWith("<pt> ") || line.startsWith("<pf> "))) return false;
+  private static Pair parseOffer(String line) {
+    if (!(line.startsWith("<pt> ") || line.startsWith("<pf> "))) return null;
 
     Matcher matcher = OFFER_REGEX.matcher(line);
-    if (!matcher.matches()) return false;
+    if (!matcher.matches()) return null;
 
     boolean toUser = "f".equals(matcher.group(1));
 
     Matcher parser = OFFER_PARSER.matcher(matcher.group(2));
     if (!parser.matches()) // Really weird
-    return false;
+    return null;
+
+    return new Pair(Boolean.valueOf(toUser), parser.toMatchResult());
+  }
+
+  /**
+   * Processes a line successfully parsed by {@link #parseOffer(String)}. The specified pair holds
+   * whether the offer was made to the user and the <code>MatchResult</code> of the offer details.
+   */
+  private boolean handleOffer(String line, Pair offer) {
+    boolean toUser = ((Boolean) offer.getFirst()).booleanValue();
+    MatchResult parser = (MatchResult) offer.getSecond();
 
     int offerIndex = Integer.parseInt(parser.group(1));
     String username = parser.group(2);
@@ -1324,10 +1627,15 @@ public class FreechessConnection extends Connection {
    * Gets called to determine whether the specified line is a line informing us that the specified
    * offer has been removed (accepted, declined, withdrawn, game ended or anything else).
    */
-  private boolean handleOfferRemoved(String line) {
-    if (!line.startsWith("<pr> ")) return false;
+  private static Integer parseOfferRemoved(String line) {
+    if (!line.startsWith("<pr> ")) return null;
+
+    return Integer.valueOf(Integer.parseInt(line.substring("<pr> ".length())));
+  }
 
-    int offerIndex = Integer.parseInt(line.substring("<pr> ".length()));
+  /** Processes a line successfully parsed by {@link #parseOfferRemoved(String)}. */
+  private boolean handleOfferRemoved(String line, Integer offerIndexInteger) {
+    int offerIndex = offerIndexInteger.intValue();
 
     if (!processOfferRemoved(offerIndex)) processLine(line);
 
@@ -1364,9 +1672,9 @@ public class FreechessConnection extends Connection {
               + USERNAME_REGEX
               + ") requests to take back (\\d+) half move\\(s\\)\\.$");
 
-  /** Handles lines specifying that a player (in a game we're observing) made an offer. */
-  private boolean handlePlayerOffered(String line) {
-    if (!line.startsWith("Game ")) return false;
+  /** Parses lines specifying that a player (in a game we're observing) made an offer. */
+  private static Pair parsePlayerOffered(String line) {
+    if (!line.startsWith("Game ")) return null;
 
     String offer;
 
@@ -1375,7 +1683,19 @@ public class FreechessConnection extends Connection {
     else if ((matcher = PLAYER_OFFERED_ADJOURN_REGEX.matcher(line)).matches()) offer = "adjourn";
     else if ((matcher = PLAYER_OFFERED_ABORT_REGEX.matcher(line)).matches()) offer = "abort";
     else if ((matcher = PLAYER_OFFERED_TAKEBACK_REGEX.matcher(line)).matches()) offer = "takeback";
-    else return false;
+    else return null;
+
+    return new Pair(offer, matcher.toMatchResult());
+  }
+
+  /**
+   * Handles lines specifying that a player (in a game we're observing) made an offer, as parsed by
+   * {@link #parsePlayerOffered(String)}. The specified pair holds the offer name and the <code>
+   * MatchResult</code> of the line.
+   */
+  private boolean handlePlayerOffered(String line, Pair offerAndMatch) {
+    String offer = (String) offerAndMatch.getFirst();
+    MatchResult matcher = (MatchResult) offerAndMatch.getSecond();
 
     int gameNum = Integer.parseInt(matcher.group(1));
     String playerName = matcher.group(2);
@@ -1414,12 +1734,15 @@ public class FreechessConnection extends Connection {
    * Called to determine whether the given line of text is a line specifying that a player declined
    * his opponent's offer.
    */
-  private boolean handlePlayerDeclined(String line) {
-    if ((!line.startsWith("Game ")) || (line.indexOf("declines the ") == -1)) return false;
+  private static MatchResult parsePlayerDeclined(String line) {
+    if ((!line.startsWith("Game ")) || (line.indexOf("declines the ") == -1)) return null;
 
     Matcher matcher = PLAYER_DECLINED_REGEX.matcher(line);
-    if (!matcher.matches()) return false;
+    return matcher.matches() ? matcher.toMatchResult() : null;
+  }
 
+  /** Processes a line successfully parsed by {@link #parsePlayerDeclined(String)}. */
+  private boolean handlePlayerDeclined(String line, MatchResult matcher) {
     int gameNum = Integer.parseInt(matcher.group(1));
     String playerName = matcher.group(2);
     String offer = matcher.group(3);
@@ -1446,12 +1769,15 @@ public class FreechessConnection extends Connection {
    * Called to determine whether the given line of text is a line specifying that a player declined
    * his opponent's offer.
    */
-  private boolean handlePlayerWithdrew(String line) {
-    if ((!line.startsWith("Game ")) || (line.indexOf("withdraws the ") == -1)) return false;
+  private static MatchResult parsePlayerWithdrew(String line) {
+    if ((!line.startsWith("Game ")) || (line.indexOf("withdraws the ") == -1)) return null;
 
     Matcher matcher = PLAYER_WITHDREW_REGEX.matcher(line);
-    if (!matcher.matches()) return false;
+    return matcher.matches() ? matcher.toMatchResult() : null;
+  }
 
+  /** Processes a line successfully parsed by {@link #parsePlayerWithdrew(String)}. */
+  private boolean handlePlayerWithdrew(String line, MatchResult matcher) {
     int gameNum = Integer.parseInt(matcher.group(1));
     String playerName = matcher.group(2);
     String offer = matcher.group(3);
@@ -1485,13 +1811,16 @@ public class FreechessConnection extends Connection {
    * game we're observing) counter-offered a takeback offer by his opponent with a different amount
    * of plies to take back.
    */
-  private boolean handlePlayerCounteredTakebackOffer(String line) {
+  private static MatchResult parsePlayerCounteredTakebackOffer(String line) {
     if ((!line.startsWith("Game ")) || (line.indexOf("proposes a different number ") == -1))
-      return false;
+      return null;
 
     Matcher matcher = PLAYER_COUNTER_TAKEBACK_OFFER_REGEX.matcher(line);
-    if (!matcher.matches()) return false;
+    return matcher.matches() ? matcher.toMatchResult() : null;
+  }
 
+  /** Processes a line successfully parsed by {@link #parsePlayerCounteredTakebackOffer(String)}. */
+  private boolean handlePlayerCounteredTakebackOffer(String line, MatchResult matcher) {
     int gameNum = Integer.parseInt(matcher.group(1));
     String playerName = matcher.group(2);
     int takebackCount = Integer.parseInt(matcher.group(3));
@@ -1515,12 +1844,15 @@ public class FreechessConnection extends Connection {
       Pattern.compile("^You are now at (" + USERNAME_REGEX + ")'s board \\(game (\\d+)\\)\\.$");
 
   /** Handles lines notifying us that the board we're at (in a simul) has changed. */
-  private boolean handleSimulCurrentBoardChanged(String line) {
-    if (!line.startsWith("You are now at ")) return false;
+  private static MatchResult parseSimulCurrentBoardChanged(String line) {
+    if (!line.startsWith("You are now at ")) return null;
 
     Matcher matcher = AT_BOARD_REGEX.matcher(line);
-    if (!matcher.matches()) return false;
+    return matcher.matches() ? matcher.toMatchResult() : null;
+  }
 
+  /** Processes a line successfully parsed by {@link #parseSimulCurrentBoardChanged(String)}. */
+  private boolean handleSimulCurrentBoardChanged(String line, MatchResult matcher) {
     String oppName = matcher.group(1);
     int gameNumber = Integer.parseInt(matcher.group(2));
 
@@ -1544,12 +1876,15 @@ public class FreechessConnection extends Connection {
       Pattern.compile("^Your primary game is now game (\\d+)\\.$");
 
   /** Handles lines notifying us that the primary observed game has changed. */
-  private boolean handlePrimaryGameChanged(String line) {
-    if (!line.startsWith("Your primary game is now game ")) return false;
+  private static MatchResult parsePrimaryGameChanged(String line) {
+    if (!line.startsWith("Your primary game is now game ")) return null;
 
     Matcher matcher = PRIMARY_GAME_CHANGED_REGEX.matcher(line);
-    if (!matcher.matches()) return false;
+    return matcher.matches() ? matcher.toMatchResult() : null;
+  }
 
+  /** Processes a line successfully parsed by {@link #parsePrimaryGameChanged(String)}. */
+  private boolean handlePrimaryGameChanged(String line, MatchResult matcher) {
     int gameNumber = Integer.parseInt(matcher.group(1));
 
     if (!processPrimaryGameChanged(gameNumber)) processLine(line);
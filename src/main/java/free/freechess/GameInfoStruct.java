@@ -16,14 +16,62 @@
  */
 package free.freechess;
 
-import free.util.Struct;
-import java.util.StringTokenizer;
-
 /**
  * A structure holding parsed information from a gameinfo line. See the "help iv_gameinfo" helpfile
  * on freechess.org for information about the format.
  */
-public class GameInfoStruct extends Struct {
+public final class GameInfoStruct {
+
+  /** The game number. */
+  private final int gameNumber;
+
+  /** Whether the game is private. */
+  private final boolean isGamePrivate;
+
+  /** The rating category, or the wild variant name, of the game. */
+  private final String gameCategory;
+
+  /** Whether the game is rated. */
+  private final boolean isGameRated;
+
+  /** Whether the white player is registered. */
+  private final boolean isWhiteRegistered;
+
+  /** Whether the black player is registered. */
+  private final boolean isBlackRegistered;
+
+  /** The initial amount of time on white's clock, in seconds. */
+  private final int whiteTime;
+
+  /** White's increment, in seconds. */
+  private final int whiteInc;
+
+  /** The initial amount of time on black's clock, in seconds. */
+  private final int blackTime;
+
+  /** Black's increment, in seconds. */
+  private final int blackInc;
+
+  /** The game number of the bughouse partner, or 0 if none. */
+  private final int partnerGameNumber;
+
+  /** White's rating. */
+  private final int whiteRating;
+
+  /** White's rating provshow character. */
+  private final char whiteProvShow;
+
+  /** Black's rating. */
+  private final int blackRating;
+
+  /** Black's rating provshow character. */
+  private final char blackProvShow;
+
+  /** Whether the white player is using timeseal. */
+  private final boolean isWhiteTimesealed;
+
+  /** Whether the black player is using timeseal. */
+  private final boolean isBlackTimesealed;
 
   /**
    * Creates a new GameInfoStruct with the specified arguments.
@@ -71,8 +119,6 @@ public class GameInfoStruct extends Struct {
       boolean isWhiteTimesealed,
       boolean isBlackTimesealed) {
 
-    super(20);
-
     if (whiteTime < 0)
       throw new IllegalArgumentException(
           "White's initial time (" + whiteTime + ") may not be negative");
@@ -89,23 +135,23 @@ public class GameInfoStruct extends Struct {
       throw new IllegalArgumentException(
           "Black's increment (" + blackInc + ") may not be negative");
 
-    setIntegerProperty("GameNumber", gameNumber);
-    setBooleanProperty("IsGamePrivate", isGamePrivate);
-    setStringProperty("GameCategory", gameCategory);
-    setBooleanProperty("IsGameRated", isGameRated);
-    setBooleanProperty("IsWhiteRegistered", isWhiteRegistered);
-    setBooleanProperty("IsBlackRegistered", isBlackRegistered);
-    setIntegerProperty("WhiteTime", whiteTime);
-    setIntegerProperty("WhiteInc", whiteInc);
-    setIntegerProperty("BlackTime", blackTime);
-    setIntegerProperty("BlackInc", blackInc);
-    setIntegerProperty("PartnerGameNumber", partnerGameNumber);
-    setIntegerProperty("WhiteRating", whiteRating);
-    setCharProperty("WhiteProvShow", whiteProvShow);
-    setIntegerProperty("BlackRating", blackRating);
-    setCharProperty("BlackProvShow", blackProvShow);
-    setBooleanProperty("IsWhiteTimesealed", isWhiteTimesealed);
-    setBooleanProperty("IsBlackTimesealed", isBlackTimesealed);
+    this.gameNumber = gameNumber;
+    this.isGamePrivate = isGamePrivate;
+    this.gameCategory = gameCategory;
+    this.isGameRated = isGameRated;
+    this.isWhiteRegistered = isWhiteRegistered;
+    this.isBlackRegistered = isBlackRegistered;
+    this.whiteTime = whiteTime;
+    this.whiteInc = whiteInc;
+    this.blackTime = blackTime;
+    this.blackInc = blackInc;
+    this.partnerGameNumber = partnerGameNumber;
+    this.whiteRating = whiteRating;
+    this.whiteProvShow = whiteProvShow;
+    this.blackRating = blackRating;
+    this.blackProvShow = blackProvShow;
+    this.isWhiteTimesealed = isWhiteTimesealed;
+    this.isBlackTimesealed = isBlackTimesealed;
   }
 
   /**
@@ -113,56 +159,48 @@ public class GameInfoStruct extends Struct {
    * <g1> 1 p=0 t=blitz r=1 u=1,1 it=5,5 i=8,8 pt=0 rt=1586E,2100 ts=1,0<br>
    */
   public static GameInfoStruct parseGameInfoLine(String line) {
-    StringTokenizer tokens = new StringTokenizer(line, " ,=");
+    FieldScanner tokens = new FieldScanner(line, " ,=");
 
-    if (!tokens.nextToken().equals("<g1>")) // Skip the <g1> identifier
+    if (!tokens.nextTokenEquals("<g1>")) // Skip the <g1> identifier
     throw new IllegalArgumentException("Missing \"<g1>\" identifier");
 
-    int gameNumber = Integer.parseInt(tokens.nextToken()); // Game number
+    int gameNumber = tokens.nextInt(); // Game number
 
-    assertToken(tokens, "p"); // p=
-    boolean isGamePrivate = parseBoolean(tokens.nextToken()); // Is the game private?
+    tokens.assertToken("p"); // p=
+    boolean isGamePrivate = tokens.nextBoolean(); // Is the game private?
 
-    assertToken(tokens, "t"); // t=
+    tokens.assertToken("t"); // t=
     String gameType = tokens.nextToken(); // Game type
 
-    assertToken(tokens, "r"); // r=
-    boolean isGameRated = parseBoolean(tokens.nextToken()); // Is the game rated?
-
-    assertToken(tokens, "u"); // u=
-    boolean isWhiteRegistered = parseBoolean(tokens.nextToken()); // Is white registered?
-    boolean isBlackRegistered = parseBoolean(tokens.nextToken()); // Is black registered?
-
-    assertToken(tokens, "it"); // it=
-    int whiteTime = Integer.parseInt(tokens.nextToken()); // White's initial time
-    int whiteInc = Integer.parseInt(tokens.nextToken()); // White's increment
-
-    assertToken(tokens, "i");
-    int blackTime = Integer.parseInt(tokens.nextToken()); // Black's initial time
-    int blackInc = Integer.parseInt(tokens.nextToken()); // Black's increment
-
-    assertToken(tokens, "pt");
-    int partnerGameNumber = Integer.parseInt(tokens.nextToken()); // The partner's game number
-
-    assertToken(tokens, "rt");
-    String whiteRatingString = tokens.nextToken(); // White's rating + provshow character
-    String blackRatingString = tokens.nextToken(); // Black's rating + provshow character
-    char whiteProvShow = ' ';
-    char blackProvShow = ' ';
-    if (!Character.isDigit(whiteRatingString.charAt(whiteRatingString.length() - 1))) {
-      whiteProvShow = whiteRatingString.charAt(whiteRatingString.length() - 1);
-      whiteRatingString = whiteRatingString.substring(0, whiteRatingString.length() - 1);
-    }
-    if (!Character.isDigit(blackRatingString.charAt(blackRatingString.length() - 1))) {
-      blackProvShow = blackRatingString.charAt(blackRatingString.length() - 1);
-      blackRatingString = blackRatingString.substring(0, blackRatingString.length() - 1);
-    }
-    int whiteRating = Integer.parseInt(whiteRatingString);
-    int blackRating = Integer.parseInt(blackRatingString);
-
-    assertToken(tokens, "ts");
-    boolean isWhiteTimesealed = parseBoolean(tokens.nextToken()); // Is white timesealed?
-    boolean isBlackTimesealed = parseBoolean(tokens.nextToken()); // Is black timesealed?
+    tokens.assertToken("r"); // r=
+    boolean isGameRated = tokens.nextBoolean(); // Is the game rated?
+
+    tokens.assertToken("u"); // u=
+    boolean isWhiteRegistered = tokens.nextBoolean(); // Is white registered?
+    boolean isBlackRegistered = tokens.nextBoolean(); // Is black registered?
+
+    tokens.assertToken("it"); // it=
+    int whiteTime = tokens.nextInt(); // White's initial time
+    int whiteInc = tokens.nextInt(); // White's increment
+
+    tokens.assertToken("i");
+    int blackTime = tokens.nextInt(); // Black's initial time
+    int blackInc = tokens.nextInt(); // Black's increment
+
+    tokens.assertToken("pt");
+    int partnerGameNumber = tokens.nextInt(); // The partner's game number
+
+    tokens.assertToken("rt");
+    tokens.advance(); // White's rating + provshow character
+    char whiteProvShow = provShow(tokens);
+    int whiteRating = rating(tokens);
+    tokens.advance(); // Black's rating + provshow character
+    char blackProvShow = provShow(tokens);
+    int blackRating = rating(tokens);
+
+    tokens.assertToken("ts");
+    boolean isWhiteTimesealed = tokens.nextBoolean(); // Is white timesealed?
+    boolean isBlackTimesealed = tokens.nextBoolean(); // Is black timesealed?
 
     return new GameInfoStruct(
         gameNumber,
@@ -185,34 +223,32 @@ public class GameInfoStruct extends Struct {
   }
 
   /**
-   * If the given string is "1", return <code>true</code>. If it's "0", returns <code>false</code>.
-   * Otherwise throws an IllegalArgumentException.
+   * Returns the provshow character of the rating the specified scanner last advanced to, or ' ' if
+   * it has none.
    */
-  private static boolean parseBoolean(String val) {
-    if (val.equals("1")) return true;
-    else if (val.equals("0")) return false;
-    else throw new IllegalArgumentException("Bad boolean value: " + val);
+  private static char provShow(FieldScanner tokens) {
+    char lastChar = tokens.lastChar();
+    return Character.isDigit(lastChar) ? ' ' : lastChar;
   }
 
   /**
-   * Checks that the next token for the given StringTokenizer is the specified String. Throws an
-   * IllegalArgumentException if it isn't.
+   * Parses the rating the specified scanner last advanced to, without its provshow character, if
+   * any.
    */
-  private static void assertToken(StringTokenizer tokenizer, String token) {
-    String realToken = tokenizer.nextToken();
-    if (!realToken.equals(token))
-      throw new IllegalArgumentException(
-          "Bad token \"" + realToken + "\", expected \"" + token + "\" instead");
+  private static int rating(FieldScanner tokens) {
+    int end = tokens.getTokenEnd();
+    if (!Character.isDigit(tokens.lastChar())) end--;
+    return tokens.parseInt(tokens.getTokenStart(), end, 10);
   }
 
   /** Returns the game number. */
   public int getGameNumber() {
-    return getIntegerProperty("GameNumber");
+    return gameNumber;
   }
 
   /** Returns <code>true</code> if the game is private, <code>false</code> otherwise. */
   public boolean isGamePrivate() {
-    return getBooleanProperty("IsGamePrivate");
+    return isGamePrivate;
   }
 
   /**
@@ -220,52 +256,52 @@ public class GameInfoStruct extends Struct {
    * variant name in case of a wild game.
    */
   public String getGameCategory() {
-    return getStringProperty("GameCategory");
+    return gameCategory;
   }
 
   /** Returns <code>true</code> if the game is rated, <code>false</code> otherwise. */
   public boolean isGameRated() {
-    return getBooleanProperty("IsGameRated");
+    return isGameRated;
   }
 
   /** Returns <code>true</code> if the white player is registered, <code>false</code> otherwise. */
   public boolean isWhiteRegistered() {
-    return getBooleanProperty("IsWhiteRegistered");
+    return isWhiteRegistered;
   }
 
   /** Returns <code>true</code> if the black player is registered, <code>false</code> otherwise. */
   public boolean isBlackRegistered() {
-    return getBooleanProperty("IsBlackRegistered");
+    return isBlackRegistered;
   }
 
   /** Returns the initial amount of time on white's clock, in seconds. */
   public int getWhiteTime() {
-    return getIntegerProperty("WhiteTime");
+    return whiteTime;
   }
 
   /** Returns the initial amount of time on black's clock, in seconds. */
   public int getBlackTime() {
-    return getIntegerProperty("BlackTime");
+    return blackTime;
   }
 
   /** Returns the amount of time white's clock increases by after each move he makes, in seconds. */
   public int getWhiteInc() {
-    return getIntegerProperty("WhiteInc");
+    return whiteInc;
   }
 
   /** Returns the amount of time black's clock increases by after each move he makes, in seconds. */
   public int getBlackInc() {
-    return getIntegerProperty("BlackInc");
+    return blackInc;
   }
 
   /** Returns the number of the partner's game, or 0 if none. */
   public int getPartnerGameNumber() {
-    return getIntegerProperty("PartnerGameNumber");
+    return partnerGameNumber;
   }
 
   /** Returns white's rating. */
   public int getWhiteRating() {
-    return getIntegerProperty("WhiteRating");
+    return whiteRating;
   }
 
   /**
@@ -273,12 +309,12 @@ public class GameInfoStruct extends Struct {
    * and ' ' if neither.
    */
   public char getWhiteProvShow() {
-    return getCharProperty("WhiteProvShow");
+    return whiteProvShow;
   }
 
   /** Returns black's rating. */
   public int getBlackRating() {
-    return getIntegerProperty("BlackRating");
+    return blackRating;
   }
 
   /**
@@ -286,16 +322,16 @@ public class GameInfoStruct extends Struct {
    * and ' ' if neither.
    */
   public char getBlackProvShow() {
-    return getCharProperty("BlackProvShow");
+    return blackProvShow;
   }
 
   /** Returns <code>true</code> if white uses timesealing, <code>false</code> otherwise. */
   public boolean isWhiteTimesealed() {
-    return getBooleanProperty("IsWhiteTimesealed");
+    return isWhiteTimesealed;
   }
 
   /** Returns <code>true</code> if black uses timesealing, <code>false</code> otherwise. */
   public boolean isBlackTimesealed() {
-    return getBooleanProperty("IsBlackTimesealed");
+    return isBlackTimesealed;
   }
 }
@@ -0,0 +1,71 @@
+/**
+ * The freechess.org connection library. More information is available at http://www.jinchess.com/.
+ * Copyright (C) 2002, 2003 Alexander Maryanovsky. All rights reserved.
+ *
+ * <p>The freechess.org connection library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * <p>The freechess.org connection library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU Lesser General Public License along with the
+ * freechess.org connection library; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package free.freechess;
+
+/**
+ * A line sent by the server, together with the data parsed from it. Instances are created on the
+ * thread reading from the server and handed over to the client thread, where only the processing of
+ * the data remains to be done. Instances are immutable.
+ */
+final class ParsedLine {
+
+  /** The line, as sent by the server. */
+  private final String line;
+
+  /** The kind of the line (one of the <code>FicsLineClassifier</code> constants), or -1 if none. */
+  private final int kind;
+
+  /**
+   * The data parsed from the line - a struct, a <code>MatchResult</code> or whatever else the
+   * parser for the kind of the line produces. <code>null</code> if the line is of no known kind.
+   */
+  private final Object data;
+
+  /**
+   * The kinds, after <code>kind</code>, the line may still be (see {@link
+   * FicsLineClassifier#classify(String)}), should the handler of <code>kind</code> decline it.
+   */
+  private final long remainingKinds;
+
+  /** Creates a new <code>ParsedLine</code> with the specified arguments. */
+  ParsedLine(String line, int kind, Object data, long remainingKinds) {
+    this.line = line;
+    this.kind = kind;
+    this.data = data;
+    this.remainingKinds = remainingKinds;
+  }
+
+  /** Returns the line, as sent by the server. */
+  String getLine() {
+    return line;
+  }
+
+  /** Returns the kind of the line, or -1 if none. */
+  int getKind() {
+    return kind;
+  }
+
+  /** Returns the data parsed from the line. */
+  Object getData() {
+    return data;
+  }
+
+  /** Returns the mask of the kinds the line may still be, should its handler decline it. */
+  long getRemainingKinds() {
+    return remainingKinds;
+  }
+}
@@ -16,15 +16,12 @@
  */
 package free.freechess;
 
-import free.util.Struct;
-import java.util.StringTokenizer;
-
 /**
  * A structure holding parsed information from a seekinfo line. More information about the format is
  * available in the "help iv_seekinfo" file on the Free Internet Chess Server
  * (http://www.freechess.org).
  */
-public class SeekInfoStruct extends Struct {
+public final class SeekInfoStruct {
 
   /** The bit mask for an unregistered player. */
   public static final int UNREGISTERED = 0x1;
@@ -50,6 +47,51 @@ public class SeekInfoStruct extends Struct {
   /** The bit mask for a WFM. */
   public static final int WFM = 0x80;
 
+  /** Whether the user can accept the seek. */
+  private final boolean canAcceptSeek;
+
+  /** The seek index. */
+  private final int index;
+
+  /** The handle of the seeking player. */
+  private final String name;
+
+  /** The titles of the seeking player, ORed into an int. */
+  private final int titles;
+
+  /** The rating of the seeking player. */
+  private final int rating;
+
+  /** The seeker's rating provshow character. */
+  private final char provShow;
+
+  /** The initial time of the sought game, in minutes. */
+  private final int time;
+
+  /** The increment of the sought game, in seconds. */
+  private final int inc;
+
+  /** Whether the sought game is rated. */
+  private final boolean isRated;
+
+  /** The variant or rating type of the sought game. */
+  private final String matchType;
+
+  /** The requested color - 'W', 'B' or '?'. */
+  private final char color;
+
+  /** The minimum rating of the sought opponent. */
+  private final int minRating;
+
+  /** The maximum rating of the sought opponent. */
+  private final int maxRating;
+
+  /** Whether the seek is accepted automatically. */
+  private final boolean isAutomaticAccept;
+
+  /** Whether one must pass the seeker's formula to accept the seek. */
+  private final boolean isFormulaUsed;
+
   /**
    * Creates a new SeekInfoStruct with the specified arguments.
    *
@@ -107,21 +149,21 @@ public class SeekInfoStruct extends Struct {
         throw new IllegalArgumentException("Bad color character: " + color);
     }
 
-    setBooleanProperty("CanAcceptSeek", canAcceptSeek);
-    setIntegerProperty("Index", index);
-    setStringProperty("Name", name);
-    setIntegerProperty("Titles", titles);
-    setIntegerProperty("Rating", rating);
-    setCharProperty("ProvShow", provshow);
-    setIntegerProperty("Time", time);
-    setIntegerProperty("Increment", inc);
-    setBooleanProperty("IsRated", isRated);
-    setStringProperty("MatchType", matchType);
-    setCharProperty("RequestedColor", color);
-    setIntegerProperty("MinRating", minRating);
-    setIntegerProperty("MaxRating", maxRating);
-    setBooleanProperty("IsAutomaticAccept", isAutomaticAccept);
-    setBooleanProperty("IsFormulaUsed", isFormulaUsed);
+    this.canAcceptSeek = canAcceptSeek;
+    this.index = index;
+    this.name = name;
+    this.titles = titles;
+    this.rating = rating;
+    this.provShow = provshow;
+    this.time = time;
+    this.inc = inc;
+    this.isRated = isRated;
+    this.matchType = matchType;
+    this.color = color;
+    this.minRating = minRating;
+    this.maxRating = maxRating;
+    this.isAutomaticAccept = isAutomaticAccept;
+    this.isFormulaUsed = isFormulaUsed;
   }
 
   /**
@@ -136,56 +178,58 @@ public class SeekInfoStruct extends Struct {
    * information about the format is available in the FICS iv_seekinfo help file.
    */
   public static SeekInfoStruct parseSeekInfoLine(String line) {
-    StringTokenizer tokens = new StringTokenizer(line, " -=");
+    FieldScanner tokens = new FieldScanner(line, " -=");
 
     boolean canAcceptSeek;
-    String identifier = tokens.nextToken();
-    if (identifier.equals("<s>")) // Skip the <s> identifier
+    tokens.advance();
+    if (tokens.currentTokenEquals("<s>")) // Skip the <s> identifier
     canAcceptSeek = true;
-    else if (identifier.equals("<sn>")) canAcceptSeek = false;
+    else if (tokens.currentTokenEquals("<sn>")) canAcceptSeek = false;
     else throw new IllegalArgumentException("Missing \"<s>\" or \"<sn>\" identifier");
 
-    int index = Integer.parseInt(tokens.nextToken());
+    int index = tokens.nextInt();
 
-    assertToken(tokens, "w"); // w=
+    tokens.assertToken("w"); // w=
     String name = tokens.nextToken();
 
-    assertToken(tokens, "ti"); // ti=
-    int titles = Integer.parseInt(tokens.nextToken(), 16);
+    tokens.assertToken("ti"); // ti=
+    int titles = tokens.nextInt(16);
 
-    assertToken(tokens, "rt"); // rt=
-    String ratingString = tokens.nextToken();
+    tokens.assertToken("rt"); // rt=
+    tokens.advance();
     char provShow = ' ';
-    if (!Character.isDigit(ratingString.charAt(ratingString.length() - 1))) {
-      provShow = ratingString.charAt(ratingString.length() - 1);
-      ratingString = ratingString.substring(0, ratingString.length() - 1);
+    int ratingEnd = tokens.getTokenEnd();
+    if (!Character.isDigit(tokens.lastChar())) {
+      provShow = tokens.lastChar();
+      ratingEnd--;
     }
-    int rating = Integer.parseInt(ratingString);
+    int rating = tokens.parseInt(tokens.getTokenStart(), ratingEnd, 10);
 
-    assertToken(tokens, "t"); // t=
-    int time = Integer.parseInt(tokens.nextToken());
+    tokens.assertToken("t"); // t=
+    int time = tokens.nextInt();
 
-    assertToken(tokens, "i"); // i=
-    int inc = Integer.parseInt(tokens.nextToken());
+    tokens.assertToken("i"); // i=
+    int inc = tokens.nextInt();
 
-    assertToken(tokens, "r"); // r=
-    boolean isRated = tokens.nextToken().equals("r");
+    tokens.assertToken("r"); // r=
+    boolean isRated = tokens.nextTokenEquals("r");
 
-    assertToken(tokens, "tp"); // tp=
+    tokens.assertToken("tp"); // tp=
     String matchType = tokens.nextToken();
 
-    assertToken(tokens, "c"); // c=
-    char requestedColor = tokens.nextToken().charAt(0);
+    tokens.assertToken("c"); // c=
+    tokens.advance();
+    char requestedColor = line.charAt(tokens.getTokenStart());
 
-    assertToken(tokens, "rr"); // rr=
-    int minRating = Integer.parseInt(tokens.nextToken());
-    int maxRating = Integer.parseInt(tokens.nextToken());
+    tokens.assertToken("rr"); // rr=
+    int minRating = tokens.nextInt();
+    int maxRating = tokens.nextInt();
 
-    assertToken(tokens, "a"); // a=
-    boolean isAutomaticAccept = tokens.nextToken().equals("t");
+    tokens.assertToken("a"); // a=
+    boolean isAutomaticAccept = tokens.nextTokenEquals("t");
 
-    assertToken(tokens, "f"); // f=
-    boolean isFormulaUsed = tokens.nextToken().equals("t");
+    tokens.assertToken("f"); // f=
+    boolean isFormulaUsed = tokens.nextTokenEquals("t");
 
     return new SeekInfoStruct(
         canAcceptSeek,
@@ -205,33 +249,22 @@ public class SeekInfoStruct extends Struct {
         isFormulaUsed);
   }
 
-  /**
-   * Checks that the next token for the given StringTokenizer is the specified String. Throws an
-   * IllegalArgumentException if it isn't.
-   */
-  private static void assertToken(StringTokenizer tokenizer, String token) {
-    String realToken = tokenizer.nextToken();
-    if (!realToken.equals(token))
-      throw new IllegalArgumentException(
-          "Bad token \"" + realToken + "\", expected \"" + token + "\" instead");
-  }
-
   /**
    * Returns <code>true</code> if the user account can accept the seek, returns <code>false</code>
    * otherwise.
    */
   public boolean canAcceptSeek() {
-    return getBooleanProperty("CanAcceptSeek");
+    return canAcceptSeek;
   }
 
   /** Returns the index of the seek. */
   public int getSeekIndex() {
-    return getIntegerProperty("Index");
+    return index;
   }
 
   /** Returns the handle of the seeking player. */
   public String getSeekerHandle() {
-    return getStringProperty("Name");
+    return name;
   }
 
   /**
@@ -239,12 +272,12 @@ public class SeekInfoStruct extends Struct {
    * for example, use <code>(getSeekerTitles() & SeekInfoStruct.GM) != 0</code>.
    */
   public int getSeekerTitles() {
-    return getIntegerProperty("Titles");
+    return titles;
   }
 
   /** Returns the seeker's rating. */
   public int getSeekerRating() {
-    return getIntegerProperty("Rating");
+    return rating;
   }
 
   /**
@@ -252,22 +285,22 @@ public class SeekInfoStruct extends Struct {
    * provisional, and ' ' if neither.
    */
   public char getSeekerProvShow() {
-    return getCharProperty("ProvShow");
+    return provShow;
   }
 
   /** Returns the initial time of the sought match, in minutes. */
   public int getMatchTime() {
-    return getIntegerProperty("Time");
+    return time;
   }
 
   /** Returns the increment of the sought match, in seconds. */
   public int getMatchIncrement() {
-    return getIntegerProperty("Increment");
+    return inc;
   }
 
   /** Returns <code>true</code> if the sought match is rated, <code>false</code> otherwise. */
   public boolean isMatchRated() {
-    return getBooleanProperty("IsRated");
+    return isRated;
   }
 
   /**
@@ -275,7 +308,7 @@ public class SeekInfoStruct extends Struct {
    * variant is chess. For example - "suicide", "lightning", "blitz" etc.
    */
   public String getMatchType() {
-    return getStringProperty("MatchType");
+    return matchType;
   }
 
   /**
@@ -283,17 +316,17 @@ public class SeekInfoStruct extends Struct {
    * and '?' if the seeker doesn't care.
    */
   public char getSeekerColor() {
-    return getCharProperty("RequestedColor");
+    return color;
   }
 
   /** Returns the minimum rating of the desired opponent. */
   public int getOpponentMinRating() {
-    return getIntegerProperty("MinRating");
+    return minRating;
   }
 
   /** Returns the maximum rating of the desired opponent. */
   public int getOpponentMaxRating() {
-    return getIntegerProperty("MaxRating");
+    return maxRating;
   }
 
   /**
@@ -301,7 +334,7 @@ public class SeekInfoStruct extends Struct {
    * the seeker must confirm it manually.
    */
   public boolean isAutomaticAccept() {
-    return getBooleanProperty("IsAutomaticAccept");
+    return isAutomaticAccept;
   }
 
   /**
@@ -309,6 +342,6 @@ public class SeekInfoStruct extends Struct {
    * seeker. Returns <code>false</code> otherwise.
    */
   public boolean isFormulaUsed() {
-    return getBooleanProperty("IsFormulaUsed");
+    return isFormulaUsed;
   }
 }
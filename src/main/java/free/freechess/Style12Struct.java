@@ -16,16 +16,13 @@
  */
 package free.freechess;
 
-import free.util.Struct;
-import java.util.StringTokenizer;
-
 /**
  * A structure holding parsed information from a style12 line. See <A
  * HREF="http://www.freechess.org/WWWhelp/style12.html"
  * >http://www.freechess.org/WWWhelp/style12.html</A> or the "help style12" helpfile on
  * freechess.org for information about the format.
  */
-public class Style12Struct extends Struct {
+public final class Style12Struct {
 
   /** The constant for the user's game. */
   public static final int MY_GAME = 1;
@@ -36,6 +33,93 @@ public class Style12Struct extends Struct {
   /** The constant for a game which is just an isolated peek into someone's game. */
   public static final int ISOLATED_BOARD = 3;
 
+  /** The values, in milliseconds, of the minutes, seconds and milliseconds of a move's time. */
+  private static final int[] MOVE_TIME_UNITS = {60 * 1000, 1000, 1};
+
+  /** The current board, in lexigraphic format. */
+  private final String boardLexigraphic;
+
+  /** The player to move, either "W" or "B". */
+  private final String currentPlayer;
+
+  /** The file of the double pawn push on the last move, or -1 if none. */
+  private final int doublePawnPushFile;
+
+  /** Whether white can still castle kingside. */
+  private final boolean canWhiteCastleKingside;
+
+  /** Whether white can still castle queenside. */
+  private final boolean canWhiteCastleQueenside;
+
+  /** Whether black can still castle kingside. */
+  private final boolean canBlackCastleKingside;
+
+  /** Whether black can still castle queenside. */
+  private final boolean canBlackCastleQueenside;
+
+  /** The number of half moves made since the last irreversible move. */
+  private final int pliesSinceIrreversible;
+
+  /** The game number. */
+  private final int gameNumber;
+
+  /** The white player's nickname. */
+  private final String whiteName;
+
+  /** The black player's nickname. */
+  private final String blackName;
+
+  /**
+   * The game type - <code>MY_GAME</code>, <code>OBSERVED_GAME</code> or <code>ISOLATED_BOARD</code>
+   * .
+   */
+  private final int gameType;
+
+  /** Whether the game is played (rather than examined). */
+  private final boolean isPlayedGame;
+
+  /** Whether it's the user's turn. */
+  private final boolean isMyTurn;
+
+  /** The initial time of the match, in seconds. */
+  private final int initTime;
+
+  /** The increment of the match, in seconds. */
+  private final int increment;
+
+  /** White's material strength. */
+  private final int whiteMaterialStrength;
+
+  /** Black's material strength. */
+  private final int blackMaterialStrength;
+
+  /** White's remaining time. */
+  private final int whiteTime;
+
+  /** Black's remaining time. */
+  private final int blackTime;
+
+  /** The number of the move about to be made. */
+  private final int nextMoveNumber;
+
+  /** A verbose representation of the last move, <code>null</code> if none. */
+  private final String moveVerbose;
+
+  /** A SAN representation of the last move, <code>null</code> if none. */
+  private final String moveSAN;
+
+  /** The amount of time taken to make the last move, in milliseconds. */
+  private final int moveTime;
+
+  /** Whether the board should be flipped (black at bottom). */
+  private final boolean isBoardFlipped;
+
+  /** Whether the clock of the player to move is running. */
+  private final boolean isClockRunning;
+
+  /** The lag incurred when making the last move, in milliseconds. */
+  private final int lag;
+
   /**
    * Creates a new Style12Struct with the specified arguments. You would usually want to use the
    * <code>parseStyle12Line</code> method and not this constructor to obtain Style12Struct objects.
@@ -161,66 +245,92 @@ public class Style12Struct extends Struct {
       throw new IllegalArgumentException(
           "Lag may not be negative (really, it's against the laws of physics)");
 
-    setStringProperty("BoardLexigraphic", boardLexigraphic);
-    setStringProperty("CurrentPlayer", currentPlayer);
-    setIntegerProperty("DoublePawnPushFile", doublePawnPushFile);
-    setBooleanProperty("CanWhiteCastleKingside", canWhiteCastleKingside);
-    setBooleanProperty("CanWhiteCastleQueenside", canWhiteCastleQueenside);
-    setBooleanProperty("CanBlackCastleKingside", canBlackCastleKingside);
-    setBooleanProperty("CanBlackCastleQueenside", canBlackCastleQueenside);
-    setIntegerProperty("PliesSinceIrreversible", pliesSinceIrreversible);
-    setIntegerProperty("GameNumber", gameNumber);
-    setStringProperty("WhiteName", whiteName);
-    setStringProperty("BlackName", blackName);
-    setIntegerProperty("GameType", gameType);
-    setBooleanProperty("IsPlayedGame", isPlayedGame);
-    setBooleanProperty("IsMyTurn", isMyTurn);
-    setIntegerProperty("InitTime", initTime);
-    setIntegerProperty("Increment", increment);
-    setIntegerProperty("WhiteMaterialStrength", whiteMaterialStrength);
-    setIntegerProperty("BlackMaterialStrength", blackMaterialStrength);
-    setIntegerProperty("WhiteTime", whiteTime);
-    setIntegerProperty("BlackTime", blackTime);
-    setIntegerProperty("NextMoveNumber", nextMoveNumber);
-    setStringProperty("MoveVerbose", moveVerbose);
-    setStringProperty("MoveSAN", moveSAN);
-    setIntegerProperty("MoveTime", moveTime);
-    setBooleanProperty("IsBoardFlipped", isBoardFlipped);
-    setBooleanProperty("IsClockRunning", isClockRunning);
-    setIntegerProperty("Lag", lag);
+    this.boardLexigraphic = boardLexigraphic;
+    this.currentPlayer = currentPlayer;
+    this.doublePawnPushFile = doublePawnPushFile;
+    this.canWhiteCastleKingside = canWhiteCastleKingside;
+    this.canWhiteCastleQueenside = canWhiteCastleQueenside;
+    this.canBlackCastleKingside = canBlackCastleKingside;
+    this.canBlackCastleQueenside = canBlackCastleQueenside;
+    this.pliesSinceIrreversible = pliesSinceIrreversible;
+    this.gameNumber = gameNumber;
+    this.whiteName = whiteName;
+    this.blackName = blackName;
+    this.gameType = gameType;
+    this.isPlayedGame = isPlayedGame;
+    this.isMyTurn = isMyTurn;
+    this.initTime = initTime;
+    this.increment = increment;
+    this.whiteMaterialStrength = whiteMaterialStrength;
+    this.blackMaterialStrength = blackMaterialStrength;
+    this.whiteTime = whiteTime;
+    this.blackTime = blackTime;
+    this.nextMoveNumber = nextMoveNumber;
+    this.moveVerbose = moveVerbose;
+    this.moveSAN = moveSAN;
+    this.moveTime = moveTime;
+    this.isBoardFlipped = isBoardFlipped;
+    this.isClockRunning = isClockRunning;
+    this.lag = lag;
   }
 
   /** Parses a style12 line and returns a corresponding Style12Struct object. */
   public static Style12Struct parseStyle12Line(String line) {
-    StringTokenizer tokens = new StringTokenizer(line, " ");
+    return parseStyle12Line(line, null);
+  }
+
+  /**
+   * Parses a style12 line and returns a corresponding Style12Struct object. Strings which are the
+   * same as in the specified previous board (usually the last board of the same game) are shared
+   * with it rather than created anew, so that a board where only the position, the clocks and the
+   * move have changed creates as few objects as possible. The previous board may be <code>null
+   * </code>.
+   */
+  public static Style12Struct parseStyle12Line(String line, Style12Struct previous) {
+    FieldScanner tokens = new FieldScanner(line, " ");
 
-    if (!tokens.nextToken().equals("<12>")) // Skip the "<12>" identifier
+    if (!tokens.nextTokenEquals("<12>")) // Skip the "<12>" identifier
     throw new IllegalArgumentException("Missing \"<12>\" identifier");
 
-    StringBuffer posBuf = new StringBuffer(64);
-    for (int i = 0; i < 8; i++) posBuf.append(tokens.nextToken()); // The board
-    String positionLexigraphic = posBuf.toString();
+    char[] board = new char[64];
+    int boardLength = 0;
+    for (int i = 0; i < 8; i++) { // The board
+      tokens.advance();
+      if (boardLength + tokens.currentTokenLength() <= board.length)
+        tokens.getCurrentToken(board, boardLength);
+      boardLength += tokens.currentTokenLength();
+    }
+    if (boardLength != board.length)
+      throw new IllegalArgumentException(
+          "Board string length (" + boardLength + ") must be 64 characters");
+    String positionLexigraphic;
+    if ((previous != null) && contentEquals(previous.boardLexigraphic, board))
+      positionLexigraphic = previous.boardLexigraphic;
+    else positionLexigraphic = new String(board);
 
-    String currentPlayer = tokens.nextToken(); // The color string, either "B" or "W"
+    tokens.advance(); // The color string, either "B" or "W"
+    String currentPlayer;
+    if (tokens.currentTokenEquals("W")) currentPlayer = "W";
+    else if (tokens.currentTokenEquals("B")) currentPlayer = "B";
+    else currentPlayer = tokens.getCurrentToken();
 
-    int doublePawnPushFile = Integer.parseInt(tokens.nextToken()); // The double pawn push file
+    int doublePawnPushFile = tokens.nextInt(); // The double pawn push file
 
-    boolean canWhiteCastleKingside = parseBoolean(tokens.nextToken()); // Can white castle kingside
-    boolean canWhiteCastleQueenside =
-        parseBoolean(tokens.nextToken()); // Can white castle queenside
-    boolean canBlackCastleKingside = parseBoolean(tokens.nextToken()); // Can black castle kingside
-    boolean canBlackCastleQueenside =
-        parseBoolean(tokens.nextToken()); // Can black castle queenside
+    boolean canWhiteCastleKingside = tokens.nextBoolean(); // Can white castle kingside
+    boolean canWhiteCastleQueenside = tokens.nextBoolean(); // Can white castle queenside
+    boolean canBlackCastleKingside = tokens.nextBoolean(); // Can black castle kingside
+    boolean canBlackCastleQueenside = tokens.nextBoolean(); // Can black castle queenside
 
-    int pliesSinceIrreversible =
-        Integer.parseInt(tokens.nextToken()); // Number of plies since an irreversible move
+    int pliesSinceIrreversible = tokens.nextInt(); // Number of plies since an irreversible move
 
-    int gameNumber = Integer.parseInt(tokens.nextToken()); // The game number
+    int gameNumber = tokens.nextInt(); // The game number
 
-    String whiteName = tokens.nextToken(); // White's name
-    String blackName = tokens.nextToken(); // Black's name
+    tokens.advance(); // White's name
+    String whiteName = share(tokens, previous == null ? null : previous.whiteName);
+    tokens.advance(); // Black's name
+    String blackName = share(tokens, previous == null ? null : previous.blackName);
 
-    int myRelation = Integer.parseInt(tokens.nextToken()); // My relation to the game
+    int myRelation = tokens.nextInt(); // My relation to the game
     int gameType;
     boolean isPlayedGame;
     switch (myRelation) {
@@ -251,37 +361,35 @@ public class Style12Struct extends Struct {
 
     boolean isMyTurn = myRelation > 0;
 
-    int initTime = 60 * Integer.parseInt(tokens.nextToken()); // Initial time
-    int increment = Integer.parseInt(tokens.nextToken()); // Increment
+    int initTime = 60 * tokens.nextInt(); // Initial time
+    int increment = tokens.nextInt(); // Increment
 
-    int whiteMaterialStrength = Integer.parseInt(tokens.nextToken()); // White's material strength
-    int blackMaterialStrength = Integer.parseInt(tokens.nextToken()); // Black's material strength
+    int whiteMaterialStrength = tokens.nextInt(); // White's material strength
+    int blackMaterialStrength = tokens.nextInt(); // Black's material strength
 
-    int whiteTime = Integer.parseInt(tokens.nextToken()); // White's remaining time
-    int blackTime = Integer.parseInt(tokens.nextToken()); // Black's remaining time
+    int whiteTime = tokens.nextInt(); // White's remaining time
+    int blackTime = tokens.nextInt(); // Black's remaining time
 
-    int nextMoveNumber = Integer.parseInt(tokens.nextToken()); // The number of the next move
+    int nextMoveNumber = tokens.nextInt(); // The number of the next move
 
-    String moveVerbose = tokens.nextToken(); // The move in verbose notation
-    if (moveVerbose.equals("none")) moveVerbose = null;
+    tokens.advance(); // The move in verbose notation
+    String moveVerbose;
+    if (tokens.currentTokenEquals("none")) moveVerbose = null;
+    else moveVerbose = share(tokens, previous == null ? null : previous.moveVerbose);
 
-    String moveTimeString = tokens.nextToken(); // The amount of time taken for the last move
-    moveTimeString = moveTimeString.substring(1, moveTimeString.length() - 1);
-    StringTokenizer timeTokens = new StringTokenizer(moveTimeString, ":.");
-    int minutes = Integer.parseInt(timeTokens.nextToken());
-    int seconds = Integer.parseInt(timeTokens.nextToken());
-    int milliseconds = Integer.parseInt(timeTokens.nextToken());
-    int moveTime = 60 * 1000 * minutes + 1000 * seconds + milliseconds;
+    tokens.advance(); // The amount of time taken for the last move, "(m:ss.mmm)"
+    int moveTime = parseMoveTime(line, tokens.getTokenStart() + 1, tokens.getTokenEnd() - 1);
 
-    String moveSAN = tokens.nextToken(); // The move in SAN notation
-    if (moveSAN.equals("none")) moveSAN = null;
+    tokens.advance(); // The move in SAN notation
+    String moveSAN;
+    if (tokens.currentTokenEquals("none")) moveSAN = null;
+    else moveSAN = share(tokens, previous == null ? null : previous.moveSAN);
 
-    boolean isBoardFlipped = parseBoolean(tokens.nextToken()); // Is the board flipped?
+    boolean isBoardFlipped = tokens.nextBoolean(); // Is the board flipped?
 
-    boolean isClockRunning =
-        parseBoolean(tokens.nextToken()); // Is the clock of the player to move running?
+    boolean isClockRunning = tokens.nextBoolean(); // Is the clock of the player to move running?
 
-    int lag = Integer.parseInt(tokens.nextToken()); // The lag, in milliseconds.
+    int lag = tokens.nextInt(); // The lag, in milliseconds.
 
     return new Style12Struct(
         positionLexigraphic,
@@ -314,18 +422,51 @@ public class Style12Struct extends Struct {
   }
 
   /**
-   * If the given string is "1", return <code>true</code>. If it's "0", returns <code>false</code>.
-   * Otherwise throws an IllegalArgumentException.
+   * Parses the amount of time taken for a move, in the "m:ss.mmm" format, from the specified range
+   * of the specified line. Returns the time in milliseconds.
    */
-  private static boolean parseBoolean(String val) {
-    if (val.equals("1")) return true;
-    else if (val.equals("0")) return false;
-    else throw new IllegalArgumentException("Bad boolean value: " + val);
+  private static int parseMoveTime(String line, int start, int end) {
+    int moveTime = 0;
+    int index = start;
+    for (int i = 0; i < MOVE_TIME_UNITS.length; i++) {
+      while ((index < end) && isMoveTimeDelimiter(line.charAt(index))) index++;
+      if (index >= end) throw new IllegalArgumentException("Bad move time: " + line);
+
+      int valueEnd = index + 1;
+      while ((valueEnd < end) && !isMoveTimeDelimiter(line.charAt(valueEnd))) valueEnd++;
+
+      moveTime += MOVE_TIME_UNITS[i] * Integer.parseInt(line, index, valueEnd, 10);
+      index = valueEnd;
+    }
+
+    return moveTime;
+  }
+
+  /** Returns whether the specified character separates the components of a move's time. */
+  private static boolean isMoveTimeDelimiter(char c) {
+    return (c == ':') || (c == '.');
+  }
+
+  /**
+   * Returns the specified string if it's equal to the token the specified scanner last advanced to,
+   * or the token itself otherwise.
+   */
+  private static String share(FieldScanner tokens, String string) {
+    return tokens.currentTokenEquals(string) ? string : tokens.getCurrentToken();
+  }
+
+  /** Returns whether the specified string consists of the specified characters. */
+  private static boolean contentEquals(String string, char[] chars) {
+    if (string.length() != chars.length) return false;
+
+    for (int i = 0; i < chars.length; i++) if (string.charAt(i) != chars[i]) return false;
+
+    return true;
   }
 
   /** Returns the current board in lexigraphic format. */
   public String getBoardLexigraphic() {
-    return getStringProperty("BoardLexigraphic");
+    return boardLexigraphic;
   }
 
   /** Returns the current board in FEN format. */
@@ -391,7 +532,7 @@ public class Style12Struct extends Struct {
 
   /** Returns a string representing the player whose turn it currently is, either "W" or "B". */
   public String getCurrentPlayer() {
-    return getStringProperty("CurrentPlayer");
+    return currentPlayer;
   }
 
   /**
@@ -399,7 +540,7 @@ public class Style12Struct extends Struct {
    * double pawn push.
    */
   public int getDoublePawnPushFile() {
-    return getIntegerProperty("DoublePawnPushFile");
+    return doublePawnPushFile;
   }
 
   /**
@@ -407,7 +548,7 @@ public class Style12Struct extends Struct {
    * otherwise.
    */
   public boolean canWhiteCastleKingside() {
-    return getBooleanProperty("CanWhiteCastleKingside");
+    return canWhiteCastleKingside;
   }
 
   /**
@@ -415,7 +556,7 @@ public class Style12Struct extends Struct {
    * otherwise.
    */
   public boolean canWhiteCastleQueenside() {
-    return getBooleanProperty("CanWhiteCastleQueenside");
+    return canWhiteCastleQueenside;
   }
 
   /**
@@ -423,7 +564,7 @@ public class Style12Struct extends Struct {
    * otherwise.
    */
   public boolean canBlackCastleKingside() {
-    return getBooleanProperty("CanBlackCastleKingside");
+    return canBlackCastleKingside;
   }
 
   /**
@@ -431,7 +572,7 @@ public class Style12Struct extends Struct {
    * otherwise.
    */
   public boolean canBlackCastleQueenside() {
-    return getBooleanProperty("CanBlackCastleQueenside");
+    return canBlackCastleQueenside;
   }
 
   /**
@@ -439,22 +580,22 @@ public class Style12Struct extends Struct {
    * was irreversible.
    */
   public int getPliesSinceIrreversible() {
-    return getIntegerProperty("PliesSinceIrreversible");
+    return pliesSinceIrreversible;
   }
 
   /** Returns the game number. */
   public int getGameNumber() {
-    return getIntegerProperty("GameNumber");
+    return gameNumber;
   }
 
   /** Returns the white player's nickname. */
   public String getWhiteName() {
-    return getStringProperty("WhiteName");
+    return whiteName;
   }
 
   /** Returns the black player's nickname. */
   public String getBlackName() {
-    return getStringProperty("BlackName");
+    return blackName;
   }
 
   /**
@@ -462,12 +603,12 @@ public class Style12Struct extends Struct {
    * <code>ISOLATED_BOARD</code>.
    */
   public int getGameType() {
-    return getIntegerProperty("GameType");
+    return gameType;
   }
 
   /** Returns <code>true</code> if the game is a played game, <code>false</code> if examined. */
   public boolean isPlayedGame() {
-    return getBooleanProperty("IsPlayedGame");
+    return isPlayedGame;
   }
 
   /**
@@ -482,37 +623,37 @@ public class Style12Struct extends Struct {
       throw new IllegalStateException(
           "Either the game type is not MY_GAME or it's not a played game.");
 
-    return getBooleanProperty("IsMyTurn");
+    return isMyTurn;
   }
 
   /** Returns the initial time in the match, in seconds. */
   public int getInitialTime() {
-    return getIntegerProperty("InitTime");
+    return initTime;
   }
 
   /** Returns the increment in the time, in seconds. */
   public int getIncrement() {
-    return getIntegerProperty("Increment");
+    return increment;
   }
 
   /** Returns white's material strength. */
   public int getWhiteMaterialStrength() {
-    return getIntegerProperty("WhiteMaterialStrength");
+    return whiteMaterialStrength;
   }
 
   /** Returns black's material strength. */
   public int getBlackMaterialStrength() {
-    return getIntegerProperty("BlackMaterialStrength");
+    return blackMaterialStrength;
   }
 
   /** Returns white's remaining time, in seconds. */
   public int getWhiteTime() {
-    return getIntegerProperty("WhiteTime");
+    return whiteTime;
   }
 
   /** Returns black's remaining time, in seconds. */
   public int getBlackTime() {
-    return getIntegerProperty("BlackTime");
+    return blackTime;
   }
 
   /**
@@ -520,7 +661,7 @@ public class Style12Struct extends Struct {
    * moves are both 1, etc.)
    */
   public int getNextMoveNumber() {
-    return getIntegerProperty("NextMoveNumber");
+    return nextMoveNumber;
   }
 
   /**
@@ -536,7 +677,7 @@ public class Style12Struct extends Struct {
    * either "o-o", "o-o-o" or something like "Q/c7-c5" or for promotions "P/g7-h8=Q".
    */
   public String getMoveVerbose() {
-    return getStringProperty("MoveVerbose");
+    return moveVerbose;
   }
 
   /**
@@ -544,22 +685,22 @@ public class Style12Struct extends Struct {
    * none.
    */
   public String getMoveSAN() {
-    return getStringProperty("MoveSAN");
+    return moveSAN;
   }
 
   /** Returns the amount of time it took to make the last move, in seconds. */
   public int getMoveTime() {
-    return getIntegerProperty("MoveTime");
+    return moveTime;
   }
 
   /** Returns <code>true</code> if the board is flipped (black at bottom), false otherwise. */
   public boolean isBoardFlipped() {
-    return getBooleanProperty("IsBoardFlipped");
+    return isBoardFlipped;
   }
 
   /** Returns <code>true</code> if the clock of the player to move is running. */
   public boolean isClockRunning() {
-    return getBooleanProperty("IsClockRunning");
+    return isClockRunning;
   }
 
   /**
@@ -567,6 +708,6 @@ public class Style12Struct extends Struct {
    * sent.
    */
   public int getLag() {
-    return getIntegerProperty("Lag");
+    return lag;
   }
 }
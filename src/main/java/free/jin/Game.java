@@ -16,8 +16,10 @@
  */
 package free.jin;
 
+import free.chess.MoveList;
 import free.chess.Player;
 import free.chess.Position;
+import free.chess.PositionSnapshot;
 import free.chess.TimeControl;
 import free.chess.WildVariant;
 import free.util.BeanProperties;
@@ -151,6 +153,9 @@ public class Game {
   /** The <code>BeanProperties</code> object actually holding the properties. */
   private final BeanProperties props = new BeanProperties(this);
 
+  /** The moves made in the game since the initial position. */
+  private final MoveList moves = new MoveList();
+
   /**
    * Creates a new Game with the given game properties.
    *
@@ -250,15 +255,32 @@ public class Game {
 
   /** Sets the initial position of the game to the given position. */
   public void setInitialPosition(Position initialPosition) {
-    Position newInitPos = new Position(initialPosition.getVariant());
-    newInitPos.copyFrom(initialPosition);
-    props.setProperty("initialPosition", initialPosition);
+    props.setProperty("initialPosition", initialPosition.getSnapshot());
   }
 
   /** Returns a copy of the initial position in the game. */
   public Position getInitialPosition() {
-    Position pos = (Position) props.getProperty("initialPosition");
-    return new Position(pos);
+    return getInitialSnapshot().toPosition();
+  }
+
+  /**
+   * Returns a snapshot of the initial position in the game. Unlike {@link #getInitialPosition()},
+   * this doesn't copy anything.
+   */
+  public PositionSnapshot getInitialSnapshot() {
+    return (PositionSnapshot) props.getProperty("initialPosition");
+  }
+
+  /**
+   * Returns the list of moves made in the game since the initial position. The list is maintained
+   * by the connection, which updates it before notifying listeners of moves, takebacks and position
+   * changes, so plugins should read the moves from it rather than keep their own copies. Plugins
+   * which need the moves to stay as they are (after the game ends, for example) should keep a
+   * {@link MoveList#snapshot() snapshot} of the list. The list may only be modified by the
+   * connection.
+   */
+  public MoveList getMoves() {
+    return moves;
   }
 
   /**
@@ -281,7 +303,7 @@ public class Game {
 
   /** Returns the WildVariant of this Game. */
   public WildVariant getVariant() {
-    return ((Position) props.getProperty("initialPosition")).getVariant();
+    return getInitialSnapshot().getVariant();
   }
 
   /** Sets the name of the player with the white pieces. */
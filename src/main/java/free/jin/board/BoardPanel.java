@@ -19,11 +19,17 @@ package free.jin.board;
 import free.chess.AbstractChessClock;
 import free.chess.Chess;
 import free.chess.ChessMove;
+import free.chess.ChesslikeGenericVariant;
 import free.chess.JBoard;
 import free.chess.JChessClock;
 import free.chess.Move;
+import free.chess.MoveGenerator;
+import free.chess.MoveList;
 import free.chess.Player;
 import free.chess.Position;
+import free.chess.PositionHistory;
+import free.chess.PositionSnapshot;
+import free.chess.RepetitionTable;
 import free.chess.WildVariant;
 import free.chess.event.MoveEvent;
 import free.chess.event.MoveListener;
@@ -47,7 +53,6 @@ import free.util.Utilities;
 import free.util.models.ModelUtils;
 import free.util.swing.FullscreenPanel;
 import free.util.swing.ImageComponent;
-import free.util.swing.NonEditableTableModel;
 import free.util.swing.SwingUtils;
 import free.util.swing.WrapLayout;
 import free.workarounds.FixedJPanel;
@@ -71,7 +76,6 @@ import java.awt.event.MouseMotionListener;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.net.URL;
-import java.util.Vector;
 import javax.swing.JComponent;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
@@ -89,7 +93,6 @@ import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
 import javax.swing.event.TableColumnModelEvent;
 import javax.swing.event.TableColumnModelListener;
-import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableModel;
 
 /**
@@ -121,8 +124,11 @@ public class BoardPanel extends FixedJPanel
   /** The current move sending mode. Possible values are defined in <code>BoardManager</code>. */
   private int moveSendingMode;
 
-  /** The list of made moves. */
-  protected final Vector madeMoves = new Vector();
+  /**
+   * The list of made moves. This is the game's own list, which is already up to date when we're
+   * notified of a change in it.
+   */
+  protected final MoveList madeMoves;
 
   /**
    * The actual position in the game, this may differ than the one on the board because the one on
@@ -130,6 +136,25 @@ public class BoardPanel extends FixedJPanel
    */
   protected final Position realPosition;
 
+  /**
+   * The positions which occurred in the game, starting with the initial position, followed by the
+   * position after each of the made moves.
+   */
+  protected final RepetitionTable repetitions = new RepetitionTable();
+
+  /**
+   * Snapshots of the positions which occurred in the game, starting with the initial position,
+   * followed by the position after each of the made moves.
+   */
+  protected final PositionHistory positions = new PositionHistory();
+
+  /**
+   * Tracks the real position, along with its castling rights and en passant square, for checking
+   * the legality of moves. <code>null</code> if the variant has no move generator, or if a move the
+   * generator doesn't consider legal has been made, in which case legality is checked permissively.
+   */
+  private MoveGenerator moveGenerator;
+
   /** The number of the move after which the position displayed on the board occurs. */
   protected int displayedMoveNumber = 0;
 
@@ -182,7 +207,7 @@ public class BoardPanel extends FixedJPanel
   private boolean settingMoveListTableSelection = false;
 
   /** The TableModel of the JTable displaying the move list. */
-  protected TableModel moveListTableModel;
+  protected MoveListTableModel moveListTableModel;
 
   /** The JScrollPane in which we put the moveListTable. */
   protected JScrollPane moveListTableScrollPane;
@@ -233,8 +258,12 @@ public class BoardPanel extends FixedJPanel
    */
   public BoardPanel(BoardManager boardManager, Game game) {
     this.game = game;
+    this.madeMoves = game.getMoves();
     this.boardManager = boardManager;
     this.realPosition = game.getInitialPosition();
+    positions.add(realPosition);
+    resetMoveGenerator();
+    repetitions.add(getRepetitionKey());
 
     boardManager.addPropertyChangeListener(this);
     game.addPropertyChangeListener(this);
@@ -490,8 +519,12 @@ public class BoardPanel extends FixedJPanel
             else if (queuedMove != null) {
               setQueuedMove(null);
               isBoardPositionUpdating = true;
-              board.getPosition().copyFrom(realPosition);
-              if (isMoveEnRoute()) board.getPosition().makeMove(moveEnRoute);
+              if (isMoveEnRoute()) {
+                // Copy a position with the move made, so that it isn't "replayed" with animation
+                Position helpPos = new Position(realPosition);
+                helpPos.makeMove(moveEnRoute);
+                board.getPosition().copyFrom(helpPos);
+              } else board.getPosition().copyFrom(realPosition);
               isBoardPositionUpdating = false;
             } else fullscreenPanel.getFullscreenModeModel().setOff();
           }
@@ -655,19 +688,19 @@ public class BoardPanel extends FixedJPanel
   }
 
   /**
-   * Creates the TableModel for the JTable which will be used for displaying the move list. If you
-   * override this method, you should also see if you need to override {@link
+   * Creates the MoveListTableModel of the JTable which will be used for displaying the move list.
+   * If you override this method, you should also see if you need to override {@link
    * #addMoveToListTable(Move)} and {@link #updateMoveListTable()}.
    */
-  protected TableModel createMoveListTableModel(Game game) {
+  protected MoveListTableModel createMoveListTableModel(Game game) {
     I18n i18n = I18n.get(BoardPanel.class);
-    return new NonEditableTableModel(
+    return new MoveListTableModel(
+        game,
         new String[] {
           i18n.getString("moveListTable.moveNo"),
           i18n.getString("moveListTable.white"),
           i18n.getString("moveListTable.black")
-        },
-        0);
+        });
   }
 
   /**
@@ -738,75 +771,36 @@ public class BoardPanel extends FixedJPanel
     }
   }
 
-  /** Adds a single move to the move list TableModel. */
+  /**
+   * Adds a single move, the last one in the move list, to the move list TableModel and updates the
+   * selection to match the displayed position.
+   */
   protected void addMoveToListTable(Move move) {
-    DefaultTableModel model = (DefaultTableModel) moveListTableModel;
-    int movesSinceStart = game.getPliesSinceStart() / 2;
-    int rowCount = moveListTable.getRowCount();
-    if ((rowCount == 0) || move.getPlayer().isWhite()) {
-      model.setNumRows(++rowCount);
-      model.setValueAt((rowCount + movesSinceStart) + ".", rowCount - 1, 0);
-    }
-    if (move.getPlayer().isWhite()) model.setValueAt(move, rowCount - 1, 1);
-    else {
-      model.setValueAt(move, rowCount - 1, 2);
-    }
-
-    if (displayedMoveNumber == 0) {
-      moveListTable.clearSelection();
-      positionScrollBar.setValues(0, 1, 0, madeMoves.size() + 1);
-    } else {
-      boolean isFirstMoveBlack = ((Move) madeMoves.elementAt(0)).getPlayer().isBlack();
-      int visualMoveNumber = isFirstMoveBlack ? displayedMoveNumber + 1 : displayedMoveNumber;
-      int row = (visualMoveNumber - 1) / 2;
-      int column = 2 - (visualMoveNumber % 2);
-
-      isPositionScrollBarUpdating = true;
-      isMoveListTableSelectionUpdating = true;
-      setMoveListTableSelection(row, column);
-      positionScrollBar.setValues(displayedMoveNumber, 1, 0, madeMoves.size() + 1);
-      isMoveListTableSelectionUpdating = false;
-      isPositionScrollBarUpdating = false;
-    }
-
-    SwingUtilities.invokeLater(new MoveListScrollBarUpdater());
+    moveListTableModel.moveAdded();
+    updateMoveListTableSelection();
   }
 
   /**
    * Brings the the move list table up to date with the current move list and displayed position.
    */
   protected void updateMoveListTable() {
-    DefaultTableModel model = (DefaultTableModel) moveListTableModel;
-    int movesSinceStart = game.getPliesSinceStart() / 2;
-    int moveCount = madeMoves.size();
-    boolean isFirstMoveBlack =
-        (moveCount > 0) && ((Move) madeMoves.elementAt(0)).getPlayer().isBlack();
-    int numRows = isFirstMoveBlack ? 1 + moveCount / 2 : (moveCount + 1) / 2;
-    model.setNumRows(numRows);
-    for (int i = 0; i < numRows; i++) model.setValueAt((i + 1 + movesSinceStart) + ".", i, 0);
-
-    int row = 0;
-    int column = isFirstMoveBlack ? 2 : 1;
-    for (int i = 0; i < moveCount; i++) {
-      Object move = madeMoves.elementAt(i);
-      model.setValueAt(move, row, column);
-      column++;
-      if (column == 3) {
-        row++;
-        column = 1;
-      }
-    }
-
-    if (column == 2) // There's an extra, empty cell, which we need to clear.
-    model.setValueAt(null, row, column);
+    moveListTableModel.movesChanged();
+    updateMoveListTableSelection();
+  }
 
+  /**
+   * Selects the cell of the displayed move in the move list table and updates the position
+   * scrollbar accordingly.
+   */
+  private void updateMoveListTableSelection() {
     if (displayedMoveNumber == 0) {
       moveListTable.clearSelection();
       positionScrollBar.setValues(0, 1, 0, madeMoves.size() + 1);
     } else {
+      boolean isFirstMoveBlack = madeMoves.getPlayer(0).isBlack();
       int visualMoveNumber = isFirstMoveBlack ? displayedMoveNumber + 1 : displayedMoveNumber;
-      row = (visualMoveNumber - 1) / 2;
-      column = 2 - (visualMoveNumber % 2);
+      int row = (visualMoveNumber - 1) / 2;
+      int column = 2 - (visualMoveNumber % 2);
 
       isPositionScrollBarUpdating = true;
       isMoveListTableSelectionUpdating = true;
@@ -848,8 +842,7 @@ public class BoardPanel extends FixedJPanel
     if ((displayedMoveNumber == 0) || (isOwnMove && !highlightOwnMoves))
       board.setHighlightedMove(null);
     else {
-      Move move = (Move) madeMoves.elementAt(displayedMoveNumber - 1);
-      board.setHighlightedMove(move);
+      board.setHighlightedMove(madeMoves.get(displayedMoveNumber - 1));
     }
   }
 
@@ -1235,6 +1228,26 @@ public class BoardPanel extends FixedJPanel
     return board;
   }
 
+  /**
+   * Returns the amount of times the current position of the game has occurred in it (at least 1). A
+   * value of 3 or more indicates a threefold repetition. In variants with a move generator (see
+   * {@link ChesslikeGenericVariant#createMoveGenerator()}), positions only count as the same if the
+   * castling rights and possible en passant captures are the same too.
+   */
+  public int getRepetitionCount() {
+    return repetitions.getLastPositionCount();
+  }
+
+  /**
+   * Returns the key under which the real position is kept in <code>repetitions</code>: its Zobrist
+   * key, combined with the castling and en passant rights tracked by <code>moveGenerator</code>, if
+   * there is one.
+   */
+  private long getRepetitionKey() {
+    long key = realPosition.getZobristKey();
+    return moveGenerator == null ? key : key ^ moveGenerator.getRightsKey();
+  }
+
   /** Returns the specified player's clock. */
   protected AbstractChessClock getClockForPlayer(Player player) {
     return player.isWhite() ? whiteClock : blackClock;
@@ -1317,11 +1330,19 @@ public class BoardPanel extends FixedJPanel
     boolean shouldUpdateBoard = true;
 
     // The user is looking at a position other than the last one, so we don't
-    // want to update the board when a new move arrives.
-    if (displayedMoveNumber != madeMoves.size()) shouldUpdateBoard = false;
+    // want to update the board when a new move arrives. The move is already in
+    // madeMoves, so the last position we know of is the one before it.
+    if (displayedMoveNumber != positions.size() - 1) shouldUpdateBoard = false;
 
-    madeMoves.addElement(move);
     realPosition.makeMove(move);
+    positions.add(realPosition);
+    if (moveGenerator != null) {
+      int generatorMove =
+          move instanceof ChessMove ? moveGenerator.findLegalMove((ChessMove) move) : 0;
+      if (generatorMove == 0) moveGenerator = null;
+      else moveGenerator.makeMove(generatorMove);
+    }
+    repetitions.add(getRepetitionKey());
 
     // This is not the server echoeing a move made on the board
     // Note that this may still be a move done by the user (from the console).
@@ -1393,16 +1414,45 @@ public class BoardPanel extends FixedJPanel
 
     updateClockActiveness();
     addMoveToListTable(move);
-    whiteMaterialPanel.updateMaterial(move);
-    blackMaterialPanel.updateMaterial(move);
+    whiteMaterialPanel.updateMaterial(realPosition);
+    blackMaterialPanel.updateMaterial(realPosition);
+  }
+
+  /**
+   * Creates <code>moveGenerator</code> for the real position, if the variant has one. The castling
+   * rights and en passant square are taken from the position's FEN, if it has one.
+   */
+  private void resetMoveGenerator() {
+    moveGenerator = createMoveGenerator(realPosition);
+  }
+
+  /**
+   * Returns a new move generator, as created by {@link
+   * ChesslikeGenericVariant#createMoveGenerator()}, for the specified position, or <code>null
+   * </code> if its variant has none, or the generator can't handle the position.
+   */
+  private static MoveGenerator createMoveGenerator(Position pos) {
+    WildVariant variant = pos.getVariant();
+    if (!(variant instanceof ChesslikeGenericVariant)) return null;
+
+    MoveGenerator generator = ((ChesslikeGenericVariant) variant).createMoveGenerator();
+    if (generator == null) return null;
+
+    try {
+      generator.setPosition(pos);
+      return generator;
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
   }
 
   /**
    * If the specified move is legal in the specified position, this method returns <code>true</code>
-   * . If the specified move is illegal, it may return <code>false</code>. It's not meant as a
-   * complete move legality check, instead, it (currently) only detects some obviously illegal moves
-   * so that they can be rejected immediately, instead of wasting time by sending them to the
-   * server. With time, more complex (and eventually complete) move legality checking will be added.
+   * . If the specified move is illegal, it may return <code>false</code>. In variants with a move
+   * generator (see {@link ChesslikeGenericVariant#createMoveGenerator()}), illegal moves are
+   * detected by it, using the castling rights and en passant square of the game when the position
+   * is the real one. In other variants, it only detects some obviously illegal moves so that they
+   * can be rejected immediately, instead of wasting time by sending them to the server.
    */
   protected boolean checkLegality(Position pos, Move move) {
     if (move instanceof ChessMove) {
@@ -1414,6 +1464,11 @@ public class BoardPanel extends FixedJPanel
       // Trying to capture your own piece
       if (cmove.isCapture() && (cmove.getCapturedPiece().getPlayer() == pos.getCurrentPlayer()))
         return false;
+
+      if ((pos == realPosition) && (moveGenerator != null)) return moveGenerator.isLegal(cmove);
+
+      MoveGenerator generator = createMoveGenerator(pos);
+      if (generator != null) return generator.isLegal(cmove);
     }
 
     return true;
@@ -1424,8 +1479,12 @@ public class BoardPanel extends FixedJPanel
   public void positionChanged(PositionChangedEvent evt) {
     if (evt.getGame() != game) return;
 
-    madeMoves.removeAllElements();
     realPosition.copyFrom(evt.getPosition());
+    positions.clear();
+    positions.add(realPosition);
+    resetMoveGenerator();
+    repetitions.clear();
+    repetitions.add(getRepetitionKey());
 
     isBoardPositionUpdating = true;
     board.getPosition().copyFrom(realPosition);
@@ -1454,11 +1513,15 @@ public class BoardPanel extends FixedJPanel
     if (evt.getGame() != game) return;
 
     int takebackCount = evt.getTakebackCount();
-    int numMadeMoves = madeMoves.size() - takebackCount;
-    for (int i = madeMoves.size() - 1; i >= numMadeMoves; i--) madeMoves.removeElementAt(i);
-
-    realPosition.copyFrom(game.getInitialPosition());
-    for (int i = 0; i < numMadeMoves; i++) realPosition.makeMove((Move) madeMoves.elementAt(i));
+    int numMadeMoves = positions.size() - 1 - takebackCount;
+
+    repetitions.truncate(Math.max(numMadeMoves, 0) + 1);
+    positions.truncate(Math.max(numMadeMoves, 0) + 1);
+    realPosition.copyFrom(positions.getLast());
+    if (moveGenerator != null) {
+      if (numMadeMoves < 0) resetMoveGenerator();
+      else for (int i = 0; i < takebackCount; i++) moveGenerator.unmakeMove();
+    }
 
     moveEnRoute = null;
     setQueuedMove(null);
@@ -1475,6 +1538,9 @@ public class BoardPanel extends FixedJPanel
 
     updateClockActiveness();
     updateMoveListTable();
+
+    whiteMaterialPanel.updateMaterial(realPosition);
+    blackMaterialPanel.updateMaterial(realPosition);
   }
 
   /** GameListener implementation. Returns the position on the board to its current "real" state. */
@@ -1618,7 +1684,7 @@ public class BoardPanel extends FixedJPanel
     isMoveListTableSelectionUpdating = true;
 
     try {
-      boolean isFirstMoveBlack = ((Move) madeMoves.elementAt(0)).getPlayer().isBlack();
+      boolean isFirstMoveBlack = madeMoves.getPlayer(0).isBlack();
 
       int moveNum = column + row * 2;
       if (isFirstMoveBlack && (moveNum > 0)) moveNum--;
@@ -1629,21 +1695,19 @@ public class BoardPanel extends FixedJPanel
       if (moveNum > madeMoves.size()) // Shouldn't happen
       throw new IllegalStateException();
 
-      Position pos = game.getInitialPosition();
-      for (int i = 0; i < moveNum; i++) {
-        Move move = (Move) madeMoves.elementAt(i);
-        pos.makeMove(move);
-      }
+      PositionSnapshot snapshot = positions.get(moveNum);
 
       board.clearShaded();
 
       if ((moveNum == madeMoves.size()) && (queuedMove != null)) {
+        Position pos = snapshot.toPosition();
         pos.makeMove(queuedMove);
+        snapshot = pos.getSnapshot();
         board.setShaded(queuedMove.getEndingSquare(), true);
       }
 
       isBoardPositionUpdating = true;
-      board.getPosition().copyFrom(pos);
+      board.getPosition().copyFrom(snapshot);
       isBoardPositionUpdating = false;
       setDisplayedMove(moveNum);
 
@@ -1675,7 +1739,7 @@ public class BoardPanel extends FixedJPanel
       if (madeMoves.size() > 0) {
         int moveNum = positionScrollBar.getValue();
 
-        boolean isFirstMoveBlack = ((Move) madeMoves.elementAt(0)).getPlayer().isBlack();
+        boolean isFirstMoveBlack = madeMoves.getPlayer(0).isBlack();
         int visualMoveNumber = isFirstMoveBlack ? moveNum + 1 : moveNum;
         int row = (visualMoveNumber - 1) / 2;
         int column = (visualMoveNumber == 0) ? 0 : 2 - (visualMoveNumber % 2);
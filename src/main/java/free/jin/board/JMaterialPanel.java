@@ -3,7 +3,6 @@ package free.jin.board;
 import free.chess.ChessMove;
 import free.chess.ChessPiece;
 import free.chess.Move;
-import free.chess.Piece;
 import free.chess.Player;
 import free.chess.Position;
 import free.jin.Game;
@@ -20,9 +19,9 @@ public class JMaterialPanel extends JPanel {
     super();
     bar = new JProgressBar();
     bar.setStringPainted(true);
-    updateMaterial(game.getInitialPosition());
     this.game = game;
     this.player = player;
+    updateMaterial(game.getInitialPosition());
     add(bar);
   }
 
@@ -48,15 +47,7 @@ public class JMaterialPanel extends JPanel {
   }
 
   public void updateMaterial(Position position) {
-    int material = 0;
-    for (int i = 0; i < 8; i++) {
-      for (int j = 0; j < 8; j++) {
-        Piece piece = position.getPieceAt(i, j);
-        if (piece != null && piece.getPlayer().equals(player)) {
-          material += game.getVariant().getApproximateMaterialValue(piece);
-        }
-      }
-    }
+    int material = position.getMaterial(player);
     bar.setValue(material);
     bar.setString(material + "");
   }
@@ -197,7 +197,7 @@ public class JinBoard extends JBoard implements PaintHook {
 
     fireArrowAdded(arrow);
 
-    repaint(arrowRect(arrow.getFrom(), arrow.getTo()));
+    repaintOverlay(arrowRect(arrow.getFrom(), arrow.getTo()));
   }
 
   /** Removes all the arrows from the specified square to the specified square. */
@@ -211,7 +211,7 @@ public class JinBoard extends JBoard implements PaintHook {
       }
     }
 
-    repaint(arrowRect(from, to));
+    repaintOverlay(arrowRect(from, to));
   }
 
   /** Returns whether there are any arrows at the specified coordinates. */
@@ -237,7 +237,7 @@ public class JinBoard extends JBoard implements PaintHook {
       else rect = rect.union(arrowRect);
     }
 
-    if (rect != null) repaint(rect);
+    if (rect != null) repaintOverlay(rect);
   }
 
   /** Adds the specified circle to the board. */
@@ -245,7 +245,7 @@ public class JinBoard extends JBoard implements PaintHook {
     circles.addElement(circle);
     fireCircleAdded(circle);
 
-    repaint(squareToRect(circle.getSquare(), null));
+    repaintOverlay(squareToRect(circle.getSquare(), null));
   }
 
   /** Removes the specified circle (or circles, if there's more than one) from the board. */
@@ -259,7 +259,7 @@ public class JinBoard extends JBoard implements PaintHook {
       }
     }
 
-    repaint(squareToRect(circleSquare, null));
+    repaintOverlay(squareToRect(circleSquare, null));
   }
 
   /** Returns whether there are any circles at the specified coordinate. */
@@ -286,6 +286,6 @@ public class JinBoard extends JBoard implements PaintHook {
       else rect = rect.union(circleRect);
     }
 
-    if (rect != null) repaint(rect);
+    if (rect != null) repaintOverlay(rect);
   }
 }
@@ -0,0 +1,154 @@
+/**
+ * Jin - a chess client for internet chess servers. More information is available at
+ * http://www.jinchess.com/. Copyright (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * <p>This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA
+ * 02111-1307, USA.
+ */
+package free.jin.board;
+
+import free.chess.MoveList;
+import free.jin.Game;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * The <code>TableModel</code> of the move list table in a {@link BoardPanel}. The first column
+ * holds the move numbers and the second and third hold the moves of white and black. The model
+ * doesn't copy the moves, but reads them directly from the game's {@link MoveList}. Since the list
+ * is modified before we're told about it, the model keeps the amount of moves it last showed, and
+ * only shows the new moves when {@link #moveAdded()} or {@link #movesChanged()} is invoked.
+ */
+public class MoveListTableModel extends AbstractTableModel {
+
+  /** The serialization version, as <code>AbstractTableModel</code> is serializable. */
+  private static final long serialVersionUID = 1L;
+
+  /** The game whose moves we show. */
+  private final Game game;
+
+  /** The game's move list. */
+  private final MoveList moves;
+
+  /** The names of the columns. */
+  private final String[] columnNames;
+
+  /** The amount of moves we show. */
+  private int moveCount = 0;
+
+  /**
+   * Creates a new <code>MoveListTableModel</code> showing the moves of the specified game, with the
+   * specified column names (for the move number, white's move and black's move columns).
+   */
+  public MoveListTableModel(Game game, String[] columnNames) {
+    if (columnNames.length != 3) throw new IllegalArgumentException("There must be 3 columns");
+
+    this.game = game;
+    this.moves = game.getMoves();
+    this.columnNames = columnNames.clone();
+    this.moveCount = moves.size();
+  }
+
+  /** Returns whether the first shown move is black's. */
+  private boolean isFirstMoveBlack() {
+    return (moveCount > 0) && (moves.size() > 0) && moves.getPlayer(0).isBlack();
+  }
+
+  /** Returns the amount of rows needed to show the specified amount of moves. */
+  private int getRowCount(int moveCount) {
+    if (moveCount == 0) return 0;
+
+    return isFirstMoveBlack() ? 1 + moveCount / 2 : (moveCount + 1) / 2;
+  }
+
+  /**
+   * Returns the index of the move in the specified cell, or -1 if the cell doesn't hold a move. The
+   * returned index is not necessarily smaller than the amount of moves.
+   */
+  private int getMoveIndex(int row, int column) {
+    if (column == 0) return -1;
+
+    int index = row * 2 + column - 1;
+    return isFirstMoveBlack() ? index - 1 : index;
+  }
+
+  /**
+   * Shows the last move in the game's move list, which has just been added to it. Fires a single
+   * event: either a row insertion or an update of the cell the move is in.
+   */
+  public void moveAdded() {
+    if (moves.size() != moveCount + 1) {
+      movesChanged();
+      return;
+    }
+
+    int oldRowCount = getRowCount(moveCount);
+    moveCount++;
+    int rowCount = getRowCount(moveCount);
+
+    if (rowCount > oldRowCount) fireTableRowsInserted(oldRowCount, rowCount - 1);
+    else {
+      int visualIndex = isFirstMoveBlack() ? moveCount : moveCount - 1;
+      fireTableCellUpdated(visualIndex / 2, 1 + visualIndex % 2);
+    }
+  }
+
+  /**
+   * Brings the model up to date with the game's move list and the game's move numbering, firing a
+   * single event.
+   */
+  public void movesChanged() {
+    moveCount = moves.size();
+    fireTableDataChanged();
+  }
+
+  /** Returns the amount of moves shown. */
+  public int getMoveCount() {
+    return moveCount;
+  }
+
+  @Override
+  public int getRowCount() {
+    return getRowCount(moveCount);
+  }
+
+  @Override
+  public int getColumnCount() {
+    return columnNames.length;
+  }
+
+  @Override
+  public String getColumnName(int column) {
+    return columnNames[column];
+  }
+
+  @Override
+  public Class<?> getColumnClass(int column) {
+    return String.class;
+  }
+
+  /** Returns the move number, for the first column, or the move, for the other two. */
+  @Override
+  public Object getValueAt(int row, int column) {
+    if (column == 0) return (row + 1 + game.getPliesSinceStart() / 2) + ".";
+
+    int index = getMoveIndex(row, column);
+    if ((index < 0) || (index >= moveCount) || (index >= moves.size())) return null;
+
+    return moves.getString(index);
+  }
+
+  /** Returns <code>false</code>; the move list may not be edited. */
+  @Override
+  public boolean isCellEditable(int row, int column) {
+    return false;
+  }
+}
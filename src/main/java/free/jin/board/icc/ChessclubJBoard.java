@@ -107,7 +107,7 @@ public class ChessclubJBoard extends JinBoard {
 
     if ((evt.getID() == MouseEvent.MOUSE_DRAGGED) && (tmpArrowFrom != null)) {
       tmpArrowTo = square;
-      repaint();
+      repaintOverlay(getBoardRect(null));
     }
   }
 }
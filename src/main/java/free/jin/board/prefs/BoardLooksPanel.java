@@ -201,7 +201,7 @@ public class BoardLooksPanel extends BoardModifyingPrefsPanel {
             painter.setDarkColor(darkSquares.getColor());
             painter.setLightColor(lightSquares.getColor());
 
-            BoardLooksPanel.this.previewBoard.repaint();
+            BoardLooksPanel.this.previewBoard.invalidateLayers();
             fireStateChanged();
           }
         };
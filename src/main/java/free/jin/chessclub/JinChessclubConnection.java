@@ -21,9 +21,11 @@ import free.chess.ChessMove;
 import free.chess.ChesslikeGenericVariant;
 import free.chess.FischerTimeControl;
 import free.chess.Move;
+import free.chess.MoveList;
 import free.chess.OddsTimeControl;
 import free.chess.Player;
 import free.chess.Position;
+import free.chess.PositionHistory;
 import free.chess.Square;
 import free.chess.TimeControl;
 import free.chess.WildVariant;
@@ -85,6 +87,7 @@ import free.jin.event.TakebackEvent;
 import free.util.Pair;
 import free.util.TextUtilities;
 import free.util.Utilities;
+import free.util.swing.CoalescingDispatcher;
 import java.io.IOException;
 import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
@@ -101,7 +104,6 @@ import java.util.MissingResourceException;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.Vector;
-import javax.swing.SwingUtilities;
 
 /**
  * An implementation of the JinConnection interface (and several subinterfaces) for the
@@ -119,6 +121,9 @@ public class JinChessclubConnection extends ChessclubConnection
   /** Our listener manager. */
   private final ChessclubListenerManager listenerManager = new ChessclubListenerManager(this);
 
+  /** The dispatcher which runs the handling of server messages on the AWT thread. */
+  private final CoalescingDispatcher dispatcher = new CoalescingDispatcher();
+
   /**
    * A flag which is set when the login procedure is done (that is, when all the responses to the
    * actions in <code>handleLoginSucceeded</code> arrive).
@@ -129,6 +134,14 @@ public class JinChessclubConnection extends ChessclubConnection
   public JinChessclubConnection(String username, String password) {
     super(username, password, System.out);
 
+    dispatcher.setBacklogClearedCallback(
+        new Runnable() {
+          @Override
+          public void run() {
+            resumeReading();
+          }
+        });
+
     setLevel1(5); // For client tags
 
     // Needed to know when to clear certain data structures
@@ -348,7 +361,7 @@ public class JinChessclubConnection extends ChessclubConnection
       else e.printStackTrace(); // Shouldn't happen, I think
     }
 
-    if (result == null) result = new Socket(hostname, port);
+    if (result == null) result = super.connectImpl(hostname, port);
 
     return result;
   }
@@ -1870,8 +1883,8 @@ public class JinChessclubConnection extends ChessclubConnection
 
         game.setInitialPosition(newInitPos);
         game.setPliesSinceStart(0);
-        gameInfo.moves.removeAllElements();
-        gameInfo.position.copyFrom(game.getInitialPosition());
+        gameInfo.position.copyFrom(game.getInitialSnapshot());
+        gameInfo.clearMoves();
         gameInfo.numMovesToFollow = numMovesToFollow;
 
         fireGameEvent(new PositionChangedEvent(this, clientTag, game, gameInfo.position));
@@ -1988,7 +2001,7 @@ public class JinChessclubConnection extends ChessclubConnection
       Move move = parseWarrenSmith(smithMove, position, algebraicMove);
 
       position.makeMove(move);
-      gameInfo.moves.addElement(move);
+      gameInfo.addMove(move);
 
       boolean isNewMove =
           (variationCode != ChessclubConstants.INITIAL_MOVE)
@@ -2053,14 +2066,8 @@ public class JinChessclubConnection extends ChessclubConnection
     try {
       GameInfo gameInfo = getGameInfo(gameNumber);
       Game game = gameInfo.game;
-      Position pos = gameInfo.position;
-      Vector moves = gameInfo.moves;
-
-      int numMadeMoves = moves.size() - backwardCount;
-      for (int i = moves.size() - 1; i >= numMadeMoves; i--) moves.removeElementAt(i);
 
-      pos.copyFrom(game.getInitialPosition());
-      for (int i = 0; i < numMadeMoves; i++) pos.makeMove((Move) moves.elementAt(i));
+      gameInfo.removeLastMoves(backwardCount);
 
       fireGameEvent(new TakebackEvent(this, clientTag, game, backwardCount));
     } catch (NoSuchGameException e) {
@@ -2077,14 +2084,8 @@ public class JinChessclubConnection extends ChessclubConnection
     try {
       GameInfo gameInfo = getGameInfo(gameNumber);
       Game game = gameInfo.game;
-      Position pos = gameInfo.position;
-      Vector moves = gameInfo.moves;
 
-      int numMadeMoves = moves.size() - takebackCount;
-      for (int i = moves.size() - 1; i >= numMadeMoves; i--) moves.removeElementAt(i);
-
-      pos.copyFrom(game.getInitialPosition());
-      for (int i = 0; i < numMadeMoves; i++) pos.makeMove((Move) moves.elementAt(i));
+      gameInfo.removeLastMoves(takebackCount);
 
       fireGameEvent(new TakebackEvent(this, clientTag, game, takebackCount));
       updateTakebackOffer(
@@ -2444,8 +2445,9 @@ public class JinChessclubConnection extends ChessclubConnection
       // It seems that "; goto <gamenum> ; <movestring>" will abort making the
       // move (or whatever other command follows it) if you aren't playing
       // a game with the specified number.
-      sendCommand("multi goto " + game.getID() + " ; chessmove " + moveString, true, true, null);
-    else sendCommand("chessmove " + moveString, true, true, null);
+      sendCommand(
+          "multi goto " + game.getID() + " ; chessmove " + moveString, true, true, null, true);
+    else sendCommand("chessmove " + moveString, true, true, null, true);
 
     Vector unechoedGameMoves = (Vector) unechoedMoves.get(game);
     if (unechoedGameMoves == null) {
@@ -2838,8 +2840,8 @@ public class JinChessclubConnection extends ChessclubConnection
   }
 
   /**
-   * A container for various game information, such as the Game object, the current Position and a
-   * list of made moves.
+   * A container for various game information, such as the Game object, the current Position and the
+   * positions which occurred in the game.
    */
   private static class GameInfo {
 
@@ -2849,8 +2851,11 @@ public class JinChessclubConnection extends ChessclubConnection
     /** The current position. */
     public final Position position;
 
-    /** The list of moves. */
-    public final Vector moves;
+    /**
+     * Snapshots of the positions which occurred in the game, starting with the initial position,
+     * followed by the position after each of the moves in the game's move list.
+     */
+    public final PositionHistory positions = new PositionHistory();
 
     /** The amount of moves to follow before the game actually starts. */
     public int numMovesToFollow;
@@ -2900,7 +2905,7 @@ public class JinChessclubConnection extends ChessclubConnection
     public GameInfo(Game game, Position initialPos, int numMovesToFollow) {
       this.game = game;
       this.position = initialPos;
-      this.moves = new Vector();
+      this.positions.add(initialPos);
       this.numMovesToFollow = numMovesToFollow;
       this.isFlipped = game.isBoardInitiallyFlipped();
 
@@ -2909,6 +2914,35 @@ public class JinChessclubConnection extends ChessclubConnection
       setBlackClock(timeControl.getInitialTime(Player.BLACK_PLAYER), false);
     }
 
+    /**
+     * Adds the specified move to the game's move list. The current position is recorded as the
+     * position the move resulted in, so it should already have been made on it.
+     */
+    public void addMove(Move move) {
+      game.getMoves().add(move);
+      positions.add(position);
+    }
+
+    /**
+     * Removes the last <code>count</code> moves (or all of them, if there are fewer) from the
+     * game's move list, restoring the current position to the one before them.
+     */
+    public void removeLastMoves(int count) {
+      MoveList moves = game.getMoves();
+      int numMadeMoves = Math.max(0, moves.size() - count);
+
+      moves.truncate(numMadeMoves);
+      positions.truncate(numMadeMoves + 1);
+      position.copyFrom(positions.getLast());
+    }
+
+    /** Removes all the moves made in the game, making the current position the initial one. */
+    public void clearMoves() {
+      game.getMoves().clear();
+      positions.clear();
+      positions.add(position);
+    }
+
     /** Sets the amount of time remaining on white's clock, in milliseconds. */
     public void setWhiteClock(int time, boolean running) {
       whiteTime = time;
@@ -3924,14 +3958,31 @@ public class JinChessclubConnection extends ChessclubConnection
 
   /**
    * Overrides ChessclubConnection.execRunnable(Runnable) to execute the runnable on the AWT thread
-   * using SwingUtilities.invokeLater(Runnable), since this class is meant to be used by Jin, a
-   * graphical interface using Swing.
+   * via a {@link CoalescingDispatcher}, since this class is meant to be used by Jin, a graphical
+   * interface using Swing. The dispatcher runs incoming messages in batches rather than posting an
+   * event per message, so bursts of server output don't starve input and paint events.
    *
    * @see ChessclubConnection#execRunnable(Runnable)
-   * @see SwingUtilities.invokeLater(Runnable)
    */
   @Override
   public void execRunnable(Runnable runnable) {
-    SwingUtilities.invokeLater(runnable);
+    dispatcher.execute(runnable);
+  }
+
+  /**
+   * Overrides {@link free.util.Connection#isBacklogged()} to return whether the dispatcher is
+   * backlogged. Reading is resumed when it stops being backlogged.
+   */
+  @Override
+  protected boolean isBacklogged() {
+    return dispatcher.isBacklogged();
+  }
+
+  /**
+   * Returns the dispatcher which runs the handling of server messages on the AWT thread. Useful for
+   * inspecting its queue depth and batch timing.
+   */
+  public CoalescingDispatcher getDispatcher() {
+    return dispatcher;
   }
 }
@@ -22,10 +22,13 @@ import free.chess.ChessPiece;
 import free.chess.ChesslikeGenericVariant;
 import free.chess.FischerTimeControl;
 import free.chess.Move;
+import free.chess.MoveList;
 import free.chess.OddsTimeControl;
 import free.chess.Piece;
 import free.chess.Player;
 import free.chess.Position;
+import free.chess.PositionHistory;
+import free.chess.PositionSnapshot;
 import free.chess.Square;
 import free.chess.TimeControl;
 import free.chess.WildVariant;
@@ -66,6 +69,7 @@ import free.jin.event.TakebackEvent;
 import free.jin.freechess.event.IvarStateChangeEvent;
 import free.util.Pair;
 import free.util.TextUtilities;
+import free.util.swing.CoalescingDispatcher;
 import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
@@ -79,7 +83,6 @@ import java.util.Set;
 import java.util.Vector;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import javax.swing.SwingUtilities;
 
 /** An implementation of the JinConnection interface for the freechess.org server. */
 public class JinFreechessConnection extends FreechessConnection
@@ -88,6 +91,9 @@ public class JinFreechessConnection extends FreechessConnection
   /** Our listener manager. */
   private final FreechessListenerManager listenerManager = new FreechessListenerManager(this);
 
+  /** The dispatcher which runs the handling of server messages on the AWT thread. */
+  private final CoalescingDispatcher dispatcher = new CoalescingDispatcher();
+
   /**
    * Creates a new JinFreechessConnection with the specified hostname, port, requested username and
    * password.
@@ -95,6 +101,14 @@ public class JinFreechessConnection extends FreechessConnection
   public JinFreechessConnection(String requestedUsername, String password) {
     super(requestedUsername, password, System.out);
 
+    dispatcher.setBacklogClearedCallback(
+        new Runnable() {
+          @Override
+          public void run() {
+            resumeReading();
+          }
+        });
+
     setInterface(
         Jin.getAppName()
             + " "
@@ -253,7 +267,7 @@ public class JinFreechessConnection extends FreechessConnection
       else e.printStackTrace(); // Shouldn't happen, I think
     }
 
-    if (result == null) result = new Socket(hostname, port);
+    if (result == null) result = super.connectImpl(hostname, port);
 
     return result;
   }
@@ -823,7 +837,9 @@ public class JinFreechessConnection extends FreechessConnection
 
   /**
    * Processes a delta-board. Instead of actually handing the delta-board, this method, instead,
-   * creates a Style12Struct object and then asks <code>processStyle12</code> to handle it.
+   * creates a Style12Struct object and then asks <code>processStyle12</code> to handle it. The move
+   * is resolved against a copy of the game's live position, so the cost doesn't depend on the
+   * length of the game.
    */
   @Override
   protected boolean processDeltaBoard(DeltaBoardStruct data) {
@@ -835,10 +851,8 @@ public class JinFreechessConnection extends FreechessConnection
       throw new IllegalStateException("delta-boards should only be sent for regular chess");
 
     Style12Struct lastBoardData = gameData.boardData;
-    Vector moveList = gameData.moveList;
 
-    Position pos = game.getInitialPosition();
-    for (int i = 0; i < moveList.size(); i++) pos.makeMove((Move) moveList.elementAt(i));
+    Position pos = new Position(gameData.position);
 
     ChessMove move =
         (ChessMove) (Move.parseWarrenSmith(data.getMoveSmith(), pos, data.getMoveAlgebraic()));
@@ -939,22 +953,7 @@ public class JinFreechessConnection extends FreechessConnection
 
   /** Calculates the material strength of the specified player in the specified position. */
   private static int calcStrength(Position pos, Player player) {
-    int count = 0;
-    for (int i = 0; i < 8; i++) {
-      for (int j = 0; j < 8; j++) {
-        ChessPiece piece = (ChessPiece) (pos.getPieceAt(i, j));
-        if ((piece != null) && (piece.getPlayer() == player)) {
-          if (piece.isPawn()) count += 1;
-          else if (piece.isBishop()) count += 3;
-          else if (piece.isKnight()) count += 3;
-          else if (piece.isRook()) count += 5;
-          else if (piece.isQueen()) count += 9;
-          else if (piece.isKing()) count += 0;
-        }
-      }
-    }
-
-    return count;
+    return pos.getMaterial(player);
   }
 
   /**
@@ -990,8 +989,19 @@ public class JinFreechessConnection extends FreechessConnection
     /** The Game object representing the game. */
     public final Game game;
 
-    /** A list of Moves done in the game. */
-    public Vector moveList = new Vector();
+    /**
+     * The current position in the game, kept in sync with the last board sent by the server. Moves
+     * are made on it as they arrive; it is only reset from the server's board when the position
+     * changes in some other manner (or doesn't match the board after a move).
+     */
+    public Position position;
+
+    /**
+     * Snapshots of the positions which occurred in the game (as far as we counted), starting with
+     * the initial position, followed by the position after each of the moves in the game's move
+     * list.
+     */
+    public final PositionHistory positions = new PositionHistory();
 
     /** The last Style12Struct we got for this game. */
     public Style12Struct boardData = null;
@@ -1032,12 +1042,16 @@ public class JinFreechessConnection extends FreechessConnection
 
     /** Returns the amount of moves made in the game (as far as we counted). */
     public int getMoveCount() {
-      return moveList.size();
+      return game.getMoves().size();
     }
 
-    /** Adds the specified move to the moves list. */
+    /**
+     * Adds the specified move to the moves list. The current position is recorded as the position
+     * the move resulted in, so it should already have been made on it.
+     */
     public void addMove(Move move) {
-      moveList.addElement(move);
+      game.getMoves().add(move);
+      positions.add(position);
     }
 
     /**
@@ -1045,17 +1059,20 @@ public class JinFreechessConnection extends FreechessConnection
      * an <code>IllegalArgumentException</code>.
      */
     public void removeLastMoves(int count) {
-      if (count > moveList.size())
+      MoveList moves = game.getMoves();
+      if (count > moves.size())
         throw new IllegalArgumentException("Can't remove more elements than there are elements");
 
-      int first = moveList.size() - 1;
-      int last = moveList.size() - count;
-      for (int i = first; i >= last; i--) moveList.removeElementAt(i);
+      int last = moves.size() - count;
+      moves.truncate(last);
+      positions.truncate(last + 1);
     }
 
-    /** Removes all the moves made in the game. */
+    /** Removes all the moves made in the game, making the current position the initial one. */
     public void clearMoves() {
-      moveList.removeAllElements();
+      game.getMoves().clear();
+      positions.clear();
+      positions.add(position);
     }
 
     /**
@@ -1265,6 +1282,8 @@ public class JinFreechessConnection extends FreechessConnection
             userPlayer);
 
     InternalGameData gameData = new InternalGameData(game);
+    gameData.position = new Position(initPos);
+    gameData.positions.add(gameData.position);
 
     ongoingGamesData.put(new Integer(gameInfo.getGameNumber()), gameData);
 
@@ -1310,10 +1329,8 @@ public class JinFreechessConnection extends FreechessConnection
     String moveSAN = boardData.getMoveSAN();
 
     WildVariant variant = game.getVariant();
-    Position position = new Position(variant);
-    position.setLexigraphic(oldBoardData.getBoardLexigraphic());
+    Position position = gameData.position;
     Player currentPlayer = playerForString(oldBoardData.getCurrentPlayer());
-    position.setCurrentPlayer(currentPlayer);
 
     Move move;
     Square fromSquare, toSquare;
@@ -1335,16 +1352,33 @@ public class JinFreechessConnection extends FreechessConnection
       move = variant.createMove(position, fromSquare, toSquare, promotionPiece, moveSAN);
     }
 
-    listenerManager.fireGameEvent(new MoveMadeEvent(this, null, game, move, true));
-    // (isNew == true) because FICS never sends the entire move history
-
     Vector unechoedGameMoves = (Vector) unechoedMoves.get(game);
     if ((unechoedGameMoves != null) && (unechoedGameMoves.size() != 0)) { // Might be our move.
       Move madeMove = (Move) unechoedGameMoves.elementAt(0);
       if (isSameMove(game, move, madeMove)) unechoedGameMoves.removeElementAt(0);
     }
 
+    position.makeMove(move);
+    if (!isSamePosition(position, boardData)) syncPosition(gameData, boardData);
+
     gameData.addMove(move);
+
+    listenerManager.fireGameEvent(new MoveMadeEvent(this, null, game, move, true));
+    // (isNew == true) because FICS never sends the entire move history
+  }
+
+  /**
+   * Returns whether the specified position has the same pieces and the same player to move as the
+   * specified board.
+   */
+  private static boolean isSamePosition(Position position, Style12Struct boardData) {
+    return position.getCurrentPlayer().equals(playerForString(boardData.getCurrentPlayer()))
+        && position.getLexigraphic().equals(boardData.getBoardLexigraphic());
+  }
+
+  /** Resets the live position of the specified game from the specified board. */
+  private static void syncPosition(InternalGameData gameData, Style12Struct boardData) {
+    gameData.position.setFEN(boardData.getBoardFEN());
   }
 
   /**
@@ -1474,22 +1508,16 @@ public class JinFreechessConnection extends FreechessConnection
     changePosition(gameData, boardData);
     else if (gameData.isBSetup) changePosition(gameData, boardData);
     else {
-      Game game = gameData.game;
-      Vector moveList = gameData.moveList;
       // Check whether the positions match, otherwise it could just be someone
       // issuing "bsetup fen ..." after making a few moves which resets the ply
       // count.
 
-      Position oldPos = game.getInitialPosition();
-      for (int i = 0; i < moveList.size() - plyDifference; i++) {
-        Move move = (Move) moveList.elementAt(i);
-        oldPos.makeMove(move);
-      }
+      PositionSnapshot oldPos = gameData.positions.get(gameData.getMoveCount() - plyDifference);
 
-      Position newPos = game.getInitialPosition();
+      Position newPos = new Position(gameData.game.getVariant());
       newPos.setFEN(boardData.getBoardFEN());
 
-      if (newPos.equals(oldPos)) issueTakeback(gameData, boardData);
+      if (newPos.getSnapshot().equals(oldPos)) issueTakeback(gameData, boardData);
       else changePosition(gameData, boardData);
     }
   }
@@ -1499,9 +1527,10 @@ public class JinFreechessConnection extends FreechessConnection
     Style12Struct oldBoardData = gameData.boardData;
     int takebackCount = oldBoardData.getPlayedPlyCount() - newBoardData.getPlayedPlyCount();
 
-    listenerManager.fireGameEvent(new TakebackEvent(this, null, gameData.game, takebackCount));
-
     gameData.removeLastMoves(takebackCount);
+    syncPosition(gameData, newBoardData);
+
+    listenerManager.fireGameEvent(new TakebackEvent(this, null, gameData.game, takebackCount));
   }
 
   /** Fires an appropriate PositionChangedEvent. */
@@ -1514,10 +1543,11 @@ public class JinFreechessConnection extends FreechessConnection
     game.setInitialPosition(newPos);
     game.setPliesSinceStart(newBoardData.getPlayedPlyCount());
 
-    listenerManager.fireGameEvent(new PositionChangedEvent(this, null, game, newPos));
-
+    syncPosition(gameData, newBoardData);
     gameData.clearMoves();
 
+    listenerManager.fireGameEvent(new PositionChangedEvent(this, null, game, newPos));
+
     // We do this because moves in bsetup mode cause position change events, not move events
     if (gameData.isBSetup) {
       Vector unechoedGameMoves = (Vector) unechoedMoves.get(game);
@@ -2056,7 +2086,7 @@ public class JinFreechessConnection extends FreechessConnection
       throw new IllegalArgumentException(
           "The specified Game object was not created by this JinConnection or the game has ended.");
 
-    sendCommand(moveToString(game, move), true, true, false);
+    sendCommand(moveToString(game, move), true, true, false, true);
 
     Vector unechoedGameMoves = (Vector) unechoedMoves.get(game);
     if (unechoedGameMoves == null) {
@@ -2247,15 +2277,32 @@ public class JinFreechessConnection extends FreechessConnection
   }
 
   /**
-   * Overrides Connection.execRunnable(Runnable) to execute the runnable on the AWT thread using
-   * SwingUtilities.invokeLater(Runnable), since this class is meant to be used by Jin, a graphical
-   * interface using Swing.
+   * Overrides Connection.execRunnable(Runnable) to execute the runnable on the AWT thread via a
+   * {@link CoalescingDispatcher}, since this class is meant to be used by Jin, a graphical
+   * interface using Swing. The dispatcher runs incoming messages in batches rather than posting an
+   * event per message, so bursts of server output don't starve input and paint events.
    *
    * @see Connection#execRunnable(Runnable)
-   * @see SwingUtilities.invokeLater(Runnable)
    */
   @Override
   public void execRunnable(Runnable runnable) {
-    SwingUtilities.invokeLater(runnable);
+    dispatcher.execute(runnable);
+  }
+
+  /**
+   * Overrides {@link free.util.Connection#isBacklogged()} to return whether the dispatcher is
+   * backlogged. Reading is resumed when it stops being backlogged.
+   */
+  @Override
+  protected boolean isBacklogged() {
+    return dispatcher.isBacklogged();
+  }
+
+  /**
+   * Returns the dispatcher which runs the handling of server messages on the AWT thread. Useful for
+   * inspecting its queue depth and batch timing.
+   */
+  public CoalescingDispatcher getDispatcher() {
+    return dispatcher;
   }
 }
@@ -21,11 +21,12 @@ import bsh.Interpreter;
 import free.chess.Chess;
 import free.chess.ChessMove;
 import free.chess.FischerTimeControl;
-import free.chess.Move;
+import free.chess.MoveList;
 import free.chess.OddsTimeControl;
 import free.chess.Player;
 import free.chess.Position;
 import free.chess.TimeControl;
+import free.chess.pgn.PGNWriter;
 import free.jin.Connection;
 import free.jin.Game;
 import free.jin.I18n;
@@ -53,8 +54,6 @@ import java.awt.Component;
 import java.awt.event.ActionEvent;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
-import java.io.BufferedOutputStream;
-import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -268,7 +267,7 @@ public class GameLogger extends Plugin implements GameListener, PropertyChangeLi
         bsh.set("rated", game.isRated());
         bsh.set("opponent", (isUserWhite ? game.getBlackName() : game.getWhiteName()));
         bsh.set("title", (isUserWhite ? game.getBlackTitles() : game.getWhiteTitles()));
-        bsh.set("moves", gameInfo.movelist.size());
+        bsh.set("moves", gameInfo.moves.size());
 
         bsh.set("userWhite", game.getUserPlayer() == Player.WHITE_PLAYER);
         bsh.set("userBlack", game.getUserPlayer() == Player.BLACK_PLAYER);
@@ -340,6 +339,7 @@ public class GameLogger extends Plugin implements GameListener, PropertyChangeLi
   /** Logs the specified game to all the files it should be logged into. */
   private void gameEnded(Game game) {
     GameInfo gameInfo = (GameInfo) gamesToGameInfo.get(game);
+    gameInfo.gameEnded(game);
     saveGameAction.setLastGame(game, gameInfo);
 
     String[] filenames = getFilesToLogInto(game);
@@ -373,77 +373,38 @@ public class GameLogger extends Plugin implements GameListener, PropertyChangeLi
       String blackRatingString = (blackRating < 0) ? "-" : String.valueOf(blackRating);
       TimeControl timeControl = game.getTimeControl();
 
-      DataOutputStream out =
-          new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename, true)));
-      writeTag(
-          out,
+      PGNWriter out = new PGNWriter(new FileOutputStream(filename, true));
+      out.writeTag(
           "Event",
           (game.isRated() ? "rated " : "unrated ") + game.getRatingCategoryString() + " game");
-      writeTag(out, "Site", getUser().getServer().getLongName());
-      writeTag(out, "Date", DATE_FORMAT.format(gameInfo.gameStartDate));
-      writeTag(out, "Round", "-");
-      writeTag(out, "White", game.getWhiteName());
-      writeTag(out, "Black", game.getBlackName());
-      writeTag(out, "WhiteElo", whiteRatingString);
-      writeTag(out, "BlackElo", blackRatingString);
-      writeTag(out, "Result", resultString);
-      writeTag(out, "Time", TIME_FORMAT.format(gameInfo.gameStartDate));
+      out.writeTag("Site", getUser().getServer().getLongName());
+      out.writeTag("Date", DATE_FORMAT.format(gameInfo.gameStartDate));
+      out.writeTag("Round", "-");
+      out.writeTag("White", game.getWhiteName());
+      out.writeTag("Black", game.getBlackName());
+      out.writeTag("WhiteElo", whiteRatingString);
+      out.writeTag("BlackElo", blackRatingString);
+      out.writeTag("Result", resultString);
+      out.writeTag("Time", TIME_FORMAT.format(gameInfo.gameStartDate));
 
       if (timeControl instanceof FischerTimeControl) {
         FischerTimeControl tc = (FischerTimeControl) timeControl;
-        writeTag(out, "TimeControl", tc.getInitial() / 1000 + "+" + tc.getIncrement() / 1000);
+        out.writeTag("TimeControl", tc.getInitial() / 1000 + "+" + tc.getIncrement() / 1000);
       }
-      writeTag(out, "Mode", "ICS");
+      out.writeTag("Mode", "ICS");
       if (!gameInfo.initPos.getFEN().equals(Chess.INITIAL_POSITION_FEN)) {
-        writeTag(out, "SetUp", "1");
-        writeTag(out, "FEN", gameInfo.initPos.getFEN());
+        out.writeTag("SetUp", "1");
+        out.writeTag("FEN", gameInfo.initPos.getFEN());
       }
 
-      out.writeBytes("\n");
-
-      Vector movelist = gameInfo.movelist;
-      int moveCount = movelist.size();
-      StringBuffer lineBuf = new StringBuffer();
-      StringBuffer buf = new StringBuffer();
+      MoveList moves = gameInfo.moves;
+      int moveCount = moves.size();
+      int firstPly = gameInfo.initPos.getCurrentPlayer().isWhite() ? 0 : 1;
       for (int i = 0; i < moveCount; i++) {
-        buf.setLength(0);
-        ChessMove move = (ChessMove) movelist.elementAt(i);
-        Player movingPlayer = move.getPlayer();
-        String san = move.getSAN();
-        if ((i == 0) && movingPlayer.isBlack()) {
-          buf.append("1... ");
-          buf.append(san);
-        } else {
-          if (movingPlayer.isWhite()) {
-            buf.append(String.valueOf(1 + i / 2));
-            buf.append(". ");
-          }
-          buf.append(san);
-        }
-        if (lineBuf.length() + 1 + buf.length() > 80) { // +1 is for the space between them
-          out.writeBytes(lineBuf.toString());
-          out.writeBytes("\n");
-          lineBuf.setLength(0);
-          lineBuf.append(buf.toString());
-        } else {
-          if (lineBuf.length() != 0) lineBuf.append(" ");
-          lineBuf.append(buf.toString());
-        }
-
-        buf.setLength(0);
+        ChessMove move = (ChessMove) moves.get(i);
+        out.writeMove(1 + (firstPly + i) / 2, move.getPlayer().isWhite(), move.getSAN());
       }
-
-      if (lineBuf.length() + 1 + resultString.length() > 80) { // +1 is for the space between them
-        out.writeBytes(lineBuf.toString());
-        out.writeBytes("\n");
-        out.writeBytes(resultString);
-      } else {
-        out.writeBytes(lineBuf.toString());
-        out.writeBytes(" ");
-        out.writeBytes(resultString);
-      }
-
-      out.writeBytes("\n\n");
+      out.endGame(resultString);
 
       out.close();
     } catch (IOException e) {
@@ -452,18 +413,11 @@ public class GameLogger extends Plugin implements GameListener, PropertyChangeLi
     }
   }
 
-  /** Writes the specified pgn tag with the specified value to the specified output stream. */
-  private static void writeTag(DataOutputStream out, String tagName, String tagValue)
-      throws IOException {
-    out.writeBytes("[" + tagName + " \"" + tagValue + "\"]\n");
-  }
-
   /** Starts logging the moves. */
   @Override
   public void gameStarted(GameStartEvent evt) {
     Game game = evt.getGame();
-    Position initPos = game.getInitialPosition();
-    GameInfo gameInfo = new GameInfo(initPos);
+    GameInfo gameInfo = new GameInfo();
     gamesToGameInfo.put(game, gameInfo);
 
     game.addPropertyChangeListener(this);
@@ -488,33 +442,15 @@ public class GameLogger extends Plugin implements GameListener, PropertyChangeLi
     }
   }
 
-  /** Saves the move. */
+  /** GameListener implementation. The moves are kept by the game itself. */
   @Override
-  public void moveMade(MoveMadeEvent evt) {
-    Game game = evt.getGame();
-    Move move = evt.getMove();
-    GameInfo gameInfo = (GameInfo) gamesToGameInfo.get(game);
-    gameInfo.movelist.addElement(move);
-  }
+  public void moveMade(MoveMadeEvent evt) {}
 
-  /** Clears the move list. */
   @Override
-  public void positionChanged(PositionChangedEvent evt) {
-    Game game = evt.getGame();
-    GameInfo gameInfo = (GameInfo) gamesToGameInfo.get(game);
-    gameInfo.initPos = evt.getPosition();
-  }
+  public void positionChanged(PositionChangedEvent evt) {}
 
-  /** Removes the undone moves from the move list. */
   @Override
-  public void takebackOccurred(TakebackEvent evt) {
-    Game game = evt.getGame();
-    GameInfo gameInfo = (GameInfo) gamesToGameInfo.get(game);
-    Vector movelist = gameInfo.movelist;
-    int start = movelist.size() - 1;
-    int stop = Math.max(0, movelist.size() - evt.getTakebackCount());
-    for (int i = start; i >= stop; i--) movelist.removeElementAt(i);
-  }
+  public void takebackOccurred(TakebackEvent evt) {}
 
   /** GameListener implementation. */
   @Override
@@ -550,21 +486,28 @@ public class GameLogger extends Plugin implements GameListener, PropertyChangeLi
   /** A small class bundling information about a game. */
   private static class GameInfo {
 
-    /** The initial position. */
-    public Position initPos;
+    /** The initial position, set when the game ends. */
+    public Position initPos = null;
 
-    /** The move list. */
-    public Vector movelist;
+    /** A snapshot of the game's move list, taken when the game ends. */
+    public MoveList moves = null;
 
     /** A Date object representing the time when the game started. */
     public final Date gameStartDate;
 
-    /** Creates a new GameInfo with the specified initial position. */
-    public GameInfo(Position initPos) {
-      this.initPos = initPos;
-      movelist = new Vector();
+    /** Creates a new GameInfo for a game which has just started. */
+    public GameInfo() {
       gameStartDate = new Date();
     }
+
+    /**
+     * Records the initial position and the moves of the specified game, which has just ended, so
+     * that they are kept as they are even if the game goes on (as an examined game, for example).
+     */
+    public void gameEnded(Game game) {
+      initPos = game.getInitialPosition();
+      moves = game.getMoves().snapshot();
+    }
   }
 
   /** A <code>JinAction</code> which lets the user save the last saveable game. */
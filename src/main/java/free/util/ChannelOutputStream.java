@@ -0,0 +1,75 @@
+/**
+ * The utillib library. More information is available at http://www.jinchess.com/. Copyright (C)
+ * 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * <p>The utillib library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * <p>The utillib library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU Lesser General Public License along with utillib
+ * library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+ * MA 02111-1307 USA
+ */
+package free.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+/**
+ * An <code>OutputStream</code> which writes into a non-blocking <code>SocketChannel</code>,
+ * blocking the writing thread whenever the channel can't accept more data. The channel itself may
+ * meanwhile be registered with, and read by, a different <code>Selector</code>. Closing the stream
+ * does not close the channel.
+ */
+class ChannelOutputStream extends OutputStream {
+
+  /** The amount of time, in milliseconds, we wait for the channel to become writable at a time. */
+  private static final long WRITABLE_WAIT_TIME = 1000;
+
+  /** The channel we write to. */
+  private final SocketChannel channel;
+
+  /** Creates a new <code>ChannelOutputStream</code> writing into the specified channel. */
+  public ChannelOutputStream(SocketChannel channel) {
+    this.channel = channel;
+  }
+
+  /** Writes the specified byte. */
+  @Override
+  public void write(int b) throws IOException {
+    write(new byte[] {(byte) b}, 0, 1);
+  }
+
+  /** Writes the specified bytes, waiting for the channel to accept all of them. */
+  @Override
+  public void write(byte[] buf, int offset, int length) throws IOException {
+    ByteBuffer data = ByteBuffer.wrap(buf, offset, length);
+
+    channel.write(data);
+    if (!data.hasRemaining()) return;
+
+    // The socket's send buffer is full; wait until it drains
+    Selector selector = Selector.open();
+    try {
+      channel.register(selector, SelectionKey.OP_WRITE);
+      while (data.hasRemaining()) {
+        if (!channel.isOpen()) throw new ClosedChannelException();
+
+        selector.select(WRITABLE_WAIT_TIME);
+        selector.selectedKeys().clear();
+        channel.write(data);
+      }
+    } finally {
+      selector.close();
+    }
+  }
+}
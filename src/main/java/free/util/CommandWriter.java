@@ -0,0 +1,265 @@
+/**
+ * The utillib library. More information is available at http://www.jinchess.com/. Copyright (C)
+ * 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * <p>The utillib library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * <p>The utillib library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU Lesser General Public License along with utillib
+ * library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+ * MA 02111-1307 USA
+ */
+package free.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes data to a {@link Connection}'s server on a dedicated thread, so that the thread sending a
+ * command (usually the AWT event dispatching thread) never blocks on the socket. Data is queued,
+ * without locking, in a single FIFO queue. The writer thread holds regular data back for a short
+ * while, so that commands sent in a burst are coalesced into a single buffer, written and flushed
+ * at once. Data marked as urgent (moves, for example) is not held back - it's written, along with
+ * everything queued before it, as soon as the writer thread gets to it. Data is always written in
+ * the order it was queued.
+ *
+ * <p><B>NOTE:</B> This class is thread safe.
+ */
+public class CommandWriter {
+
+  /**
+   * The time, in nanoseconds, regular data is held back, waiting for more data to be coalesced with
+   * it.
+   */
+  private static final long COALESCING_DELAY = 2000000;
+
+  /** The entry queued to make the writer thread close the connection. */
+  private static final Entry CLOSE_MARKER = new Entry(new byte[0], 0);
+
+  /** The stream we write to. */
+  private final OutputStream out;
+
+  /** The connection we notify when writing fails. */
+  private final Connection connection;
+
+  /** The queue of data waiting to be written, holding <code>Entry</code>s. */
+  private final ConcurrentLinkedQueue queue = new ConcurrentLinkedQueue();
+
+  /**
+   * Set when urgent data (or the close marker) is queued, telling the writer thread not to hold
+   * back the data waiting to be written.
+   */
+  private volatile boolean urgentQueued = false;
+
+  /** The writer thread. */
+  private final Thread thread;
+
+  /** The buffer into which pending data is coalesced. Only accessed by the writer thread. */
+  private byte[] buffer = new byte[1024];
+
+  /** The amount of bytes queued and not yet written. */
+  private final AtomicLong queuedBytes = new AtomicLong();
+
+  /** The total amount of bytes written. */
+  private final AtomicLong writtenBytes = new AtomicLong();
+
+  /** The amount of times we've flushed the stream. */
+  private final AtomicLong flushCount = new AtomicLong();
+
+  /** The time, in nanoseconds, the last written data waited until it was flushed. */
+  private volatile long lastWriteLatency = 0;
+
+  /** The longest time, in nanoseconds, any written data waited until it was flushed. */
+  private volatile long maxWriteLatency = 0;
+
+  /** Set when we're closed. */
+  private volatile boolean closed = false;
+
+  /** Set when the close marker has been queued; no further data is accepted. */
+  private volatile boolean closing = false;
+
+  /**
+   * Creates a new <code>CommandWriter</code> which writes to the specified stream and notifies the
+   * specified connection if writing fails. The writer thread is not started until {@link #start()}
+   * is invoked.
+   */
+  CommandWriter(OutputStream out, Connection connection) {
+    this.out = out;
+    this.connection = connection;
+    this.thread =
+        new Thread("WriterThread") {
+          @Override
+          public void run() {
+            writerLoop();
+          }
+        };
+    thread.setDaemon(true);
+  }
+
+  /** Starts the writer thread. */
+  void start() {
+    thread.start();
+  }
+
+  /**
+   * Queues the specified data to be written. If <code>urgent</code> is <code>true</code>, the data
+   * is written as soon as possible, without waiting for more data to coalesce with it.
+   */
+  public void write(byte[] data, boolean urgent) {
+    if (closed || closing) return;
+
+    queue.add(new Entry(data, System.nanoTime()));
+    queuedBytes.addAndGet(data.length);
+    if (urgent) urgentQueued = true;
+    LockSupport.unpark(thread);
+  }
+
+  /** Stops the writer thread. Any data still waiting is discarded. */
+  void close() {
+    closed = true;
+    LockSupport.unpark(thread);
+  }
+
+  /**
+   * Makes the writer thread write all the data queued so far, without delay, and then invoke {@link
+   * Connection#connectionInterrupted(IOException)}. Data queued after this call is discarded. This
+   * is how the connection is closed, so that commands like "quit" still reach the server.
+   */
+  void closeAfterPending() {
+    if (closed || closing) return;
+
+    closing = true;
+    queue.add(CLOSE_MARKER);
+    urgentQueued = true;
+    LockSupport.unpark(thread);
+  }
+
+  /** The writer thread's loop. */
+  private void writerLoop() {
+    try {
+      while (!closed) {
+        Entry first = (Entry) queue.peek();
+        if (first == null) {
+          LockSupport.park(this);
+          continue;
+        }
+
+        // Hold back regular data for a while, so that whatever follows it is coalesced with it
+        long writeTime = first.time + COALESCING_DELAY;
+        long delay;
+        while (!closed && !urgentQueued && ((delay = writeTime - System.nanoTime()) > 0))
+          LockSupport.parkNanos(this, delay);
+
+        if (closed) break;
+
+        if (writePending()) {
+          connection.connectionInterrupted(null);
+          break;
+        }
+      }
+    } catch (IOException e) {
+      if (!closed) connection.connectionInterrupted(e);
+    }
+  }
+
+  /**
+   * Writes and flushes all the data currently queued. Returns whether the close marker was reached,
+   * in which case the data queued after it is left alone.
+   */
+  private boolean writePending() throws IOException {
+    urgentQueued = false;
+
+    int length = 0;
+    long oldestTime = 0;
+    boolean closeMarkerReached = false;
+
+    Entry entry;
+    while ((entry = (Entry) queue.poll()) != null) {
+      if (entry == CLOSE_MARKER) {
+        closeMarkerReached = true;
+        break;
+      }
+
+      if (length == 0) oldestTime = entry.time;
+
+      byte[] data = entry.data;
+      if (length + data.length > buffer.length) {
+        byte[] newBuffer = new byte[Math.max(buffer.length * 2, length + data.length)];
+        System.arraycopy(buffer, 0, newBuffer, 0, length);
+        buffer = newBuffer;
+      }
+      System.arraycopy(data, 0, buffer, length, data.length);
+      length += data.length;
+    }
+
+    if (length == 0) return closeMarkerReached;
+
+    try {
+      out.write(buffer, 0, length);
+      out.flush();
+    } finally {
+      queuedBytes.addAndGet(-length);
+    }
+
+    writtenBytes.addAndGet(length);
+    flushCount.incrementAndGet();
+
+    long latency = System.nanoTime() - oldestTime;
+    lastWriteLatency = latency;
+    if (latency > maxWriteLatency) maxWriteLatency = latency;
+
+    return closeMarkerReached;
+  }
+
+  /** Returns the amount of bytes queued and not yet written. */
+  public long getQueuedBytes() {
+    return queuedBytes.get();
+  }
+
+  /** Returns the total amount of bytes written. */
+  public long getWrittenBytes() {
+    return writtenBytes.get();
+  }
+
+  /** Returns the amount of times data has been written and flushed. */
+  public long getFlushCount() {
+    return flushCount.get();
+  }
+
+  /**
+   * Returns the time, in nanoseconds, between the moment the oldest data in the last write was
+   * queued and the moment it was flushed.
+   */
+  public long getLastWriteLatency() {
+    return lastWriteLatency;
+  }
+
+  /** Returns the longest value {@link #getLastWriteLatency()} has had. */
+  public long getMaxWriteLatency() {
+    return maxWriteLatency;
+  }
+
+  /** Queued data, along with the time it was queued. */
+  private static final class Entry {
+
+    /** The data. */
+    final byte[] data;
+
+    /** The time, as returned by <code>System.nanoTime()</code>, the data was queued. */
+    final long time;
+
+    /** Creates a new <code>Entry</code>. */
+    Entry(byte[] data, long time) {
+      this.data = data;
+      this.time = time;
+    }
+  }
+}
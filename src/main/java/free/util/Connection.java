@@ -21,13 +21,28 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * An abstract base class for managers of a connection to a TCP/IP, session based server. A <code>
  * Connection</code> has 4 major states: Unconnected, Connecting, Connected and LoggedIn which are
  * specified by the {@link #isConnecting()}, {@link #isConnected()} and {@link #isLoggedIn()}
  * methods.
+ *
+ * <p>Data from the server is read in one of two ways. If the socket returned by {@link
+ * #connectImpl(String, int)} has a <code>SocketChannel</code> and the implementation provides a
+ * {@link MessageFramer} via {@link #createMessageFramer()}, the socket is read by the shared {@link
+ * ConnectionSelector}. Otherwise, a dedicated reader thread reads it via {@link
+ * #readMessage(InputStream)}. The lifecycle methods are invoked in the same manner in both cases.
+ *
+ * <p>The thread reading the socket must never wait for the client thread, since the client thread
+ * may be waiting for this object's lock. {@link #execRunnable(Runnable)} must therefore not block.
+ * An implementation which queues messages up for the client thread may instead report, via {@link
+ * #isBacklogged()}, that it has fallen behind, in which case reading a socket read by the <code>
+ * ConnectionSelector</code> is paused until {@link #resumeReading()} is invoked.
  */
 public abstract class Connection {
 
@@ -49,11 +64,40 @@ public abstract class Connection {
   /** The socket to the server, <code>null</code> when not connected. */
   private Socket socket;
 
+  /** The stream which writes to the socket, <code>null</code> when not connected. */
+  private OutputStream outputStream;
+
+  /** The writer which sends data to the server, <code>null</code> when not connected. */
+  private CommandWriter commandWriter;
+
+  /**
+   * The selector reading the socket, <code>null</code> when not connected or if the socket is read
+   * by the reader thread.
+   */
+  private ConnectionSelector connectionSelector = null;
+
   /**
    * The username assigned to us by the server. This is <code>null</code> until we are logged in.
    */
   private String username = null;
 
+  /**
+   * Whether we count the messages and time their handling. Off unless turned on by {@link
+   * #keepMessageStatistics()}, so that normal sessions don't pay for it on every message.
+   */
+  private volatile boolean keepsMessageStatistics = false;
+
+  /** The amount of messages read from the server, if we keep statistics. */
+  private final AtomicLong receivedMessageCount = new AtomicLong();
+
+  /** The amount of messages handled by {@link #handleMessage(Object)}, if we keep statistics. */
+  private final AtomicLong handledMessageCount = new AtomicLong();
+
+  /**
+   * The total time, in nanoseconds, spent in {@link #handleMessage(Object)}, if we keep statistics.
+   */
+  private final AtomicLong messageHandlingTime = new AtomicLong();
+
   /**
    * Creates a new <code>Connection</code> with the specified requested username and password. Both
    * the username and the password are kept merely as a convenience for subclasses - this class does
@@ -87,13 +131,31 @@ public abstract class Connection {
    * Initiates a connection to the specified hostname on the specified port. The actual connecting
    * is done asynchronously.
    */
-  public synchronized void initiateConnect(final String hostname, final int port) {
+  public synchronized void initiateConnect(String hostname, int port) {
+    startReaderThread(hostname, port, null);
+  }
+
+  /**
+   * Initiates a connection over the specified socket, instead of one created by {@link
+   * #connectImpl(String, int)}. This allows feeding the connection data from a source other than a
+   * live server, such as a recorded session. A socket without a <code>SocketChannel</code> is read
+   * by a dedicated reader thread, as usual.
+   */
+  public synchronized void initiateConnect(Socket socket) {
+    startReaderThread(null, -1, socket);
+  }
+
+  /**
+   * Starts the thread which connects, using the specified socket or, if it's <code>null</code>, to
+   * the specified hostname and port, and then reads from the server.
+   */
+  private void startReaderThread(final String hostname, final int port, final Socket givenSocket) {
     readerThread =
         new Thread("ReaderThread") {
           @Override
           public void run() {
             try {
-              if (connect(hostname, port)) readerLoop();
+              if (connect(hostname, port, givenSocket)) readerLoop();
             } finally {
               synchronized (Connection.this) {
                 if (readerThread == Thread.currentThread()) readerThread = null;
@@ -105,13 +167,37 @@ public abstract class Connection {
     readerThread.start();
   }
 
-  /** Connects to the server. Returns whether successful. */
-  private boolean connect(String hostname, int port) {
+  /**
+   * Connects to the server, using the specified socket or, if it's <code>null</code>, a socket
+   * created by {@link #connectImpl(String, int)}. Returns whether the reader thread should go on to
+   * read from the server, which is not the case if connecting failed or the socket is to be read by
+   * the {@link ConnectionSelector}.
+   */
+  private boolean connect(String hostname, int port, Socket givenSocket) {
     try {
-      Socket tmpSocket = connectImpl(hostname, port);
+      Socket tmpSocket = (givenSocket == null) ? connectImpl(hostname, port) : givenSocket;
+
+      SocketChannel channel = tmpSocket.getChannel();
+      MessageFramer framer = (channel == null) ? null : createMessageFramer();
+      ConnectionSelector connectionSelector = null;
+      OutputStream out;
+      try {
+        if (framer == null) out = tmpSocket.getOutputStream();
+        else {
+          connectionSelector = ConnectionSelector.getInstance();
+          channel.configureBlocking(false);
+          out = new ChannelOutputStream(channel);
+        }
+      } catch (IOException e) {
+        tmpSocket.close();
+        throw e;
+      }
 
       synchronized (this) {
         socket = tmpSocket;
+        outputStream = out;
+        commandWriter = new CommandWriter(out, this);
+        commandWriter.start();
       }
 
       execRunnable(
@@ -122,7 +208,13 @@ public abstract class Connection {
             }
           });
 
-      return true;
+      if (connectionSelector == null) return true;
+
+      synchronized (this) {
+        this.connectionSelector = connectionSelector;
+      }
+      connectionSelector.register(channel, this, framer);
+      return false;
     } catch (final IOException e) {
       // This may not be true if the connection was closed while we were
       // sitting in connectImpl, connecting to the server
@@ -141,18 +233,52 @@ public abstract class Connection {
   /**
    * Creates and connects a socket to the specified hostname on the specified port. Note that this
    * method is called from the constructor, so an implementation may not depend on the subclass's
-   * constructor having finished. The default implementation returns a plain <code>java.net.Socket
-   * </code>.
+   * constructor having finished. The default implementation returns the socket of a connected
+   * <code>SocketChannel</code>, allowing the connection to be read by the {@link
+   * ConnectionSelector}. Sockets without a channel are read by a dedicated reader thread.
    */
   protected Socket connectImpl(String hostname, int port) throws IOException {
-    return new Socket(hostname, port);
+    return SocketChannel.open(new InetSocketAddress(hostname, port)).socket();
+  }
+
+  /**
+   * Returns a new {@link MessageFramer} for reading a socket via the {@link ConnectionSelector}, or
+   * <code>null</code> if the socket should be read by a dedicated thread, via {@link
+   * #readMessage(InputStream)}. This method is invoked once per socket, and only if the socket has
+   * a channel. The default implementation returns <code>null</code>.
+   */
+  protected MessageFramer createMessageFramer() {
+    return null;
   }
 
   /** Returns the <code>OutputStream</code> that sends data to the server. */
   public synchronized OutputStream getOutputStream() throws IOException {
     if (!isConnected()) throw new IllegalStateException("Not connected");
 
-    return socket.getOutputStream();
+    return outputStream;
+  }
+
+  /**
+   * Returns the {@link CommandWriter} which sends data to the server. Data written via the writer
+   * is sent asynchronously, so it should not be mixed with data written directly to {@link
+   * #getOutputStream()}.
+   */
+  public synchronized CommandWriter getCommandWriter() {
+    if (!isConnected()) throw new IllegalStateException("Not connected");
+
+    return commandWriter;
+  }
+
+  /**
+   * Queues the specified data to be sent to the server, without blocking. If <code>urgent</code> is
+   * <code>true</code>, the data is sent right away, rather than after a short delay during which
+   * data sent after it can be coalesced with it. Data is always sent in the order it is queued.
+   * Failure to send the data results in {@link #connectionInterrupted(IOException)} being invoked.
+   */
+  protected final synchronized void sendData(byte[] data, boolean urgent) {
+    if (!isConnected()) throw new IllegalStateException("Not connected");
+
+    commandWriter.write(data, urgent);
   }
 
   /** Returns the host we're connected to. */
@@ -169,6 +295,36 @@ public abstract class Connection {
     return socket.getPort();
   }
 
+  /**
+   * Makes us count the messages we receive and handle, and the time spent handling them, from now
+   * on. Used when measuring the performance of a connection on a recorded session.
+   */
+  void keepMessageStatistics() {
+    keepsMessageStatistics = true;
+  }
+
+  /** Returns the amount of messages read from the server so far, if we keep statistics. */
+  long getReceivedMessageCount() {
+    return receivedMessageCount.get();
+  }
+
+  /**
+   * Returns the amount of messages handled so far by {@link #handleMessage(Object)}. This lags
+   * behind {@link #getReceivedMessageCount()} by the amount of messages waiting to be handled. Only
+   * counted if we keep statistics.
+   */
+  long getHandledMessageCount() {
+    return handledMessageCount.get();
+  }
+
+  /**
+   * Returns the total time, in nanoseconds, spent so far handling messages in {@link
+   * #handleMessage(Object)}, if we keep statistics.
+   */
+  long getMessageHandlingTime() {
+    return messageHandlingTime.get();
+  }
+
   /** A loop which reads data from the server. */
   private void readerLoop() {
     try {
@@ -179,7 +335,7 @@ public abstract class Connection {
         if (message == null) // Clean exit
         break;
 
-        execRunnable(new MessageDispatcher(message));
+        dispatchMessage(message);
       }
       connectionInterrupted(null);
     } catch (IOException e) {
@@ -187,6 +343,15 @@ public abstract class Connection {
     }
   }
 
+  /**
+   * Parses the specified message and hands it to {@link #handleMessage(Object)} via {@link
+   * #execRunnable(Runnable)}. Invoked by whichever thread reads the socket.
+   */
+  void dispatchMessage(Object message) {
+    if (keepsMessageStatistics) receivedMessageCount.incrementAndGet();
+    execRunnable(new MessageDispatcher(parseMessage(message)));
+  }
+
   /**
    * Creates the <code>InputStream</code> that will be passed to {@link #readMessage(InputStream)}.
    * This allows implementations to wrap the input stream in other input streams, which are useful
@@ -206,6 +371,47 @@ public abstract class Connection {
    */
   protected abstract Object readMessage(InputStream inputStream) throws IOException;
 
+  /**
+   * Invoked on the thread reading the socket for each message read from the server, before the
+   * message is handed to {@link #handleMessage(Object)} via {@link #execRunnable(Runnable)}. This
+   * allows implementations to do the (potentially expensive) work of parsing a message away from
+   * the client thread. Implementations must not depend on, or modify, the state of the connection
+   * here, and must not throw exceptions. The default implementation returns the message unchanged.
+   */
+  protected Object parseMessage(Object message) {
+    return message;
+  }
+
+  /**
+   * Returns whether the runnables passed to {@link #execRunnable(Runnable)} are piling up faster
+   * than the client thread runs them. This is checked by the {@link ConnectionSelector} after
+   * handing over the messages of each read; while it returns <code>true</code>, the socket is not
+   * read (so that TCP flow control slows down the server) until {@link #resumeReading()} is
+   * invoked. An implementation returning <code>true</code> must therefore eventually invoke <code>
+   * resumeReading</code>. A socket read by the reader thread is not paused. The default
+   * implementation returns <code>false</code>.
+   */
+  protected boolean isBacklogged() {
+    return false;
+  }
+
+  /**
+   * Resumes reading from the server after it was paused because {@link #isBacklogged()} returned
+   * <code>true</code>. Does nothing if reading isn't paused. May be invoked from any thread.
+   */
+  protected final void resumeReading() {
+    ConnectionSelector selector;
+    SocketChannel channel;
+    synchronized (this) {
+      if ((connectionSelector == null) || (socket == null)) return;
+
+      selector = connectionSelector;
+      channel = socket.getChannel();
+    }
+
+    selector.resume(channel);
+  }
+
   /**
    * Invoked when an interruption occurs in the communication with the server. The specified
    * exception is the one that was thrown, which may be <code>null</code> if we were disconnected
@@ -213,28 +419,37 @@ public abstract class Connection {
    * invoke this method if, for example, an <code>IOException</code> is thrown while trying to send
    * data to the server.
    */
-  protected final synchronized void connectionInterrupted(final IOException exception) {
-    if (!isConnected()) // Just ignore because we may be called twice. For example, if sending
-      // fails, this method is
-      return; // invoked and closes the connection. Then the reader thread fails and invokes it
-    // again.
-
-    try {
-      socket
-          .close(); // Closing the socket causes a SocketException to be thrown in the reader thread
-      socket = null;
-      username = null;
-
-      execRunnable(
-          new SafeRunnable() {
-            @Override
-            public void safeRun() {
-              handleDisconnection(exception);
-            }
-          });
-    } catch (IOException e) {
-      e.printStackTrace(); // Nothing else to do
+  protected final void connectionInterrupted(final IOException exception) {
+    synchronized (this) {
+      if (!isConnected()) // Just ignore because we may be called twice. For example, if sending
+        // fails, this method is
+        return; // invoked and closes the connection. Then the reader thread fails and invokes it
+      // again.
+
+      try {
+        commandWriter.close();
+        commandWriter = null;
+        outputStream = null;
+        connectionSelector = null;
+
+        // Closing the socket causes a SocketException to be thrown in the reader thread
+        socket.close();
+        socket = null;
+        username = null;
+      } catch (IOException e) {
+        e.printStackTrace(); // Nothing else to do
+        return;
+      }
     }
+
+    // Not holding the lock, since the client thread may need it to get to the runnable
+    execRunnable(
+        new SafeRunnable() {
+          @Override
+          public void safeRun() {
+            handleDisconnection(exception);
+          }
+        });
   }
 
   /** Returns whether we are currently attempting to, but not yet connected to the server. */
@@ -281,10 +496,12 @@ public abstract class Connection {
   /**
    * Closes this connection. If the connection is currently attempting to connect, the attempt is
    * aborted. If the connection is connected, disconnection is initiated. Otherwise, the call is
-   * ignored. The actual disconnection is performed asynchronously.
+   * ignored. Any data queued to be sent to the server is sent before disconnecting. The actual
+   * disconnection is performed asynchronously, by the thread writing to the server, once it has
+   * sent that data.
    */
   public synchronized void close() {
-    if (isConnected()) connectionInterrupted(null);
+    if (isConnected()) commandWriter.closeAfterPending();
     else if (isConnecting()) {
       readerThread.interrupt();
       readerThread = null;
@@ -327,7 +544,7 @@ public abstract class Connection {
    * reads data from the server is done via this method. This allows clients to specify which thread
    * they want to handle connection events in, which is especially useful for Swing/AWT based
    * applications. The default implementation simply invokes the runnable, so the event handling is
-   * done in the reader thread.
+   * done in the reader thread. Implementations must not block.
    */
   protected void execRunnable(Runnable runnable) {
     runnable.run();
@@ -392,7 +609,18 @@ public abstract class Connection {
     /** Invokes {@link Connection#handleMessage(Object)} with the message. */
     @Override
     public void safeRun() {
-      handleMessage(message);
+      if (!keepsMessageStatistics) {
+        handleMessage(message);
+        return;
+      }
+
+      long startTime = System.nanoTime();
+      try {
+        handleMessage(message);
+      } finally {
+        messageHandlingTime.addAndGet(System.nanoTime() - startTime);
+        handledMessageCount.incrementAndGet();
+      }
     }
   }
   ;
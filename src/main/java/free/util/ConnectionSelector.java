@@ -0,0 +1,188 @@
+/**
+ * The utillib library. More information is available at http://www.jinchess.com/. Copyright (C)
+ * 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * <p>The utillib library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * <p>The utillib library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU Lesser General Public License along with utillib
+ * library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+ * MA 02111-1307 USA
+ */
+package free.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Reads the data of any number of {@link Connection}s on a single thread, using a <code>Selector
+ * </code>. Each connection's data is read into its own direct buffer and fed, as it arrives, to the
+ * connection's {@link MessageFramer}. Complete messages are then handed to the connection exactly
+ * as its own reader thread would hand them.
+ *
+ * <p>Since the connections share a thread, a connection whose {@link
+ * Connection#execRunnable(Runnable)} blocks would hold up all the others. Instead, a connection
+ * which falls behind handling its messages reports it via {@link Connection#isBacklogged()}, and
+ * its channel is then not read until {@link Connection#resumeReading()} is invoked.
+ */
+public final class ConnectionSelector {
+
+  /** The size of the buffer each connection's data is read into. */
+  private static final int BUFFER_SIZE = 8192;
+
+  /** The single instance, lazily created. */
+  private static ConnectionSelector instance = null;
+
+  /** The selector. */
+  private final Selector selector;
+
+  /** The <code>ChannelReader</code>s waiting to be registered with the selector. */
+  private final ConcurrentLinkedQueue pendingRegistrations = new ConcurrentLinkedQueue();
+
+  /** The <code>SocketChannel</code>s whose reading is to be resumed. */
+  private final ConcurrentLinkedQueue pendingResumptions = new ConcurrentLinkedQueue();
+
+  /** Returns the <code>ConnectionSelector</code>, creating and starting it if necessary. */
+  public static synchronized ConnectionSelector getInstance() throws IOException {
+    if (instance == null) instance = new ConnectionSelector();
+
+    return instance;
+  }
+
+  /** Creates a new <code>ConnectionSelector</code> and starts its thread. */
+  private ConnectionSelector() throws IOException {
+    selector = Selector.open();
+
+    Thread thread =
+        new Thread("ConnectionSelector") {
+          @Override
+          public void run() {
+            selectLoop();
+          }
+        };
+    thread.setDaemon(true);
+    thread.setPriority(Thread.MAX_PRIORITY);
+    thread.start();
+  }
+
+  /**
+   * Starts reading the specified channel, which must be in non-blocking mode, on behalf of the
+   * specified connection, using the specified framer.
+   */
+  void register(SocketChannel channel, Connection connection, MessageFramer framer) {
+    pendingRegistrations.add(new ChannelReader(channel, connection, framer));
+    selector.wakeup();
+  }
+
+  /**
+   * Resumes reading the specified channel, if it was paused because its connection was backlogged.
+   * May be called from any thread.
+   */
+  void resume(SocketChannel channel) {
+    pendingResumptions.add(channel);
+    selector.wakeup();
+  }
+
+  /** The selector thread's loop. */
+  private void selectLoop() {
+    while (true) {
+      try {
+        selector.select();
+      } catch (IOException e) {
+        e.printStackTrace();
+        continue;
+      }
+
+      ChannelReader reader;
+      while ((reader = (ChannelReader) pendingRegistrations.poll()) != null) {
+        try {
+          reader.channel.register(selector, SelectionKey.OP_READ, reader);
+        } catch (ClosedChannelException e) {
+          // The connection was closed before we got to it
+        }
+      }
+
+      // A request may be left over from a backlog which cleared while the read which paused the
+      // channel was still dispatching, so check that the connection is no longer backlogged
+      SocketChannel channel;
+      while ((channel = (SocketChannel) pendingResumptions.poll()) != null) {
+        SelectionKey key = channel.keyFor(selector);
+        if ((key == null) || !key.isValid()) continue;
+
+        Connection connection = ((ChannelReader) key.attachment()).connection;
+        if (!connection.isBacklogged()) key.interestOps(SelectionKey.OP_READ);
+      }
+
+      Iterator keys = selector.selectedKeys().iterator();
+      while (keys.hasNext()) {
+        SelectionKey key = (SelectionKey) keys.next();
+        keys.remove();
+
+        if (key.isValid()) ((ChannelReader) key.attachment()).read(key);
+      }
+    }
+  }
+
+  /** Reads a single channel. Only accessed by the selector thread, once registered. */
+  private static final class ChannelReader {
+
+    /** The channel. */
+    private final SocketChannel channel;
+
+    /** The connection on behalf of which we read. */
+    private final Connection connection;
+
+    /** The framer which splits the data into messages. */
+    private final MessageFramer framer;
+
+    /** The buffer we read into. */
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    /** Creates a new <code>ChannelReader</code>. */
+    ChannelReader(SocketChannel channel, Connection connection, MessageFramer framer) {
+      this.channel = channel;
+      this.connection = connection;
+      this.framer = framer;
+    }
+
+    /**
+     * Reads the available data and dispatches any messages completed by it, then stops reading the
+     * channel if the connection is backlogged. On end of stream, or an error, the key is cancelled
+     * and the connection is notified.
+     */
+    void read(SelectionKey key) {
+      try {
+        int count = channel.read(buffer);
+
+        buffer.flip();
+        Object message;
+        while ((message = framer.nextMessage(buffer)) != null) connection.dispatchMessage(message);
+        buffer.clear(); // The framer consumes everything it doesn't return
+
+        if (count < 0) { // Clean disconnection, unless there is an unterminated message
+          key.cancel();
+          while ((message = framer.finish()) != null) connection.dispatchMessage(message);
+          connection.connectionInterrupted(null);
+        } else if (connection.isBacklogged()) key.interestOps(0);
+      } catch (IOException e) {
+        key.cancel();
+        connection.connectionInterrupted(e);
+      } catch (RuntimeException e) {
+        // Don't let a single connection bring down all the others
+        key.cancel();
+        connection.connectionInterrupted(new IOException("Unable to read from the server", e));
+      }
+    }
+  }
+}
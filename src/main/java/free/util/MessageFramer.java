@@ -0,0 +1,47 @@
+/**
+ * The utillib library. More information is available at http://www.jinchess.com/. Copyright (C)
+ * 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * <p>The utillib library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * <p>The utillib library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU Lesser General Public License along with utillib
+ * library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+ * MA 02111-1307 USA
+ */
+package free.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Splits a stream of bytes arriving from a server into protocol messages, incrementally. A framer
+ * is fed arbitrary chunks of data, as they arrive, and keeps any partial message until the rest of
+ * it arrives. A <code>MessageFramer</code> is used for a single socket only and need not be thread
+ * safe.
+ *
+ * @see Connection#createMessageFramer()
+ */
+public interface MessageFramer {
+
+  /**
+   * Consumes bytes from the specified buffer until a complete message has been read, and returns
+   * that message. Returns <code>null</code> if the buffer is exhausted before a message is
+   * complete. Implementations must consume all the bytes they can't yet turn into a message
+   * (keeping them internally, if needed), so that <code>null</code> is only returned when the
+   * buffer has no bytes remaining.
+   */
+  Object nextMessage(ByteBuffer in) throws IOException;
+
+  /**
+   * Invoked, repeatedly, when the end of the stream has been reached. Returns any remaining message
+   * or <code>null</code> if there are none left. Throws an <code>IOException</code> if the stream
+   * ended in the middle of a message which can't be terminated by the end of stream.
+   */
+  Object finish() throws IOException;
+}
@@ -0,0 +1,217 @@
+/**
+ * The utillib library. More information is available at http://www.jinchess.com/. Copyright (C)
+ * 2007 Alexander Maryanovsky. All rights reserved.
+ *
+ * <p>The utillib library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * <p>The utillib library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU Lesser General Public License along with utillib
+ * library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+ * MA 02111-1307 USA
+ */
+package free.util.swing;
+
+import java.awt.DisplayMode;
+import java.awt.GraphicsEnvironment;
+import java.awt.HeadlessException;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import javax.swing.Timer;
+
+/**
+ * Runs all the animations of the application from a single <code>javax.swing.Timer</code>, instead
+ * of a timer per animating component. An {@link Animation} is advanced either on every frame, at
+ * the refresh rate of the screen, or at a time of its choosing (a chess clock, for example, only
+ * needs to be advanced when the time it displays changes). All the animations due at the same time
+ * are advanced by a single event, and when there are no animations, the timer is stopped and the
+ * event dispatching thread isn't woken up at all.
+ *
+ * <p><B>IMPORTANT:</B> This class is not thread safe - it should only be used from the AWT event
+ * dispatching thread.
+ */
+public final class AnimationScheduler {
+
+  /** The frame rate we use when the refresh rate of the screen is unknown. */
+  private static final int DEFAULT_FRAME_RATE = 60;
+
+  /** The sole instance of this class, created lazily. */
+  private static AnimationScheduler instance = null;
+
+  /** The time between frames, in milliseconds. */
+  private final int framePeriod;
+
+  /** The scheduled animations. */
+  private final ArrayList animations = new ArrayList();
+
+  /** The time (as returned by <code>System.currentTimeMillis()</code>) of the last frame. */
+  private long lastFrameTime = 0;
+
+  /** The timer which advances the animations. Fires once, and is restarted as needed. */
+  private final Timer timer =
+      new Timer(
+          0,
+          new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent evt) {
+              advanceAnimations();
+            }
+          });
+
+  /** Creates a new <code>AnimationScheduler</code> with the specified time between frames. */
+  private AnimationScheduler(int framePeriod) {
+    this.framePeriod = framePeriod;
+
+    timer.setRepeats(false);
+    timer.setCoalesce(true);
+  }
+
+  /** Returns the sole instance of <code>AnimationScheduler</code>. */
+  public static AnimationScheduler getInstance() {
+    if (instance == null) instance = new AnimationScheduler(calcFramePeriod());
+
+    return instance;
+  }
+
+  /**
+   * Returns the time between frames, in milliseconds, matching the refresh rate of the default
+   * screen, if it's known.
+   */
+  private static int calcFramePeriod() {
+    int frameRate = DisplayMode.REFRESH_RATE_UNKNOWN;
+    try {
+      if (!GraphicsEnvironment.isHeadless()) {
+        GraphicsEnvironment env = GraphicsEnvironment.getLocalGraphicsEnvironment();
+        frameRate = env.getDefaultScreenDevice().getDisplayMode().getRefreshRate();
+      }
+    } catch (HeadlessException e) {
+    }
+
+    if (frameRate <= 0) frameRate = DEFAULT_FRAME_RATE;
+
+    return Math.max(1, Math.round(1000f / frameRate));
+  }
+
+  /** Returns the time between frames, in milliseconds. */
+  public int getFramePeriod() {
+    return framePeriod;
+  }
+
+  /**
+   * Schedules the specified animation to be advanced on the next frame. If it's already scheduled,
+   * it's rescheduled to the next frame.
+   */
+  public void start(Animation animation) {
+    if (animation == null) throw new IllegalArgumentException("animation may not be null");
+
+    ScheduledAnimation scheduled = find(animation);
+    if (scheduled == null) animations.add(new ScheduledAnimation(animation, 0));
+    else scheduled.time = 0;
+
+    reschedule(System.currentTimeMillis());
+  }
+
+  /** Stops advancing the specified animation. Does nothing if it isn't scheduled. */
+  public void stop(Animation animation) {
+    ScheduledAnimation scheduled = find(animation);
+    if (scheduled == null) return;
+
+    animations.remove(scheduled);
+    if (animations.isEmpty()) timer.stop();
+  }
+
+  /** Returns whether the specified animation is scheduled. */
+  public boolean isRunning(Animation animation) {
+    return find(animation) != null;
+  }
+
+  /** Returns the scheduled entry of the specified animation, or <code>null</code> if none. */
+  private ScheduledAnimation find(Animation animation) {
+    int size = animations.size();
+    for (int i = 0; i < size; i++) {
+      ScheduledAnimation scheduled = (ScheduledAnimation) animations.get(i);
+      if (scheduled.animation == animation) return scheduled;
+    }
+
+    return null;
+  }
+
+  /** Advances all the animations which are due, and schedules the next frame. */
+  private void advanceAnimations() {
+    long time = System.currentTimeMillis();
+    lastFrameTime = time;
+
+    // Animations may start and stop animations while they're being advanced
+    Object[] due = animations.toArray();
+    for (int i = 0; i < due.length; i++) {
+      ScheduledAnimation scheduled = (ScheduledAnimation) due[i];
+      if ((scheduled.time > time) || !animations.contains(scheduled)) continue;
+
+      scheduled.time = -1; // Marks the animation as being advanced
+      long nextTime = scheduled.animation.animate(time);
+
+      // Leave alone animations restarted or stopped while being advanced
+      if ((scheduled.time != -1) || !animations.contains(scheduled)) continue;
+
+      if (nextTime < 0) animations.remove(scheduled);
+      else scheduled.time = nextTime;
+    }
+
+    reschedule(System.currentTimeMillis());
+  }
+
+  /**
+   * Sets the timer to fire when the earliest animation is due, but no earlier than a frame after
+   * the last one. Stops the timer if there are no animations.
+   */
+  private void reschedule(long currentTime) {
+    if (animations.isEmpty()) {
+      timer.stop();
+      return;
+    }
+
+    long earliestTime = Long.MAX_VALUE;
+    int size = animations.size();
+    for (int i = 0; i < size; i++)
+      earliestTime = Math.min(earliestTime, ((ScheduledAnimation) animations.get(i)).time);
+
+    long wakeTime = Math.max(earliestTime, lastFrameTime + framePeriod);
+    int delay = (int) Math.min(Math.max(wakeTime - currentTime, 0), Integer.MAX_VALUE);
+
+    timer.setInitialDelay(delay);
+    timer.restart();
+  }
+
+  /** An animation run by an <code>AnimationScheduler</code>. */
+  public interface Animation {
+
+    /**
+     * Advances the animation to the specified time (as returned by <code>
+     * System.currentTimeMillis()</code>). Returns the time at which the animation should next be
+     * advanced - a time not later than the specified one means the next frame. A negative value
+     * ends the animation.
+     */
+    long animate(long time);
+  }
+
+  /** An animation along with the time at which it should next be advanced. */
+  private static final class ScheduledAnimation {
+
+    /** The animation. */
+    private final Animation animation;
+
+    /** The time at which the animation should next be advanced; 0 for the next frame. */
+    private long time;
+
+    /** Creates a new <code>ScheduledAnimation</code>. */
+    ScheduledAnimation(Animation animation, long time) {
+      this.animation = animation;
+      this.time = time;
+    }
+  }
+}
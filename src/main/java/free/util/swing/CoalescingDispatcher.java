@@ -0,0 +1,242 @@
+/**
+ * The utillib library. More information is available at http://www.jinchess.com/. Copyright (C)
+ * 2007 Alexander Maryanovsky. All rights reserved.
+ *
+ * <p>The utillib library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * <p>The utillib library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU Lesser General Public License along with utillib
+ * library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+ * MA 02111-1307 USA
+ */
+package free.util.swing;
+
+import java.util.ArrayDeque;
+import javax.swing.SwingUtilities;
+
+/**
+ * Runs <code>Runnable</code>s on the AWT event dispatching thread, in order, without posting an
+ * event per runnable. Runnables are placed in a queue and a single task is scheduled on the event
+ * dispatching thread. That task runs queued runnables until either a maximum amount of them has
+ * been run or a maximum amount of time has passed, and then yields, scheduling itself again if
+ * anything is left. Input and paint events posted in the meanwhile thus get a chance to be
+ * processed between batches.
+ *
+ * <p>{@link #execute(Runnable)} never blocks and never drops a runnable. Instead, once the queue
+ * fills up to a certain size, the dispatcher is considered backlogged (see {@link #isBacklogged()})
+ * until the event dispatching thread has worked the queue down to half that size, at which point
+ * the backlog cleared callback is run. A producer, such as whatever reads from a network
+ * connection, can use this to stop producing in the meanwhile (letting TCP flow control slow down
+ * the sender) without ever waiting on the event dispatching thread - which may itself be waiting
+ * for a lock the producer holds.
+ *
+ * <p><B>NOTE:</B> This class is thread safe.
+ */
+public class CoalescingDispatcher {
+
+  /** The amount of queued runnables at which we become backlogged. */
+  private final int backlogSize;
+
+  /** The maximum amount of runnables we run in a single batch. */
+  private final int maxBatchSize;
+
+  /** The maximum amount of time, in milliseconds, we spend running a single batch. */
+  private final long maxBatchTime;
+
+  /** The queue of runnables waiting to be run. */
+  private final ArrayDeque queue = new ArrayDeque();
+
+  /** Whether the drain task has been posted to the event queue and hasn't run yet. */
+  private boolean drainScheduled = false;
+
+  /** Whether we are backlogged. */
+  private boolean isBacklogged = false;
+
+  /** The runnable we run when we stop being backlogged, <code>null</code> if none. */
+  private Runnable backlogClearedCallback = null;
+
+  /** The largest size the queue has reached. */
+  private int maxQueueDepth = 0;
+
+  /** The total amount of runnables run so far. */
+  private long dispatchedCount = 0;
+
+  /** The total amount of batches run so far. */
+  private long batchCount = 0;
+
+  /** The time, in nanoseconds, it took to run the last batch. */
+  private long lastBatchTime = 0;
+
+  /** The longest time, in nanoseconds, it took to run a single batch. */
+  private long maxBatchTimeTaken = 0;
+
+  /** The total time, in nanoseconds, spent running batches. */
+  private long totalBatchTime = 0;
+
+  /** The amount of times we have become backlogged. */
+  private long backlogCount = 0;
+
+  /** The task that drains the queue on the event dispatching thread. */
+  private final Runnable drainer =
+      new Runnable() {
+        @Override
+        public void run() {
+          drain();
+        }
+      };
+
+  /**
+   * Creates a new <code>CoalescingDispatcher</code> which becomes backlogged at the specified
+   * amount of queued runnables, with the specified maximum amount of runnables per batch and
+   * maximum batch duration, in milliseconds.
+   */
+  public CoalescingDispatcher(int backlogSize, int maxBatchSize, long maxBatchTime) {
+    if (backlogSize <= 0) throw new IllegalArgumentException("backlogSize must be positive");
+    if (maxBatchSize <= 0) throw new IllegalArgumentException("maxBatchSize must be positive");
+    if (maxBatchTime <= 0) throw new IllegalArgumentException("maxBatchTime must be positive");
+
+    this.backlogSize = backlogSize;
+    this.maxBatchSize = maxBatchSize;
+    this.maxBatchTime = maxBatchTime;
+  }
+
+  /**
+   * Creates a new <code>CoalescingDispatcher</code> which becomes backlogged at 4096 queued
+   * runnables and runs up to 256 runnables or for up to 15 milliseconds per batch.
+   */
+  public CoalescingDispatcher() {
+    this(4096, 256, 15);
+  }
+
+  /**
+   * Sets the runnable to run, on the event dispatching thread, whenever this dispatcher stops being
+   * backlogged. May be <code>null</code>.
+   */
+  public synchronized void setBacklogClearedCallback(Runnable callback) {
+    this.backlogClearedCallback = callback;
+  }
+
+  /**
+   * Queues the specified runnable to be run on the event dispatching thread, after all previously
+   * queued runnables. This method never blocks, even if we are backlogged.
+   */
+  public void execute(Runnable runnable) {
+    if (runnable == null) throw new IllegalArgumentException("runnable may not be null");
+
+    synchronized (this) {
+      queue.addLast(runnable);
+      int size = queue.size();
+      if (size > maxQueueDepth) maxQueueDepth = size;
+      if (!isBacklogged && (size >= backlogSize)) {
+        isBacklogged = true;
+        backlogCount++;
+      }
+
+      if (!drainScheduled) {
+        drainScheduled = true;
+        SwingUtilities.invokeLater(drainer);
+      }
+    }
+  }
+
+  /** Runs a single batch of queued runnables. Invoked on the event dispatching thread. */
+  private void drain() {
+    long startTime = System.nanoTime();
+    long deadline = startTime + maxBatchTime * 1000000;
+    int count = 0;
+
+    while (true) {
+      Runnable runnable;
+      Runnable callback = null;
+      synchronized (this) {
+        if (queue.isEmpty() || (count == maxBatchSize) || (System.nanoTime() - deadline >= 0)) {
+          if (queue.isEmpty()) drainScheduled = false;
+          else SwingUtilities.invokeLater(drainer); // Yield to other events, then continue
+
+          long elapsed = System.nanoTime() - startTime;
+          lastBatchTime = elapsed;
+          totalBatchTime += elapsed;
+          if (elapsed > maxBatchTimeTaken) maxBatchTimeTaken = elapsed;
+          batchCount++;
+          dispatchedCount += count;
+          return;
+        }
+
+        runnable = (Runnable) queue.removeFirst();
+        if (isBacklogged && (queue.size() <= backlogSize / 2)) {
+          isBacklogged = false;
+          callback = backlogClearedCallback;
+        }
+      }
+
+      if (callback != null) run(callback);
+      run(runnable);
+      count++;
+    }
+  }
+
+  /** Runs the specified runnable, reporting any exceptions it throws. */
+  private static void run(Runnable runnable) {
+    try {
+      runnable.run();
+    } catch (Throwable t) {
+      if (t instanceof ThreadDeath) throw (ThreadDeath) t;
+
+      System.err.println("An exception/error occurred while dispatching:");
+      t.printStackTrace();
+    }
+  }
+
+  /**
+   * Returns whether the queue has filled up to the backlog size and not yet been worked down to
+   * half of it.
+   */
+  public synchronized boolean isBacklogged() {
+    return isBacklogged;
+  }
+
+  /** Returns the amount of runnables currently waiting to be run. */
+  public synchronized int getQueueDepth() {
+    return queue.size();
+  }
+
+  /** Returns the largest amount of runnables that were waiting to be run at the same time. */
+  public synchronized int getMaxQueueDepth() {
+    return maxQueueDepth;
+  }
+
+  /** Returns the total amount of runnables that have been run. */
+  public synchronized long getDispatchedCount() {
+    return dispatchedCount;
+  }
+
+  /** Returns the total amount of batches that have been run. */
+  public synchronized long getBatchCount() {
+    return batchCount;
+  }
+
+  /** Returns the time, in nanoseconds, it took to run the last batch. */
+  public synchronized long getLastBatchTime() {
+    return lastBatchTime;
+  }
+
+  /** Returns the longest time, in nanoseconds, it took to run a single batch. */
+  public synchronized long getMaxBatchTime() {
+    return maxBatchTimeTaken;
+  }
+
+  /** Returns the total time, in nanoseconds, spent running batches. */
+  public synchronized long getTotalBatchTime() {
+    return totalBatchTime;
+  }
+
+  /** Returns the amount of times this dispatcher has become backlogged. */
+  public synchronized long getBacklogCount() {
+    return backlogCount;
+  }
+}
@@ -0,0 +1,165 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * <p>The chess framework library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * <p>The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import free.chess.variants.atomic.Atomic;
+import free.chess.variants.fischerrandom.FischerRandom;
+import free.chess.variants.giveaway.Giveaway;
+import free.chess.variants.shatranj.Shatranj;
+import free.chess.variants.suicide.Suicide;
+import org.junit.Test;
+
+/**
+ * Checks the move counts ("perft") of {@link MoveGenerator} against known values, at depths shallow
+ * enough to run with the other tests. The deep, timed counts are run by the <code>Perft</code>
+ * benchmark.
+ */
+public class MoveGeneratorTest {
+
+  /** Counts the standard perft positions of chess. */
+  @Test
+  public void chess() {
+    assertPerft(new MoveGenerator(), Chess.INITIAL_POSITION_FEN, 4, 197281);
+    assertPerft(
+        new MoveGenerator(),
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+        3,
+        97862);
+    assertPerft(new MoveGenerator(), "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1", 4, 43238);
+    assertPerft(
+        new MoveGenerator(),
+        "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+        3,
+        9467);
+    assertPerft(
+        new MoveGenerator(), "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8", 3, 62379);
+    assertPerft(
+        new MoveGenerator(),
+        "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+        3,
+        89890);
+  }
+
+  /**
+   * Counts Fischer random positions. Where castling is standard, the counts must be the same as in
+   * chess, and the other positions are the standard Fischer random perft positions.
+   */
+  @Test
+  public void fischerRandom() {
+    assertPerft(
+        FischerRandom.getInstance().createMoveGenerator(),
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+        3,
+        97862);
+    assertPerft(
+        FischerRandom.getInstance().createMoveGenerator(),
+        "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+        3,
+        9467);
+    assertPerft(
+        FischerRandom.getInstance().createMoveGenerator(),
+        "bqnb1rkr/pp3ppp/3ppn2/2p5/5P2/P2P4/NPP1P1PP/BQ1BNRKR w HFhf - 2 9",
+        4,
+        326672);
+    assertPerft(
+        FischerRandom.getInstance().createMoveGenerator(),
+        "2nnrbkr/p1qppppp/8/1ppb4/6PP/3PP3/PPP2P2/BQNNRBKR w HEhe - 1 9",
+        4,
+        667366);
+    assertPerft(
+        FischerRandom.getInstance().createMoveGenerator(),
+        "b1q1rrkb/pppppppp/3nn3/8/P7/1PPP4/4PPPP/BQNNRKRB w GE - 1 9",
+        4,
+        273318);
+    assertPerft(
+        FischerRandom.getInstance().createMoveGenerator(),
+        "qbbnnrkr/2pp2pp/p7/1p2pp2/8/P3PP2/1PPP1KPP/QBBNNR1R w hf - 0 9",
+        4,
+        382958);
+    assertPerft(
+        FischerRandom.getInstance().createMoveGenerator(),
+        "1rqbkrbn/1ppppp1p/1n6/p1N3p1/8/2P4P/PP1PPPP1/1RQBKRBN w FBfb - 0 9",
+        4,
+        287739);
+  }
+
+  /**
+   * Counts the initial position of giveaway and suicide, which must be the same as for other losing
+   * chess generators (which disallow castling), as castling isn't possible this early.
+   */
+  @Test
+  public void losingChess() {
+    assertPerft(
+        Giveaway.getInstance().createMoveGenerator(), Chess.INITIAL_POSITION_FEN, 4, 153299);
+    assertPerft(Suicide.getInstance().createMoveGenerator(), Chess.INITIAL_POSITION_FEN, 4, 153299);
+  }
+
+  /**
+   * Counts the initial positions of atomic and shatranj. They have no published counts, so these
+   * were checked by hand at low depths and are kept to catch regressions.
+   */
+  @Test
+  public void atomicAndShatranj() {
+    assertPerft(Atomic.getInstance().createMoveGenerator(), Chess.INITIAL_POSITION_FEN, 4, 197779);
+    assertPerft(
+        Shatranj.getInstance().createMoveGenerator(),
+        "rnbkqbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBKQBNR w - - 0 1",
+        4,
+        68122);
+  }
+
+  /**
+   * Checks that the rights key tells apart positions whose castling rights differ, and positions
+   * where an en passant capture is possible from those where it isn't, but not positions which only
+   * differ in an en passant square no pawn can capture on.
+   */
+  @Test
+  public void rightsKey() {
+    MoveGenerator generator = new MoveGenerator();
+    generator.setFEN("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1");
+    long allRights = generator.getRightsKey();
+    generator.setFEN("r3k2r/8/8/8/8/8/8/R3K2R w Kkq - 0 1");
+    long someRights = generator.getRightsKey();
+    generator.setFEN("r3k2r/8/8/8/8/8/8/R3K2R w - - 0 1");
+    long noRights = generator.getRightsKey();
+    assertTrue(allRights != someRights);
+    assertTrue(someRights != noRights);
+    assertEquals(0, noRights);
+
+    generator.setFEN("4k3/8/8/3pP3/8/8/8/4K3 w - d6 0 1");
+    long enPassant = generator.getRightsKey();
+    generator.setFEN("4k3/8/8/3pP3/8/8/8/4K3 w - - 0 1");
+    assertTrue(enPassant != generator.getRightsKey());
+
+    generator.setFEN("4k3/8/8/3p4/4P3/8/8/4K3 w - d6 0 1");
+    long noCapture = generator.getRightsKey();
+    generator.setFEN("4k3/8/8/3p4/4P3/8/8/4K3 w - - 0 1");
+    assertEquals(noCapture, generator.getRightsKey());
+  }
+
+  /**
+   * Asserts that the perft count of the specified position, set on the specified generator, to the
+   * specified depth is the expected one.
+   */
+  private static void assertPerft(MoveGenerator generator, String fen, int depth, long expected) {
+    generator.setFEN(fen);
+    assertEquals(fen + " to depth " + depth, expected, generator.perft(depth));
+  }
+}
@@ -0,0 +1,280 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * <p>The chess framework library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * <p>The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import free.chess.variants.kriegspiel.KriegspielMove;
+import java.util.Random;
+import java.util.Vector;
+import org.junit.Test;
+
+/**
+ * Checks that {@link MoveList} returns the moves added to it, whether they are encoded or kept as
+ * is, and that its snapshots don't change when the list does.
+ */
+public class MoveListTest {
+
+  /** Checks that each kind of chess move comes back from the list as it was added. */
+  @Test
+  public void chessMovesRoundTrip() {
+    ChessMove[] moves = {
+      move("e2", "e4", Player.WHITE_PLAYER, false, false, false, null, 4, null, "e4"),
+      move("d7", "d5", Player.BLACK_PLAYER, false, false, false, null, 3, null, "d5"),
+      move(
+          "e4",
+          "d5",
+          Player.WHITE_PLAYER,
+          false,
+          false,
+          false,
+          ChessPiece.BLACK_PAWN,
+          -1,
+          null,
+          "exd5"),
+      move(
+          "e5",
+          "d6",
+          Player.WHITE_PLAYER,
+          true,
+          false,
+          false,
+          ChessPiece.BLACK_PAWN,
+          -1,
+          null,
+          "exd6"),
+      move("e1", "g1", Player.WHITE_PLAYER, false, true, false, null, -1, null, "O-O"),
+      move("e8", "c8", Player.BLACK_PLAYER, false, false, true, null, -1, null, "O-O-O"),
+      move(
+          "a7",
+          "a8",
+          Player.WHITE_PLAYER,
+          false,
+          false,
+          false,
+          null,
+          -1,
+          ChessPiece.WHITE_QUEEN,
+          "a8=Q"),
+      move(
+          "b2",
+          "a1",
+          Player.BLACK_PLAYER,
+          false,
+          false,
+          false,
+          ChessPiece.WHITE_ROOK,
+          -1,
+          ChessPiece.BLACK_KNIGHT,
+          "bxa1=N+"),
+      move("g1", "f3", Player.WHITE_PLAYER, false, false, false, null, -1, null, null)
+    };
+
+    MoveList list = new MoveList();
+    for (int i = 0; i < moves.length; i++) list.add(moves[i]);
+
+    assertEquals(moves.length, list.size());
+    for (int i = 0; i < moves.length; i++) {
+      assertSameMove(moves[i], list.get(i));
+      assertEquals(moves[i].toString(), list.getString(i));
+      assertEquals(moves[i].getPlayer(), list.getPlayer(i));
+    }
+    assertSameMove(moves[moves.length - 1], list.getLast());
+  }
+
+  /** Checks that the string representations of encoded moves are interned. */
+  @Test
+  public void stringsAreInterned() {
+    MoveList list = new MoveList();
+    list.add(
+        move(
+            "e2", "e4", Player.WHITE_PLAYER, false, false, false, null, 4, null, new String("e4")));
+
+    assertSame("e4", list.getString(0));
+    assertSame("e4", list.get(0).getStringRepresentation());
+  }
+
+  /** Checks that moves which can't be encoded are returned as they were added. */
+  @Test
+  public void otherMovesAreKept() {
+    Position position = new Position(Chess.getInstance());
+    position.setFEN("4k3/8/8/8/8/8/3p4/4K3 w - - 0 1");
+    Move hidden = new KriegspielMove(Player.BLACK_PLAYER, "?");
+    Move partiallyHidden = new KriegspielMove(position, Square.parseSquare("d2"), null);
+    ChessMove subclassMove =
+        new ChessMove(
+            Square.parseSquare("e1"),
+            Square.parseSquare("d2"),
+            Player.WHITE_PLAYER,
+            false,
+            false,
+            false,
+            ChessPiece.BLACK_PAWN,
+            -1,
+            null,
+            "Kxd2") {};
+
+    MoveList list = new MoveList();
+    list.add(move("e2", "e4", Player.WHITE_PLAYER, false, false, false, null, 4, null, "e4"));
+    list.add(hidden);
+    list.add(partiallyHidden);
+    list.add(subclassMove);
+
+    assertSame(hidden, list.get(1));
+    assertSame(partiallyHidden, list.get(2));
+    assertSame(subclassMove, list.get(3));
+    assertEquals("?", list.getString(1));
+    assertEquals(partiallyHidden.toString(), list.getString(2));
+    assertEquals(Player.BLACK_PLAYER, list.getPlayer(1));
+    assertSameMove(
+        move("e2", "e4", Player.WHITE_PLAYER, false, false, false, null, 4, null, "e4"),
+        list.get(0));
+  }
+
+  /** Checks that a snapshot keeps its moves when the list is truncated, added to and cleared. */
+  @Test
+  public void snapshotIsUnaffectedByChanges() {
+    MoveList list = new MoveList();
+    list.add(move("e2", "e4", Player.WHITE_PLAYER, false, false, false, null, 4, null, "e4"));
+    list.add(move("e7", "e5", Player.BLACK_PLAYER, false, false, false, null, 4, null, "e5"));
+    list.add(new KriegspielMove(Player.WHITE_PLAYER, "?"));
+    MoveList snapshot = list.snapshot();
+    assertTrue(snapshot.isSnapshot());
+    assertSame(snapshot, snapshot.snapshot());
+
+    list.truncate(1);
+    list.add(new KriegspielMove(Player.BLACK_PLAYER, "??"));
+    list.add(move("g1", "f3", Player.WHITE_PLAYER, false, false, false, null, -1, null, "Nf3"));
+    assertSnapshot(snapshot, new String[] {"e4", "e5", "?"});
+    assertEquals("??", list.getString(1));
+
+    list.clear();
+    assertSnapshot(snapshot, new String[] {"e4", "e5", "?"});
+    assertEquals(0, list.size());
+
+    try {
+      snapshot.add(new KriegspielMove(Player.WHITE_PLAYER, "?"));
+      fail("A snapshot was modified");
+    } catch (IllegalStateException e) {
+    }
+    try {
+      snapshot.truncate(0);
+      fail("A snapshot was modified");
+    } catch (IllegalStateException e) {
+    }
+  }
+
+  /**
+   * Checks snapshots taken during random sequences of added and taken back moves, against the
+   * strings of the moves each snapshot saw when it was taken.
+   */
+  @Test
+  public void randomSnapshots() {
+    Random random = new Random(20);
+    MoveList list = new MoveList();
+    Vector strings = new Vector();
+    Vector snapshots = new Vector();
+    Vector snapshotStrings = new Vector();
+    for (int i = 0; i < 5000; i++) {
+      int operation = random.nextInt(10);
+      if (operation < 6) {
+        String string = "m" + random.nextInt(1000);
+        if (random.nextInt(8) == 0) list.add(new KriegspielMove(Player.WHITE_PLAYER, string));
+        else {
+          Square from = Square.getInstance(random.nextInt(64));
+          Square to = Square.getInstance(random.nextInt(64));
+          list.add(
+              new ChessMove(
+                  from, to, Player.BLACK_PLAYER, false, false, false, null, -1, null, string));
+        }
+        strings.addElement(string);
+      } else if (operation < 8) {
+        int newSize = strings.isEmpty() ? 0 : random.nextInt(strings.size() + 1);
+        list.truncate(newSize);
+        strings.setSize(newSize);
+      } else if (operation < 9) {
+        snapshots.addElement(list.snapshot());
+        String[] seen = new String[strings.size()];
+        strings.copyInto(seen);
+        snapshotStrings.addElement(seen);
+      } else if (random.nextInt(20) == 0) {
+        list.clear();
+        strings.removeAllElements();
+      }
+
+      assertEquals(strings.size(), list.size());
+    }
+
+    for (int i = 0; i < snapshots.size(); i++)
+      assertSnapshot((MoveList) snapshots.elementAt(i), (String[]) snapshotStrings.elementAt(i));
+  }
+
+  /** Asserts that the specified snapshot holds moves with the specified strings. */
+  private static void assertSnapshot(MoveList snapshot, String[] strings) {
+    assertEquals(strings.length, snapshot.size());
+    for (int i = 0; i < strings.length; i++) {
+      assertEquals(strings[i], snapshot.getString(i));
+      assertEquals(strings[i], snapshot.get(i).toString());
+    }
+  }
+
+  /**
+   * Asserts that the specified move is a chess move with the same properties as the expected one.
+   */
+  private static void assertSameMove(ChessMove expected, Move actual) {
+    assertSame(ChessMove.class, actual.getClass());
+    ChessMove move = (ChessMove) actual;
+    assertEquals(expected.getStartingSquare(), move.getStartingSquare());
+    assertEquals(expected.getEndingSquare(), move.getEndingSquare());
+    assertEquals(expected.getPlayer(), move.getPlayer());
+    assertEquals(expected.isEnPassant(), move.isEnPassant());
+    assertEquals(expected.isShortCastling(), move.isShortCastling());
+    assertEquals(expected.isLongCastling(), move.isLongCastling());
+    assertEquals(expected.getCapturedPiece(), move.getCapturedPiece());
+    assertEquals(expected.getDoublePawnPushFile(), move.getDoublePawnPushFile());
+    assertEquals(expected.getPromotionTarget(), move.getPromotionTarget());
+    assertEquals(expected.getStringRepresentation(), move.getStringRepresentation());
+  }
+
+  /** Creates a chess move with the specified properties, between squares given by name. */
+  private static ChessMove move(
+      String from,
+      String to,
+      Player player,
+      boolean isEnPassant,
+      boolean isShortCastling,
+      boolean isLongCastling,
+      ChessPiece capturedPiece,
+      int doublePawnPushFile,
+      ChessPiece promotionTarget,
+      String san) {
+    return new ChessMove(
+        Square.parseSquare(from),
+        Square.parseSquare(to),
+        player,
+        isEnPassant,
+        isShortCastling,
+        isLongCastling,
+        capturedPiece,
+        doublePawnPushFile,
+        promotionTarget,
+        san);
+  }
+}
@@ -0,0 +1,190 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * <p>The chess framework library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * <p>The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import free.chess.pgn.SANResolver;
+import java.util.Random;
+import java.util.Vector;
+import org.junit.Test;
+
+/**
+ * Checks that {@link PositionSnapshot}s convert back to the positions they were taken of, and that
+ * {@link PositionHistory} returns the right positions as moves are made and taken back.
+ */
+public class PositionSnapshotTest {
+
+  /** Checks that a snapshot is of the position it was taken of, and the FEN it was set from. */
+  @Test
+  public void snapshotOfFEN() {
+    String fen = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R b KQkq - 0 1";
+    Position position = new Position();
+    position.setFEN(fen);
+    PositionSnapshot snapshot = position.getSnapshot();
+
+    assertSame(snapshot, position.getSnapshot());
+    assertEquals(fen, snapshot.getFEN());
+    assertEquals(position.getZobristKey(), snapshot.getZobristKey());
+    assertEquals(Player.BLACK_PLAYER, snapshot.getCurrentPlayer());
+    assertEquals(ChessPiece.BLACK_QUEEN, snapshot.getPieceAt(Square.parseSquare("e7")));
+
+    Position copy = snapshot.toPosition();
+    assertTrue(copy.equals(position));
+    assertEquals(position.getZobristKey(), copy.getZobristKey());
+    assertEquals(fen, copy.getFEN());
+    assertSame(snapshot, copy.getSnapshot());
+
+    position.setPieceAt(null, Square.parseSquare("e7"));
+    assertTrue(snapshot != position.getSnapshot());
+    assertNull(position.getSnapshot().getFEN());
+    assertEquals(ChessPiece.BLACK_QUEEN, snapshot.getPieceAt(Square.parseSquare("e7")));
+  }
+
+  /** Checks that snapshots of the same position reached by different moves are equal. */
+  @Test
+  public void snapshotsOfTranspositionsAreEqual() {
+    Position first = new Position();
+    first.makeMove(move(first, "g1", "f3"));
+    first.makeMove(move(first, "g8", "f6"));
+    first.makeMove(move(first, "b1", "c3"));
+
+    Position second = new Position();
+    second.makeMove(move(second, "b1", "c3"));
+    second.makeMove(move(second, "g8", "f6"));
+    second.makeMove(move(second, "g1", "f3"));
+
+    assertEquals(first.getSnapshot(), second.getSnapshot());
+    assertEquals(first.getSnapshot().hashCode(), second.getSnapshot().hashCode());
+    assertTrue(!first.getSnapshot().equals(new Position().getSnapshot()));
+  }
+
+  /**
+   * Checks that the snapshots taken after each move of random games still convert back to the
+   * positions they were taken of after the game goes on, although they share ranks with each other.
+   */
+  @Test
+  public void snapshotsOfRandomGames() {
+    Random random = new Random(18);
+    for (int game = 0; game < 50; game++) {
+      Position position = new Position();
+      Vector snapshots = new Vector();
+      Vector copies = new Vector();
+      playRandomMoves(position, random, 150, snapshots, copies);
+
+      for (int ply = 0; ply < snapshots.size(); ply++) {
+        PositionSnapshot snapshot = (PositionSnapshot) snapshots.elementAt(ply);
+        Position copy = (Position) copies.elementAt(ply);
+        Position restored = snapshot.toPosition();
+        assertTrue("Ply " + ply, restored.equals(copy));
+        assertEquals(copy.getZobristKey(), snapshot.getZobristKey());
+        assertEquals(copy.getZobristKey(), restored.getZobristKey());
+        assertEquals(copy.getSnapshot(), snapshot);
+      }
+    }
+  }
+
+  /**
+   * Checks a history kept as random games are played, with moves taken back the way the board does
+   * it: truncating the history and copying the position from its last snapshot.
+   */
+  @Test
+  public void historyTruncatedOnTakeback() {
+    Random random = new Random(19);
+    for (int game = 0; game < 50; game++) {
+      Position position = new Position();
+      PositionHistory history = new PositionHistory();
+      Vector copies = new Vector();
+      history.add(position);
+      copies.addElement(new Position(position));
+
+      for (int i = 0; i < 20; i++) {
+        Vector snapshots = new Vector();
+        playRandomMoves(position, random, random.nextInt(20), snapshots, copies);
+        for (int j = 0; j < snapshots.size(); j++)
+          history.add((PositionSnapshot) snapshots.elementAt(j));
+        assertEquals(copies.size(), history.size());
+
+        int takebackCount = random.nextInt(history.size());
+        if (takebackCount == 1) history.removeLast();
+        else history.truncate(history.size() - takebackCount);
+        copies.setSize(copies.size() - takebackCount);
+        position.copyFrom(history.getLast());
+
+        assertEquals(copies.size(), history.size());
+        for (int ply = 0; ply < history.size(); ply++)
+          assertTrue(history.get(ply).toPosition().equals((Position) copies.elementAt(ply)));
+        assertTrue(position.equals((Position) copies.lastElement()));
+        assertEquals(((Position) copies.lastElement()).getZobristKey(), position.getZobristKey());
+      }
+    }
+  }
+
+  /** Checks that a history refuses plies and sizes it doesn't have. */
+  @Test
+  public void historyBounds() {
+    PositionHistory history = new PositionHistory();
+    assertNull(history.getLast());
+    history.add(new Position());
+    try {
+      history.get(1);
+      fail("Got a ply past the end");
+    } catch (IndexOutOfBoundsException e) {
+    }
+    try {
+      history.truncate(2);
+      fail("Truncated to more than the size");
+    } catch (IllegalArgumentException e) {
+    }
+    history.clear();
+    try {
+      history.removeLast();
+      fail("Removed from an empty history");
+    } catch (IllegalStateException e) {
+    }
+  }
+
+  /**
+   * Plays up to the specified amount of random moves in the specified position, adding a snapshot
+   * and a copy of the position after each move to the specified lists.
+   */
+  private static void playRandomMoves(
+      Position position, Random random, int moveCount, Vector snapshots, Vector copies) {
+    int[] moves = new int[MoveGenerator.MAX_MOVES];
+    MoveGenerator generator = new MoveGenerator();
+    generator.setPosition(position);
+    for (int i = 0; i < moveCount; i++) {
+      int count = generator.generateLegalMoves(moves);
+      if (count == 0) break;
+
+      int move = moves[random.nextInt(count)];
+      position.makeMove(SANResolver.createMove(position, move, null));
+      generator.makeMove(move);
+      snapshots.addElement(position.getSnapshot());
+      copies.addElement(new Position(position));
+    }
+  }
+
+  /** Creates the move between the specified squares in the specified position. */
+  private static Move move(Position position, String from, String to) {
+    return new ChessMove(position, Square.parseSquare(from), Square.parseSquare(to), null, null);
+  }
+}
@@ -0,0 +1,270 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * <p>The chess framework library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * <p>The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import free.chess.pgn.SANResolver;
+import free.chess.variants.atomic.Atomic;
+import free.chess.variants.kriegspiel.Kriegspiel;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Checks that the state <code>Position</code> keeps incrementally, as pieces are put, moved and
+ * copied, is the same as that of a position set up from scratch.
+ */
+public class PositionTest {
+
+  /** The amount of random games to play in each variant. */
+  private static final int GAME_COUNT = 100;
+
+  /** The maximum amount of plies in a random game. */
+  private static final int MAX_PLIES = 200;
+
+  /** Checks the Zobrist key after each move of random chess games. */
+  @Test
+  public void zobristKeyAfterChessMoves() {
+    playRandomGames(Chess.getInstance(), new Random(12));
+  }
+
+  /**
+   * Checks the Zobrist key after each move of random atomic games, where captures remove pieces
+   * other than the captured one.
+   */
+  @Test
+  public void zobristKeyAfterAtomicMoves() {
+    playRandomGames(Atomic.getInstance(), new Random(13));
+  }
+
+  /** Checks the Zobrist key after pieces are put, removed and replaced, and the player changed. */
+  @Test
+  public void zobristKeyAfterSetPieceAt() {
+    Random random = new Random(14);
+    Position position = new Position();
+    for (int i = 0; i < 10000; i++) {
+      Square square = Square.getInstance(random.nextInt(8), random.nextInt(8));
+      switch (random.nextInt(3)) {
+        case 0:
+          position.setPieceAt(null, square);
+          break;
+        case 1:
+          position.setPieceAt(
+              MoveGenerator.getPiece(
+                  random.nextBoolean() ? Piece.WHITE : Piece.BLACK, 1 + random.nextInt(6)),
+              square);
+          break;
+        default:
+          position.setCurrentPlayer(position.getCurrentPlayer().getOpponent());
+          break;
+      }
+      assertKeyOfFreshPosition(position);
+    }
+
+    position.clear();
+    assertKeyOfFreshPosition(position);
+  }
+
+  /** Checks the Zobrist key after copying positions. */
+  @Test
+  public void zobristKeyAfterCopyFrom() {
+    Position position = new Position();
+    position.setFEN("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R b KQkq - 0 1");
+
+    Position copy = new Position();
+    copy.copyFrom(position);
+    assertEquals(position.getZobristKey(), copy.getZobristKey());
+    assertKeyOfFreshPosition(copy);
+
+    copy.copyFrom(position.getSnapshot());
+    assertKeyOfFreshPosition(copy);
+
+    assertEquals(position.getZobristKey(), new Position(position).getZobristKey());
+  }
+
+  /**
+   * Checks the piece masks of a position of a variant which keeps them, after each move of random
+   * chess games.
+   */
+  @Test
+  public void masksAfterChessMoves() {
+    playRandomGamesCheckingMasks(Chess.getInstance(), new Random(15));
+  }
+
+  /**
+   * Checks the masks of a position of a variant which doesn't keep piece masks, and so computes
+   * them from the board, after each move of random chess games.
+   */
+  @Test
+  public void masksOfPlainVariant() {
+    playRandomGamesCheckingMasks(Kriegspiel.getInstance(), new Random(16));
+  }
+
+  /**
+   * Checks the masks of a position of a variant which keeps piece masks while it holds pieces of
+   * classes other than <code>ChessPiece</code>, for which it computes them from the board.
+   */
+  @Test
+  public void masksWithForeignPieces() {
+    Random random = new Random(17);
+    Position position = new Position();
+    Piece foreignQueen = new ChessPiece(Piece.WHITE, ChessPiece.QUEEN) {};
+    Piece foreignPawn = new ChessPiece(Piece.BLACK, ChessPiece.PAWN) {};
+    for (int i = 0; i < 5000; i++) {
+      Square square = Square.getInstance(random.nextInt(8), random.nextInt(8));
+      switch (random.nextInt(4)) {
+        case 0:
+          position.setPieceAt(null, square);
+          break;
+        case 1:
+          position.setPieceAt(random.nextBoolean() ? foreignQueen : foreignPawn, square);
+          break;
+        default:
+          position.setPieceAt(
+              MoveGenerator.getPiece(
+                  random.nextBoolean() ? Piece.WHITE : Piece.BLACK, 1 + random.nextInt(6)),
+              square);
+          break;
+      }
+      assertMasks(position);
+      assertEquals(
+          position.hasPieceMasks(),
+          position.getPieceMask(foreignQueen) == 0 && position.getPieceMask(foreignPawn) == 0);
+    }
+  }
+
+  /**
+   * Plays random games of the specified variant, which must have a move generator, checking the
+   * Zobrist key after each move.
+   */
+  private static void playRandomGames(ChesslikeGenericVariant variant, Random random) {
+    int[] moves = new int[MoveGenerator.MAX_MOVES];
+    for (int game = 0; game < GAME_COUNT; game++) {
+      Position position = new Position(variant);
+      MoveGenerator generator = variant.createMoveGenerator();
+      generator.setPosition(position);
+      for (int ply = 0; ply < MAX_PLIES; ply++) {
+        int count = generator.generateLegalMoves(moves);
+        if (count == 0) break;
+
+        int move = moves[random.nextInt(count)];
+        position.makeMove(SANResolver.createMove(position, move, null));
+        generator.makeMove(move);
+        assertKeyOfFreshPosition(position);
+      }
+    }
+  }
+
+  /**
+   * Plays random chess games on a position of the specified variant, checking its masks after each
+   * move. The moves are generated, and created, on a chess position kept alongside.
+   */
+  private static void playRandomGamesCheckingMasks(WildVariant variant, Random random) {
+    int[] moves = new int[MoveGenerator.MAX_MOVES];
+    for (int game = 0; game < GAME_COUNT; game++) {
+      Position position = new Position(variant);
+      Position chessPosition = new Position();
+      MoveGenerator generator = new MoveGenerator();
+      generator.setPosition(chessPosition);
+      assertEquals(variant instanceof BitboardVariant, position.hasPieceMasks());
+      assertMasks(position);
+      for (int ply = 0; ply < MAX_PLIES; ply++) {
+        int count = generator.generateLegalMoves(moves);
+        if (count == 0) break;
+
+        int move = moves[random.nextInt(count)];
+        Move chessMove = SANResolver.createMove(chessPosition, move, null);
+        chessPosition.makeMove(chessMove);
+        position.makeMove(chessMove);
+        generator.makeMove(move);
+        assertMasks(position);
+      }
+    }
+  }
+
+  /**
+   * Asserts that the occupied, color and piece masks of the specified position agree with the
+   * pieces on its board.
+   */
+  private static void assertMasks(Position position) {
+    long occupied = 0;
+    long white = 0;
+    long black = 0;
+    for (int index = 0; index < 64; index++) {
+      Piece piece = position.getPieceAt(Square.getInstance(index));
+      if (piece == null) continue;
+
+      occupied |= 1L << index;
+      if (piece.isWhite()) white |= 1L << index;
+      else black |= 1L << index;
+      assertTrue((position.getPieceMask(piece) & (1L << index)) != 0);
+    }
+    assertEquals(occupied, position.getOccupiedMask());
+    assertEquals(white, position.getColorMask(Piece.WHITE));
+    assertEquals(black, position.getColorMask(Piece.BLACK));
+    assertEquals(white, position.getPlayerMask(Player.WHITE_PLAYER));
+    assertEquals(black, position.getPlayerMask(Player.BLACK_PLAYER));
+
+    for (int color = 0; color < 2; color++) {
+      int pieceColor = color == 0 ? Piece.WHITE : Piece.BLACK;
+      for (int type = ChessPiece.PAWN; type <= ChessPiece.KING; type++) {
+        Piece piece = MoveGenerator.getPiece(pieceColor, type);
+        long mask = 0;
+        for (int index = 0; index < 64; index++)
+          if (piece.equals(position.getPieceAt(Square.getInstance(index)))) mask |= 1L << index;
+
+        assertEquals(piece.toString(), mask, position.getPieceMask(piece));
+        assertEquals(piece.toString(), mask, position.getPieceMask(pieceColor, type));
+      }
+    }
+  }
+
+  /**
+   * Asserts that the Zobrist key of the specified position is that of a new position set to it with
+   * {@link Position#setFEN(String)}.
+   */
+  private static void assertKeyOfFreshPosition(Position position) {
+    Position fresh = new Position(position.getVariant());
+    fresh.setFEN(getFEN(position));
+    assertEquals(getFEN(position), fresh.getZobristKey(), position.getZobristKey());
+    assertTrue(fresh.equals(position));
+  }
+
+  /** Returns a FEN of the pieces on the board and the player to move of the specified position. */
+  private static String getFEN(Position position) {
+    StringBuffer buf = new StringBuffer();
+    for (int rank = 7; rank >= 0; rank--) {
+      int emptyCount = 0;
+      for (int file = 0; file < 8; file++) {
+        Piece piece = position.getPieceAt(file, rank);
+        if (piece == null) emptyCount++;
+        else {
+          if (emptyCount > 0) buf.append(emptyCount);
+          emptyCount = 0;
+          buf.append(piece.toShortColorString());
+        }
+      }
+      if (emptyCount > 0) buf.append(emptyCount);
+      if (rank > 0) buf.append('/');
+    }
+
+    buf.append(position.getCurrentPlayer().isWhite() ? " w" : " b");
+    buf.append(" - - 0 1");
+    return buf.toString();
+  }
+}
@@ -0,0 +1,120 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * <p>The chess framework library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * <p>The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.Vector;
+import org.junit.Test;
+
+/**
+ * Checks the counts and first plies kept by {@link RepetitionTable} against a plain list of the
+ * added keys, as keys are added, removed and truncated.
+ */
+public class RepetitionTableTest {
+
+  /** Checks a short game with a threefold repetition, and taking it back. */
+  @Test
+  public void threefoldRepetition() {
+    RepetitionTable table = new RepetitionTable();
+    long[] keys = {1, 2, 3, 4, 1, 2, 3, 4, 1};
+    for (int i = 0; i < keys.length; i++) table.add(keys[i]);
+
+    assertEquals(3, table.getLastPositionCount());
+    assertTrue(table.isThreefoldRepetition());
+    assertEquals(0, table.indexOf(1));
+    assertEquals(3, table.indexOf(4));
+    assertEquals(-1, table.indexOf(5));
+
+    table.truncate(8);
+    assertFalse(table.isThreefoldRepetition());
+    assertEquals(2, table.getCount(1));
+    assertEquals(2, table.getLastPositionCount());
+
+    table.truncate(0);
+    assertEquals(0, table.size());
+    assertEquals(0, table.getLastPositionCount());
+    assertEquals(-1, table.indexOf(1));
+  }
+
+  /**
+   * Checks random sequences of operations on keys which mostly share their home slot, so that keys
+   * are found by probing and deleting them has to move the keys following them back.
+   */
+  @Test
+  public void randomOperationsWithCollidingKeys() {
+    checkRandomOperations(new Random(21), 128);
+  }
+
+  /** Checks random sequences of operations on keys spread over the table, growing it. */
+  @Test
+  public void randomOperationsWithSpreadKeys() {
+    checkRandomOperations(new Random(22), 1);
+  }
+
+  /**
+   * Performs random operations on a table of keys which are multiples of the specified stride,
+   * checking the table against a list of the added keys after each of them.
+   */
+  private static void checkRandomOperations(Random random, long stride) {
+    RepetitionTable table = new RepetitionTable();
+    Vector added = new Vector();
+    for (int i = 0; i < 20000; i++) {
+      int operation = random.nextInt(10);
+      if ((operation < 6) || added.isEmpty()) {
+        long key = random.nextInt(300) * stride;
+        added.addElement(Long.valueOf(key));
+        assertEquals(count(added, key), table.add(key));
+      } else if (operation < 8) {
+        added.removeElementAt(added.size() - 1);
+        table.removeLast();
+      } else if (operation < 9) {
+        int newSize = random.nextInt(added.size() + 1);
+        added.setSize(newSize);
+        table.truncate(newSize);
+      } else if (random.nextInt(20) == 0) {
+        added.removeAllElements();
+        table.clear();
+      }
+
+      assertEquals(added.size(), table.size());
+      for (int j = 0; j < 5; j++) {
+        long key = random.nextInt(300) * stride;
+        assertEquals(count(added, key), table.getCount(key));
+        assertEquals(added.indexOf(Long.valueOf(key)), table.indexOf(key));
+      }
+      if (!added.isEmpty()) {
+        int ply = random.nextInt(added.size());
+        assertEquals(((Long) added.elementAt(ply)).longValue(), table.getKey(ply));
+        long last = ((Long) added.lastElement()).longValue();
+        assertEquals(count(added, last), table.getLastPositionCount());
+      }
+    }
+  }
+
+  /** Returns the amount of times the specified key occurs in the specified list. */
+  private static int count(Vector keys, long key) {
+    int count = 0;
+    for (int i = 0; i < keys.size(); i++)
+      if (((Long) keys.elementAt(i)).longValue() == key) count++;
+
+    return count;
+  }
+}
@@ -0,0 +1,331 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * <p>The chess framework library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * <p>The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess.pgn;
+
+import static org.junit.Assert.assertEquals;
+
+import free.chess.Chess;
+import free.chess.Move;
+import free.chess.MoveGenerator;
+import free.chess.Position;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Vector;
+import org.junit.Test;
+
+/**
+ * Checks that games written by {@link PGNWriter} are read back intact by {@link PGNReader}, that
+ * {@link SANResolver} resolves the SAN it produces to the same moves, and that the moves it creates
+ * with {@link SANResolver#createMove(Position, int, String)} have the same effect on a <code>
+ * Position</code> as on the generator.
+ */
+public class PGNRoundTripTest {
+
+  /** The amount of random games to write and read back. */
+  private static final int GAME_COUNT = 300;
+
+  /** The maximum amount of plies in a random game. */
+  private static final int MAX_PLIES = 150;
+
+  /**
+   * The initial positions of the random games, covering castling both ways, en passant, promotions
+   * and disambiguation.
+   */
+  private static final String[] FENS = {
+    Chess.INITIAL_POSITION_FEN,
+    "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+    "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+    "rnbqkbnr/pp1ppppp/8/2pP4/8/8/PPP1PPPP/RNBQKBNR w KQkq c6 0 2",
+    "1k6/8/8/8/8/8/8/N3N1NK w - - 0 1",
+    "4k3/1P4P1/8/8/8/8/1p4p1/4K3 b - - 0 1"
+  };
+
+  /** The game results. */
+  private static final String[] RESULTS = {"1-0", "0-1", "1/2-1/2", "*"};
+
+  /** Tag values which need escaping, or are otherwise tricky. */
+  private static final String[] TAG_VALUES = {
+    "Player \"1\"",
+    "Back\\slash",
+    "",
+    "[Bracketed]",
+    "Semi; colon {brace}",
+    "\u00dcn\u00efc\u00f6d\u00e9"
+  };
+
+  /** The move buffer. */
+  private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+
+  /** The resolver. */
+  private final SANResolver resolver = new SANResolver();
+
+  /**
+   * Writes random games, with tags, comments, NAGs and nested variations, and checks that reading
+   * them back yields the same elements, and that resolving the main line moves yields the same
+   * moves.
+   */
+  @Test
+  public void randomGames() throws IOException {
+    Random random = new Random(19);
+    ByteArrayOutputStream buf = new ByteArrayOutputStream();
+    PGNWriter writer = new PGNWriter(buf);
+    Vector expected = new Vector();
+    Vector gameMoves = new Vector();
+
+    for (int game = 0; game < GAME_COUNT; game++) {
+      String fen = FENS[game % FENS.length];
+      writeTag(writer, expected, "Event", "Game " + game);
+      writeTag(writer, expected, "White", TAG_VALUES[random.nextInt(TAG_VALUES.length)]);
+      writeTag(writer, expected, "Black", TAG_VALUES[random.nextInt(TAG_VALUES.length)]);
+      if (!Chess.INITIAL_POSITION_FEN.equals(fen)) {
+        writeTag(writer, expected, "SetUp", "1");
+        writeTag(writer, expected, "FEN", fen);
+      }
+
+      MoveGenerator generator = new MoveGenerator();
+      generator.setFEN(fen);
+      int firstPly = generator.isWhiteToMove() ? 0 : 1;
+      int[] played =
+          writeMoves(writer, expected, generator, random, 0, firstPly, random.nextInt(MAX_PLIES));
+      gameMoves.addElement(played);
+
+      String result = RESULTS[random.nextInt(RESULTS.length)];
+      writer.endGame(result);
+      expected.addElement("end " + result);
+    }
+    writer.flush();
+
+    Vector actual = new Vector();
+    Vector readMoves = new Vector();
+    PGNReader reader = new PGNReader(new ByteArrayInputStream(buf.toByteArray()));
+    MoveGenerator generator = new MoveGenerator();
+    generator.setFEN(Chess.INITIAL_POSITION_FEN);
+    Vector gamePlies = new Vector();
+    int type;
+    while ((type = reader.next()) != PGNReader.END) {
+      actual.addElement(describe(reader));
+      if ((type == PGNReader.TAG) && "FEN".equals(reader.getTagName()))
+        generator.setFEN(reader.getTagValue());
+      else if ((type == PGNReader.MOVE) && (reader.getVariationDepth() == 0)) {
+        int move = resolver.resolve(generator, reader.getTextSequence());
+        gamePlies.addElement(Integer.valueOf(move));
+        generator.makeMove(move);
+      } else if (type == PGNReader.GAME_END) {
+        readMoves.addElement(toArray(gamePlies));
+        gamePlies.removeAllElements();
+        generator.setFEN(Chess.INITIAL_POSITION_FEN);
+      }
+    }
+
+    assertEquals(expected, actual);
+    assertEquals(gameMoves.size(), readMoves.size());
+    for (int i = 0; i < gameMoves.size(); i++)
+      assertEquals(
+          "Game " + i,
+          Arrays.toString((int[]) gameMoves.elementAt(i)),
+          Arrays.toString((int[]) readMoves.elementAt(i)));
+  }
+
+  /**
+   * Checks that every legal move, in positions reached by random play from the test positions,
+   * resolves back from its SAN, and that the <code>Move</code> created for it changes a <code>
+   * Position</code> the same way it changes the generator.
+   */
+  @Test
+  public void sanOfEveryMove() {
+    Random random = new Random(190);
+    for (int i = 0; i < FENS.length; i++) {
+      for (int game = 0; game < 20; game++) {
+        MoveGenerator generator = new MoveGenerator();
+        generator.setFEN(FENS[i]);
+        Position position = new Position();
+        position.setFEN(FENS[i]);
+
+        for (int ply = 0; ply < 80; ply++) {
+          int count = generator.generateLegalMoves(moves);
+          if (count == 0) break;
+
+          int[] legalMoves = new int[count];
+          System.arraycopy(moves, 0, legalMoves, 0, count);
+          for (int j = 0; j < count; j++) {
+            String san = resolver.toSAN(generator, legalMoves[j]);
+            assertEquals(san, legalMoves[j], resolver.resolve(generator, san));
+          }
+
+          int move = legalMoves[random.nextInt(count)];
+          String san = resolver.toSAN(generator, move);
+          Move created = SANResolver.createMove(position, move, san);
+          generator.makeMove(move);
+          position.makeMove(created);
+          assertSamePosition(san, generator, position);
+        }
+      }
+    }
+  }
+
+  /** Checks reading PGN in forms <code>PGNWriter</code> doesn't produce. */
+  @Test
+  public void handWrittenGame() throws IOException {
+    String pgn =
+        "% An escaped line\n"
+            + "[Event \"Casual \\\"game\\\"\"]\n"
+            + "[Result \"1-0\"]\n"
+            + "\n"
+            + "1.e4 e5 2. Nf3 ; A rest of line comment\n"
+            + "2... Nc6 3.Bb5!? a6 $2 (3...Nf6 4.O-O (4.d3) {Berlin}) 4.Ba4 1-0\n"
+            + "1. d4 *\n";
+    String[] expected = {
+      "tag Event=Casual \"game\"",
+      "tag Result=1-0",
+      "move 0 e4",
+      "move 0 e5",
+      "move 0 Nf3",
+      "comment  A rest of line comment",
+      "move 0 Nc6",
+      "move 0 Bb5",
+      "nag 5",
+      "move 0 a6",
+      "nag 2",
+      "(",
+      "move 1 Nf6",
+      "move 1 O-O",
+      "(",
+      "move 2 d3",
+      ")",
+      "comment Berlin",
+      ")",
+      "move 0 Ba4",
+      "end 1-0",
+      "move 0 d4",
+      "end *"
+    };
+
+    PGNReader reader =
+        new PGNReader(new ByteArrayInputStream(pgn.getBytes(StandardCharsets.UTF_8)));
+    Vector actual = new Vector();
+    while (reader.next() != PGNReader.END) actual.addElement(describe(reader));
+
+    assertEquals(Arrays.asList(expected), actual);
+  }
+
+  /**
+   * Writes random moves from the current position of the specified generator, at the specified
+   * variation depth, with the occasional comment, NAG or variation, noting the elements written.
+   * The first move is the specified ply of the game, 0 being white's first move. Returns the moves
+   * played, leaving the generator in the position it was in.
+   */
+  private int[] writeMoves(
+      PGNWriter writer,
+      Vector expected,
+      MoveGenerator generator,
+      Random random,
+      int depth,
+      int firstPly,
+      int plyCount)
+      throws IOException {
+    int[] played = new int[plyCount];
+    int ply = 0;
+    while (ply < plyCount) {
+      int count = generator.generateLegalMoves(moves);
+      if (count == 0) break;
+
+      int move = moves[random.nextInt(count)];
+      int moveNumber = 1 + (firstPly + ply) / 2;
+      boolean isWhite = generator.isWhiteToMove();
+      String san = resolver.toSAN(generator, move);
+      writer.writeMove(moveNumber, isWhite, san);
+      expected.addElement("move " + depth + " " + san);
+
+      int annotation = random.nextInt(30);
+      if (annotation == 0) {
+        int nag = 1 + random.nextInt(20);
+        writer.writeNag(nag);
+        expected.addElement("nag " + nag);
+      } else if (annotation == 1) {
+        String comment = "Comment } on " + san + " (" + moveNumber + ")";
+        writer.writeComment(comment);
+        expected.addElement("comment " + comment.replace('}', ')'));
+      } else if ((annotation == 2) && (depth < 3)) {
+        // An alternative to the move just written
+        writer.startVariation();
+        expected.addElement("(");
+        writeMoves(
+            writer, expected, generator, random, depth + 1, firstPly + ply, 1 + random.nextInt(6));
+        writer.endVariation();
+        expected.addElement(")");
+      }
+
+      generator.makeMove(move);
+      played[ply++] = move;
+    }
+
+    for (int i = 0; i < ply; i++) generator.unmakeMove();
+    int[] result = new int[ply];
+    System.arraycopy(played, 0, result, 0, ply);
+    return result;
+  }
+
+  /** Writes the specified tag, noting it. */
+  private static void writeTag(PGNWriter writer, Vector expected, String name, String value)
+      throws IOException {
+    writer.writeTag(name, value);
+    expected.addElement("tag " + name + "=" + value);
+  }
+
+  /** Returns a description of the current element of the specified reader. */
+  private static String describe(PGNReader reader) {
+    switch (reader.getType()) {
+      case PGNReader.TAG:
+        return "tag " + reader.getTagName() + "=" + reader.getTagValue();
+      case PGNReader.MOVE:
+        return "move " + reader.getVariationDepth() + " " + reader.getText();
+      case PGNReader.COMMENT:
+        return "comment " + reader.getText();
+      case PGNReader.NAG:
+        return "nag " + reader.getNag();
+      case PGNReader.VARIATION_START:
+        return "(";
+      case PGNReader.VARIATION_END:
+        return ")";
+      case PGNReader.GAME_END:
+        return "end " + reader.getResult();
+      default:
+        throw new IllegalStateException("Unexpected element type: " + reader.getType());
+    }
+  }
+
+  /** Returns the moves in the specified vector of <code>Integer</code>s. */
+  private static int[] toArray(Vector moves) {
+    int[] result = new int[moves.size()];
+    for (int i = 0; i < result.length; i++) result[i] = ((Integer) moves.elementAt(i)).intValue();
+    return result;
+  }
+
+  /** Asserts that the specified generator and position hold the same position. */
+  private static void assertSamePosition(String san, MoveGenerator generator, Position position) {
+    for (int square = 0; square < 64; square++)
+      assertEquals(
+          san + ", square " + square,
+          generator.getPieceAt(square),
+          position.getPieceAt(square & 7, square >> 3));
+    assertEquals(san, generator.isWhiteToMove(), position.getCurrentPlayer().isWhite());
+  }
+}
@@ -0,0 +1,461 @@
+/**
+ * The freechess.org connection library. More information is available at http://www.jinchess.com/.
+ * Copyright (C) 2002, 2003 Alexander Maryanovsky. All rights reserved.
+ *
+ * <p>The freechess.org connection library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * <p>The freechess.org connection library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU Lesser General Public License along with the
+ * freechess.org connection library; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package free.freechess;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.Vector;
+import java.util.regex.Pattern;
+import org.junit.Test;
+
+/**
+ * Checks that {@link FreechessConnection} dispatches lines classified by {@link FicsLineClassifier}
+ * to the same handlers as the original handler chain of <code>FreechessConnection.handleMessage
+ * </code>. The chain tried ~35 handlers in turn, each returning <code>false</code>, without side
+ * effects, unless its guard and regular expression held for the line. The candidates are tried in
+ * the chain order, so lines are dispatched exactly as before if the first candidate whose handler
+ * can act on a line is the first such handler of the chain, and, for handlers declining lines they
+ * could act on, so are the rest of them. Lines starting with a username must also get only the one
+ * candidate which can act on them, rather than every kind of tell.
+ *
+ * <p>The guards and regular expressions below are those of the original handlers. They are checked
+ * against a corpus of server lines, and against random mutations and splices of those lines.
+ */
+public class FicsLineClassifierTest {
+
+  /** The number of mutations of each corpus line to check. */
+  private static final int MUTATIONS_PER_LINE = 2000;
+
+  /** The characters inserted by mutations; mostly those the guards and expressions care about. */
+  private static final String MUTATION_CHARS = "<>{}[]():*-. _0123456789AGSZaegmsz\t'\"#=/";
+
+  /** The number of line kinds. */
+  private static final int KIND_COUNT = FicsLineClassifier.PRIMARY_GAME_CHANGED + 1;
+
+  /** The kinds of lines which start with a username or a word, which are classified exactly. */
+  private static final long USERNAME_AND_WORD_KINDS =
+      (1L << FicsLineClassifier.CHANNEL_TELL)
+          | (1L << FicsLineClassifier.IVAR_STATE_CHANGED)
+          | (1L << FicsLineClassifier.PERSONAL_TELL)
+          | (1L << FicsLineClassifier.SAY_TELL)
+          | (1L << FicsLineClassifier.PTELL)
+          | (1L << FicsLineClassifier.SHOUT)
+          | (1L << FicsLineClassifier.CSHOUT)
+          | (1L << FicsLineClassifier.KIBITZ)
+          | (1L << FicsLineClassifier.WHISPER);
+
+  // The regular expressions of the original handlers
+
+  private static final String USERNAME_REGEX = FreechessConnection.USERNAME_REGEX;
+
+  private static final String TITLES_REGEX = FreechessConnection.TITLES_REGEX;
+
+  private static final Pattern IVAR_SET_REGEX = Pattern.compile("^(\\w+) (un)?set.$");
+
+  private static final Pattern LOGIN_REGEX =
+      Pattern.compile(
+          "^\\*\\*\\*\\* Starting FICS session as ("
+              + USERNAME_REGEX
+              + ")("
+              + TITLES_REGEX
+              + ")? \\*\\*\\*\\*");
+
+  private static final Pattern WRONG_PASSWORD_REGEX =
+      Pattern.compile("^\\*\\*\\*\\* Invalid password! \\*\\*\\*\\*");
+
+  private static final Pattern PERSONAL_TELL_REGEX =
+      Pattern.compile("^(" + USERNAME_REGEX + ")(" + TITLES_REGEX + ")? tells you: (.*)");
+
+  private static final Pattern SAY_REGEX =
+      Pattern.compile("^(" + USERNAME_REGEX + ")(" + TITLES_REGEX + ")?(\\[(\\d+)\\])? says: (.*)");
+
+  private static final Pattern PTELL_REGEX =
+      Pattern.compile(
+          "^(" + USERNAME_REGEX + ")(" + TITLES_REGEX + ")? \\(your partner\\) tells you: (.*)");
+
+  private static final Pattern CHANNEL_TELL_REGEX =
+      Pattern.compile("^(" + USERNAME_REGEX + ")(" + TITLES_REGEX + ")?\\((\\d+)\\): (.*)");
+
+  private static final Pattern KIBITZ_REGEX =
+      Pattern.compile(
+          "^("
+              + USERNAME_REGEX
+              + ")("
+              + TITLES_REGEX
+              + ")?\\( {0,3}([\\-0-9]+)\\)\\[(\\d+)\\] kibitzes: (.*)");
+
+  private static final Pattern WHISPER_REGEX =
+      Pattern.compile(
+          "^("
+              + USERNAME_REGEX
+              + ")("
+              + TITLES_REGEX
+              + ")?\\( {0,3}([\\-0-9]+)\\)\\[(\\d+)\\] whispers: (.*)");
+
+  private static final Pattern QTELL_REGEX = Pattern.compile("^:(.*)");
+
+  private static final Pattern SHOUT_REGEX =
+      Pattern.compile("^(" + USERNAME_REGEX + ")(" + TITLES_REGEX + ")? shouts: (.*)");
+
+  private static final Pattern ISHOUT_REGEX =
+      Pattern.compile("^--> (" + USERNAME_REGEX + ")(" + TITLES_REGEX + ")? ?(.*)");
+
+  private static final Pattern TSHOUT_REGEX =
+      Pattern.compile("^:(" + USERNAME_REGEX + ")(" + TITLES_REGEX + ")? t-shouts: (.*)");
+
+  private static final Pattern CSHOUT_REGEX =
+      Pattern.compile("^(" + USERNAME_REGEX + ")(" + TITLES_REGEX + ")? c-shouts: (.*)");
+
+  private static final Pattern ANNOUNCEMENT_REGEX =
+      Pattern.compile("^    \\*\\*ANNOUNCEMENT\\*\\* from (" + USERNAME_REGEX + "): (.*)");
+
+  private static final Pattern GAME_END_REGEX =
+      Pattern.compile(
+          "^\\{Game (\\d+) \\(("
+              + USERNAME_REGEX
+              + ") vs\\. ("
+              + USERNAME_REGEX
+              + ")\\) ([^\\}]+)\\} (.*)");
+
+  private static final Pattern STOPPED_OBSERVING_REGEX =
+      Pattern.compile("^Removing game (\\d+) from observation list\\.$");
+
+  private static final Pattern STOPPED_EXAMINING_REGEX =
+      Pattern.compile("^You are no longer examining game (\\d+)\\.$");
+
+  private static final Pattern OFFER_REGEX = Pattern.compile("^<p([tf])> (.*)");
+
+  private static final Pattern PLAYER_OFFERED_DRAW_REGEX =
+      Pattern.compile("^Game (\\d+): (" + USERNAME_REGEX + ") offers a draw\\.$");
+
+  private static final Pattern PLAYER_OFFERED_ABORT_REGEX =
+      Pattern.compile("^Game (\\d+): (" + USERNAME_REGEX + ") requests to abort the game\\.$");
+
+  private static final Pattern PLAYER_OFFERED_ADJOURN_REGEX =
+      Pattern.compile("^Game (\\d+): (" + USERNAME_REGEX + ") requests to adjourn the game\\.$");
+
+  private static final Pattern PLAYER_OFFERED_TAKEBACK_REGEX =
+      Pattern.compile(
+          "^Game (\\d+): ("
+              + USERNAME_REGEX
+              + ") requests to take back (\\d+) half move\\(s\\)\\.$");
+
+  private static final Pattern PLAYER_DECLINED_REGEX =
+      Pattern.compile("^Game (\\d+): (" + USERNAME_REGEX + ") declines the (\\w+) request\\.$");
+
+  private static final Pattern PLAYER_WITHDREW_REGEX =
+      Pattern.compile("^Game (\\d+): (" + USERNAME_REGEX + ") withdraws the (\\w+) request\\.$");
+
+  private static final Pattern PLAYER_COUNTER_TAKEBACK_OFFER_REGEX =
+      Pattern.compile(
+          "^Game (\\d+): ("
+              + USERNAME_REGEX
+              + ") proposes a different number \\((\\d+)\\) of half-move\\(s\\) to take back\\.$");
+
+  private static final Pattern AT_BOARD_REGEX =
+      Pattern.compile("^You are now at (" + USERNAME_REGEX + ")'s board \\(game (\\d+)\\)\\.$");
+
+  private static final Pattern PRIMARY_GAME_CHANGED_REGEX =
+      Pattern.compile("^Your primary game is now game (\\d+)\\.$");
+
+  /**
+   * Returns whether the original handler of the specified kind of line could have done anything
+   * with the specified line, that is, whether it got past its guard and regular expression.
+   */
+  private static boolean oldHandlerMayAccept(int kind, String line) {
+    switch (kind) {
+      case FicsLineClassifier.GAME_INFO:
+        return line.startsWith("<g1> ");
+      case FicsLineClassifier.STYLE12:
+        return line.startsWith("<12> ");
+      case FicsLineClassifier.DELTA_BOARD:
+        return line.startsWith("<d1> ");
+      case FicsLineClassifier.SEEKS_CLEARED:
+        return line.equals("<sc>");
+      case FicsLineClassifier.SEEK_ADDED:
+        return line.startsWith("<s> ") || line.startsWith("<sn> ");
+      case FicsLineClassifier.SEEKS_REMOVED:
+        return line.startsWith("<sr> ");
+      case FicsLineClassifier.BUGHOUSE_HOLDINGS:
+        return line.startsWith("<b1> ");
+      case FicsLineClassifier.GAME_END:
+        return line.startsWith("{Game ") && GAME_END_REGEX.matcher(line).matches();
+      case FicsLineClassifier.STOPPED_OBSERVING:
+        return line.startsWith("Removing game ") && STOPPED_OBSERVING_REGEX.matcher(line).matches();
+      case FicsLineClassifier.STOPPED_EXAMINING:
+        return line.startsWith("You are no longer examining game ")
+            && STOPPED_EXAMINING_REGEX.matcher(line).matches();
+      case FicsLineClassifier.ENTERED_BSETUP_MODE:
+        return line.equals("Entering setup mode.");
+      case FicsLineClassifier.EXITED_BSETUP_MODE:
+        return line.equals("Game is validated - entering examine mode.");
+      case FicsLineClassifier.ILLEGAL_MOVE:
+        return line.startsWith("Illegal move ")
+            || line.equals("It is not your move.")
+            || line.equals("The clock is paused, use \"unpause\" to resume.");
+      case FicsLineClassifier.CHANNEL_TELL:
+        return (line.indexOf("): ") != -1) && CHANNEL_TELL_REGEX.matcher(line).matches();
+      case FicsLineClassifier.LOGIN: // The login handler also acts on a wrong password line
+        return LOGIN_REGEX.matcher(line).matches() || WRONG_PASSWORD_REGEX.matcher(line).matches();
+      case FicsLineClassifier.IVAR_STATE_CHANGED:
+        return (line.indexOf("set") != -1) && IVAR_SET_REGEX.matcher(line).matches();
+      case FicsLineClassifier.PERSONAL_TELL:
+        return (line.indexOf("tells you: ") != -1) && PERSONAL_TELL_REGEX.matcher(line).matches();
+      case FicsLineClassifier.SAY_TELL:
+        return (line.indexOf("says: ") != -1) && SAY_REGEX.matcher(line).matches();
+      case FicsLineClassifier.PTELL:
+        return (line.indexOf("(your partner) tells you: ") != -1)
+            && PTELL_REGEX.matcher(line).matches();
+      case FicsLineClassifier.SHOUT:
+        return (line.indexOf("shouts: ") != -1) && SHOUT_REGEX.matcher(line).matches();
+      case FicsLineClassifier.ISHOUT:
+        return line.startsWith("--> ") && ISHOUT_REGEX.matcher(line).matches();
+      case FicsLineClassifier.TSHOUT:
+        return (line.indexOf("t-shouts: ") != -1) && TSHOUT_REGEX.matcher(line).matches();
+      case FicsLineClassifier.CSHOUT:
+        return (line.indexOf("c-shouts: ") != -1) && CSHOUT_REGEX.matcher(line).matches();
+      case FicsLineClassifier.ANNOUNCEMENT:
+        return line.startsWith("    **ANNOUNCEMENT** from ")
+            && ANNOUNCEMENT_REGEX.matcher(line).matches();
+      case FicsLineClassifier.KIBITZ:
+        return (line.indexOf("kibitzes: ") != -1) && KIBITZ_REGEX.matcher(line).matches();
+      case FicsLineClassifier.WHISPER:
+        return (line.indexOf("whispers: ") != -1) && WHISPER_REGEX.matcher(line).matches();
+      case FicsLineClassifier.QTELL:
+        return line.startsWith(":") && QTELL_REGEX.matcher(line).matches();
+      case FicsLineClassifier.OFFER:
+        return (line.startsWith("<pt> ") || line.startsWith("<pf> "))
+            && OFFER_REGEX.matcher(line).matches();
+      case FicsLineClassifier.OFFER_REMOVED:
+        return line.startsWith("<pr> ");
+      case FicsLineClassifier.PLAYER_OFFERED:
+        return line.startsWith("Game ")
+            && (PLAYER_OFFERED_DRAW_REGEX.matcher(line).matches()
+                || PLAYER_OFFERED_ADJOURN_REGEX.matcher(line).matches()
+                || PLAYER_OFFERED_ABORT_REGEX.matcher(line).matches()
+                || PLAYER_OFFERED_TAKEBACK_REGEX.matcher(line).matches());
+      case FicsLineClassifier.PLAYER_DECLINED:
+        return line.startsWith("Game ")
+            && (line.indexOf("declines the ") != -1)
+            && PLAYER_DECLINED_REGEX.matcher(line).matches();
+      case FicsLineClassifier.PLAYER_WITHDREW:
+        return line.startsWith("Game ")
+            && (line.indexOf("withdraws the ") != -1)
+            && PLAYER_WITHDREW_REGEX.matcher(line).matches();
+      case FicsLineClassifier.PLAYER_COUNTERED_TAKEBACK_OFFER:
+        return line.startsWith("Game ")
+            && (line.indexOf("proposes a different number ") != -1)
+            && PLAYER_COUNTER_TAKEBACK_OFFER_REGEX.matcher(line).matches();
+      case FicsLineClassifier.SIMUL_CURRENT_BOARD_CHANGED:
+        return line.startsWith("You are now at ") && AT_BOARD_REGEX.matcher(line).matches();
+      case FicsLineClassifier.PRIMARY_GAME_CHANGED:
+        return line.startsWith("Your primary game is now game ")
+            && PRIMARY_GAME_CHANGED_REGEX.matcher(line).matches();
+      default:
+        throw new IllegalArgumentException("Unknown kind: " + kind);
+    }
+  }
+
+  /** Returns the mask of kinds whose original handlers could have done anything with the line. */
+  private static long oldChainKinds(String line) {
+    long kinds = 0;
+    for (int kind = 0; kind < KIND_COUNT; kind++)
+      if (oldHandlerMayAccept(kind, line)) kinds |= 1L << kind;
+
+    return kinds;
+  }
+
+  /** Reads the corpus of sample server lines. */
+  private static String[] readCorpus() throws IOException {
+    InputStream in = FicsLineClassifierTest.class.getResourceAsStream("fics-lines.txt");
+    if (in == null) fail("Missing fics-lines.txt");
+
+    BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    Vector lines = new Vector();
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) lines.addElement(line);
+    } finally {
+      reader.close();
+    }
+
+    String[] result = new String[lines.size()];
+    lines.copyInto(result);
+    return result;
+  }
+
+  /**
+   * Returns a random mutation of the specified line: a character inserted, removed or replaced, the
+   * line truncated, or a prefix of it joined with a suffix of another line.
+   */
+  private static String mutate(String line, String[] corpus, Random random) {
+    int length = line.length();
+    int index = random.nextInt(length + 1);
+    char c = MUTATION_CHARS.charAt(random.nextInt(MUTATION_CHARS.length()));
+    switch (random.nextInt(5)) {
+      case 0:
+        return line.substring(0, index) + c + line.substring(index);
+      case 1:
+        return index == length ? line : line.substring(0, index) + line.substring(index + 1);
+      case 2:
+        return index == length
+            ? line + c
+            : line.substring(0, index) + c + line.substring(index + 1);
+      case 3:
+        return line.substring(0, index);
+      default:
+        String other = corpus[random.nextInt(corpus.length)];
+        return line.substring(0, index) + other.substring(random.nextInt(other.length() + 1));
+    }
+  }
+
+  /**
+   * Returns the kind of the first handler, in the chain order, of those in the specified mask, or
+   * -1 if the mask is empty.
+   */
+  private static int firstKind(long kinds) {
+    return kinds == 0 ? -1 : Long.numberOfTrailingZeros(kinds);
+  }
+
+  /**
+   * Asserts that the line is dispatched like by the old chain: the first candidate which can act on
+   * it is the handler the old chain dispatched it to, the rest of the old chain's handlers follow
+   * it, and if the line starts with a username or a word, no other handler is a candidate.
+   */
+  private static void assertDispatchedLikeOldChain(String line) {
+    long oldKinds = oldChainKinds(line);
+    long candidates = FicsLineClassifier.classify(line);
+    String description = "\"" + line + "\"";
+
+    assertEquals(description, firstKind(oldKinds), firstKind(candidates & oldKinds));
+    assertEquals(description, oldKinds, candidates & oldKinds);
+    assertEquals(
+        description, oldKinds & USERNAME_AND_WORD_KINDS, candidates & USERNAME_AND_WORD_KINDS);
+  }
+
+  /** Checks the corpus lines themselves. */
+  @Test
+  public void dispatchesCorpusLikeOldChain() throws IOException {
+    String[] corpus = readCorpus();
+    long coveredKinds = 0;
+    for (int i = 0; i < corpus.length; i++) {
+      assertDispatchedLikeOldChain(corpus[i]);
+      coveredKinds |= oldChainKinds(corpus[i]);
+    }
+
+    // Make sure the corpus actually exercises every handler
+    assertEquals("Kinds not covered by the corpus", (1L << KIND_COUNT) - 1, coveredKinds);
+  }
+
+  /** Checks random mutations of the corpus lines, including ones still accepted by a handler. */
+  @Test
+  public void dispatchesMutatedLinesLikeOldChain() throws IOException {
+    String[] corpus = readCorpus();
+    Random random = new Random(0x4649435341L);
+    int acceptedCount = 0;
+    for (int i = 0; i < corpus.length; i++) {
+      String line = corpus[i];
+      for (int j = 0; j < MUTATIONS_PER_LINE; j++) {
+        line = random.nextInt(4) == 0 ? corpus[i] : mutate(line, corpus, random);
+        assertDispatchedLikeOldChain(line);
+        if (oldChainKinds(line) != 0) acceptedCount++;
+      }
+    }
+
+    // Guard against the mutations degenerating into lines no handler looks at
+    assertTrue("Too few mutated lines accepted: " + acceptedCount, acceptedCount > 10000);
+  }
+
+  /** Checks lines at the edges of what the username, titles and ratings may look like. */
+  @Test
+  public void dispatchesEdgeCasesLikeOldChain() {
+    String[] lines = {
+      "abcdefghijklmnopq tells you: 17 letters",
+      "abcdefghijklmnopqr tells you: 18 letters",
+      "ab tells you: 2 letters",
+      "abc[12] says: hi",
+      "abc[[12] says: hi",
+      "ab[12] says: hi",
+      "abcdefghijklmnopq[12] says: hi",
+      "abcdefghijklmnopqr[12] says: hi",
+      "abc[ says: hi",
+      "abc(   1500)[12] kibitzes: 3 spaces",
+      "abc(    1500)[12] kibitzes: 4 spaces",
+      "abc( 1500): hi",
+      "abc(-5): hi",
+      "abc( -5)[1] whispers: hi",
+      "abc()[1] says: hi",
+      "abc()(5): hi",
+      "abc(GM)(CA)(5): hi",
+      "abc(GM(5): hi",
+      "abc(5)(6): hi",
+      "abc(GM) (your partner) tells you: hi",
+      "abc(GM)tells you: hi",
+      "a_b set.",
+      "a-b set.",
+      "ab unset!",
+      "ab  set."
+    };
+    for (int i = 0; i < lines.length; i++) assertDispatchedLikeOldChain(lines[i]);
+  }
+
+  /** Checks that lines no handler could accept are not given to any handler. */
+  @Test
+  public void plainLinesHaveNoCandidates() {
+    assertEquals(0, FicsLineClassifier.classify(""));
+    assertEquals(0, FicsLineClassifier.classify("<12>"));
+    assertEquals(0, FicsLineClassifier.classify("    1 game displayed."));
+    assertEquals(0, FicsLineClassifier.classify("(told Snaps)"));
+    assertEquals(0, FicsLineClassifier.classify("Snaps has arrived."));
+    assertEquals(
+        0, FicsLineClassifier.classify("Challenge: Snaps (1500) Bot (1600) rated blitz 5 0."));
+  }
+
+  /** Checks that each kind of tell is told apart by the text following the username. */
+  @Test
+  public void usernameLinesHaveOneCandidate() {
+    assertEquals(
+        1L << FicsLineClassifier.PERSONAL_TELL,
+        FicsLineClassifier.classify("Snaps(*)(TD) tells you: hi"));
+    assertEquals(
+        1L << FicsLineClassifier.PTELL,
+        FicsLineClassifier.classify("Snaps (your partner) tells you: go"));
+    assertEquals(
+        1L << FicsLineClassifier.SAY_TELL, FicsLineClassifier.classify("Snaps[12] says: gg"));
+    assertEquals(
+        1L << FicsLineClassifier.CHANNEL_TELL, FicsLineClassifier.classify("Snaps(GM)(50): hi"));
+    assertEquals(
+        1L << FicsLineClassifier.KIBITZ,
+        FicsLineClassifier.classify("Snaps( 1500)[12] kibitzes: nice"));
+    assertEquals(
+        1L << FicsLineClassifier.WHISPER,
+        FicsLineClassifier.classify("Snaps(----)[12] whispers: nice"));
+    assertEquals(1L << FicsLineClassifier.SHOUT, FicsLineClassifier.classify("Snaps shouts: hi"));
+    assertEquals(
+        1L << FicsLineClassifier.CSHOUT, FicsLineClassifier.classify("Snaps c-shouts: hi"));
+    assertEquals(
+        1L << FicsLineClassifier.IVAR_STATE_CHANGED, FicsLineClassifier.classify("ms unset."));
+  }
+}
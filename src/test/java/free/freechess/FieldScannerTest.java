@@ -0,0 +1,604 @@
+/**
+ * The freechess.org connection library. More information is available at http://www.jinchess.com/.
+ * Copyright (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * <p>The freechess.org connection library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * <p>The freechess.org connection library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU Lesser General Public License along with the
+ * freechess.org connection library; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package free.freechess;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Vector;
+import org.junit.Test;
+
+/**
+ * Checks the fields of the structs parsed with {@link FieldScanner} from sample server lines, those
+ * of <code>fics-lines.txt</code> and others covering castling, empty boards, provisional ratings
+ * and the like, and that malformed and fuzzed versions of the lines are rejected the way the
+ * original, <code>StringTokenizer</code> based parsers rejected them.
+ */
+public class FieldScannerTest {
+
+  /** The amount of fuzzed versions of each sample line to check. */
+  private static final int MUTATION_COUNT = 5000;
+
+  /** The style12 lines of <code>fics-lines.txt</code>, sent with the "ms" ivar off. */
+  private static final String[] STYLE12_SECONDS_LINES = {
+    "<12> rnbqkbnr pppppppp -------- -------- -------- -------- PPPPPPPP RNBQKBNR W -1 1 1 1 1 0 7"
+        + " Snaps Strakh 1 3 0 39 39 180 180 1 none (0:00) none 0 0 0",
+    "<12> rnbqkbnr pppppppp -------- -------- ----P--- -------- PPPP-PPP RNBQKBNR B 4 1 1 1 1 0 7"
+        + " Snaps Strakh -1 3 0 39 39 180 180 1 P/e2-e4 (0:00) e4 0 0 0"
+  };
+
+  /** Sample style12 lines, with times in milliseconds. */
+  private static final String[] STYLE12_LINES = {
+    "<12> rnbqkbnr pppppppp -------- -------- -------- -------- PPPPPPPP RNBQKBNR W -1 1 1 1 1 0 7"
+        + " Snaps Strakh 1 3 0 39 39 180000 180000 1 none (0:00.000) none 0 0 0",
+    "<12> rnbqkbnr pppppppp -------- -------- ----P--- -------- PPPP-PPP RNBQKBNR B 4 1 1 1 1 0 7"
+        + " Snaps Strakh -1 3 0 39 39 180000 178000 1 P/e2-e4 (0:02.000) e4 0 1 0",
+    "<12> r---k--r -------- -------- -------- -------- -------- -------- R---K--R W -1 0 1 1 0 12"
+        + " 105 GuestABCD Bot 2 0 0 10 10 0 0 40 o-o-o (1:02.345) O-O-O 1 0 123",
+    "<12> -------- -------- -------- -------- -------- -------- -------- -------- W -1 0 0 0 0 0 0"
+        + " a b -3 0 0 0 0 -5000 10 1 none (0:00.000) none 0 0 0"
+  };
+
+  /** Sample gameinfo lines; the first is that of <code>fics-lines.txt</code>. */
+  private static final String[] GAME_INFO_LINES = {
+    "<g1> 1 p=0 t=blitz r=1 u=1,1 it=5,5 i=8,8 pt=0 rt=1586E,2100 ts=1,0",
+    "<g1> 132 p=1 t=crazyhouse r=0 u=0,1 it=180,180 i=0,0 pt=131 rt=0,1500P ts=0,1",
+    "<g1> 5 p=0 t=untimed r=0 u=1,0 it=0,0 i=0,0 pt=0 rt=1200 ,1300  ts=1,1"
+  };
+
+  /** Sample seekinfo lines; the first two are those of <code>fics-lines.txt</code>. */
+  private static final String[] SEEK_INFO_LINES = {
+    "<s> 29 w=Snaps ti=02 rt=1532  t=1 i=0 r=r tp=lightning c=? rr=0-9999 a=t f=t",
+    "<sn> 30 w=Strakh ti=00 rt=1700E t=5 i=0 r=u tp=blitz c=W rr=0-9999 a=f f=f",
+    "<s> 8 w=Bot ti=06 rt=2100E t=15 i=5 r=u tp=standard c=W rr=1500-2500 a=f f=f",
+    "<s> 101 w=GuestXYZZ ti=01 rt=0P t=0 i=0 r=u tp=untimed c=B rr=0-9999 a=t f=f"
+  };
+
+  /** Sample delta board lines; the first is that of <code>fics-lines.txt</code>. */
+  private static final String[] DELTA_BOARD_LINES = {
+    "<d1> 7 2 e4 P/e2-e4 178000 0", "<d1> 105 41 O-O-O o-o-o 2345 -100", "<d1> 1 1 Nf3 g1f3 0 5"
+  };
+
+  /** Malformed style12 lines. */
+  private static final String[] BAD_STYLE12_LINES = {
+    "",
+    "<13> rnbqkbnr pppppppp -------- -------- -------- -------- PPPPPPPP RNBQKBNR W -1 1 1 1 1 0 7"
+        + " Snaps Strakh 1 3 0 39 39 180000 180000 1 none (0:00.000) none 0 0 0",
+    "<12> rnbqkbnr pppppppp -------- -------- -------- PPPPPPPP RNBQKBNR W -1 1 1 1 1 0 7"
+        + " Snaps Strakh 1 3 0 39 39 180000 180000 1 none (0:00.000) none 0 0 0",
+    "<12> rnbqkbnr pppppppp -------- -------- -------- -------- PPPPPPPP RNBQKBNR X -1 1 1 1 1 0 7"
+        + " Snaps Strakh 1 3 0 39 39 180000 180000 1 none (0:00.000) none 0 0 0",
+    "<12> rnbqkbnr pppppppp -------- -------- -------- -------- PPPPPPPP RNBQKBNR W -1 1 2 1 1 0 7"
+        + " Snaps Strakh 1 3 0 39 39 180000 180000 1 none (0:00.000) none 0 0 0",
+    "<12> rnbqkbnr pppppppp -------- -------- -------- -------- PPPPPPPP RNBQKBNR W -1 1 1 1 1 0 x"
+        + " Snaps Strakh 1 3 0 39 39 180000 180000 1 none (0:00.000) none 0 0 0",
+    "<12> rnbqkbnr pppppppp -------- -------- -------- -------- PPPPPPPP RNBQKBNR W -1 1 1 1 1 0 7"
+        + " Snaps Strakh",
+    "<12> rnbqkbnr pppppppp -------- -------- -------- -------- PPPPPPPP RNBQKBNR W -1 1 1 1 1 0 7"
+        + " Snaps Strakh 1 3 0 39 - 180000 180000 1 none (0:00.000) none 0 0 0",
+    "<12> rnbqkbnr pppppppp -------- -------- -------- -------- PPPPPPPP RNBQKBNR W -1 1 1 1 1 0 7"
+        + " Snaps Strakh 1 3 0 39 39 180000 180000 1 none 0:00.000 none 0 0 0"
+  };
+
+  /** Malformed gameinfo lines. */
+  private static final String[] BAD_GAME_INFO_LINES = {
+    "<g2> 1 p=0 t=blitz r=1 u=1,1 it=5,5 i=8,8 pt=0 rt=1586E,2100 ts=1,0",
+    "<g1> 1 p=x t=blitz r=1 u=1,1 it=5,5 i=8,8 pt=0 rt=1586E,2100 ts=1,0",
+    "<g1> 1 p=0 t=blitz r=t u=1,1 it=5,5 i=8,8 pt=0 rt=1586E,2100 ts=1,0",
+    "<g1> 1 p=0 t=blitz r=1 u=1,1 it=5 i=8,8 pt=0 rt=1586E,2100 ts=1,0",
+    "<g1> 1 p=0 t=blitz r=1 u=1,1 it=5,5 i=8,8 pt=0 ts=1,0",
+    "<g1> 1 p=0 t=blitz r=1 u=1,1 it=5,5 i=8,8 pt=0 rt=abc,2100 ts=1,0",
+    "<g1> 1 p=0 t=blitz r=1 u=1,1 it=5,5 i=8,8 pt=0 rt=1586E,2100"
+  };
+
+  /** Malformed seekinfo lines. */
+  private static final String[] BAD_SEEK_INFO_LINES = {
+    "<x> 29 w=Snaps ti=02 rt=1532  t=1 i=0 r=r tp=lightning c=? rr=0-9999 a=t f=t",
+    "<s> 29 w=Snaps ti=zz rt=1532  t=1 i=0 r=r tp=lightning c=? rr=0-9999 a=t f=t",
+    "<s> 29 w=Snaps ti=02 rt=1532  t=x i=0 r=r tp=lightning c=? rr=0-9999 a=t f=t",
+    "<s> 29 w=Snaps ti=02 rt=1532  t=1 i=0 r=r tp=lightning c=? rr=0 a=t f=t",
+    "<s> 29 w=Snaps ti=02 rt=1532  t=1 i=0 r=r tp=lightning c=? rr=0-9999 a=t"
+  };
+
+  /** Malformed delta board lines. */
+  private static final String[] BAD_DELTA_BOARD_LINES = {
+    "<d2> 7 2 e4 P/e2-e4 178000 0",
+    "<d1> 7 x e4 P/e2-e4 178000 0",
+    "<d1> 7 2 e4 P/e2-e4 178000",
+    "<d1> 7 2 e4 P/e2-e4 1.5 0"
+  };
+
+  /** The tokens fuzzed lines draw replacement tokens from. */
+  private static final String[] REPLACEMENTS = {
+    "",
+    "0",
+    "1",
+    "-1",
+    "2",
+    "7",
+    "8",
+    "+5",
+    "-0",
+    "00",
+    "42",
+    "999999999999",
+    "2147483648",
+    "-2147483648",
+    "1E",
+    "1500P",
+    "x",
+    "W",
+    "B",
+    "t",
+    "f",
+    "?",
+    "=",
+    ",",
+    "-",
+    "a=t",
+    "rt=",
+    "r=r",
+    "it=1",
+    "1,2",
+    "1,",
+    ",1",
+    "--------",
+    "rnbqkbnr",
+    "<12>",
+    "<g1>",
+    "<s>",
+    "<d1>",
+    "none",
+    "(0:00.000)",
+    "(0:00)",
+    "\t",
+    "5-",
+    "0-",
+    "-9999",
+    "\u0661"
+  };
+
+  /** Checks the fields of the sample style12 lines. */
+  @Test
+  public void style12Lines() {
+    Style12Struct board = parseStyle12(STYLE12_LINES[0], null);
+    assertEquals("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1", board.getBoardFEN());
+    assertEquals(
+        "rnbqkbnrpppppppp--------------------------------PPPPPPPPRNBQKBNR",
+        board.getBoardLexigraphic());
+    assertEquals("W", board.getCurrentPlayer());
+    assertEquals(-1, board.getDoublePawnPushFile());
+    assertTrue(board.canWhiteCastleKingside());
+    assertTrue(board.canWhiteCastleQueenside());
+    assertTrue(board.canBlackCastleKingside());
+    assertTrue(board.canBlackCastleQueenside());
+    assertEquals(0, board.getPliesSinceIrreversible());
+    assertEquals(7, board.getGameNumber());
+    assertEquals("Snaps", board.getWhiteName());
+    assertEquals("Strakh", board.getBlackName());
+    assertEquals(Style12Struct.MY_GAME, board.getGameType());
+    assertTrue(board.isPlayedGame());
+    assertTrue(board.isMyTurn());
+    assertEquals(180, board.getInitialTime());
+    assertEquals(0, board.getIncrement());
+    assertEquals(39, board.getWhiteMaterialStrength());
+    assertEquals(39, board.getBlackMaterialStrength());
+    assertEquals(180000, board.getWhiteTime());
+    assertEquals(180000, board.getBlackTime());
+    assertEquals(1, board.getNextMoveNumber());
+    assertEquals(0, board.getPlayedPlyCount());
+    assertNull(board.getMoveVerbose());
+    assertNull(board.getMoveSAN());
+    assertEquals(0, board.getMoveTime());
+    assertFalse(board.isBoardFlipped());
+    assertFalse(board.isClockRunning());
+    assertEquals(0, board.getLag());
+
+    board = parseStyle12(STYLE12_LINES[1], board);
+    assertEquals(
+        "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1", board.getBoardFEN());
+    assertEquals("B", board.getCurrentPlayer());
+    assertEquals(4, board.getDoublePawnPushFile());
+    assertTrue(board.isPlayedGame());
+    assertFalse(board.isMyTurn());
+    assertEquals(180000, board.getWhiteTime());
+    assertEquals(178000, board.getBlackTime());
+    assertEquals(1, board.getNextMoveNumber());
+    assertEquals(1, board.getPlayedPlyCount());
+    assertEquals("P/e2-e4", board.getMoveVerbose());
+    assertEquals("e4", board.getMoveSAN());
+    assertEquals(2000, board.getMoveTime());
+    assertTrue(board.isClockRunning());
+
+    board = parseStyle12(STYLE12_LINES[2], board);
+    assertEquals("r3k2r/8/8/8/8/8/8/R3K2R w Qk - 12 40", board.getBoardFEN());
+    assertFalse(board.canWhiteCastleKingside());
+    assertTrue(board.canWhiteCastleQueenside());
+    assertTrue(board.canBlackCastleKingside());
+    assertFalse(board.canBlackCastleQueenside());
+    assertEquals(12, board.getPliesSinceIrreversible());
+    assertEquals(105, board.getGameNumber());
+    assertEquals("GuestABCD", board.getWhiteName());
+    assertEquals("Bot", board.getBlackName());
+    assertEquals(Style12Struct.MY_GAME, board.getGameType());
+    assertFalse(board.isPlayedGame());
+    assertEquals(10, board.getWhiteMaterialStrength());
+    assertEquals(0, board.getWhiteTime());
+    assertEquals(40, board.getNextMoveNumber());
+    assertEquals(78, board.getPlayedPlyCount());
+    assertEquals("o-o-o", board.getMoveVerbose());
+    assertEquals("O-O-O", board.getMoveSAN());
+    assertEquals(62345, board.getMoveTime());
+    assertTrue(board.isBoardFlipped());
+    assertFalse(board.isClockRunning());
+    assertEquals(123, board.getLag());
+
+    board = parseStyle12(STYLE12_LINES[3], null);
+    assertEquals("8/8/8/8/8/8/8/8 w - - 0 1", board.getBoardFEN());
+    assertEquals(0, board.getGameNumber());
+    assertEquals("a", board.getWhiteName());
+    assertEquals("b", board.getBlackName());
+    assertEquals(Style12Struct.ISOLATED_BOARD, board.getGameType());
+    assertEquals(-5000, board.getWhiteTime());
+    assertEquals(10, board.getBlackTime());
+    assertNull(board.getMoveSAN());
+  }
+
+  /**
+   * Checks that the style12 lines of <code>fics-lines.txt</code>, whose move times have no
+   * milliseconds, are rejected; we always turn the "ms" ivar on.
+   */
+  @Test
+  public void style12LinesWithoutMillisecondsAreRejected() {
+    for (int i = 0; i < STYLE12_SECONDS_LINES.length; i++)
+      assertRejected(Style12Struct.class, STYLE12_SECONDS_LINES[i]);
+  }
+
+  /** Checks the fields of the sample gameinfo lines. */
+  @Test
+  public void gameInfoLines() {
+    GameInfoStruct info = GameInfoStruct.parseGameInfoLine(GAME_INFO_LINES[0]);
+    assertEquals(1, info.getGameNumber());
+    assertFalse(info.isGamePrivate());
+    assertEquals("blitz", info.getGameCategory());
+    assertTrue(info.isGameRated());
+    assertTrue(info.isWhiteRegistered());
+    assertTrue(info.isBlackRegistered());
+    assertEquals(5, info.getWhiteTime());
+    assertEquals(5, info.getWhiteInc());
+    assertEquals(8, info.getBlackTime());
+    assertEquals(8, info.getBlackInc());
+    assertEquals(0, info.getPartnerGameNumber());
+    assertEquals(1586, info.getWhiteRating());
+    assertEquals('E', info.getWhiteProvShow());
+    assertEquals(2100, info.getBlackRating());
+    assertEquals(' ', info.getBlackProvShow());
+    assertTrue(info.isWhiteTimesealed());
+    assertFalse(info.isBlackTimesealed());
+
+    info = GameInfoStruct.parseGameInfoLine(GAME_INFO_LINES[1]);
+    assertEquals(132, info.getGameNumber());
+    assertTrue(info.isGamePrivate());
+    assertEquals("crazyhouse", info.getGameCategory());
+    assertFalse(info.isGameRated());
+    assertFalse(info.isWhiteRegistered());
+    assertTrue(info.isBlackRegistered());
+    assertEquals(180, info.getWhiteTime());
+    assertEquals(180, info.getWhiteInc());
+    assertEquals(0, info.getBlackTime());
+    assertEquals(0, info.getBlackInc());
+    assertEquals(131, info.getPartnerGameNumber());
+    assertEquals(0, info.getWhiteRating());
+    assertEquals(1500, info.getBlackRating());
+    assertEquals('P', info.getBlackProvShow());
+    assertFalse(info.isWhiteTimesealed());
+    assertTrue(info.isBlackTimesealed());
+
+    info = GameInfoStruct.parseGameInfoLine(GAME_INFO_LINES[2]);
+    assertEquals(5, info.getGameNumber());
+    assertEquals("untimed", info.getGameCategory());
+    assertEquals(1200, info.getWhiteRating());
+    assertEquals(' ', info.getWhiteProvShow());
+    assertEquals(1300, info.getBlackRating());
+    assertEquals(' ', info.getBlackProvShow());
+    assertTrue(info.isWhiteRegistered());
+    assertFalse(info.isBlackRegistered());
+  }
+
+  /** Checks the fields of the sample seekinfo lines. */
+  @Test
+  public void seekInfoLines() {
+    SeekInfoStruct seek = SeekInfoStruct.parseSeekInfoLine(SEEK_INFO_LINES[0]);
+    assertTrue(seek.canAcceptSeek());
+    assertEquals(29, seek.getSeekIndex());
+    assertEquals("Snaps", seek.getSeekerHandle());
+    assertEquals(2, seek.getSeekerTitles());
+    assertEquals(1532, seek.getSeekerRating());
+    assertEquals(' ', seek.getSeekerProvShow());
+    assertEquals(1, seek.getMatchTime());
+    assertEquals(0, seek.getMatchIncrement());
+    assertTrue(seek.isMatchRated());
+    assertEquals("lightning", seek.getMatchType());
+    assertEquals('?', seek.getSeekerColor());
+    assertEquals(0, seek.getOpponentMinRating());
+    assertEquals(9999, seek.getOpponentMaxRating());
+    assertTrue(seek.isAutomaticAccept());
+    assertTrue(seek.isFormulaUsed());
+
+    seek = SeekInfoStruct.parseSeekInfoLine(SEEK_INFO_LINES[1]);
+    assertFalse(seek.canAcceptSeek());
+    assertEquals(30, seek.getSeekIndex());
+    assertEquals("Strakh", seek.getSeekerHandle());
+    assertEquals(0, seek.getSeekerTitles());
+    assertEquals(1700, seek.getSeekerRating());
+    assertEquals('E', seek.getSeekerProvShow());
+    assertEquals(5, seek.getMatchTime());
+    assertFalse(seek.isMatchRated());
+    assertEquals("blitz", seek.getMatchType());
+    assertEquals('W', seek.getSeekerColor());
+    assertFalse(seek.isAutomaticAccept());
+    assertFalse(seek.isFormulaUsed());
+
+    seek = SeekInfoStruct.parseSeekInfoLine(SEEK_INFO_LINES[2]);
+    assertEquals(8, seek.getSeekIndex());
+    assertEquals(6, seek.getSeekerTitles());
+    assertEquals(2100, seek.getSeekerRating());
+    assertEquals(15, seek.getMatchTime());
+    assertEquals(5, seek.getMatchIncrement());
+    assertEquals("standard", seek.getMatchType());
+    assertEquals(1500, seek.getOpponentMinRating());
+    assertEquals(2500, seek.getOpponentMaxRating());
+
+    seek = SeekInfoStruct.parseSeekInfoLine(SEEK_INFO_LINES[3]);
+    assertEquals(101, seek.getSeekIndex());
+    assertEquals("GuestXYZZ", seek.getSeekerHandle());
+    assertEquals(1, seek.getSeekerTitles());
+    assertEquals(0, seek.getSeekerRating());
+    assertEquals('P', seek.getSeekerProvShow());
+    assertEquals("untimed", seek.getMatchType());
+    assertEquals('B', seek.getSeekerColor());
+    assertTrue(seek.isAutomaticAccept());
+    assertFalse(seek.isFormulaUsed());
+  }
+
+  /** Checks the fields of the sample delta board lines. */
+  @Test
+  public void deltaBoardLines() {
+    DeltaBoardStruct delta = DeltaBoardStruct.parseDeltaBoardLine(DELTA_BOARD_LINES[0]);
+    assertEquals(7, delta.getGameNumber());
+    assertEquals(2, delta.getPliesPlayedCount());
+    assertEquals("e4", delta.getMoveAlgebraic());
+    assertEquals("P/e2-e4", delta.getMoveSmith());
+    assertEquals(178000, delta.getTakenTime());
+    assertEquals(0, delta.getRemainingTime());
+
+    delta = DeltaBoardStruct.parseDeltaBoardLine(DELTA_BOARD_LINES[1]);
+    assertEquals(105, delta.getGameNumber());
+    assertEquals(41, delta.getPliesPlayedCount());
+    assertEquals("O-O-O", delta.getMoveAlgebraic());
+    assertEquals("o-o-o", delta.getMoveSmith());
+    assertEquals(2345, delta.getTakenTime());
+    assertEquals(-100, delta.getRemainingTime());
+
+    delta = DeltaBoardStruct.parseDeltaBoardLine(DELTA_BOARD_LINES[2]);
+    assertEquals(1, delta.getPliesPlayedCount());
+    assertEquals("Nf3", delta.getMoveAlgebraic());
+    assertEquals("g1f3", delta.getMoveSmith());
+    assertEquals(5, delta.getRemainingTime());
+  }
+
+  /** Checks that malformed lines are rejected. */
+  @Test
+  public void malformedLinesAreRejected() {
+    for (int i = 0; i < BAD_STYLE12_LINES.length; i++)
+      assertRejected(Style12Struct.class, BAD_STYLE12_LINES[i]);
+    for (int i = 0; i < BAD_GAME_INFO_LINES.length; i++)
+      assertRejected(GameInfoStruct.class, BAD_GAME_INFO_LINES[i]);
+    for (int i = 0; i < BAD_SEEK_INFO_LINES.length; i++)
+      assertRejected(SeekInfoStruct.class, BAD_SEEK_INFO_LINES[i]);
+    for (int i = 0; i < BAD_DELTA_BOARD_LINES.length; i++)
+      assertRejected(DeltaBoardStruct.class, BAD_DELTA_BOARD_LINES[i]);
+  }
+
+  /**
+   * Checks that fuzzed versions of the sample lines are either parsed or rejected with the
+   * exceptions the original parsers threw, and that style12 lines parse to the same fields with and
+   * without the previous board.
+   */
+  @Test
+  public void fuzzedLines() throws Exception {
+    Random random = new Random(12);
+    for (int i = 0; i < STYLE12_LINES.length; i++) {
+      Style12Struct previous = Style12Struct.parseStyle12Line(STYLE12_LINES[i]);
+      for (int j = 0; j < MUTATION_COUNT; j++) {
+        String line = mutate(STYLE12_LINES[i], random);
+        Object struct = parse(Style12Struct.class, line);
+        if (struct != null) assertSameFields(line, struct, parseStyle12(line, previous));
+      }
+    }
+
+    checkFuzzed(GAME_INFO_LINES, GameInfoStruct.class, random);
+    checkFuzzed(SEEK_INFO_LINES, SeekInfoStruct.class, random);
+    checkFuzzed(DELTA_BOARD_LINES, DeltaBoardStruct.class, random);
+  }
+
+  /**
+   * Parses the specified style12 line both with the specified previous board and without one,
+   * asserting that both structs have the same fields, and returns the latter.
+   */
+  private static Style12Struct parseStyle12(String line, Style12Struct previous) {
+    Style12Struct board = Style12Struct.parseStyle12Line(line);
+    try {
+      assertSameFields(line, board, Style12Struct.parseStyle12Line(line, previous));
+    } catch (Exception e) {
+      throw new AssertionError(e);
+    }
+    return board;
+  }
+
+  /** Parses fuzzed versions of the specified lines with the specified struct class. */
+  private static void checkFuzzed(String[] lines, Class structClass, Random random)
+      throws Exception {
+    for (int i = 0; i < lines.length; i++)
+      for (int j = 0; j < MUTATION_COUNT; j++) parse(structClass, mutate(lines[i], random));
+  }
+
+  /** Asserts that the specified line is rejected by the specified struct class. */
+  private static void assertRejected(Class structClass, String line) {
+    try {
+      if (parse(structClass, line) != null) fail("Parsed \"" + line + "\"");
+    } catch (Exception e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  /**
+   * Parses the specified line with the static <code>parse...Line(String)</code> method of the
+   * specified struct class, returning the struct, or <code>null</code> if the line is rejected with
+   * an <code>IllegalArgumentException</code> (including a <code>NumberFormatException</code>) or a
+   * <code>NoSuchElementException</code>.
+   */
+  private static Object parse(Class structClass, String line) throws Exception {
+    Method[] methods = structClass.getMethods();
+    for (int i = 0; i < methods.length; i++) {
+      Method method = methods[i];
+      if (Modifier.isStatic(method.getModifiers())
+          && method.getName().startsWith("parse")
+          && Arrays.equals(method.getParameterTypes(), new Class[] {String.class})) {
+        try {
+          return method.invoke(null, new Object[] {line});
+        } catch (InvocationTargetException e) {
+          if ((e.getCause() instanceof IllegalArgumentException)
+              || (e.getCause() instanceof NoSuchElementException)) return null;
+          throw e;
+        }
+      }
+    }
+    throw new IllegalArgumentException("No parse method in " + structClass);
+  }
+
+  /** Asserts that the public accessors of the specified structs all return equal values. */
+  private static void assertSameFields(String line, Object expected, Object actual)
+      throws Exception {
+    Method[] methods = expected.getClass().getMethods();
+    int compared = 0;
+    for (int i = 0; i < methods.length; i++) {
+      Method method = methods[i];
+      if (!isAccessor(method)) continue;
+
+      assertEquals(
+          "\"" + line + "\": " + method.getName(),
+          invoke(method, expected),
+          invoke(method, actual));
+      compared++;
+    }
+    assertTrue(compared > 0);
+  }
+
+  /**
+   * Invokes the specified accessor, returning either its value or, as some accessors are only
+   * applicable to some structs, the class of the exception it throws.
+   */
+  private static Object invoke(Method accessor, Object struct) throws Exception {
+    try {
+      return accessor.invoke(struct, new Object[0]);
+    } catch (InvocationTargetException e) {
+      if (e.getCause() instanceof RuntimeException) return e.getCause().getClass();
+      throw e;
+    }
+  }
+
+  /** Returns whether the specified method is a public accessor declared by the struct class. */
+  private static boolean isAccessor(Method method) {
+    String name = method.getName();
+    return !Modifier.isStatic(method.getModifiers())
+        && (method.getParameterTypes().length == 0)
+        && (method.getDeclaringClass() != Object.class)
+        && (name.startsWith("get") || name.startsWith("is") || name.startsWith("can"))
+        && !name.equals("getClass");
+  }
+
+  /**
+   * Returns a randomly mutated version of the specified line: tokens replaced, dropped, duplicated
+   * or swapped, spaces added or removed, characters changed, or the line truncated.
+   */
+  private static String mutate(String line, Random random) {
+    Vector tokens = new Vector(Arrays.asList(line.split(" ", -1)));
+    int mutationCount = 1 + random.nextInt(3);
+    for (int i = 0; i < mutationCount; i++) {
+      int index = random.nextInt(tokens.size());
+      switch (random.nextInt(8)) {
+        case 0:
+          tokens.setElementAt(REPLACEMENTS[random.nextInt(REPLACEMENTS.length)], index);
+          break;
+        case 1:
+          if (tokens.size() > 1) tokens.removeElementAt(index);
+          break;
+        case 2:
+          tokens.insertElementAt(tokens.elementAt(index), index);
+          break;
+        case 3:
+          tokens.insertElementAt("", index);
+          break;
+        case 4:
+          {
+            int other = random.nextInt(tokens.size());
+            Object token = tokens.elementAt(index);
+            tokens.setElementAt(tokens.elementAt(other), index);
+            tokens.setElementAt(token, other);
+            break;
+          }
+        case 5:
+          {
+            String token = (String) tokens.elementAt(index);
+            if (token.length() > 0) {
+              int pos = random.nextInt(token.length());
+              String replacement = REPLACEMENTS[random.nextInt(REPLACEMENTS.length)];
+              tokens.setElementAt(
+                  token.substring(0, pos) + replacement + token.substring(pos + 1), index);
+            }
+            break;
+          }
+        case 6:
+          {
+            String token = (String) tokens.elementAt(index);
+            tokens.setElementAt(token.substring(0, random.nextInt(token.length() + 1)), index);
+            break;
+          }
+        default:
+          tokens.setSize(index + 1);
+          break;
+      }
+    }
+
+    StringBuffer buf = new StringBuffer();
+    for (int i = 0; i < tokens.size(); i++) {
+      if (i > 0) buf.append(' ');
+      buf.append(tokens.elementAt(i));
+    }
+    return buf.toString();
+  }
+}
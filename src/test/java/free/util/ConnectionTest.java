@@ -0,0 +1,321 @@
+/**
+ * The utillib library. More information is available at http://www.jinchess.com/. Copyright (C)
+ * 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * <p>The utillib library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * <p>The utillib library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU Lesser General Public License along with utillib
+ * library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+ * MA 02111-1307 USA
+ */
+package free.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import free.util.swing.CoalescingDispatcher;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Vector;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+/**
+ * Tests the way a {@link Connection} hands messages, and its disconnection, to a client thread
+ * which falls behind - the AWT event dispatching thread, via a {@link CoalescingDispatcher}, as Jin
+ * does - and the way it sends data and closes.
+ */
+public class ConnectionTest {
+
+  /** The amount of lines the server sends. */
+  private static final int LINE_COUNT = 3000;
+
+  /** The backlog size of the dispatchers. */
+  private static final int BACKLOG_SIZE = 8;
+
+  /**
+   * Checks that a connection read by a reader thread, which reaches the end of stream while the
+   * dispatcher is backlogged and the handlers are calling synchronized methods of the connection,
+   * delivers all the messages and then the disconnection.
+   */
+  @Test(timeout = 30000)
+  public void readerThreadDisconnectionWhileBacklogged() throws Exception {
+    ServerSocket server = startServer();
+    TestConnection connection = new TestConnection(false);
+    connection.initiateConnect(new Socket(server.getInetAddress(), server.getLocalPort()));
+
+    connection.awaitDisconnection();
+    connection.assertAllLinesHandled();
+    server.close();
+  }
+
+  /**
+   * Checks that a connection read by the {@link ConnectionSelector} stops being read while the
+   * dispatcher is backlogged, rather than holding up the selector thread, and that it delivers all
+   * the messages and then the disconnection.
+   */
+  @Test(timeout = 30000)
+  public void selectorDisconnectionWhileBacklogged() throws Exception {
+    ServerSocket server = startServer();
+    TestConnection connection = new TestConnection(true);
+    connection.initiateConnect(server.getInetAddress().getHostAddress(), server.getLocalPort());
+
+    connection.awaitDisconnection();
+    connection.assertAllLinesHandled();
+    server.close();
+
+    CoalescingDispatcher dispatcher = connection.dispatcher;
+    assertTrue(dispatcher.getBacklogCount() > 0);
+    // Reading is paused after each read once backlogged, so the queue can only overshoot by the
+    // lines of a single read
+    assertTrue(
+        "Max queue depth: " + dispatcher.getMaxQueueDepth(),
+        dispatcher.getMaxQueueDepth() < BACKLOG_SIZE + 8192 / "line 0000\n".length() + 1);
+  }
+
+  /**
+   * Checks that urgent data doesn't overtake data queued before it, and that closing the connection
+   * returns right away, sends everything queued before disconnecting, and then notifies about the
+   * disconnection.
+   */
+  @Test(timeout = 30000)
+  public void closeSendsQueuedDataInOrder() throws Exception {
+    final ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+    final ByteArrayOutputStream received = new ByteArrayOutputStream();
+    Thread serverThread =
+        new Thread("TestServer") {
+          @Override
+          public void run() {
+            try {
+              Socket socket = server.accept();
+              InputStream in = socket.getInputStream();
+              int b;
+              while ((b = in.read()) != -1) received.write(b);
+              socket.close();
+            } catch (IOException e) {
+              e.printStackTrace();
+            }
+          }
+        };
+    serverThread.setDaemon(true);
+    serverThread.start();
+
+    final CountDownLatch connected = new CountDownLatch(1);
+    final CountDownLatch disconnected = new CountDownLatch(1);
+    Connection connection =
+        new Connection() {
+          @Override
+          protected Object readMessage(InputStream in) throws IOException {
+            return in.read() == -1 ? null : "";
+          }
+
+          @Override
+          protected void sendLoginSequence() {}
+
+          @Override
+          protected void handleConnected() {
+            connected.countDown();
+          }
+
+          @Override
+          protected void handleMessage(Object message) {}
+
+          @Override
+          protected void handleDisconnection(IOException e) {
+            disconnected.countDown();
+          }
+        };
+    connection.initiateConnect(new Socket(server.getInetAddress(), server.getLocalPort()));
+    assertTrue(connected.await(10, TimeUnit.SECONDS));
+
+    StringBuffer expected = new StringBuffer();
+    for (int i = 0; i < 200; i++) {
+      String line = createLine(i);
+      expected.append(line);
+      connection.sendData(line.getBytes(StandardCharsets.US_ASCII), i % 10 == 9);
+    }
+    connection.close();
+    connection.sendData("late\n".getBytes(StandardCharsets.US_ASCII), true); // Still "connected"
+
+    assertTrue(disconnected.await(10, TimeUnit.SECONDS));
+    assertFalse(connection.isConnected());
+    serverThread.join(10000);
+    assertEquals(
+        expected.toString(), new String(received.toByteArray(), StandardCharsets.US_ASCII));
+    server.close();
+  }
+
+  /**
+   * Starts a server which sends <code>LINE_COUNT</code> lines to the first client and then closes
+   * the connection.
+   */
+  private static ServerSocket startServer() throws IOException {
+    final ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+    Thread thread =
+        new Thread("TestServer") {
+          @Override
+          public void run() {
+            try {
+              Socket socket = server.accept();
+              OutputStream out = socket.getOutputStream();
+              ByteArrayOutputStream buf = new ByteArrayOutputStream();
+              for (int i = 0; i < LINE_COUNT; i++)
+                buf.write(createLine(i).getBytes(StandardCharsets.US_ASCII));
+              out.write(buf.toByteArray());
+              out.flush();
+              socket.close();
+            } catch (IOException e) {
+              e.printStackTrace();
+            }
+          }
+        };
+    thread.setDaemon(true);
+    thread.start();
+    return server;
+  }
+
+  /** Returns the line with the specified index, including the terminating newline. */
+  private static String createLine(int index) {
+    return "line " + TextUtilities.padStart(String.valueOf(index), '0', 4) + "\n";
+  }
+
+  /**
+   * A connection which handles lines on the event dispatching thread, slowly, calling synchronized
+   * methods of the connection while doing so.
+   */
+  private static class TestConnection extends Connection {
+
+    /** The dispatcher. */
+    final CoalescingDispatcher dispatcher = new CoalescingDispatcher(BACKLOG_SIZE, 4, 15);
+
+    /** Whether the socket is read by the selector, via a <code>MessageFramer</code>. */
+    private final boolean useSelector;
+
+    /** The lines handled so far. Only accessed on the event dispatching thread. */
+    private final Vector lines = new Vector();
+
+    /** The amount of lines handled when the disconnection was handled. */
+    private volatile int linesHandledAtDisconnection = -1;
+
+    /** Released when the disconnection is handled. */
+    private final CountDownLatch disconnected = new CountDownLatch(1);
+
+    /** Creates a new <code>TestConnection</code>. */
+    TestConnection(boolean useSelector) {
+      this.useSelector = useSelector;
+      dispatcher.setBacklogClearedCallback(
+          new Runnable() {
+            @Override
+            public void run() {
+              resumeReading();
+            }
+          });
+    }
+
+    @Override
+    protected MessageFramer createMessageFramer() {
+      return useSelector ? new LineFramer() : null;
+    }
+
+    @Override
+    protected Object readMessage(InputStream in) throws IOException {
+      StringBuffer buf = new StringBuffer();
+      int b;
+      while ((b = in.read()) != '\n') {
+        if (b < 0) return null;
+        buf.append((char) b);
+      }
+      return buf.toString();
+    }
+
+    @Override
+    protected void sendLoginSequence() {}
+
+    @Override
+    protected void execRunnable(Runnable runnable) {
+      dispatcher.execute(runnable);
+    }
+
+    @Override
+    protected boolean isBacklogged() {
+      return dispatcher.isBacklogged();
+    }
+
+    @Override
+    protected void handleMessage(Object message) {
+      // Contend for the connection's lock, like real handlers do
+      isConnected();
+      isLoggedIn();
+      lines.addElement(message);
+      if (lines.size() % 100 == 0) {
+        try {
+          Thread.sleep(5);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+
+    @Override
+    protected void handleDisconnection(IOException e) {
+      assertFalse(isConnected());
+      linesHandledAtDisconnection = lines.size();
+      disconnected.countDown();
+    }
+
+    /** Waits for the disconnection to be handled. */
+    void awaitDisconnection() throws InterruptedException {
+      assertTrue("Disconnection not handled", disconnected.await(20, TimeUnit.SECONDS));
+    }
+
+    /** Asserts that all the lines were handled, in order, before the disconnection. */
+    void assertAllLinesHandled() {
+      assertEquals(LINE_COUNT, linesHandledAtDisconnection);
+      for (int i = 0; i < LINE_COUNT; i++) {
+        String line = createLine(i);
+        assertEquals(line.substring(0, line.length() - 1), lines.elementAt(i));
+      }
+    }
+  }
+
+  /** A <code>MessageFramer</code> splitting the data into lines, terminated by newlines. */
+  private static class LineFramer implements MessageFramer {
+
+    /** The line read so far. */
+    private final StringBuffer buf = new StringBuffer();
+
+    @Override
+    public Object nextMessage(ByteBuffer in) {
+      while (in.hasRemaining()) {
+        char c = (char) in.get();
+        if (c == '\n') {
+          String line = buf.toString();
+          buf.setLength(0);
+          return line;
+        }
+        buf.append(c);
+      }
+      return null;
+    }
+
+    @Override
+    public Object finish() {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,93 @@
+/**
+ * The utillib library. More information is available at http://www.jinchess.com/. Copyright (C)
+ * 2007 Alexander Maryanovsky. All rights reserved.
+ *
+ * <p>The utillib library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * <p>The utillib library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU Lesser General Public License along with utillib
+ * library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+ * MA 02111-1307 USA
+ */
+package free.util.swing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Vector;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.swing.SwingUtilities;
+import org.junit.Test;
+
+/** Tests {@link CoalescingDispatcher}. */
+public class CoalescingDispatcherTest {
+
+  /**
+   * Checks that queueing runnables while the event dispatching thread is busy never blocks, even
+   * well past the backlog size, and that the runnables then run in order, with the backlog cleared
+   * callback run once.
+   */
+  @Test(timeout = 10000)
+  public void executeNeverBlocks() throws InterruptedException {
+    final CoalescingDispatcher dispatcher = new CoalescingDispatcher(16, 4, 15);
+    final AtomicInteger callbackCount = new AtomicInteger();
+    dispatcher.setBacklogClearedCallback(
+        new Runnable() {
+          @Override
+          public void run() {
+            callbackCount.incrementAndGet();
+          }
+        });
+
+    final CountDownLatch edtBusy = new CountDownLatch(1);
+    final CountDownLatch releaseEdt = new CountDownLatch(1);
+    SwingUtilities.invokeLater(
+        new Runnable() {
+          @Override
+          public void run() {
+            edtBusy.countDown();
+            try {
+              releaseEdt.await();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+          }
+        });
+    edtBusy.await();
+
+    final Vector ran = new Vector();
+    final CountDownLatch allRan = new CountDownLatch(1);
+    int count = 1000;
+    for (int i = 0; i < count; i++) {
+      final Integer index = Integer.valueOf(i);
+      final boolean isLast = i == count - 1;
+      dispatcher.execute(
+          new Runnable() {
+            @Override
+            public void run() {
+              ran.addElement(index);
+              if (isLast) allRan.countDown();
+            }
+          });
+    }
+
+    assertTrue(dispatcher.isBacklogged());
+    assertEquals(count, dispatcher.getQueueDepth());
+
+    releaseEdt.countDown();
+    assertTrue(allRan.await(5, TimeUnit.SECONDS));
+
+    for (int i = 0; i < count; i++) assertEquals(Integer.valueOf(i), ran.elementAt(i));
+    assertFalse(dispatcher.isBacklogged());
+    assertEquals(1, dispatcher.getBacklogCount());
+    assertEquals(1, callbackCount.get());
+  }
+}